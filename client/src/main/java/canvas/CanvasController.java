@@ -40,6 +40,13 @@ public class CanvasController extends DrawableBase {
     	this.defaultDrawingController = null;
     }
     
+    // An existing canvas, no drawing support
+    public CanvasController(Canvas canvas) {
+    	super(canvas.width, canvas.height);
+    	this.canvas = canvas;
+    	this.defaultDrawingController = null;
+    }
+    
     /**
      * Add the mouse listener that supports the user's freehand drawing.
      */
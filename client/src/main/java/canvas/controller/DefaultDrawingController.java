@@ -16,6 +16,8 @@ public class DefaultDrawingController extends DrawingController {
 	// store the coordinates of the last mouse event, so we can
     // draw a line segment from that last point to the point of the next mouse event.
     private int lastX, lastY; 
+    // a drag's segments are sent in batches rather than one packet per mouse event
+    private final StrokeBatcher batcher;
     /**
      * Constructor
      * @param clientController
@@ -25,6 +27,7 @@ public class DefaultDrawingController extends DrawingController {
     public DefaultDrawingController(ClientController clientController,
 			StrokeProperties strokeProperties, Drawable canvas) {
 		super(clientController, strokeProperties, canvas);
+		this.batcher = new StrokeBatcher(clientController);
 	}
     
     /**
@@ -37,7 +40,7 @@ public class DefaultDrawingController extends DrawingController {
         DrawCommand[] commands = strokeProperties.paintLine(clientController.selectedLayer(), canvas, lastX, lastY, lastX, lastY, 
         new Vector2(0,0));
         for (DrawCommand command : commands) {
-            clientController.sendDrawCommand(command);
+            batcher.add(command);
         }
     }
 
@@ -52,7 +55,7 @@ public class DefaultDrawingController extends DrawingController {
         DrawCommand[] commands = strokeProperties.paintLine(clientController.selectedLayer(), canvas, lastX, lastY, x, y, 
                                                             new Vector2(x-lastX,y-lastY));
         for (DrawCommand command : commands) {
-            clientController.sendDrawCommand(command);
+            batcher.add(command);
         }
 
         lastX = x;
@@ -60,9 +63,10 @@ public class DefaultDrawingController extends DrawingController {
     }
     
     /**
-     * Upon releasing the mouse, update the GUI and thumbnail images for the layer
+     * Upon releasing the mouse, send the rest of the stroke and update the GUI and thumbnail images for the layer
      */
     public void mouseReleased(MouseEvent e) {
+        batcher.flush();
     	clientController.setGUILayers();
     }
     
@@ -0,0 +1,129 @@
+package canvas.controller;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
+
+import javax.swing.Timer;
+
+import canvas.Pixel;
+import canvas.command.DrawCommand;
+import canvas.command.DrawCommandLine;
+import canvas.command.DrawCommandPolyline;
+import client.ClientController;
+/**
+ * Gathers the line segments of a freehand drag into DrawCommandPolylines before they are sent, so the
+ * layer and stroke go out once per batch rather than once per mouse event. A batch is sent once it has
+ * MAX_POINTS points, MAX_DELAY_MILLIS after it was started, when a segment that doesn't continue it
+ * comes along, and when the drag ends. A polyline has a single color, so segments fading from one
+ * color to another are sent on their own, as are other draw commands, in order.
+ *
+ * Only used on the Swing event thread, like the mouse events feeding it.
+ *
+ */
+public class StrokeBatcher implements ActionListener {
+    public static final int MAX_POINTS = 64;
+    public static final int MAX_DELAY_MILLIS = 30;
+
+    private final ClientController clientController;
+    private final Timer timer;
+
+    // the batch being gathered: its first segment, how many it has, and the x and y of every point so far
+    private DrawCommandLine first;
+    private int segments;
+    private int[] points = new int[2 * MAX_POINTS];
+    private int pointCount;
+
+    /**
+     * Constructor
+     * @param clientController to send the batches with
+     */
+    public StrokeBatcher(ClientController clientController) {
+        this.clientController = clientController;
+        this.timer = new Timer(MAX_DELAY_MILLIS, this);
+        this.timer.setRepeats(false);
+    }
+
+    /**
+     * Adds a draw command to the current batch if it continues it, otherwise sends the batch and starts
+     * another one with it
+     * @param command
+     */
+    public void add(DrawCommand command) {
+        if (!(command instanceof DrawCommandLine) || !isSolid((DrawCommandLine) command)) {
+            flush();
+            clientController.sendDrawCommand(command);
+            return;
+        }
+        DrawCommandLine line = (DrawCommandLine) command;
+        if (first != null && !continues(line)) {
+            flush();
+        }
+        if (first == null) {
+            first = line;
+            points[0] = line.pixelStart().x();
+            points[1] = line.pixelStart().y();
+            pointCount = 1;
+            timer.restart();
+        }
+        segments++;
+        // A dot, as a drag starts with, is drawn by the round cap of the segment after it.
+        if (!line.pixelStart().equals(line.pixelEnd())) {
+            points[2 * pointCount] = line.pixelEnd().x();
+            points[2 * pointCount + 1] = line.pixelEnd().y();
+            pointCount++;
+        }
+        if (pointCount == MAX_POINTS) {
+            flush();
+        }
+    }
+
+    /**
+     * @return whether the segment is drawn in one color, rather than fading from its start to its end
+     */
+    private static boolean isSolid(DrawCommandLine line) {
+        return line.pixelStart().color().equals(line.pixelEnd().color());
+    }
+
+    /**
+     * @return whether the solid segment starts where the batch ends, drawn the same way
+     */
+    private boolean continues(DrawCommandLine line) {
+        Pixel start = line.pixelStart();
+        return line.id().equals(first.id())
+                && line.stroke().equals(first.stroke())
+                && line.symetry() == first.symetry()
+                && start.color().equals(first.pixelStart().color())
+                && start.x() == points[2 * pointCount - 2]
+                && start.y() == points[2 * pointCount - 1];
+    }
+
+    /**
+     * Sends the current batch, if any
+     */
+    public void flush() {
+        timer.stop();
+        if (first == null) {
+            return;
+        }
+        if (segments == 1) {
+            // nothing to gain over the segment itself
+            clientController.sendDrawCommand(first);
+        }
+        else {
+            clientController.sendDrawCommand(new DrawCommandPolyline(first.id(), first.pixelStart().color(),
+                    first.stroke(), first.symetry(), Arrays.copyOf(points, 2 * pointCount)));
+        }
+        first = null;
+        segments = 0;
+        pointCount = 0;
+    }
+
+    /**
+     * Sends the batch once it has waited long enough
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        flush();
+    }
+}
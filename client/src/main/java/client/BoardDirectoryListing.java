@@ -0,0 +1,121 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import name.BoardIdentifier;
+import packet.PacketBoardDirectoryDelta;
+import packet.PacketBoardDirectoryPage;
+
+/**
+ * The part of the server's board directory the board picker shows: the boards under the prefix being
+ * searched that have been paged in so far, kept up to date with the deltas the server sends while the
+ * picker is open.
+ *
+ */
+public class BoardDirectoryListing {
+    public static final int NOT_SHOWN = -1;
+
+    private String prefix = "";
+    private final List<BoardIdentifier> boards = new ArrayList<BoardIdentifier>();
+    private int total;
+    private long version = -1;
+
+    /**
+     * Starts over with no boards, for a new search
+     * @param prefix
+     */
+    public void reset(String prefix) {
+        this.prefix = prefix;
+        this.boards.clear();
+        this.total = 0;
+        this.version = -1;
+    }
+
+    public String prefix() {
+        return prefix;
+    }
+
+    /**
+     * @return number of boards paged in
+     */
+    public int size() {
+        return boards.size();
+    }
+
+    /**
+     * @param index
+     * @return board at the index, in BoardIdentifier.BY_NAME order
+     */
+    public BoardIdentifier get(int index) {
+        return boards.get(index);
+    }
+
+    /**
+     * @return whether the server has more boards under the prefix than have been paged in
+     */
+    public boolean hasMore() {
+        return boards.size() < total;
+    }
+
+    /**
+     * Adds a page from the server, a first page replacing what was there
+     * @param page
+     * @return false if the page belongs to an older search and was ignored
+     */
+    public boolean applyPage(PacketBoardDirectoryPage page) {
+        if (!page.prefix().equals(prefix)) {
+            return false;
+        }
+        if (page.offset() == 0) {
+            boards.clear();
+        }
+        // Boards added since the previous page may push ones already shown onto this one.
+        for (BoardIdentifier board : page.boards()) {
+            int index = Collections.binarySearch(boards, board, BoardIdentifier.BY_NAME);
+            if (index < 0) {
+                boards.add(-index - 1, board);
+            }
+        }
+        total = page.total();
+        version = Math.max(version, page.version());
+        return true;
+    }
+
+    /**
+     * Applies a board added to or removed from the directory
+     * @param delta
+     * @return index the board was inserted at or removed from, or NOT_SHOWN if no board shown moved
+     */
+    public int applyDelta(PacketBoardDirectoryDelta delta) {
+        if (version < 0 || delta.version() <= version) {
+            // Meant for an earlier search, which the server sends before the first page, or already
+            // part of a page.
+            return NOT_SHOWN;
+        }
+        version = delta.version();
+
+        int index = Collections.binarySearch(boards, delta.board(), BoardIdentifier.BY_NAME);
+        if (delta.added()) {
+            boolean allShown = !hasMore();
+            total++;
+            if (index >= 0) {
+                return NOT_SHOWN;
+            }
+            int insertion = -index - 1;
+            // Past the last board shown it belongs to a page not loaded yet, unless every board is shown.
+            if (insertion < boards.size() || allShown) {
+                boards.add(insertion, delta.board());
+                return insertion;
+            }
+            return NOT_SHOWN;
+        }
+        total--;
+        if (index < 0) {
+            return NOT_SHOWN;
+        }
+        boards.remove(index);
+        return index;
+    }
+}
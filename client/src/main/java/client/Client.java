@@ -4,6 +4,8 @@ import java.io.IOException;
 
 import javax.swing.SwingUtilities;
 
+import connection.ConnectionThreads;
+
 /**
  * Starts client 
  */
@@ -26,7 +28,8 @@ public class Client {
                 view.setController(controller);
                 controller.setView(view);
                 
-                new Thread(controller).start();    
+                // The reader spends its life blocked on the socket, a virtual thread is enough when available.
+                ConnectionThreads.newThread(controller, ConnectionThreads.virtualThreadsSupported()).start();
                 
                 // Display the window.
                 view.setSize(450, 300);
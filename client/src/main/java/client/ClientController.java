@@ -0,0 +1,678 @@
+package client;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.net.Socket;
+
+import javax.swing.SwingUtilities;
+
+import connection.Connection;
+import connection.ConnectionThreads;
+import connection.SocketHandler;
+import connection.StreamConnection;
+import dialogs.ConfirmDialog;
+import dialogs.ErrorDialog;
+import models.BoardModel;
+import name.BoardIdentifier;
+import name.ClientIdentifier;
+import name.LayerIdentifier;
+import packet.*;
+import stroke.StrokeProperties;
+import stroke.StrokeType;
+import util.Utils;
+import canvas.CanvasController;
+import canvas.PendingTiles;
+import canvas.TileChunk;
+import canvas.command.DrawCommand;
+import canvas.layer.Layer;
+import canvas.layer.LayerAdjustment;
+import canvas.layer.LayerProperties;
+
+/**
+ * Controller for client
+ */
+public class ClientController extends SocketHandler {
+	private static final long serialVersionUID = 6673644308053728584L;
+	// Boards the board picker asks for at a time.
+	private static final int BOARD_PAGE = 50;
+	// Tries at reconnecting after losing the connection, waiting twice as long before each.
+	private static final int RECONNECT_TRIES = 6;
+	private static final long RECONNECT_DELAY_MILLIS = 250;
+	
+	private ClientGUI view;
+	private BoardModel model;
+    private final ClientIdentifier user;
+    private final String hostName;
+    private final int portNumber;
+    
+    private volatile ClientState clientState;
+    private final StrokeProperties strokeProperties;
+    
+    // What the client needs to carry on with its board after reconnecting.
+    private volatile long resumeToken = PacketResume.NO_TOKEN;
+    private volatile long lastSequence = SequencedPacket.UNSEQUENCED;
+    // Back on the server and waiting to be back on the board, keeping the board meanwhile.
+    private boolean resuming;
+    
+    /**
+     * Constructor for ClientController
+     * @param userName
+     * @param hostName
+     * @param portNumber
+     * @throws IOException
+     */
+    public ClientController(String userName, String hostName, int portNumber) throws IOException {
+        super(StreamConnection.open(new Socket(hostName, portNumber)));
+        
+        this.user = new ClientIdentifier(Utils.generateId(), userName);
+        this.hostName = hostName;
+        this.portNumber = portNumber;
+        this.clientState = ClientState.IDLE;
+        
+        // Default stroke.
+        this.strokeProperties = new StrokeProperties();
+        
+        // Send a NewClientPacket to announce yourself.
+        sendPacket(new PacketNewClient(user));
+    }
+
+
+    public ClientIdentifier user() {
+    	return user;
+	}
+    
+    /**
+     * @return the board the client is on, or null if it isn't on one
+     */
+    public BoardModel model() {
+        return model;
+    }
+    
+    /**
+     * Changes the view of the ClientGUI
+     * @param view
+     */
+    public void setView(ClientGUI view) {
+        assert this.view == null;
+        
+        this.view = view;
+    }
+    
+    /**
+     * Reconnects to the server in the background if the connection was lost while on a board
+     */
+    @Override
+    public void connectionClosed() {
+        if (model == null) {
+            return;
+        }
+        clientState = ClientState.IDLE;
+        final Thread reader = Thread.currentThread();
+        Thread reconnecting = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    // Only carry on over a new connection once done with the old one.
+                    reader.join();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                reconnectToBoard();
+            }
+        }, "reconnect");
+        reconnecting.setDaemon(true);
+        reconnecting.start();
+    }
+    
+    /**
+     * Opens a new connection and carries on with the board, sent only the changes it missed if the
+     * server still has them
+     */
+    private void reconnectToBoard() {
+        long delay = RECONNECT_DELAY_MILLIS;
+        for (int i = 0; i < RECONNECT_TRIES; i++) {
+            try {
+                Thread.sleep(delay);
+                reconnect(StreamConnection.open(new Socket(hostName, portNumber)));
+                break;
+            } catch (IOException e) {
+                if (i == RECONNECT_TRIES - 1) {
+                    new ErrorDialog(view, "Connection Lost", "Lost the connection to the server").show();
+                    return;
+                }
+                delay *= 2;
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+        
+        resuming = true;
+        BoardIdentifier boardName = model.getBoardName();
+        sendPacket(new PacketNewClient(user));
+        if (resumeToken != PacketResume.NO_TOKEN && model.canvas().pendingTiles() == null) {
+            sendPacket(new PacketResume(boardName, resumeToken, lastSequence, false, view.boardViewport()));
+        }
+        else {
+            // Not all of the board had arrived, join it again.
+            sendPacket(new PacketJoinBoard(boardName, user, view.boardViewport()));
+        }
+        resumeToken = PacketResume.NO_TOKEN;
+        ConnectionThreads.newThread(this, ConnectionThreads.virtualThreadsSupported()).start();
+    }
+	
+    /**
+     * Handles receiving a BoardModelPacket, and sets the model and DrawingController for the Client's boardd
+     * appropriately
+     */
+    @Override
+    public void receivedBoardModelPacket(PacketBoardModel packet) {
+        // Or the board again after reconnecting, in place of the one kept.
+        assert model == null || resuming;
+        assert connection != null;
+        
+        // We should only receive these packets if are loading
+        assert clientState == ClientState.IDLE;
+        clientState = ClientState.PLAYING;
+        resuming = false;
+        // A token for this board follows once the server has the client as a user.
+        resumeToken = PacketResume.NO_TOKEN;
+        
+        if (packet.preview() != null) {
+            // The tiles follow, shown in their preview colors meanwhile.
+            packet.canvas().setPendingTiles(new PendingTiles(packet.canvas(), packet.preview()));
+        }
+        CanvasController canvasController = new CanvasController(strokeProperties, this, packet.canvas());
+        BoardModel newModel = new BoardModel(packet.boardName(), canvasController, packet.users(), packet.getOwner());
+        this.model = newModel;
+        this.model.setDrawingControllerDefault();
+       
+        sendPacket(new PacketClientReady(true, true));
+
+        view.setModel(newModel);
+    }
+    
+    /**
+     * Handles receiving a ResumePacket, either a token to carry on with the board if the connection is
+     * lost, or the server's answer to carrying on with it after reconnecting
+     */
+    @Override
+    public void receivedResumePacket(PacketResume packet) {
+        if (!packet.resumed()) {
+            // The server doesn't know the token any more, join the board again.
+            assert resuming;
+            sendPacket(new PacketJoinBoard(packet.boardName(), user, view.boardViewport()));
+            return;
+        }
+        lastSequence = packet.sequence();
+        if (packet.token() != PacketResume.NO_TOKEN) {
+            resumeToken = packet.token();
+            return;
+        }
+        
+        // Back on the board, the changes missed follow.
+        assert resuming;
+        resuming = false;
+        clientState = ClientState.PLAYING;
+        sendPacket(new PacketClientReady(true, true));
+    }
+    
+    /**
+     * Handles receiving a BoardUsersPacket, which updates the user list
+     */
+	@Override
+	public void receivedBoardUsersPacket(PacketBoardUsers packet) {
+        assert model != null;
+        assert connection != null;
+        
+        // We should only receive these packets if we have loaded.
+        assert clientState == ClientState.PLAYING;
+        
+        view.setUserList(packet.boardUsers());
+	}
+	
+	/**
+	 * Handles receiving a BoardIdentifierListPacket, which should never happen as the server only sends
+	 * it to legacy clients
+	 */
+    @Override
+    public void receivedBoardIdentifierListPacket(PacketBoardIdentifierList packet) {
+        assert false;
+    }
+    
+    /**
+     * Handles receiving a BoardDirectoryPagePacket which updates the board picker on the GUI
+     */
+    @Override
+    public void receivedBoardDirectoryPagePacket(PacketBoardDirectoryPage packet) {
+        view.updateBoardDirectory(packet);
+    }
+    
+    /**
+     * Handles receiving a BoardDirectoryDeltaPacket which adds or removes a board in the board picker
+     */
+    @Override
+    public void receivedBoardDirectoryDeltaPacket(PacketBoardDirectoryDelta packet) {
+        view.applyBoardDirectoryDelta(packet);
+    }
+    
+    /**
+     * Handles receiving a BoardDirectoryQueryPacket, which should never happen as it's only sent client to server
+     */
+    @Override
+    public void receivedBoardDirectoryQueryPacket(PacketBoardDirectoryQuery packet) {
+        assert false;
+    }
+    
+    /**
+     * Handles receiving a BoardDirectoryClosePacket, which should never happen as it's only sent client to server
+     */
+    @Override
+    public void receivedBoardDirectoryClosePacket(PacketBoardDirectoryClose packet) {
+        assert false;
+    }
+    
+    /**
+     * Handles receiving a MigrationPacket, which should never happen as it's only sent between the
+     * servers of a cluster and their gateway
+     */
+    @Override
+    public void receivedMigrationPacket(PacketMigration packet) {
+        assert false;
+    }
+    
+    /**
+     * Handles receiving a BoardTransferPacket, which should never happen as it's only sent between the
+     * servers of a cluster
+     */
+    @Override
+    public void receivedBoardTransferPacket(PacketBoardTransfer packet) {
+        assert false;
+    }
+    
+    /**
+     * Handles receiving a DrawCommandPacket and sends the command to the model
+     */
+    @Override
+    public void receivedDrawCommandPacket(final PacketDrawCommand packet) {
+        assert model != null;
+        assert connection != null;
+        
+        // We should only receive these packets if we have loaded.
+        assert clientState == ClientState.PLAYING;
+        lastSequence = packet.sequence();
+        
+        // On the board it was sent for, even if it is replaced meanwhile.
+        final BoardModel board = model;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                PendingTiles pending = board.canvas().pendingTiles();
+                if (pending != null) {
+                    pending.draw(packet.drawCommand(), board);
+                }
+                else {
+                    packet.drawCommand().drawOn(board);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Handles receiving a BoardTilesPacket, some of the tiles of the board being joined, and draws the
+     * commands that were waiting for them, or tiles the board got wrong sent again
+     */
+    @Override
+    public void receivedBoardTilesPacket(final PacketBoardTiles packet) {
+        assert model != null;
+        assert clientState == ClientState.PLAYING;
+        
+        final BoardModel board = model;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                PendingTiles pending = board.canvas().pendingTiles();
+                if (pending == null) {
+                    // As they are after every change drawn so far.
+                    TileChunk tiles = packet.tiles();
+                    Layer[] layers = board.canvas().layers();
+                    if (tiles.layerCount() == layers.length) {
+                        tiles.applyTo(layers);
+                        setGUILayers();
+                        board.repaint();
+                    }
+                    return;
+                }
+                pending.receive(packet.tiles(), board);
+                if (pending.isComplete()) {
+                    board.canvas().setPendingTiles(null);
+                    setGUILayers();
+                }
+                board.repaint();
+            }
+        });
+    }
+    
+    /**
+     * Handles receiving a TileDigestPacket, the hashes of some of the tiles of the board, and asks for
+     * the tiles the board got wrong again
+     */
+    @Override
+    public void receivedTileDigestPacket(final PacketTileDigest packet) {
+        final BoardModel board = model;
+        if (board == null || !packet.boardName().equals(board.getBoardName())
+                || packet.digest().sequence() != lastSequence) {
+            // Not of the board as it is once every change sent so far is drawn.
+            return;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                if (board.canvas().pendingTiles() != null) {
+                    return;
+                }
+                int[] diverged = packet.digest().diverged(board.canvas());
+                if (diverged.length > 0) {
+                    sendToBoard(new PacketTileRepair(board.getBoardName(), diverged));
+                }
+            }
+        });
+    }
+    
+    /**
+     * Handles receiving a TileRepairPacket, which should never happen as it's only sent client to server
+     */
+    @Override
+    public void receivedTileRepairPacket(PacketTileRepair packet) {
+        assert false;
+    }
+    
+    /**
+     * Handles receiving an ExitBoardPacket, which updates the model and the clientState
+     */
+	@Override
+	public void receivedExitBoardPacket(PacketExitBoard packet) {
+		assert model != null;
+		assert clientState == ClientState.PLAYING;
+		clientState = ClientState.IDLE;
+		resumeToken = PacketResume.NO_TOKEN;
+		model = null;
+	}
+	
+	/**
+	 * Handles receiving a MessagePacket and updates the chat client
+	 */
+	@Override
+	public void receivedMessagePacket(PacketMessage packet) {
+		view.addChatLine(packet.text());
+	}
+
+	/**
+	 * Handles receiving a LayerAdjustmentPacket which updates the LayerOrder for the GUI
+	 */
+	@Override
+	public void receivedLayerAdjustmentPacket(
+			PacketLayerAdjustment packetLayerOrderList) {
+		assert model != null;
+		assert clientState == ClientState.PLAYING;
+		lastSequence = packetLayerOrderList.sequence();
+		model.adjustLayer(packetLayerOrderList.layerProperties(), packetLayerOrderList.adjustment());
+		setGUILayers();
+	}
+	
+	/**
+	 * Handles receiving a NewLayerPacket and updating the model and GUI
+	 */
+	@Override
+	public void receivedNewLayerPacket(PacketNewLayer packetNewLayer) {
+		assert model != null;
+		assert clientState == ClientState.PLAYING;
+		lastSequence = packetNewLayer.sequence();
+		model.addLayer(packetNewLayer.layerName());
+		setGUILayers();
+	}
+	
+	/**
+	 * Updates the GUI's layers
+	 */
+	public void setGUILayers() {
+		if (model != null) {
+	        view.setLayers(model.canvas().snapshot().layers());
+		}
+	}
+	
+    /*
+     * Methods for sending packets.
+     */
+	/**
+	 * Sends a NewBoardPacket to server
+	 * @param boardName
+	 * @param width
+	 * @param height
+	 */
+	public void generateNewBoard(BoardIdentifier boardName, int width, int height) {
+    	if (model != null) {
+            disconnectFromCurrentBoard();
+    	}
+		PacketNewBoard packet = new PacketNewBoard(boardName, width, height, this.user);
+		sendPacket(packet);
+	}
+	
+	/**
+	 * Sends a JoinBoardPacket to server
+	 * @param boardName
+	 */
+    public void connectToBoard(BoardIdentifier boardName) {
+    	if (model != null) {
+            disconnectFromCurrentBoard();
+    	}
+    	
+        PacketCanJoinBoard packet = new PacketCanJoinBoard(boardName, this.user);
+        sendPacket(packet);
+    }
+    
+    /**
+     * Asks the server for a page of the boards whose names start with the prefix, and to be sent the
+     * boards added or removed under it until the board picker is closed
+     * @param prefix
+     * @param offset
+     */
+    public void openBoardDirectory(String prefix, int offset) {
+        sendPacket(new PacketBoardDirectoryQuery(prefix, offset, BOARD_PAGE, true));
+    }
+    
+    /**
+     * Tells the server the board picker is closed
+     */
+    public void closeBoardDirectory() {
+        sendPacket(new PacketBoardDirectoryClose());
+    }
+    
+    /**
+     * Disconnect from the current board.
+     */
+    private void disconnectFromCurrentBoard() {
+        assert model != null;
+        
+        PacketExitBoard packet = new PacketExitBoard();
+        sendPacket(packet);
+    }
+    
+    /**
+     * Sends a change to the board to the server, dropping it while reconnecting as the server only takes
+     * changes from the users of the board
+     * @param packet
+     */
+    private void sendToBoard(Packet packet) {
+        if (clientState == ClientState.PLAYING) {
+            sendPacket(packet);
+        }
+    }
+    
+    /**
+     * Sends DrawCommand to server
+     * @param drawCommand
+     */
+    public void sendDrawCommand(DrawCommand drawCommand) {
+        assert model != null;
+        PacketDrawCommand packet = new PacketDrawCommand(drawCommand);
+        sendToBoard(packet);
+    }
+    
+    /**
+     * Sends message to server
+     * @param text
+     */
+	public void sendMessage(String text) {
+		assert model != null;
+		
+		PacketMessage packet = new PacketMessage(user.name()+ ": " + text);
+		sendToBoard(packet);
+	}
+	
+	/**
+	 * Sets the Stroke color of the current brush
+	 * @param strokeColor
+	 */
+    public void setStrokeColor(Color strokeColor) {
+    	strokeProperties.setStrokeColor(strokeColor);
+    }
+    
+    /**
+     * Sets the stroke width
+     * @param strokeWidth
+     */
+    public void setStrokeWidth(int strokeWidth) {
+        strokeProperties.setStrokeWidth(strokeWidth);
+    }
+    
+    /**
+     * Updates the strokeType
+     * @param newStrokeType
+     */
+    public void setStrokeType(StrokeType newStrokeType) {
+        strokeProperties.setStrokeType(newStrokeType);
+    }
+    
+    /**
+     * Method to turn eraser on/off
+     * @param eraserOn
+     */
+    public void setEraserOn(boolean eraserOn) {
+        strokeProperties.setEraserOn(eraserOn);
+    }
+    
+    /**
+     * Method to turn fill on/off
+     * @param fillOn
+     */
+    public void setFillOn(boolean fillOn) {
+        strokeProperties.setFillOn(fillOn);
+    }
+    
+    /**
+     * Updates symmetry level
+     * @param symetry
+     */
+    public void setSymetry(int symetry) {
+        strokeProperties.setSymetry(symetry);
+    }
+    
+    /**
+     * Adds a layer to the Board and sends a NewLayerPacket to the server
+     * @param identifier
+     */
+    public void addLayer(LayerIdentifier identifier) {
+    	sendToBoard(new PacketNewLayer(identifier));
+    }
+    
+    /**
+     * Sends LayerAdjustmentPacket to the server
+     * @param layerProperties
+     * @param adjustment
+     */
+    public void adjustLayer(LayerProperties layerProperties, LayerAdjustment adjustment) {
+    	sendToBoard(new PacketLayerAdjustment(layerProperties, adjustment));
+    }
+    
+    /**
+     * Handles receiving a NewClientPacket, which should never happen as it's only sent client to server
+     */
+	@Override
+	public void receivedNewClientPacket(PacketNewClient packet) {
+		assert false;
+	}
+
+	/**
+	 * Handles receiving a NewBoardPacket, which should never happen as it's only sent client to server
+	 */
+	@Override
+	public void receivedNewBoardPacket(PacketNewBoard packet) {
+		assert false;
+	}
+	
+	/**
+	 * Handles receiving a ClientReadyPacket, which should never happen as it's only sent client to server
+	 */
+	@Override
+	public void receivedClientReadyPacket(PacketClientReady packet) {
+		assert false;
+	}
+	
+	/**
+	 * Handles receiving a JoinBoardPacket, which should never happen as it's only sent client to server
+	 */
+	@Override
+	public void receivedJoinBoardPacket(PacketJoinBoard packet) {
+		assert false;
+	}
+
+    /**
+     * Handles receiving a JoinBoardPacket, which should never happen as it's only sent client to server
+     */
+    @Override
+    public void receivedCanJoinBoardPacket(PacketCanJoinBoard packet) {
+		ConfirmDialog dialog = new ConfirmDialog(this.view, "Confirm User Joining Request", packet.user().identifier().name() + " wants to join your board! Would you allow him/her to join?");
+		PacketCanJoinBoardResult result = new PacketCanJoinBoardResult(packet.boardName(), packet.user(), dialog.result());
+		sendPacket(result);
+    }
+
+    /**
+     * Handles receiving a JoinBoardPacket, which should never happen as it's only sent client to server
+     */
+    @Override
+    public void receivedCanJoinBoardResultPacket(PacketCanJoinBoardResult result) {
+		if (model != null) {
+			disconnectFromCurrentBoard();
+		}
+		if (!result.result()) {
+		    ErrorDialog dialog = new ErrorDialog(this.view, "Request Result", "Owner of this board rejected your request");
+		    dialog.show();
+            this.view.setBoardTitle(this.view.title);
+		    return;
+        }
+
+		this.view.setBoardTitle(result.boardName().name() + " : " + this.user.name() + " [CLIENT]");
+		PacketJoinBoard packet = new PacketJoinBoard(result.boardName(), this.user, view.boardViewport());
+		sendPacket(packet);
+    }
+	
+	/**
+	 * Returns board width
+	 * @return width
+	 */
+	public int getBoardWidth() {
+		return this.model.width();
+	}
+	
+	/**
+	 * Returns board height
+	 * @return height
+	 */
+	public int getBoardHeight() {
+		return this.model.height();
+	}
+	
+	/**
+	 * Returns selected layer
+	 * @return LayerIdentifier
+	 */
+	public LayerIdentifier selectedLayer() {
+		return view.selectedLayer().layerIdentifier();
+	}
+}
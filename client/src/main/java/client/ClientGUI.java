@@ -18,6 +18,7 @@ import java.awt.Insets;
 import java.awt.MouseInfo;
 import java.awt.Point;
 import java.awt.PointerInfo;
+import java.awt.Rectangle;
 import java.awt.Robot;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
@@ -66,8 +67,12 @@ import javax.swing.border.TitledBorder;
 import javax.swing.colorchooser.AbstractColorChooserPanel;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 import javax.swing.table.AbstractTableModel;
 
 import dialogs.ErrorDialog;
@@ -77,6 +82,8 @@ import name.BoardIdentifier;
 import name.ClientIdentifier;
 import name.Identifiable;
 import name.LayerIdentifier;
+import packet.PacketBoardDirectoryDelta;
+import packet.PacketBoardDirectoryPage;
 import stroke.StrokeProperties;
 import stroke.StrokeType;
 import stroke.StrokeTypeBasic;
@@ -138,6 +145,9 @@ class ClientGUI extends JFrame{
     private final JMenuItem save;
     
     private final JMenu joinBoardSubmenu;
+    private final JTextField boardSearch;
+    private final JMenuItem moreBoards;
+    private final BoardDirectoryListing boardListing;
     private final JButton colorButton;
     private final JToggleButton dropperToggle;
     private final JColorChooser colorChooser;
@@ -287,6 +297,9 @@ class ClientGUI extends JFrame{
 
         // Join Board submenu.
         this.joinBoardSubmenu = new JMenu("Join Board");
+        this.boardSearch = new JTextField(15);
+        this.moreBoards = new JMenuItem("More boards...");
+        this.boardListing = new BoardDirectoryListing();
         this.save = new JMenuItem("Save to png", KeyEvent.VK_T);
 
         //Create Sidebar objects
@@ -733,6 +746,45 @@ class ClientGUI extends JFrame{
             }
         });
 
+        // The board picker only follows the server's boards while it is open.
+        joinBoardSubmenu.add(boardSearch);
+        joinBoardSubmenu.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(MenuEvent e) {
+                searchBoards();
+            }
+
+            @Override
+            public void menuDeselected(MenuEvent e) {
+                controller.closeBoardDirectory();
+            }
+
+            @Override
+            public void menuCanceled(MenuEvent e) {
+            }
+        });
+        boardSearch.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchBoards();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchBoards();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        moreBoards.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                controller.openBoardDirectory(boardListing.prefix(), boardListing.size());
+            }
+        });
+
         menu.add(newBoard);
         menu.add(joinBoardSubmenu);
         menu.add(this.save);
@@ -741,23 +793,69 @@ class ClientGUI extends JFrame{
     
 
     
-    private void setBoardNames(BoardIdentifier[] boardNames) {
-    	joinBoardSubmenu.removeAll();
-        if (boardNames == null) {
-        	return;
+    /**
+     * Starts a new search of the board directory for the text in the search field
+     */
+    private void searchBoards() {
+        boardListing.reset(boardSearch.getText());
+        setBoardItems();
+        controller.openBoardDirectory(boardListing.prefix(), 0);
+    }
+    
+    /**
+     * Rebuilds the board items of the board picker, below the search field
+     */
+    private void setBoardItems() {
+        while (joinBoardSubmenu.getMenuComponentCount() > 1) {
+            joinBoardSubmenu.remove(1);
         }
-        
-        for (final BoardIdentifier boardName : boardNames) {
-            JMenuItem subMenuItem = new JMenuItem(boardName.name());        
+        for (int i = 0; i < boardListing.size(); i++) {
+            joinBoardSubmenu.add(boardItem(boardListing.get(i)));
+        }
+        if (boardListing.hasMore()) {
+            joinBoardSubmenu.add(moreBoards);
+        }
+        refreshBoardPicker();
+    }
+    
+    /**
+     * Updates the board picker for one board added or removed, leaving the other items alone
+     * @param delta
+     * @param index where the board was added or removed in the listing
+     */
+    private void setBoardItem(PacketBoardDirectoryDelta delta, int index) {
+        // The search field comes first.
+        if (delta.added()) {
+            joinBoardSubmenu.insert(boardItem(delta.board()), index + 1);
+        }
+        else {
+            joinBoardSubmenu.remove(index + 1);
+        }
+        boolean moreShown = moreBoards.getParent() != null;
+        if (boardListing.hasMore() && !moreShown) {
+            joinBoardSubmenu.add(moreBoards);
+        }
+        else if (!boardListing.hasMore() && moreShown) {
+            joinBoardSubmenu.remove(moreBoards);
+        }
+        refreshBoardPicker();
+    }
+    
+    private JMenuItem boardItem(final BoardIdentifier boardName) {
+        JMenuItem subMenuItem = new JMenuItem(boardName.name());        
 
-            subMenuItem.addActionListener(new ActionListener() {
-                @Override
-                public void actionPerformed(ActionEvent e) {
-                    joinBoardAction(boardName); 
-                } 
-            });
-            
-            joinBoardSubmenu.add(subMenuItem);
+        subMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                joinBoardAction(boardName); 
+            } 
+        });
+        return subMenuItem;
+    }
+    
+    private void refreshBoardPicker() {
+        if (joinBoardSubmenu.isPopupMenuVisible()) {
+            joinBoardSubmenu.getPopupMenu().pack();
         }
     }
     
@@ -869,7 +967,7 @@ class ClientGUI extends JFrame{
         }
         BufferedImage bi = new BufferedImage(controller.getBoardWidth(), controller.getBoardHeight(), BufferedImage.TYPE_INT_ARGB); 
         Graphics g = bi.createGraphics();
-        canvas.paint(g);
+        controller.model().canvas().snapshot().paintOnGraphics(g);
         g.dispose();
         JFileChooser fc = new JFileChooser();
         int returnVal = fc.showSaveDialog(this);
@@ -892,6 +990,13 @@ class ClientGUI extends JFrame{
         this.setTitle(title);
     }
     
+    /**
+     * @return the part of a board the window shows first: from its top left corner, as far as the screen
+     */
+    public Rectangle boardViewport() {
+        return new Rectangle(new Point(0, 0), Toolkit.getDefaultToolkit().getScreenSize());
+    }
+    
     /**
      * Set the current model and allow the user to draw to the screen.
      * @param model
@@ -900,7 +1005,7 @@ class ClientGUI extends JFrame{
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
                 setContentPaneGUI(model);
-                setLayers(model.canvas().layers());
+                setLayers(model.canvas().snapshot().layers());
             }
         });
     }
@@ -925,13 +1030,33 @@ class ClientGUI extends JFrame{
     }
     
     /**
-     * Update the list of boards.
-     * @param boards
+     * Adds a page of the board directory to the board picker.
+     * @param page
+     */
+    public void updateBoardDirectory(final PacketBoardDirectoryPage page) {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                if (boardListing.applyPage(page)) {
+                    setBoardItems();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Adds or removes one board in the board picker.
+     * @param delta
      */
-    public void updateBoardList(final BoardIdentifier[] boards) {
+    public void applyBoardDirectoryDelta(final PacketBoardDirectoryDelta delta) {
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
-                setBoardNames(boards);
+                int index = boardListing.applyDelta(delta);
+                if (index != BoardDirectoryListing.NOT_SHOWN) {
+                    setBoardItem(delta, index);
+                }
+                else if (boardListing.hasMore() != (moreBoards.getParent() != null)) {
+                    setBoardItems();
+                }
             }
         });
     }
@@ -947,9 +1072,7 @@ class ClientGUI extends JFrame{
 	        	
 	        	for (int i = layers.length -1; i >= 0 ; i--) {
 	        		Layer l = layers[i];
-	    	        BufferedImage img = layers[i].image();
-	    	        Image newimg = img.getScaledInstance(45, 45,  java.awt.Image.SCALE_SMOOTH);  
-	    	        ImageIcon newIcon = new ImageIcon(newimg); 
+	    	        ImageIcon newIcon = new ImageIcon(l.thumbnail(45, 45)); 
 	    	        
 	    	        if (l.layerProperties().layerIdentifier().equals(selectedLayer.layerIdentifier()))
 	    	        	newSelectedRowNum=layers.length - i - 1;
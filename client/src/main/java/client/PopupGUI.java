@@ -9,7 +9,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 
-import server.Server;
+import connection.Connection;
 
 /**
  * popup for user to set username and join server
@@ -30,7 +30,7 @@ public class PopupGUI extends JFrame {
     public PopupGUI(Boolean incorrectServer) throws Exception {
         JTextField username = new JTextField(System.getProperty("user.name"));
         JTextField ip = new JTextField("localhost");
-        JTextField port = new JTextField(Integer.toString(Server.DEFAULT_PORT));
+        JTextField port = new JTextField(Integer.toString(Connection.DEFAULT_PORT));
         JPanel panel = new JPanel(new GridLayout(0, 1));
         panel.add(new JLabel("Username"));
         panel.add(username);
@@ -4,11 +4,6 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Stroke;
-import java.io.Serializable;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
 
 import javax.swing.JPanel;
 
@@ -23,28 +18,16 @@ import canvas.layer.LayerAdjustment;
 import canvas.layer.LayerProperties;
 
 /**
- * BoardModel is the underlying model that represents the board state and is updated with 
- * draw commands. Also stores the Set of users in the board and stores a CanvasController which updates
- * the canvas of the BoardModel
+ * BoardModel is the client's view of the board it is on: a Swing component that paints the Board, which
+ * is updated with draw commands, and repaints itself when it changes. Also takes the user's drawing
+ * through the CanvasController's default drawing controller.
  *
  */
-public class BoardModel extends JPanel implements Drawable, Identifiable, Serializable {
+public class BoardModel extends JPanel implements Drawable, Identifiable {
 	private static final long serialVersionUID = -7812022750931126889L;
 
-	private final BoardIdentifier boardName;
+	private final Board board;
     private final CanvasController canvas;
-    private Identifiable owner;
-    private final Set<Identifiable> users;
-    
-    /**
-     * Constructor for server's BoardModel, starts with an empty set of Users
-     * @param boardName
-     * @param canvas
-     */
-    // Server only
-    public BoardModel(BoardIdentifier boardName, CanvasController canvas, Identifiable owner) {
-    	this(boardName, canvas, new Identifiable[]{}, owner);
-    }
     
     /**
      * Constructor for client's BoardModel
@@ -53,11 +36,16 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      * @param initUsers
      */
     public BoardModel(BoardIdentifier boardName, CanvasController canvas, Identifiable[] initUsers, Identifiable owner) {
-        this.boardName = boardName;
+        this.board = new Board(boardName, canvas.canvas(), initUsers, owner);
         this.canvas = canvas;
-        this.users = Collections.synchronizedSet(new HashSet<Identifiable>(Arrays.asList(initUsers)));
         this.setPreferredSize(new Dimension(width(), height()));
-        this.owner = owner;
+    }
+    
+    /**
+     * @return the board shown
+     */
+    public Board board() {
+        return board;
     }
     
     /**
@@ -65,8 +53,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      * @param user
      */
     public void addUser(Identifiable user) {
-        assert !users.contains(user);
-        users.add(user);
+        board.addUser(user);
     }
     
     /**
@@ -75,7 +62,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      * @return boolean
      */
     public boolean containsUser(Identifiable user) {
-    	return users.contains(user);
+    	return board.containsUser(user);
     }
     
     /**
@@ -83,8 +70,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      * @param user
      */
     public void removeUser(Identifiable user) {
-    	assert users.contains(user);
-        users.remove(user);
+    	board.removeUser(user);
     }
     
     /**
@@ -92,14 +78,14 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      * @return Identifiable[] users
      */
     public Identifiable[] users() {
-        return users.toArray(new Identifiable[users.size()]).clone();
+        return board.users();
     }
     
     /**
      * @return BoardIdentifier
      */
     public BoardIdentifier getBoardName() {
-        return boardName;
+        return board.getBoardName();
     }
     
     /**
@@ -107,7 +93,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      */
     @Override
     public void drawPixel(LayerIdentifier identifier, Pixel pixel) {
-        canvas.drawPixel(identifier, pixel);
+        board.drawPixel(identifier, pixel);
         repaint();
     }
     
@@ -116,7 +102,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      */
     @Override
     public void drawLine(LayerIdentifier identifier, Pixel pixelStart, Pixel pixelEnd, Stroke stroke, int symetry) {
-        canvas.drawLine(identifier, pixelStart, pixelEnd, stroke, symetry);
+        board.drawLine(identifier, pixelStart, pixelEnd, stroke, symetry);
         repaint();
     }
     
@@ -125,7 +111,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      */
     @Override
     public void drawFill(LayerIdentifier identifier, Pixel pixel) {
-        canvas.drawFill(identifier, pixel);
+        board.drawFill(identifier, pixel);
         repaint();
     }
     
@@ -134,7 +120,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      */
     @Override
     public Color getPixelColor(LayerIdentifier id, Pixel pixel) throws Exception {
-        return canvas.getPixelColor(id,pixel);
+        return board.getPixelColor(id,pixel);
     }
     
     /**
@@ -142,7 +128,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      */
     @Override
     public int width() {
-        return canvas.width();
+        return board.width();
     }
     
     /**
@@ -150,7 +136,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      */
     @Override
     public int height() {
-        return canvas.height();
+        return board.height();
     }
     
     /**
@@ -158,7 +144,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      */
     @Override
     public BoardIdentifier identifier() {
-        return boardName;
+        return board.identifier();
     }
     
     /**
@@ -173,7 +159,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
      * @return Canvas
      */
     public Canvas canvas() {
-    	return canvas.canvas();
+    	return board.canvas();
     }
     
     /**
@@ -188,7 +174,7 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
 	 * @param layer
 	 */
 	public void addLayer(LayerIdentifier layer) {
-		canvas.canvas().addLayer(layer);
+		board.addLayer(layer);
 	}
 	
 	/**
@@ -197,12 +183,12 @@ public class BoardModel extends JPanel implements Drawable, Identifiable, Serial
 	 * @param adjustment
 	 */
 	public void adjustLayer(LayerProperties properties, LayerAdjustment adjustment) {
-		canvas.canvas().adjustLayer(properties, adjustment);
+		board.adjustLayer(properties, adjustment);
 		repaint();
 	}
 
 	public Identifiable getOwner() {
-	    return this.owner;
+	    return board.getOwner();
     }
 	
 }
@@ -0,0 +1,260 @@
+package canvas;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Stroke;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import name.LayerIdentifier;
+import util.Utils;
+import canvas.layer.Layer;
+import canvas.layer.LayerAdjustment;
+import canvas.layer.LayerProperties;
+import canvas.layer.TileSource;
+/**
+ * Canvas represents the canvas on which we have layers and we can draw on the layers
+ *
+ */
+public class Canvas extends DrawableBase {
+    private static final long serialVersionUID = -6329493755553689791L;
+
+    private static final String BASE_NAME = "Default";
+    
+    // image where the user's drawing is stored
+    private final List<Layer> layers;
+    private final Map<LayerIdentifier, Layer> layerSet;
+    // tiles still on their way to a user joining the board, null once they have all arrived
+    private transient volatile PendingTiles pendingTiles;
+    
+    /**
+     * Make a canvas. Only used by the server.
+     * @param width width in pixels
+     * @param height height in pixels
+     */
+    public Canvas(int width, int height) {
+        super(width, height);
+        this.layers = new LinkedList<Layer>();
+        this.layerSet = new HashMap<LayerIdentifier, Layer>();
+        addLayer(new LayerIdentifier(Utils.generateId(), BASE_NAME));
+    }
+    
+    /**
+     * Make a canvas of the layers of a snapshot, bottom layer first. Only used by snapshot() and the
+     * SnapshotCodec.
+     * @param width width in pixels
+     * @param height height in pixels
+     * @param layers
+     */
+    Canvas(int width, int height, Layer[] layers) {
+        super(width, height);
+        this.layers = new LinkedList<Layer>();
+        this.layerSet = new HashMap<LayerIdentifier, Layer>();
+        for (Layer layer : layers) {
+            this.layers.add(layer);
+            this.layerSet.put(layer.layerProperties().layerIdentifier(), layer);
+        }
+        checkRep();
+    }
+    
+    private void checkRep() {
+    	assert layers.size() == layerSet.size();
+    }
+    
+    /**
+     * Add layer to the top of the stack.
+     * @param layerIdentifier
+     */
+    public synchronized void addLayer(LayerIdentifier layerIdentifier) {
+    	Layer layer = new Layer(width, height, layerIdentifier, layers.size());
+    	layerSet.put(layerIdentifier, layer);
+    	layers.add(layer);
+    	checkRep();
+    }
+    
+    /**
+     * Adjust layer.
+     * @param properties the properties that should be adjusted
+     * @param adjustment the adjustment that should be made
+     */
+    public synchronized void adjustLayer(LayerProperties properties, LayerAdjustment adjustment) {
+    	Layer layer = layerSet.get(properties.layerIdentifier());
+    	
+    	int level = layer.level();
+
+    	int modifier = 0;
+    	switch (adjustment) {
+    	case UP:
+    		modifier = 1;
+    		break;
+    	case DOWN:
+    		modifier = -1;
+    		break;
+    	case PROPERTIES:
+    		layer.setProperties(properties);
+    		break;
+    	}
+    	
+    	int newLevel = level + modifier;
+    	
+    	if (newLevel < 0 || newLevel >= layers.size()) {
+    		return;
+    	}
+    	
+    	layer.setLevel(newLevel);
+    	Layer flippedLayer = layers.get(newLevel);
+    	flippedLayer.setLevel(level);
+    	
+    	Collections.swap(layers, level, newLevel);
+    	checkRep();
+    }
+    
+    /**
+     * Copy of the canvas as it is now, which drawing on the canvas leaves alone. Cheap enough to take
+     * while the canvas is locked, so the copy can be sent, saved or shown without holding drawing up.
+     * @return Canvas
+     */
+    public synchronized Canvas snapshot() {
+    	Layer[] snapshot = new Layer[layers.size()];
+    	for (int i = 0; i < snapshot.length; i++) {
+    		snapshot[i] = layers.get(i).snapshot();
+    	}
+    	return new Canvas(width, height, snapshot);
+    }
+    
+    /**
+     * Copy of the canvas with the same layers, but nothing drawn on them
+     * @return Canvas
+     */
+    public synchronized Canvas blankCopy() {
+    	Layer[] blank = new Layer[layers.size()];
+    	for (int i = 0; i < blank.length; i++) {
+    		LayerProperties properties = layers.get(i).layerProperties();
+    		blank[i] = new Layer(width, height, properties.layerIdentifier(), i);
+    		blank[i].setProperties(properties.clone());
+    	}
+    	return new Canvas(width, height, blank);
+    }
+    
+    /**
+     * Drops the tiles of every layer, to read each back from the file the first time it is needed. The
+     * file must hold the canvas as it is now, and stay open while any of its tiles are left to read.
+     * @param file
+     * @throws IllegalArgumentException if the file doesn't match the canvas
+     */
+    public synchronized void pageOut(final TileFile file) {
+    	if (file.width() != width || file.height() != height || file.layerCount() != layers.size()) {
+    		throw new IllegalArgumentException("Tile file doesn't match a " + width + "x" + height + " canvas of "
+    				+ layers.size() + " layers");
+    	}
+    	for (int i = 0; i < layers.size(); i++) {
+    		final int level = i;
+    		layers.get(i).pageOut(new TileSource() {
+    			public boolean readTile(int index, int[] pixels) throws IOException {
+    				return file.readTile(level, index, pixels);
+    			}
+    		}, file.tileIndexes(level));
+    	}
+    }
+    
+    /**
+     * @return how many tiles of all the layers are in memory
+     */
+    public synchronized int tileCount() {
+    	int count = 0;
+    	for (Layer layer : layers) {
+    		count += layer.tileCount();
+    	}
+    	return count;
+    }
+    
+    /**
+     * Hashes a tile of every layer, bottom first
+     * @param index of the tile, row by row across the canvas as in a Layer
+     * @return the hash, 0 if the tile is fully transparent on every layer
+     */
+    public synchronized long tileHash(int index) {
+    	int columns = SnapshotCodec.tileColumns(width);
+    	long hash = 0;
+    	for (Layer layer : layers) {
+    		hash = hash * 0x9E3779B97F4A7C15L + layer.tileHash(index % columns, index / columns);
+    	}
+    	return hash;
+    }
+    
+    /**
+     * @return the tiles still on their way to a user joining the board, or null if there are none
+     */
+    public PendingTiles pendingTiles() {
+    	return pendingTiles;
+    }
+    
+    /**
+     * Sets the tiles still on their way, shown in their preview colors until they arrive
+     * @param pendingTiles or null once they have all arrived
+     */
+    public void setPendingTiles(PendingTiles pendingTiles) {
+    	this.pendingTiles = pendingTiles;
+    }
+    
+    /**
+     * Returns all the layers as an array
+     */
+    public Layer[] layers() {
+    	checkRep();
+    	return layers.toArray(new Layer[layers.size()]);
+    }
+    
+    /**
+     * Synchronized method to draw a pixel onto a layer
+     */
+    @Override
+    public synchronized void drawPixel(LayerIdentifier identifier, Pixel pixel) {
+    	layerSet.get(identifier).drawPixel(identifier, pixel);
+    }
+    
+    /**
+     * Synchronized method to draw a line onto a layer
+     */
+    @Override
+    public synchronized void drawLine(LayerIdentifier identifier, Pixel pixelStart, Pixel pixelEnd, Stroke stroke, int symetry) {
+    	layerSet.get(identifier).drawLine(identifier, pixelStart, pixelEnd, stroke, symetry);
+    }
+    
+    /**
+     * Synchronized method to draw a fill command onto a layer
+     */
+    @Override
+    public synchronized void drawFill(LayerIdentifier identifier, Pixel pixel) {
+    	layerSet.get(identifier).drawFill(identifier, pixel);
+    }
+    
+    /**
+     * Synchronized method to get the pixel color of a pixel
+     */
+    @Override
+	public synchronized Color getPixelColor(LayerIdentifier id, Pixel pixel) throws Exception {
+	    Color pixelColor = layerSet.get(id).getPixelColor(id, pixel);
+	    return pixelColor;
+	}
+    
+    /**
+     * Synchronized method to draw all the layers onto the graphics object
+     */
+    @Override
+    public synchronized void paintOnGraphics(Graphics g) {
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        PendingTiles pending = pendingTiles;
+        if (pending != null) {
+            pending.paintPreview(g);
+        }
+    	for (Layer layer : layers) {
+    	    layer.paintOnGraphics(g);
+    	}
+    }
+}
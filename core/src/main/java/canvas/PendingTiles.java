@@ -0,0 +1,141 @@
+package canvas;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import canvas.command.DrawCommand;
+import canvas.layer.Layer;
+/**
+ * The tiles of a canvas still on their way to a user joining its board, which was sent as its layers
+ * with nothing drawn on them and a preview, one color per tile. Until a tile arrives it is shown in its
+ * preview color, and draw commands that may draw on it are held back.
+ *
+ * Held back commands are drawn in the order they came, the order of their sequence numbers, once every
+ * tile they may draw on has arrived. Commands after them that may draw on the same tiles are held back
+ * behind them, so every tile has its commands drawn on it in order.
+ *
+ * Only used on the Swing event thread, like the draw commands it holds back.
+ *
+ */
+public class PendingTiles {
+    private final Canvas canvas;
+    // the layers as the board was sent, which the tiles are for whatever happens to the layers meanwhile
+    private final Layer[] layers;
+    private final int columns;
+    private final int[] preview;
+    private final boolean[] pending;
+    private int remaining;
+    private final List<DrawCommand> held = new ArrayList<DrawCommand>();
+    // tiles still on their way, and tiles a held back command may draw on
+    private boolean[] blocked;
+
+    /**
+     * Constructor
+     * @param canvas the canvas the tiles are for, as it was sent
+     * @param preview color of every tile, row by row, 0 for the tiles that won't be sent as they're blank
+     */
+    public PendingTiles(Canvas canvas, int[] preview) {
+        this.columns = SnapshotCodec.tileColumns(canvas.width());
+        if (preview.length != columns * SnapshotCodec.tileRows(canvas.height())) {
+            throw new IllegalArgumentException("Preview of " + preview.length + " tiles");
+        }
+        this.canvas = canvas;
+        this.layers = canvas.layers();
+        this.preview = preview;
+        this.pending = new boolean[preview.length];
+        for (int index = 0; index < preview.length; index++) {
+            if (preview[index] != 0) {
+                pending[index] = true;
+                remaining++;
+            }
+        }
+        this.blocked = pending.clone();
+    }
+
+    /**
+     * @return whether every tile has arrived and every held back command has been drawn
+     */
+    public boolean isComplete() {
+        return remaining == 0 && held.isEmpty();
+    }
+
+    /**
+     * @return how many tiles are still on their way
+     */
+    public int remaining() {
+        return remaining;
+    }
+
+    /**
+     * Draws the command, or holds it back if a tile it may draw on hasn't arrived
+     * @param command
+     * @param drawable what the command is drawn on
+     */
+    public void draw(DrawCommand command, Drawable drawable) {
+        Rectangle bounds = command.bounds(canvas.width(), canvas.height())
+                .intersection(new Rectangle(0, 0, canvas.width(), canvas.height()));
+        if (bounds.isEmpty()) {
+            command.drawOn(drawable);
+            return;
+        }
+        int firstColumn = bounds.x / Layer.TILE_SIZE;
+        int lastColumn = (bounds.x + bounds.width - 1) / Layer.TILE_SIZE;
+        int firstRow = bounds.y / Layer.TILE_SIZE;
+        int lastRow = (bounds.y + bounds.height - 1) / Layer.TILE_SIZE;
+        boolean wait = false;
+        for (int row = firstRow; row <= lastRow && !wait; row++) {
+            for (int column = firstColumn; column <= lastColumn && !wait; column++) {
+                wait = blocked[row * columns + column];
+            }
+        }
+        if (!wait) {
+            command.drawOn(drawable);
+            return;
+        }
+        held.add(command);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                blocked[row * columns + column] = true;
+            }
+        }
+    }
+
+    /**
+     * Writes tiles that have arrived into the layers, then draws the held back commands that were only
+     * waiting for them
+     * @param chunk
+     * @param drawable what held back commands are drawn on
+     */
+    public void receive(TileChunk chunk, Drawable drawable) {
+        chunk.applyTo(layers);
+        for (int i = 0; i < chunk.tileCount(); i++) {
+            if (pending[chunk.index(i)]) {
+                pending[chunk.index(i)] = false;
+                remaining--;
+            }
+        }
+        List<DrawCommand> waiting = new ArrayList<DrawCommand>(held);
+        held.clear();
+        blocked = pending.clone();
+        for (DrawCommand command : waiting) {
+            draw(command, drawable);
+        }
+    }
+
+    /**
+     * Paints every tile still on its way in its preview color
+     * @param g
+     */
+    public void paintPreview(Graphics g) {
+        for (int index = 0; index < pending.length; index++) {
+            if (pending[index]) {
+                g.setColor(new Color(preview[index], true));
+                g.fillRect((index % columns) * Layer.TILE_SIZE, (index / columns) * Layer.TILE_SIZE,
+                        Layer.TILE_SIZE, Layer.TILE_SIZE);
+            }
+        }
+    }
+}
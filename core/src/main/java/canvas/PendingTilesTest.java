@@ -0,0 +1,121 @@
+package canvas;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.util.Random;
+
+import name.LayerIdentifier;
+import canvas.command.DrawCommand;
+import canvas.command.DrawCommandFill;
+import canvas.command.DrawCommandLine;
+import canvas.command.DrawCommandPixel;
+import canvas.command.DrawCommandPolyline;
+
+import org.junit.Test;
+
+public class PendingTilesTest {
+
+    @Test
+    public void heldUntilTilesArriveTest() {
+        // test a command on a tile still on its way waits for it, and the ones after it on that tile wait behind it
+        Canvas server = new Canvas(256, 128);
+        LayerIdentifier layer = server.layers()[0].layerProperties().layerIdentifier();
+        server.drawPixel(layer, new Pixel(10, 10, Color.RED));
+        server.drawPixel(layer, new Pixel(200, 100, Color.RED));
+        Canvas snapshot = server.snapshot();
+        int[] preview = SnapshotCodec.preview(snapshot);
+        Canvas client = snapshot.blankCopy();
+        PendingTiles pending = new PendingTiles(client, preview);
+        assertEquals(2, pending.remaining());
+
+        DrawCommand first = new DrawCommandPixel(layer, new Pixel(11, 10, Color.BLUE));
+        DrawCommand second = new DrawCommandPixel(layer, new Pixel(11, 10, Color.GREEN));
+        DrawCommand elsewhere = new DrawCommandPixel(layer, new Pixel(100, 100, Color.BLUE));
+        for (DrawCommand command : new DrawCommand[] { first, elsewhere, second }) {
+            command.drawOn(server);
+            pending.draw(command, client);
+        }
+        assertEquals(Color.BLUE.getRGB(), client.layers()[0].pixels()[100 * 256 + 100]);
+        assertEquals(0, client.layers()[0].pixels()[10 * 256 + 11]);
+
+        pending.receive(TileChunk.of(snapshot, new int[] { 0 }), client);
+        assertEquals(1, pending.remaining());
+        assertEquals(Color.GREEN.getRGB(), client.layers()[0].pixels()[10 * 256 + 11]);
+        assertFalse(pending.isComplete());
+
+        pending.receive(TileChunk.of(snapshot, new int[] { 7 }), client);
+        assertTrue(pending.isComplete());
+        assertArrayEquals(server.layers()[0].pixels(), client.layers()[0].pixels());
+    }
+
+    @Test
+    public void sameAsServerTest() {
+        // test the tiles and every command drawn meanwhile leave the joining canvas as the board's
+        Random random = new Random(5);
+        Canvas server = new Canvas(300, 200);
+        LayerIdentifier base = server.layers()[0].layerProperties().layerIdentifier();
+        LayerIdentifier top = new LayerIdentifier(9, "top");
+        server.addLayer(top);
+        LayerIdentifier[] layers = { base, top };
+        for (int i = 0; i < 30; i++) {
+            Color color = new Color(random.nextInt());
+            server.drawLine(layers[i % 2], new Pixel(random.nextInt(300), random.nextInt(200), color),
+                    new Pixel(random.nextInt(300), random.nextInt(200), color), new BasicStroke(1 + random.nextInt(9)), 1);
+        }
+        Canvas snapshot = server.snapshot();
+        int[] preview = SnapshotCodec.preview(snapshot);
+        Canvas client = snapshot.blankCopy();
+        PendingTiles pending = new PendingTiles(client, preview);
+
+        // the server only sends the tiles with something on them
+        int[] sent = new int[preview.length];
+        int count = 0;
+        for (int index = 0; index < preview.length; index++) {
+            if (preview[index] != 0) {
+                sent[count++] = index;
+            }
+        }
+        int next = 0;
+        for (int i = 0; i < 60; i++) {
+            Color color = new Color(random.nextInt());
+            DrawCommand command;
+            switch (i % 10) {
+            case 0:
+                command = new DrawCommandFill(layers[1], new Pixel(random.nextInt(300), random.nextInt(200), color));
+                break;
+            case 1:
+                command = new DrawCommandLine(layers[0], new Pixel(random.nextInt(300), random.nextInt(200), color),
+                        new Pixel(random.nextInt(300), random.nextInt(200), color), new BasicStroke(3), 4);
+                break;
+            case 2:
+            case 3:
+                command = new DrawCommandPixel(layers[i % 2], new Pixel(random.nextInt(300), random.nextInt(200), color));
+                break;
+            default:
+                int x = random.nextInt(300);
+                int y = random.nextInt(200);
+                command = new DrawCommandPolyline(layers[i % 2], color, new BasicStroke(1 + random.nextInt(5)), 1,
+                        new int[] { x, y, Math.min(299, x + 20), y, Math.min(299, x + 20), Math.min(199, y + 30) });
+            }
+            command.drawOn(server);
+            pending.draw(command, client);
+            if (i % 4 == 0 && next < count) {
+                pending.receive(TileChunk.of(snapshot, new int[] { sent[next] }), client);
+                next++;
+            }
+        }
+        while (next < count) {
+            pending.receive(TileChunk.of(snapshot, new int[] { sent[next] }), client);
+            next++;
+        }
+        assertTrue(pending.isComplete());
+        for (int level = 0; level < 2; level++) {
+            assertArrayEquals(server.layers()[level].pixels(), client.layers()[level].pixels());
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package canvas;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import name.LayerIdentifier;
+import canvas.layer.Layer;
+import canvas.layer.LayerProperties;
+/**
+ * Compact snapshot of a whole Canvas, as sent to a user joining its board. Every layer is cut into
+ * TILE_SIZE square tiles, most of which are fully transparent on a real board and are left out. A tile
+ * of one color is sent as that color, a tile of few runs of colors as the runs, any other tile deflated.
+ *
+ * The tiles are the layers' own, so blank ones are skipped without being looked at.
+ *
+ * A board can also be sent a little at a time: its preview, one color per tile, then TileChunks of the
+ * tiles of every layer in whatever order suits the user joining it.
+ *
+ */
+public final class SnapshotCodec {
+    public static final int TILE_SIZE = Layer.TILE_SIZE;
+
+    // Kinds of tile.
+    private static final int FLAT = 0;
+    private static final int RUNS = 1;
+    private static final int DEFLATED = 2;
+    // Only in a chunk, for a layer with nothing on the tile.
+    private static final int BLANK = 3;
+
+    // A tile with at most this many runs of colors is cheaper sent as its runs than deflated.
+    private static final int MAX_RUNS = TILE_SIZE * TILE_SIZE / 16;
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     * Encodes the canvas as it is now, holding it still meanwhile. Encode a Canvas.snapshot() rather than
+     * a canvas being drawn on, to leave it free.
+     * @param canvas
+     * @return the snapshot
+     * @throws IOException
+     */
+    public static byte[] encode(Canvas canvas) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            synchronized (canvas) {
+                Layer[] layers = canvas.layers();
+                out.writeInt(canvas.width());
+                out.writeInt(canvas.height());
+                out.writeInt(layers.length);
+                for (Layer layer : layers) {
+                    writeLayer(layer, out, deflater);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Rebuilds a canvas from its snapshot
+     * @param snapshot
+     * @return Canvas
+     * @throws IOException if the snapshot is malformed
+     */
+    public static Canvas decode(byte[] snapshot) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+        Inflater inflater = new Inflater();
+        try {
+            int width = in.readInt();
+            int height = in.readInt();
+            int layerCount = in.readInt();
+            if (width <= 0 || height <= 0 || layerCount < 0 || layerCount > snapshot.length) {
+                throw new IOException("Invalid snapshot of " + width + "x" + height + " with " + layerCount + " layers");
+            }
+            Layer[] layers = new Layer[layerCount];
+            for (int level = 0; level < layerCount; level++) {
+                layers[level] = readLayer(in, width, height, level, inflater);
+            }
+            if (in.read() != -1) {
+                throw new IOException("Bytes left over after the snapshot");
+            }
+            return new Canvas(width, height, layers);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    static int tileColumns(int width) {
+        return (width + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    static int tileRows(int height) {
+        return (height + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    /**
+     * @return how many pixels the tile has, fewer than TILE_SIZE squared along the right and bottom edges
+     */
+    static int tileLength(int width, int height, int index) {
+        int columns = tileColumns(width);
+        return Math.min(TILE_SIZE, width - (index % columns) * TILE_SIZE)
+                * Math.min(TILE_SIZE, height - (index / columns) * TILE_SIZE);
+    }
+
+    /**
+     * Colors of every tile of the canvas, its layers blended together over white, for a user joining the
+     * board to look at while the tiles themselves are on their way
+     * @param canvas a snapshot, as this reads every tile of it
+     * @return the opaque color of every tile, row by row, or 0 for a tile blank on every layer
+     */
+    public static int[] preview(Canvas canvas) {
+        Layer[] layers = canvas.layers();
+        int tileCount = tileColumns(canvas.width()) * tileRows(canvas.height());
+        int columns = tileColumns(canvas.width());
+        int[] preview = new int[tileCount];
+        int[] tile = new int[TILE_SIZE * TILE_SIZE];
+        for (int index = 0; index < tileCount; index++) {
+            int length = tileLength(canvas.width(), canvas.height(), index);
+            double red = 255;
+            double green = 255;
+            double blue = 255;
+            boolean drawn = false;
+            for (Layer layer : layers) {
+                if (!layer.readTile(index % columns, index / columns, tile)) {
+                    continue;
+                }
+                drawn = true;
+                if (!layer.isVisible()) {
+                    continue;
+                }
+                // average of the tile's colors weighted by their alpha, then laid over what is below
+                double alpha = 0;
+                double r = 0;
+                double g = 0;
+                double b = 0;
+                for (int i = 0; i < length; i++) {
+                    double a = (tile[i] >>> 24) / 255.0;
+                    alpha += a;
+                    r += a * ((tile[i] >> 16) & 0xFF);
+                    g += a * ((tile[i] >> 8) & 0xFF);
+                    b += a * (tile[i] & 0xFF);
+                }
+                double cover = alpha / length * layer.opacity();
+                if (alpha > 0) {
+                    red = red * (1 - cover) + r / alpha * cover;
+                    green = green * (1 - cover) + g / alpha * cover;
+                    blue = blue * (1 - cover) + b / alpha * cover;
+                }
+            }
+            if (drawn) {
+                preview[index] = 0xFF000000 | (int) Math.round(red) << 16 | (int) Math.round(green) << 8 | (int) Math.round(blue);
+            }
+        }
+        return preview;
+    }
+
+    /**
+     * Encodes some tiles of every layer, as sent to a user joining the board after its preview
+     * @param chunk
+     * @return the encoded tiles
+     * @throws IOException
+     */
+    public static byte[] encodeChunk(TileChunk chunk) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] deflated = new byte[TILE_SIZE * TILE_SIZE * 4 + 64];
+        try {
+            out.writeInt(chunk.width());
+            out.writeInt(chunk.height());
+            out.writeInt(chunk.layerCount());
+            out.writeInt(chunk.tileCount());
+            for (int i = 0; i < chunk.tileCount(); i++) {
+                out.writeInt(chunk.index(i));
+                for (int level = 0; level < chunk.layerCount(); level++) {
+                    int[] tile = chunk.tile(i, level);
+                    if (tile == null) {
+                        out.writeByte(BLANK);
+                    }
+                    else {
+                        writeTile(tile, tile.length, out, deflater, deflated);
+                    }
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes tiles encoded by encodeChunk
+     * @param encoded
+     * @return TileChunk
+     * @throws IOException if the tiles are malformed
+     */
+    public static TileChunk decodeChunk(byte[] encoded) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        Inflater inflater = new Inflater();
+        try {
+            int width = in.readInt();
+            int height = in.readInt();
+            int layerCount = in.readInt();
+            int count = in.readInt();
+            if (width <= 0 || height <= 0 || layerCount < 0 || layerCount > encoded.length
+                    || count < 0 || count > tileColumns(width) * tileRows(height) || (long) count * layerCount > encoded.length) {
+                throw new IOException("Invalid chunk of " + count + " tiles of " + width + "x" + height + " with " + layerCount + " layers");
+            }
+            int[] indexes = new int[count];
+            int[][] tiles = new int[count * layerCount][];
+            for (int i = 0; i < count; i++) {
+                indexes[i] = in.readInt();
+                if (indexes[i] < 0 || indexes[i] >= tileColumns(width) * tileRows(height)) {
+                    throw new IOException("Invalid tile " + indexes[i]);
+                }
+                int length = tileLength(width, height, indexes[i]);
+                for (int level = 0; level < layerCount; level++) {
+                    int kind = in.readByte();
+                    if (kind != BLANK) {
+                        tiles[i * layerCount + level] = new int[length];
+                        readTile(kind, tiles[i * layerCount + level], length, indexes[i], in, inflater);
+                    }
+                }
+            }
+            if (in.read() != -1) {
+                throw new IOException("Bytes left over after the chunk");
+            }
+            return new TileChunk(width, height, layerCount, indexes, tiles);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeLayer(Layer layer, DataOutputStream out, Deflater deflater) throws IOException {
+        LayerProperties properties = layer.layerProperties();
+        LayerIdentifier identifier = properties.layerIdentifier();
+        out.writeInt(identifier.id());
+        out.writeUTF(identifier.name());
+        out.writeDouble(properties.getOpacity());
+        out.writeBoolean(properties.getVisibility());
+
+        synchronized (layer) {
+            int width = layer.width();
+            int height = layer.height();
+            int columns = tileColumns(width);
+            int tileCount = columns * tileRows(height);
+            int[] tile = new int[TILE_SIZE * TILE_SIZE];
+            byte[] deflated = new byte[TILE_SIZE * TILE_SIZE * 4 + 64];
+
+            // Buffered so the count of tiles sent can go first.
+            ByteArrayOutputStream tiles = new ByteArrayOutputStream();
+            DataOutputStream tilesOut = new DataOutputStream(tiles);
+            int sent = 0;
+            for (int index = 0; index < tileCount; index++) {
+                if (!layer.readTile(index % columns, index / columns, tile)) {
+                    // never drawn on, as every tile of a new layer
+                    continue;
+                }
+                sent++;
+                tilesOut.writeInt(index);
+                writeTile(tile, tileLength(width, height, index), tilesOut, deflater, deflated);
+            }
+            tilesOut.close();
+            out.writeInt(sent);
+            tiles.writeTo(out);
+        }
+    }
+
+    /**
+     * Writes the kind of a tile and its pixels, encoded the cheapest way of that kind. Also how TileFile
+     * stores tiles.
+     */
+    static void writeTile(int[] tile, int length, DataOutputStream out, Deflater deflater, byte[] deflated) throws IOException {
+        int runs = 1;
+        for (int i = 1; i < length; i++) {
+            if (tile[i] != tile[i - 1]) {
+                runs++;
+            }
+        }
+        if (runs == 1) {
+            out.writeByte(FLAT);
+            out.writeInt(tile[0]);
+        }
+        else if (runs <= MAX_RUNS) {
+            out.writeByte(RUNS);
+            out.writeShort(runs);
+            int start = 0;
+            for (int i = 1; i <= length; i++) {
+                if (i == length || tile[i] != tile[start]) {
+                    out.writeShort(i - start - 1);
+                    out.writeInt(tile[start]);
+                    start = i;
+                }
+            }
+        }
+        else {
+            byte[] raw = new byte[length * 4];
+            for (int i = 0; i < length; i++) {
+                raw[4 * i] = (byte) (tile[i] >>> 24);
+                raw[4 * i + 1] = (byte) (tile[i] >>> 16);
+                raw[4 * i + 2] = (byte) (tile[i] >>> 8);
+                raw[4 * i + 3] = (byte) tile[i];
+            }
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4);
+            while (!deflater.finished()) {
+                compressed.write(deflated, 0, deflater.deflate(deflated));
+            }
+            out.writeByte(DEFLATED);
+            out.writeInt(compressed.size());
+            compressed.writeTo(out);
+        }
+    }
+
+    private static Layer readLayer(DataInputStream in, int width, int height, int level, Inflater inflater) throws IOException {
+        LayerIdentifier identifier = new LayerIdentifier(in.readInt(), in.readUTF());
+        LayerProperties properties = new LayerProperties(identifier);
+        properties.setOpacity(in.readDouble());
+        properties.setVisibility(in.readBoolean());
+        Layer layer = new Layer(width, height, identifier, level);
+        layer.setProperties(properties);
+
+        int columns = tileColumns(width);
+        int tileCount = columns * tileRows(height);
+        int sent = in.readInt();
+        if (sent < 0 || sent > tileCount) {
+            throw new IOException("Invalid count of tiles " + sent);
+        }
+        int[] tile = new int[TILE_SIZE * TILE_SIZE];
+        int previous = -1;
+        for (int t = 0; t < sent; t++) {
+            int index = in.readInt();
+            if (index <= previous || index >= tileCount) {
+                throw new IOException("Invalid tile " + index);
+            }
+            previous = index;
+            readTile(in.readByte(), tile, tileLength(width, height, index), index, in, inflater);
+            layer.writeTile(index % columns, index / columns, tile);
+        }
+        return layer;
+    }
+
+    /**
+     * Reads the pixels of a tile of the kind given
+     */
+    static void readTile(int kind, int[] tile, int length, int index, DataInputStream in, Inflater inflater) throws IOException {
+        switch (kind) {
+        case FLAT:
+            Arrays.fill(tile, 0, length, in.readInt());
+            break;
+        case RUNS:
+            int runs = in.readUnsignedShort();
+            int filled = 0;
+            for (int r = 0; r < runs; r++) {
+                int runLength = in.readUnsignedShort() + 1;
+                int color = in.readInt();
+                if (filled + runLength > length) {
+                    throw new IOException("Runs overflow tile " + index);
+                }
+                Arrays.fill(tile, filled, filled + runLength, color);
+                filled += runLength;
+            }
+            if (filled != length) {
+                throw new IOException("Runs don't fill tile " + index);
+            }
+            break;
+        case DEFLATED:
+            byte[] compressed = new byte[checkedLength(in.readInt(), in)];
+            in.readFully(compressed);
+            byte[] raw = new byte[length * 4];
+            inflater.reset();
+            inflater.setInput(compressed);
+            try {
+                int inflated = 0;
+                while (inflated < raw.length && !inflater.finished()) {
+                    int n = inflater.inflate(raw, inflated, raw.length - inflated);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != raw.length || !inflater.finished()) {
+                    throw new IOException("Deflated tile " + index + " has the wrong size");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt tile " + index, e);
+            }
+            for (int i = 0; i < length; i++) {
+                tile[i] = (raw[4 * i] & 0xFF) << 24 | (raw[4 * i + 1] & 0xFF) << 16
+                        | (raw[4 * i + 2] & 0xFF) << 8 | (raw[4 * i + 3] & 0xFF);
+            }
+            break;
+        default:
+            throw new IOException("Unknown kind of tile " + kind);
+        }
+    }
+
+    private static int checkedLength(int length, DataInputStream in) throws IOException {
+        if (length < 0 || length > in.available()) {
+            throw new EOFException("Tile of " + length + " bytes past the end of the snapshot");
+        }
+        return length;
+    }
+}
@@ -0,0 +1,135 @@
+package canvas;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import name.LayerIdentifier;
+import canvas.layer.Layer;
+import canvas.layer.LayerAdjustment;
+import canvas.layer.LayerProperties;
+
+import org.junit.Test;
+
+public class SnapshotCodecTest {
+
+    private static int[] pixels(Layer layer) {
+        return layer.pixels();
+    }
+
+    private static void assertSameCanvas(Canvas expected, Canvas actual) {
+        assertEquals(expected.width(), actual.width());
+        assertEquals(expected.height(), actual.height());
+        Layer[] expectedLayers = expected.layers();
+        Layer[] actualLayers = actual.layers();
+        assertEquals(expectedLayers.length, actualLayers.length);
+        for (int i = 0; i < expectedLayers.length; i++) {
+            LayerProperties properties = expectedLayers[i].layerProperties();
+            assertEquals(properties.layerIdentifier(), actualLayers[i].layerProperties().layerIdentifier());
+            assertEquals(properties.getOpacity(), actualLayers[i].opacity(), 0);
+            assertEquals(properties.getVisibility(), actualLayers[i].isVisible());
+            assertEquals(i, actualLayers[i].level());
+            assertArrayEquals(pixels(expectedLayers[i]), pixels(actualLayers[i]));
+        }
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        // test flat, run and noisy tiles, and tiles cut short by the edge, all come back pixel for pixel
+        Canvas canvas = new Canvas(300, 170);
+        LayerIdentifier base = canvas.layers()[0].layerProperties().layerIdentifier();
+        LayerIdentifier top = new LayerIdentifier(42, "top");
+        canvas.addLayer(top);
+
+        canvas.layers()[0].fillWithColor(Color.WHITE);
+        canvas.drawLine(base, new Pixel(10, 10, Color.RED), new Pixel(290, 160, Color.RED),
+                new BasicStroke(7, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND), 1);
+        canvas.drawLine(top, new Pixel(5, 150, Color.BLUE), new Pixel(295, 20, Color.GREEN), new BasicStroke(3), 4);
+        Random random = new Random(7);
+        for (int x = 128; x < 192; x++) {
+            for (int y = 64; y < 128; y++) {
+                canvas.drawPixel(top, new Pixel(x, y, new Color(random.nextInt(), true)));
+            }
+        }
+        LayerProperties properties = new LayerProperties(top);
+        properties.setOpacity(0.5);
+        properties.setVisibility(false);
+        canvas.adjustLayer(properties, LayerAdjustment.PROPERTIES);
+
+        assertSameCanvas(canvas, SnapshotCodec.decode(SnapshotCodec.encode(canvas)));
+    }
+
+    @Test
+    public void emptyTilesTest() throws IOException {
+        // test a blank board costs next to nothing however large it is
+        Canvas canvas = new Canvas(2000, 1500);
+        for (int i = 0; i < 3; i++) {
+            canvas.addLayer(new LayerIdentifier(i, "layer " + i));
+        }
+        byte[] snapshot = SnapshotCodec.encode(canvas);
+        assertTrue(snapshot.length < 200);
+        assertSameCanvas(canvas, SnapshotCodec.decode(snapshot));
+
+        // and a stroke costs about the tiles it crosses
+        LayerIdentifier layer = canvas.layers()[1].layerProperties().layerIdentifier();
+        canvas.drawLine(layer, new Pixel(100, 100, Color.BLACK), new Pixel(1900, 1400, Color.BLACK), new BasicStroke(5), 1);
+        snapshot = SnapshotCodec.encode(canvas);
+        assertTrue(snapshot.length < 2000 * 1500 * 4 / 100);
+        assertSameCanvas(canvas, SnapshotCodec.decode(snapshot));
+    }
+
+    @Test
+    public void malformedTest() throws IOException {
+        // test a damaged snapshot is rejected rather than misread
+        Canvas canvas = new Canvas(100, 100);
+        canvas.drawLine(canvas.layers()[0].layerProperties().layerIdentifier(), new Pixel(0, 0, Color.RED),
+                new Pixel(99, 99, Color.RED), new BasicStroke(2), 1);
+        byte[] snapshot = SnapshotCodec.encode(canvas);
+        for (int length = 0; length < snapshot.length; length += 7) {
+            try {
+                SnapshotCodec.decode(Arrays.copyOf(snapshot, length));
+                fail("Decoded " + length + " of " + snapshot.length + " bytes");
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    @Test
+    public void drawingMeanwhileTest() throws Exception {
+        // test a snapshot encodes as it was taken while the canvas keeps being drawn on
+        final Canvas canvas = new Canvas(640, 480);
+        final LayerIdentifier layer = canvas.layers()[0].layerProperties().layerIdentifier();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread drawing = new Thread(new Runnable() {
+            public void run() {
+                Random random = new Random(11);
+                while (!done.get()) {
+                    Color color = new Color(random.nextInt());
+                    canvas.drawLine(layer, new Pixel(random.nextInt(640), random.nextInt(480), color),
+                            new Pixel(random.nextInt(640), random.nextInt(480), color), new BasicStroke(1 + random.nextInt(20)), 1);
+                }
+            }
+        });
+        drawing.start();
+        try {
+            for (int i = 0; i < 20; i++) {
+                Canvas snapshot = canvas.snapshot();
+                int[] taken = pixels(snapshot.layers()[0]);
+                byte[] encoded = SnapshotCodec.encode(snapshot);
+                assertArrayEquals(taken, pixels(snapshot.layers()[0]));
+                assertSameCanvas(snapshot, SnapshotCodec.decode(encoded));
+            }
+        } finally {
+            done.set(true);
+            drawing.join();
+        }
+    }
+}
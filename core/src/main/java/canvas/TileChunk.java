@@ -0,0 +1,103 @@
+package canvas;
+
+import java.io.Serializable;
+
+import canvas.layer.Layer;
+/**
+ * Some of the tiles of a canvas, on every one of its layers, as sent to a user joining its board a few
+ * at a time. Tiles are numbered row by row across the canvas, as in a Layer.
+ *
+ */
+public final class TileChunk implements Serializable {
+    private static final long serialVersionUID = 4410397351126605872L;
+
+    private final int width;
+    private final int height;
+    private final int layerCount;
+    private final int[] indexes;
+    // pixels of tile indexes[i] on the layer at level l at i * layerCount + l, null if the layer has nothing there
+    private final int[][] tiles;
+
+    /**
+     * Constructor, only used by the SnapshotCodec and of()
+     */
+    TileChunk(int width, int height, int layerCount, int[] indexes, int[][] tiles) {
+        this.width = width;
+        this.height = height;
+        this.layerCount = layerCount;
+        this.indexes = indexes;
+        this.tiles = tiles;
+    }
+
+    /**
+     * Reads tiles of every layer of a canvas
+     * @param canvas a snapshot, so the tiles of one chunk and the next go together
+     * @param indexes of the tiles
+     * @return TileChunk
+     */
+    public static TileChunk of(Canvas canvas, int[] indexes) {
+        Layer[] layers = canvas.layers();
+        int columns = SnapshotCodec.tileColumns(canvas.width());
+        int[][] tiles = new int[indexes.length * layers.length][];
+        for (int i = 0; i < indexes.length; i++) {
+            for (int level = 0; level < layers.length; level++) {
+                int[] tile = new int[SnapshotCodec.tileLength(canvas.width(), canvas.height(), indexes[i])];
+                if (layers[level].readTile(indexes[i] % columns, indexes[i] / columns, tile)) {
+                    tiles[i * layers.length + level] = tile;
+                }
+            }
+        }
+        return new TileChunk(canvas.width(), canvas.height(), layers.length, indexes.clone(), tiles);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int layerCount() {
+        return layerCount;
+    }
+
+    public int tileCount() {
+        return indexes.length;
+    }
+
+    /**
+     * @param i
+     * @return index of the i-th tile of the chunk on the canvas
+     */
+    public int index(int i) {
+        return indexes[i];
+    }
+
+    /**
+     * @param i
+     * @param level
+     * @return pixels of the i-th tile of the chunk on the layer at the level, or null if it's blank
+     */
+    public int[] tile(int i, int level) {
+        return tiles[i * layerCount + level];
+    }
+
+    /**
+     * Writes the tiles into the layers they were read from
+     * @param layers copies of the layers the chunk was read from, bottom first, as they were then
+     */
+    public void applyTo(Layer[] layers) {
+        if (layers.length != layerCount || layerCount > 0 && (layers[0].width() != width || layers[0].height() != height)) {
+            throw new IllegalArgumentException("Tiles of other layers");
+        }
+        int columns = SnapshotCodec.tileColumns(width);
+        for (int i = 0; i < indexes.length; i++) {
+            for (int level = 0; level < layerCount; level++) {
+                int[] tile = tiles[i * layerCount + level];
+                layers[level].writeTile(indexes[i] % columns, indexes[i] / columns,
+                        tile != null ? tile : new int[SnapshotCodec.tileLength(width, height, indexes[i])]);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package canvas;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import canvas.layer.Layer;
+/**
+ * Hashes of some of the tiles of a canvas as it was after a change to its board, sent to the users of
+ * the board so each can tell which of its tiles differ from the server's. Tiles are numbered row by row
+ * across the canvas, as in a Layer, and each is hashed on every one of its layers by Canvas.tileHash().
+ *
+ */
+public final class TileDigest implements Serializable {
+    private static final long serialVersionUID = -2290712370580436918L;
+
+    private final long sequence;
+    private final int layerCount;
+    private final int[] indexes;
+    private final long[] hashes;
+
+    /**
+     * Constructor
+     * @param sequence sequence number of the last change made to the canvas when it was hashed
+     * @param layerCount how many layers the canvas had
+     * @param indexes of the tiles
+     * @param hashes of the tiles, in the same order
+     */
+    public TileDigest(long sequence, int layerCount, int[] indexes, long[] hashes) {
+        if (indexes.length != hashes.length) {
+            throw new IllegalArgumentException(indexes.length + " tiles with " + hashes.length + " hashes");
+        }
+        this.sequence = sequence;
+        this.layerCount = layerCount;
+        this.indexes = indexes;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Hashes tiles of a canvas
+     * @param canvas not drawn on meanwhile
+     * @param sequence sequence number of the last change made to the canvas
+     * @param indexes of the tiles
+     * @return TileDigest
+     */
+    public static TileDigest of(Canvas canvas, long sequence, int[] indexes) {
+        long[] hashes = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            hashes[i] = canvas.tileHash(indexes[i]);
+        }
+        return new TileDigest(sequence, canvas.layers().length, indexes.clone(), hashes);
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    public int layerCount() {
+        return layerCount;
+    }
+
+    public int tileCount() {
+        return indexes.length;
+    }
+
+    /**
+     * @param i
+     * @return index of the i-th tile of the digest on the canvas
+     */
+    public int index(int i) {
+        return indexes[i];
+    }
+
+    /**
+     * @param i
+     * @return hash of the i-th tile of the digest
+     */
+    public long hash(int i) {
+        return hashes[i];
+    }
+
+    /**
+     * Finds the tiles of a copy of the canvas that differ from the canvas hashed
+     * @param canvas the copy, with every change up to sequence() made to it and none after
+     * @return indexes of the tiles that differ, none if the copy doesn't have the same layers and size
+     */
+    public int[] diverged(Canvas canvas) {
+        Layer[] layers = canvas.layers();
+        if (layers.length != layerCount) {
+            return new int[0];
+        }
+        int tiles = SnapshotCodec.tileColumns(canvas.width()) * SnapshotCodec.tileRows(canvas.height());
+        List<Integer> diverged = new ArrayList<Integer>();
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i] < 0 || indexes[i] >= tiles) {
+                return new int[0];
+            }
+            if (canvas.tileHash(indexes[i]) != hashes[i]) {
+                diverged.add(indexes[i]);
+            }
+        }
+        int[] result = new int[diverged.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = diverged.get(i);
+        }
+        return result;
+    }
+}
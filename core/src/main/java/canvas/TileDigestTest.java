@@ -0,0 +1,110 @@
+package canvas;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import name.LayerIdentifier;
+import canvas.layer.Layer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TileDigestTest {
+    // 5 columns and 4 rows of tiles.
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+    private static final int TILES = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Canvas drawnCanvas(long seed) {
+        Random random = new Random(seed);
+        Canvas canvas = new Canvas(WIDTH, HEIGHT);
+        canvas.addLayer(new LayerIdentifier(4, "top"));
+        for (int i = 0; i < 20; i++) {
+            Color color = new Color(random.nextInt(), true);
+            canvas.drawLine(canvas.layers()[i % 2].layerProperties().layerIdentifier(),
+                    new Pixel(random.nextInt(WIDTH / 2), random.nextInt(HEIGHT), color),
+                    new Pixel(random.nextInt(WIDTH / 2), random.nextInt(HEIGHT), color), new BasicStroke(1 + random.nextInt(6)), 1);
+        }
+        return canvas;
+    }
+
+    private static int[] allTiles() {
+        int[] indexes = new int[TILES];
+        for (int i = 0; i < TILES; i++) {
+            indexes[i] = i;
+        }
+        return indexes;
+    }
+
+    @Test
+    public void sameDrawingTest() {
+        // test copies of a canvas drawn the same way hash the same, and blank tiles hash to 0
+        Canvas canvas = drawnCanvas(3);
+        TileDigest digest = TileDigest.of(canvas, 20, allTiles());
+        assertEquals(20, digest.sequence());
+        assertEquals(2, digest.layerCount());
+        assertEquals(0, digest.diverged(drawnCanvas(3)).length);
+        assertEquals(0, digest.diverged(canvas.snapshot()).length);
+        // nothing was drawn on the right of the canvas
+        assertEquals(0, digest.hash(4));
+        assertFalse(digest.hash(0) == 0);
+        assertEquals(0, new Canvas(WIDTH, HEIGHT).tileHash(0));
+
+        // blank again after being drawn on
+        Layer layer = canvas.layers()[0];
+        layer.writeTile(0, 0, new int[Layer.TILE_SIZE * Layer.TILE_SIZE]);
+        assertEquals(0, layer.tileHash(0, 0));
+    }
+
+    @Test
+    public void divergedTest() {
+        // test the tiles drawn on since the digest are the ones found to differ
+        Canvas canvas = drawnCanvas(3);
+        TileDigest digest = TileDigest.of(canvas, 20, allTiles());
+        Canvas copy = canvas.snapshot();
+        copy.drawPixel(copy.layers()[1].layerProperties().layerIdentifier(), new Pixel(70, 130, Color.GREEN));
+        copy.drawPixel(copy.layers()[0].layerProperties().layerIdentifier(), new Pixel(299, 199, Color.GREEN));
+        assertArrayEquals(new int[] { 11, 19 }, digest.diverged(copy));
+        // the canvas the snapshot was taken of is left alone
+        assertEquals(0, digest.diverged(canvas).length);
+
+        // the same pixel on the other layer
+        Canvas bottom = drawnCanvas(3);
+        bottom.drawPixel(bottom.layers()[0].layerProperties().layerIdentifier(), new Pixel(10, 10, Color.GREEN));
+        Canvas top = drawnCanvas(3);
+        top.drawPixel(top.layers()[1].layerProperties().layerIdentifier(), new Pixel(10, 10, Color.GREEN));
+        assertArrayEquals(new int[] { 0 }, TileDigest.of(bottom, 21, allTiles()).diverged(top));
+
+        assertTrue(digest.diverged(drawnCanvas(4)).length > 0);
+        // can't be told apart with other layers
+        assertEquals(0, digest.diverged(new Canvas(WIDTH, HEIGHT)).length);
+    }
+
+    @Test
+    public void pagedOutTest() throws IOException {
+        // test a canvas paged out hashes as it did, without reading its tiles back
+        Canvas canvas = drawnCanvas(5);
+        TileDigest digest = TileDigest.of(canvas.snapshot(), 20, allTiles());
+        File file = folder.newFile();
+        TileFile.write(file, new byte[0], canvas.snapshot());
+        TileFile tiles = TileFile.open(file);
+        canvas.pageOut(tiles);
+        int paged = canvas.layers()[0].pagedCount() + canvas.layers()[1].pagedCount();
+        assertTrue(paged > 0);
+        assertEquals(0, digest.diverged(canvas).length);
+        assertEquals(paged, canvas.layers()[0].pagedCount() + canvas.layers()[1].pagedCount());
+        tiles.close();
+    }
+}
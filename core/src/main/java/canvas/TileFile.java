@@ -0,0 +1,273 @@
+package canvas;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import canvas.layer.Layer;
+/**
+ * A Canvas stored in a file any one tile of which can be read without reading the rest, as the server
+ * checkpoints its boards in. Tiles nothing has been drawn on aren't stored, the others are encoded as
+ * in a SnapshotCodec snapshot.
+ *
+ * File layout: MAGIC, a header the writer is free to fill, the tiles of every layer, then the footer
+ * indexing them: the canvas's width, height, the header's offset and length, its layer count, then for
+ * every layer its count of tiles and the index, offset and length of each. The file ends with the
+ * footer's offset and MAGIC again, so a file cut short is told apart from a whole one.
+ *
+ */
+public final class TileFile implements Closeable {
+    static final int MAGIC = 0x57425431; // "WBT1"
+    private static final int TRAILER_LENGTH = 12;
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final byte[] header;
+    // for every layer, the index, offset and length of every tile stored
+    private final int[][] indexes;
+    private final long[][] offsets;
+    private final int[][] lengths;
+    private final Inflater inflater = new Inflater();
+
+    private TileFile(FileChannel channel, int width, int height, byte[] header, int[][] indexes, long[][] offsets,
+            int[][] lengths) {
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.header = header;
+        this.indexes = indexes;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Writes the canvas as it is now to the file, replacing it, and forces it to disk. Write a
+     * Canvas.snapshot() rather than a canvas being drawn on, to leave it free.
+     * @param file
+     * @param header stored as is, for the writer to tell what the canvas is
+     * @param canvas
+     * @throws IOException
+     */
+    public static void write(File file, byte[] header, Canvas canvas) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            out.writeInt(MAGIC);
+            out.write(header);
+            long position = 4 + header.length;
+
+            ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+            DataOutputStream footer = new DataOutputStream(footerBytes);
+            ByteArrayOutputStream tileBytes = new ByteArrayOutputStream();
+            DataOutputStream tileOut = new DataOutputStream(tileBytes);
+            int[] tile = new int[SnapshotCodec.TILE_SIZE * SnapshotCodec.TILE_SIZE];
+            byte[] deflated = new byte[tile.length * 4 + 64];
+            synchronized (canvas) {
+                Layer[] layers = canvas.layers();
+                int columns = SnapshotCodec.tileColumns(canvas.width());
+                int tileCount = columns * SnapshotCodec.tileRows(canvas.height());
+                footer.writeInt(canvas.width());
+                footer.writeInt(canvas.height());
+                footer.writeLong(4);
+                footer.writeInt(header.length);
+                footer.writeInt(layers.length);
+                for (Layer layer : layers) {
+                    ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+                    DataOutputStream entries = new DataOutputStream(entryBytes);
+                    int stored = 0;
+                    for (int index = 0; index < tileCount; index++) {
+                        if (!layer.readTile(index % columns, index / columns, tile)) {
+                            continue;
+                        }
+                        tileBytes.reset();
+                        SnapshotCodec.writeTile(tile, SnapshotCodec.tileLength(canvas.width(), canvas.height(), index),
+                                tileOut, deflater, deflated);
+                        tileOut.flush();
+                        tileBytes.writeTo(out);
+                        entries.writeInt(index);
+                        entries.writeLong(position);
+                        entries.writeInt(tileBytes.size());
+                        position += tileBytes.size();
+                        stored++;
+                    }
+                    entries.close();
+                    footer.writeInt(stored);
+                    entryBytes.writeTo(footer);
+                }
+            }
+            footer.close();
+            footerBytes.writeTo(out);
+            out.writeLong(position);
+            out.writeInt(MAGIC);
+            out.flush();
+            stream.getChannel().force(true);
+        } finally {
+            deflater.end();
+            stream.close();
+        }
+    }
+
+    /**
+     * Opens a tile file, reading only its header and index
+     * @param file
+     * @return TileFile
+     * @throws IOException if the file isn't a whole tile file
+     */
+    public static TileFile open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer trailer = read(channel, size - TRAILER_LENGTH, TRAILER_LENGTH);
+            long footerOffset = trailer.getLong();
+            if (size < 4 + TRAILER_LENGTH || trailer.getInt() != MAGIC || read(channel, 0, 4).getInt() != MAGIC
+                    || footerOffset < 4 || footerOffset > size - TRAILER_LENGTH) {
+                throw new IOException(file + " is not a whole tile file");
+            }
+            ByteBuffer footerBuffer = read(channel, footerOffset, (int) (size - TRAILER_LENGTH - footerOffset));
+            DataInputStream footer = new DataInputStream(new ByteArrayInputStream(footerBuffer.array()));
+            int width = footer.readInt();
+            int height = footer.readInt();
+            long headerOffset = footer.readLong();
+            int headerLength = footer.readInt();
+            int layerCount = footer.readInt();
+            int tileCount = SnapshotCodec.tileColumns(width) * SnapshotCodec.tileRows(height);
+            if (width <= 0 || height <= 0 || headerLength < 0 || headerOffset + headerLength > footerOffset
+                    || layerCount < 0 || layerCount > footerBuffer.capacity()) {
+                throw new IOException("Invalid tile file footer in " + file);
+            }
+            int[][] indexes = new int[layerCount][];
+            long[][] offsets = new long[layerCount][];
+            int[][] lengths = new int[layerCount][];
+            for (int level = 0; level < layerCount; level++) {
+                int stored = footer.readInt();
+                if (stored < 0 || stored > tileCount) {
+                    throw new IOException("Invalid count of tiles " + stored + " in " + file);
+                }
+                indexes[level] = new int[stored];
+                offsets[level] = new long[stored];
+                lengths[level] = new int[stored];
+                for (int t = 0; t < stored; t++) {
+                    indexes[level][t] = footer.readInt();
+                    offsets[level][t] = footer.readLong();
+                    lengths[level][t] = footer.readInt();
+                    if (indexes[level][t] < 0 || indexes[level][t] >= tileCount || (t > 0 && indexes[level][t] <= indexes[level][t - 1])
+                            || offsets[level][t] < 4 || lengths[level][t] < 0 || offsets[level][t] + lengths[level][t] > footerOffset) {
+                        throw new IOException("Invalid tile " + indexes[level][t] + " in " + file);
+                    }
+                }
+            }
+            byte[] header = read(channel, headerOffset, headerLength).array();
+            return new TileFile(channel, width, height, header, indexes, offsets, lengths);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        if (position < 0 || length < 0) {
+            throw new IOException("Read past the start of the file");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Read past the end of the file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public byte[] header() {
+        return header;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int layerCount() {
+        return indexes.length;
+    }
+
+    /**
+     * @param level
+     * @return how many tiles of the layer are stored, the others are blank
+     */
+    public int tileCount(int level) {
+        return indexes[level].length;
+    }
+
+    /**
+     * @param level
+     * @return the indexes of the tiles of the layer that are stored, in order
+     */
+    public int[] tileIndexes(int level) {
+        return indexes[level].clone();
+    }
+
+    /**
+     * Reads one tile of a layer, and only that tile
+     * @param level
+     * @param index of the tile, row by row
+     * @param pixels to hold the tile's ARGB pixels, row by row
+     * @return false, leaving pixels alone, if the tile is blank
+     * @throws IOException if the tile is malformed
+     */
+    public synchronized boolean readTile(int level, int index, int[] pixels) throws IOException {
+        int t = Arrays.binarySearch(indexes[level], index);
+        if (t < 0) {
+            return false;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(read(channel, offsets[level][t], lengths[level][t]).array()));
+        SnapshotCodec.readTile(in.readByte(), pixels, SnapshotCodec.tileLength(width, height, index), index, in, inflater);
+        return true;
+    }
+
+    /**
+     * Draws every stored tile onto the canvas, which must have the file's size and number of layers
+     * @param canvas
+     * @throws IOException if a tile is malformed
+     */
+    public void readInto(Canvas canvas) throws IOException {
+        Layer[] layers = canvas.layers();
+        if (canvas.width() != width || canvas.height() != height || layers.length != indexes.length) {
+            throw new IOException("Tile file doesn't match a " + canvas.width() + "x" + canvas.height() + " canvas of "
+                    + layers.length + " layers");
+        }
+        int columns = SnapshotCodec.tileColumns(width);
+        int[] tile = new int[SnapshotCodec.TILE_SIZE * SnapshotCodec.TILE_SIZE];
+        for (int level = 0; level < layers.length; level++) {
+            for (int index : indexes[level]) {
+                readTile(level, index, tile);
+                layers[level].writeTile(index % columns, index / columns, tile);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            inflater.end();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,98 @@
+package canvas;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import name.LayerIdentifier;
+import canvas.layer.Layer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TileFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Canvas drawnCanvas() {
+        Random random = new Random(3);
+        Canvas canvas = new Canvas(300, 200);
+        LayerIdentifier top = new LayerIdentifier(4, "top");
+        canvas.addLayer(top);
+        LayerIdentifier[] layers = { canvas.layers()[0].layerProperties().layerIdentifier(), top };
+        for (int i = 0; i < 20; i++) {
+            Color color = new Color(random.nextInt());
+            canvas.drawLine(layers[i % 2], new Pixel(random.nextInt(300), random.nextInt(200), color),
+                    new Pixel(random.nextInt(300), random.nextInt(200), color), new BasicStroke(1 + random.nextInt(6)), 1);
+        }
+        canvas.drawFill(layers[0], new Pixel(299, 199, Color.BLUE));
+        return canvas;
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        // test every layer read back from the file has the same pixels, and the header is kept as is
+        Canvas canvas = drawnCanvas();
+        File file = folder.newFile();
+        byte[] header = { 1, 2, 3 };
+        TileFile.write(file, header, canvas.snapshot());
+
+        TileFile tiles = TileFile.open(file);
+        assertArrayEquals(header, tiles.header());
+        assertEquals(300, tiles.width());
+        assertEquals(200, tiles.height());
+        assertEquals(2, tiles.layerCount());
+        Canvas copy = canvas.blankCopy();
+        tiles.readInto(copy);
+        tiles.close();
+        for (int level = 0; level < 2; level++) {
+            assertArrayEquals(canvas.layers()[level].pixels(), copy.layers()[level].pixels());
+        }
+    }
+
+    @Test
+    public void randomAccessTest() throws IOException {
+        // test a single tile is read as it is on the canvas, and a blank one as blank
+        Canvas canvas = new Canvas(200, 200);
+        Layer layer = canvas.layers()[0];
+        canvas.drawPixel(layer.layerProperties().layerIdentifier(), new Pixel(130, 70, Color.RED));
+        File file = folder.newFile();
+        TileFile.write(file, new byte[0], canvas);
+
+        TileFile tiles = TileFile.open(file);
+        assertEquals(1, tiles.tileCount(0));
+        int[] expected = new int[Layer.TILE_SIZE * Layer.TILE_SIZE];
+        int[] actual = new int[expected.length];
+        assertTrue(layer.readTile(2, 1, expected));
+        assertTrue(tiles.readTile(0, 1 * 4 + 2, actual));
+        assertArrayEquals(expected, actual);
+        assertFalse(tiles.readTile(0, 0, actual));
+        tiles.close();
+    }
+
+    @Test
+    public void cutShortTest() throws IOException {
+        // test a file the writer didn't finish isn't taken for a tile file
+        File file = folder.newFile();
+        TileFile.write(file, new byte[0], drawnCanvas());
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.setLength(raw.length() - 1);
+        raw.close();
+        try {
+            TileFile.open(file).close();
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
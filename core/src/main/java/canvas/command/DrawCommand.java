@@ -1,5 +1,6 @@
 package canvas.command;
 
+import java.awt.Rectangle;
 import java.io.Serializable;
 
 import name.LayerIdentifier;
@@ -32,4 +33,12 @@ public abstract class DrawCommand implements Serializable {
      * @param drawable
      */
     public abstract void drawOn(Drawable drawable);
+    
+    /**
+     * Area of a canvas the command may draw on, holding at least every pixel it can change
+     * @param width of the canvas
+     * @param height of the canvas
+     * @return Rectangle, which may reach past the edges of the canvas
+     */
+    public abstract Rectangle bounds(int width, int height);
 }
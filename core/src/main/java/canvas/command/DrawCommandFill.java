@@ -1,5 +1,7 @@
 package canvas.command;
 
+import java.awt.Rectangle;
+
 import name.LayerIdentifier;
 import canvas.Drawable;
 import canvas.Pixel;
@@ -21,6 +23,13 @@ public class DrawCommandFill extends DrawCommand {
         this.pixel = pixel;
     }
     
+    /**
+     * @return the pixel the fill starts from
+     */
+    public Pixel pixel() {
+        return pixel;
+    }
+    
     /**
      * Draws the fill command on the canvas
      */
@@ -28,5 +37,12 @@ public class DrawCommandFill extends DrawCommand {
     public void drawOn(Drawable drawable) {
         drawable.drawFill(id, pixel);
     }
-
+    
+    /**
+     * @return the whole canvas, as far as the fill may spread
+     */
+    @Override
+    public Rectangle bounds(int width, int height) {
+        return new Rectangle(0, 0, width, height);
+    }
 }
@@ -1,6 +1,7 @@
 package canvas.command;
 
 import java.awt.BasicStroke;
+import java.awt.Rectangle;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -36,6 +37,22 @@ public class DrawCommandLine extends DrawCommand {
         this.symetry = symetry;
     }
     
+    public Pixel pixelStart() {
+        return pixelStart;
+    }
+    
+    public Pixel pixelEnd() {
+        return pixelEnd;
+    }
+    
+    public BasicStroke stroke() {
+        return stroke;
+    }
+    
+    public int symetry() {
+        return symetry;
+    }
+    
     /**
      * Draws the line onto the canvas
      */
@@ -44,6 +61,21 @@ public class DrawCommandLine extends DrawCommand {
         drawable.drawLine(id, pixelStart, pixelEnd, stroke, symetry);
     }
     
+    /**
+     * @return the line and its stroke, or the whole canvas for the copies turned around its center
+     */
+    @Override
+    public Rectangle bounds(int width, int height) {
+        if (symetry > 1) {
+            return new Rectangle(0, 0, width, height);
+        }
+        Rectangle bounds = new Rectangle(pixelStart.x(), pixelStart.y(), 1, 1);
+        bounds.add(new Rectangle(pixelEnd.x(), pixelEnd.y(), 1, 1));
+        int margin = (int) Math.ceil(stroke.getLineWidth()) + 1;
+        bounds.grow(margin, margin);
+        return bounds;
+    }
+    
     /**
      * Custom serialization of the draw command line
      * @param out
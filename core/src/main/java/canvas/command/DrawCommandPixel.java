@@ -1,5 +1,7 @@
 package canvas.command;
 
+import java.awt.Rectangle;
+
 import name.LayerIdentifier;
 import canvas.Drawable;
 import canvas.Pixel;
@@ -22,6 +24,13 @@ public class DrawCommandPixel extends DrawCommand {
         this.pixel = pixel;
     }
     
+    /**
+     * @return the pixel drawn
+     */
+    public Pixel pixel() {
+        return pixel;
+    }
+    
     /**
      * Draws the pixel onto the canvas
      */
@@ -29,4 +38,12 @@ public class DrawCommandPixel extends DrawCommand {
     public void drawOn(Drawable drawable) {
         drawable.drawPixel(id, pixel);
     }
+    
+    /**
+     * @return the pixel drawn
+     */
+    @Override
+    public Rectangle bounds(int width, int height) {
+        return new Rectangle(pixel.x(), pixel.y(), 1, 1);
+    }
 }
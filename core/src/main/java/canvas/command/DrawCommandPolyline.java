@@ -0,0 +1,127 @@
+package canvas.command;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import name.LayerIdentifier;
+import canvas.Drawable;
+import canvas.Pixel;
+/**
+ * Represents a run of connected line segments drawn in one color and stroke, as a freehand drag makes
+ * them. Drawn as one drawLine per segment, exactly as the DrawCommandLines it replaces would have been.
+ *
+ */
+public class DrawCommandPolyline extends DrawCommand {
+    private static final long serialVersionUID = -2837465019283746510L;
+
+    private final Color color;
+    private transient BasicStroke stroke;
+    private final int symetry;
+    // x and y of every point in turn
+    private final int[] points;
+
+    /**
+     * Constructor
+     * @param id
+     * @param color
+     * @param stroke
+     * @param symetry
+     * @param points x and y of every point in turn, at least one point
+     */
+    public DrawCommandPolyline(LayerIdentifier id, Color color, BasicStroke stroke, int symetry, int[] points) {
+    	super(id);
+    	assert points.length >= 2 && points.length % 2 == 0;
+        this.color = color;
+        this.stroke = stroke;
+        this.symetry = symetry;
+        this.points = points;
+    }
+
+    public Color color() {
+        return color;
+    }
+
+    public BasicStroke stroke() {
+        return stroke;
+    }
+
+    public int symetry() {
+        return symetry;
+    }
+
+    public int pointCount() {
+        return points.length / 2;
+    }
+
+    public int x(int point) {
+        return points[2 * point];
+    }
+
+    public int y(int point) {
+        return points[2 * point + 1];
+    }
+
+    /**
+     * @return the polyline as one DrawCommandLine per segment, or a single dot if there is only one point
+     */
+    public DrawCommandLine[] segments() {
+        DrawCommandLine[] segments = new DrawCommandLine[Math.max(1, pointCount() - 1)];
+        Pixel previous = new Pixel(x(0), y(0), color);
+        if (pointCount() == 1) {
+            segments[0] = new DrawCommandLine(id, previous, previous, stroke, symetry);
+        }
+        for (int i = 1; i < pointCount(); i++) {
+            Pixel next = new Pixel(x(i), y(i), color);
+            segments[i - 1] = new DrawCommandLine(id, previous, next, stroke, symetry);
+            previous = next;
+        }
+        return segments;
+    }
+
+    /**
+     * Draws every segment, or a dot if there is only one point
+     */
+    @Override
+    public void drawOn(Drawable drawable) {
+        for (DrawCommandLine segment : segments()) {
+            segment.drawOn(drawable);
+        }
+    }
+
+    /**
+     * @return every point and the stroke around them, or the whole canvas for the copies turned around
+     * its center
+     */
+    @Override
+    public Rectangle bounds(int width, int height) {
+        if (symetry > 1) {
+            return new Rectangle(0, 0, width, height);
+        }
+        Rectangle bounds = new Rectangle(x(0), y(0), 1, 1);
+        for (int i = 1; i < pointCount(); i++) {
+            bounds.add(new Rectangle(x(i), y(i), 1, 1));
+        }
+        int margin = (int) Math.ceil(stroke.getLineWidth()) + 1;
+        bounds.grow(margin, margin);
+        return bounds;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeFloat(stroke.getLineWidth());
+        out.writeInt(stroke.getEndCap());
+        out.writeInt(stroke.getLineJoin());
+    }
+
+    private synchronized void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        float width = in.readFloat();
+        int endCap = in.readInt();
+        int lineJoin = in.readInt();
+        stroke = new BasicStroke(width, endCap, lineJoin);
+    }
+}
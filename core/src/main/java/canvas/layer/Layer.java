@@ -0,0 +1,717 @@
+package canvas.layer;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Queue;
+
+import name.LayerIdentifier;
+import canvas.DrawableBase;
+import canvas.Pixel;
+/**
+ * Represents a Layer in our GUI
+ *
+ * The drawing is stored in TILE_SIZE square tiles, row by row, each allocated the first time something
+ * is drawn on it and released once it is fully transparent again. A layer takes memory for the area
+ * painted on it rather than for its size, so the many empty layers of a large board cost next to nothing.
+ *
+ * A snapshot of a layer shares its tiles. Each tile remembers the generation of the layer it was last
+ * drawn on in, and a snapshot starts a new generation, so the layer copies a tile of an older generation
+ * before drawing on it. Taking a snapshot costs a copy of the array of tiles, and drawing after it a copy
+ * of each tile drawn on, once.
+ *
+ * Tiles are allocated in the TileMemory current at the time, on the heap or outside it. Lines are drawn on
+ * them by a Rasterizer rather than Java2D, so a layer comes out bit for bit the same on every node drawing
+ * the same commands.
+ *
+ * A layer can also be paged out: its tiles are dropped, and each one read back from a TileSource the first
+ * time it is needed, by the layer or by any snapshot of it.
+ *
+ * Each tile has a 64 bit hash of its pixels, so copies of a board can tell which of their tiles differ
+ * without sending them. It is worked out the first time it is asked for after the tile is drawn on, and
+ * a blank tile hashes to 0 whether it is allocated or not.
+ *
+ */
+public class Layer extends DrawableBase {
+	private static final long serialVersionUID = -5558390701591471173L;
+	public static final int TILE_SIZE = 64;
+	
+	// tiles where the user's drawing is stored, null where nothing has been drawn
+    private transient BufferedImage[] tiles;
+    private transient int[] generations;
+    private transient int generation;
+    private transient int columns;
+    // tiles not yet read back from the source the layer was paged out to, null once none are left
+    private transient boolean[] paged;
+    private transient int pagedCount;
+    private transient TileSource source;
+    // hashes of the tiles, for those hashed since they were last drawn on
+    private transient long[] hashes;
+    private transient boolean[] hashed;
+    // draws the lines of draw commands, made the first time one is drawn
+    private transient Rasterizer rasterizer;
+    private LayerProperties layerProperties;
+    private int level;
+    
+	/**
+     * Make a canvas.
+     * @param width width in pixels
+     * @param height height in pixels
+	 * @param layerIdentifier 
+     */
+    public Layer(int width, int height, LayerIdentifier layerIdentifier, int level) {
+        super(width, height);
+        this.layerProperties = new LayerProperties(layerIdentifier);
+        this.level = level;
+        allocateTiles();
+    }
+    
+    /**
+     * Make a snapshot of a layer, sharing its tiles
+     * @param layer
+     */
+    private Layer(Layer layer) {
+        super(layer.width, layer.height);
+        this.layerProperties = layer.layerProperties.clone();
+        this.level = layer.level;
+        this.columns = layer.columns;
+        this.tiles = layer.tiles.clone();
+        this.generations = new int[tiles.length];
+        this.hashes = layer.hashes.clone();
+        this.hashed = layer.hashed.clone();
+        if (layer.paged != null) {
+            this.paged = layer.paged.clone();
+            this.pagedCount = layer.pagedCount;
+            this.source = layer.source;
+        }
+        // older than every tile, so the snapshot copies them too if it is ever drawn on
+        this.generation = 1;
+    }
+    
+    private void allocateTiles() {
+        this.columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.tiles = new BufferedImage[columns * ((height + TILE_SIZE - 1) / TILE_SIZE)];
+        this.generations = new int[tiles.length];
+        this.generation = 0;
+        this.hashes = new long[tiles.length];
+        this.hashed = new boolean[tiles.length];
+        this.paged = null;
+        this.pagedCount = 0;
+        this.source = null;
+    }
+    
+    /**
+     * @return a copy of the layer as it is now, which drawing on the layer leaves alone
+     */
+    public synchronized Layer snapshot() {
+        generation++;
+        return new Layer(this);
+    }
+    
+    /**
+     * Drops the layer's tiles, to read them back from the source as they are needed. The source must hold
+     * the layer's tiles as they are now.
+     * @param source
+     * @param stored indexes of the tiles the source holds, every other tile is blank
+     */
+    public synchronized void pageOut(TileSource source, int[] stored) {
+        Arrays.fill(tiles, null);
+        paged = null;
+        pagedCount = 0;
+        this.source = null;
+        if (stored.length > 0) {
+            paged = new boolean[tiles.length];
+            for (int index : stored) {
+                paged[index] = true;
+            }
+            pagedCount = stored.length;
+            this.source = source;
+        }
+    }
+    
+    /**
+     * @return how many tiles are still to be read back from the source the layer was paged out to
+     */
+    public synchronized int pagedCount() {
+        return pagedCount;
+    }
+    
+    /**
+     * @param index
+     * @return the tile as it is stored, reading it back first if the layer was paged out, null if blank
+     */
+    private BufferedImage stored(int index) {
+        if (paged != null && paged[index]) {
+            TileSource source = this.source;
+            forget(index);
+            BufferedImage tile = newTile(index % columns, index / columns);
+            int[] pixels = new int[tile.getWidth() * tile.getHeight()];
+            try {
+                if (source.readTile(index, pixels)) {
+                    tile.getRaster().setDataElements(0, 0, tile.getWidth(), tile.getHeight(), pixels);
+                    tiles[index] = tile;
+                    generations[index] = generation;
+                }
+            } catch (IOException e) {
+                // left blank rather than failing every drawing on it
+                e.printStackTrace();
+            }
+        }
+        return tiles[index];
+    }
+    
+    /**
+     * Stops reading a tile back from the source, as it is about to be replaced whole
+     */
+    private void forget(int index) {
+        if (paged != null && paged[index]) {
+            paged[index] = false;
+            if (--pagedCount == 0) {
+                paged = null;
+                source = null;
+            }
+        }
+    }
+    
+    /**
+     * @return a fully transparent tile, in the TileMemory tiles are allocated in now
+     */
+    private BufferedImage newTile(int column, int row) {
+        return TileMemory.current().allocate(Math.min(TILE_SIZE, width - column * TILE_SIZE),
+                Math.min(TILE_SIZE, height - row * TILE_SIZE));
+    }
+    
+    /**
+     * @param column
+     * @param row
+     * @return the tile to draw on, allocating it if nothing has been drawn on it yet, and copying it if
+     * a snapshot shares it
+     */
+    private BufferedImage tile(int column, int row) {
+        int index = row * columns + column;
+        BufferedImage tile = stored(index);
+        hashed[index] = false;
+        if (tile == null || generations[index] != generation) {
+            BufferedImage copy = newTile(column, row);
+            if (tile != null) {
+                copy.getRaster().setDataElements(0, 0, tile.getRaster());
+            }
+            tile = copy;
+            tiles[index] = tile;
+            generations[index] = generation;
+        }
+        return tile;
+    }
+    
+    /**
+     * Releases a tile if it is fully transparent
+     */
+    private void releaseIfBlank(int column, int row) {
+        BufferedImage tile = tiles[row * columns + column];
+        if (tile == null) {
+            return;
+        }
+        int[] pixels = (int[]) tile.getRaster().getDataElements(0, 0, tile.getWidth(), tile.getHeight(), null);
+        for (int pixel : pixels) {
+            if (pixel != 0) {
+                return;
+            }
+        }
+        tiles[row * columns + column] = null;
+    }
+    
+    /**
+     * @return how many tiles have been drawn on and are in memory, rather than paged out
+     */
+    public synchronized int tileCount() {
+        int count = 0;
+        for (BufferedImage tile : tiles) {
+            if (tile != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Reads the pixels of a tile
+     * @param column
+     * @param row
+     * @param pixels to hold the tile's ARGB pixels, row by row
+     * @return false, leaving pixels alone, if the tile is fully transparent
+     */
+    public synchronized boolean readTile(int column, int row, int[] pixels) {
+        BufferedImage tile = stored(row * columns + column);
+        if (tile == null) {
+            return false;
+        }
+        tile.getRaster().getDataElements(0, 0, tile.getWidth(), tile.getHeight(), pixels);
+        return true;
+    }
+    
+    /**
+     * Replaces the pixels of a tile
+     * @param column
+     * @param row
+     * @param pixels the tile's ARGB pixels, row by row
+     */
+    public synchronized void writeTile(int column, int row, int[] pixels) {
+        forget(row * columns + column);
+        BufferedImage tile = tile(column, row);
+        tile.getRaster().setDataElements(0, 0, tile.getWidth(), tile.getHeight(), pixels);
+        releaseIfBlank(column, row);
+    }
+    
+    /**
+     * Hashes the pixels of a tile, the same for the same pixels on any layer of the same size
+     * @param column
+     * @param row
+     * @return the hash, 0 if the tile is fully transparent
+     */
+    public synchronized long tileHash(int column, int row) {
+        int index = row * columns + column;
+        if (!hashed[index]) {
+            hashes[index] = hash(index);
+            hashed[index] = true;
+        }
+        return hashes[index];
+    }
+    
+    private long hash(int index) {
+        BufferedImage tile = tiles[index];
+        if (tile == null && paged != null && paged[index]) {
+            // read for the hash alone, so hashing a layer paged out leaves it paged out
+            int column = index % columns;
+            int row = index / columns;
+            int[] pixels = new int[Math.min(TILE_SIZE, width - column * TILE_SIZE) * Math.min(TILE_SIZE, height - row * TILE_SIZE)];
+            try {
+                if (!source.readTile(index, pixels)) {
+                    return 0;
+                }
+                long hash = 0;
+                for (int i = 0; i < pixels.length; i++) {
+                    if (pixels[i] != 0) {
+                        hash += mix(i, pixels[i]);
+                    }
+                }
+                return hash;
+            } catch (IOException e) {
+                e.printStackTrace();
+                tile = stored(index);
+            }
+        }
+        if (tile == null) {
+            return 0;
+        }
+        DataBuffer data = tile.getRaster().getDataBuffer();
+        int length = tile.getWidth() * tile.getHeight();
+        long hash = 0;
+        for (int i = 0; i < length; i++) {
+            int pixel = data.getElem(i);
+            if (pixel != 0) {
+                hash += mix(i, pixel);
+            }
+        }
+        return hash;
+    }
+    
+    /**
+     * @return the SplitMix64 finalizer of a pixel and where it is in its tile, summed over the pixels that
+     * aren't transparent to hash a tile
+     */
+    private static long mix(int i, int pixel) {
+        long z = (long) i << 32 | pixel & 0xFFFFFFFFL;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * @return every ARGB pixel of the layer, row by row
+     */
+    public synchronized int[] pixels() {
+        int[] pixels = new int[width * height];
+        for (int index = 0; index < tiles.length; index++) {
+            BufferedImage tile = stored(index);
+            if (tile != null) {
+                tile.getRGB(0, 0, tile.getWidth(), tile.getHeight(), pixels,
+                        (index / columns) * TILE_SIZE * width + (index % columns) * TILE_SIZE, width);
+            }
+        }
+        return pixels;
+    }
+    
+    /**
+     * @return layerProperties
+     */
+    public LayerProperties layerProperties() {
+    	return layerProperties;
+    }
+    
+    /**
+     * Set level of the layer
+     * @param level
+     */
+    public void setLevel(int level) {
+    	this.level = level;
+    }
+    
+    /**
+     * @return level
+     */
+    public int level() {
+    	return level;
+    }
+    
+    /**
+     * Make the drawing buffer entirely white.
+     */
+    public synchronized void fillWithColor(Color color) {
+        if (color.getAlpha() == 0) {
+            return;
+        }
+        for (int index = 0; index < tiles.length; index++) {
+            final Graphics2D g = tile(index % columns, index / columns).createGraphics();
+
+            g.setColor(color);
+            g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            g.dispose();
+        }
+    }
+    
+    /**
+     * Draws pixel to the image
+     */
+    @Override
+    public synchronized void drawPixel(LayerIdentifier identifier, Pixel pixel) {
+        if (!isValidPixel(pixel)) {
+            return;
+        }
+
+        int column = pixel.x() / TILE_SIZE;
+        int row = pixel.y() / TILE_SIZE;
+        int rgb = pixel.color().getRGB();
+        if (rgb == 0 && stored(row * columns + column) == null) {
+            return;
+        }
+        tile(column, row).setRGB(pixel.x() - column * TILE_SIZE, pixel.y() - row * TILE_SIZE, rgb);
+        if (rgb == 0) {
+            releaseIfBlank(column, row);
+        }
+    }
+    
+    /**
+     * Update the properties of the layer
+     * @param properties
+     */
+	public void setProperties(LayerProperties properties) {
+		this.layerProperties = properties;
+	}
+	
+	/**
+	 * Draws a line to the canvas
+	 */
+    @Override
+    public synchronized void drawLine(LayerIdentifier identifier, Pixel pixelStart, Pixel pixelEnd, Stroke stroke, int symetry) {
+        if (!isValidPixel(pixelStart) || !isValidPixel(pixelEnd)) {
+            return;
+        }
+        
+        // the rasterizer paints with the colors itself, Java2D with a Paint
+        Paint paint = null;
+        if (Rasterizer.supports(stroke)) {
+            if (rasterizer == null) {
+                rasterizer = new Rasterizer();
+            }
+            int start = pixelStart.color().getRGB();
+            int end = pixelEnd.color().getRGB();
+            if (start != end) {
+                rasterizer.setGradient(pixelStart.x(), pixelStart.y(), start, pixelEnd.x(), pixelEnd.y(), end);
+            }
+            else {
+                rasterizer.setColor(start);
+            }
+        }
+        else if (pixelStart.color() != pixelEnd.color()) {
+            paint = new GradientPaint(pixelStart.x(), pixelStart.y(), pixelStart.color(),
+                                                       pixelEnd.x(), pixelEnd.y(), pixelEnd.color());
+        }
+        else {
+            paint = pixelStart.color();
+        }
+        
+        if (symetry > 1) {
+            // StrictMath, as Math may round differently from one platform to the next
+            double y1 = -pixelStart.y() + height/2;
+            double x1 = pixelStart.x() - width/2;
+            double distanceStart = StrictMath.sqrt(x1 * x1 + y1 * y1);
+            double thetaStart = StrictMath.atan2(y1, x1);
+            
+            double y2 = -pixelEnd.y() + height/2;
+            double x2 = pixelEnd.x() - width/2;
+            double distanceEnd = StrictMath.sqrt(x2 * x2 + y2 * y2);
+            double thetaEnd = StrictMath.atan2(y2,x2);
+            
+            double rotAmmount = 2 * StrictMath.PI / symetry;
+            
+            
+            for (int i = 0; i < symetry; i++) {
+                drawSegment(width/2 + (int)(StrictMath.cos(thetaStart) * distanceStart), height/2 - (int)(StrictMath.sin(thetaStart) * distanceStart), 
+                        width/2 + (int)(StrictMath.cos(thetaEnd) * distanceEnd), height/2 - (int)(StrictMath.sin(thetaEnd) * distanceEnd), paint, stroke);
+                drawSegment(width/2 - (int)(StrictMath.sin(thetaStart) * distanceStart), height/2 + (int)(StrictMath.cos(thetaStart) * distanceStart), 
+                        width/2 - (int)(StrictMath.sin(thetaEnd) * distanceEnd), height/2 + (int)(StrictMath.cos(thetaEnd) * distanceEnd), paint, stroke);
+                thetaStart += rotAmmount;
+                thetaEnd += rotAmmount;
+            }
+        }
+        else {
+            drawSegment(pixelStart.x(), pixelStart.y(), pixelEnd.x(), pixelEnd.y(), paint, stroke);
+        }
+    }
+    
+    /**
+     * Draws a line segment on every tile it paints, allocating them as needed
+     * @param paint null to draw with the rasterizer, set up with the colors
+     */
+    private void drawSegment(int x1, int y1, int x2, int y2, Paint paint, Stroke stroke) {
+        if (paint != null) {
+            paintSegment(x1, y1, x2, y2, paint, stroke);
+            return;
+        }
+        rasterizer.setLine(x1, y1, x2, y2, (BasicStroke) stroke);
+        int left = Math.max(0, rasterizer.minX());
+        int top = Math.max(0, rasterizer.minY());
+        int right = Math.min(width - 1, rasterizer.maxX());
+        int bottom = Math.min(height - 1, rasterizer.maxY());
+        if (left > right || top > bottom) {
+            return;
+        }
+        for (int row = top / TILE_SIZE; row <= bottom / TILE_SIZE; row++) {
+            for (int column = left / TILE_SIZE; column <= right / TILE_SIZE; column++) {
+                int x = column * TILE_SIZE;
+                int y = row * TILE_SIZE;
+                if (!rasterizer.covers(x, y, Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y))) {
+                    continue;
+                }
+                boolean allocated = stored(row * columns + column) != null;
+                rasterizer.paint(tile(column, row), x, y);
+                if (!allocated) {
+                    // painted with transparent colors
+                    releaseIfBlank(column, row);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Draws a line segment with Java2D, for the strokes the rasterizer doesn't draw. Tiles are picked by
+     * an outline a pixel wider than the stroke, so they include every pixel it paints.
+     */
+    private void paintSegment(int x1, int y1, int x2, int y2, Paint paint, Stroke stroke) {
+        Line2D line = new Line2D.Float(x1, y1, x2, y2);
+        Rectangle2D outline = stroke.createStrokedShape(line).getBounds2D();
+        outline.setRect(outline.getX() - 1, outline.getY() - 1, outline.getWidth() + 2, outline.getHeight() + 2);
+        Rectangle bounds = outline.getBounds().intersection(new Rectangle(0, 0, width, height));
+        if (bounds.isEmpty()) {
+            return;
+        }
+        for (int row = bounds.y / TILE_SIZE; row <= (bounds.y + bounds.height - 1) / TILE_SIZE; row++) {
+            for (int column = bounds.x / TILE_SIZE; column <= (bounds.x + bounds.width - 1) / TILE_SIZE; column++) {
+                if (!outline.intersects(column * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE)) {
+                    continue;
+                }
+                boolean allocated = stored(row * columns + column) != null;
+                final Graphics2D g = tile(column, row).createGraphics();
+                g.translate(-column * TILE_SIZE, -row * TILE_SIZE);
+                g.setPaint(paint);
+                g.setStroke(stroke);
+                g.drawLine(x1, y1, x2, y2);
+                g.dispose();
+                if (!allocated) {
+                    // the outline only grazed it
+                    releaseIfBlank(column, row);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Draws a fill command to the canvas
+     */
+    public synchronized void drawFill(LayerIdentifier identifier, Pixel pixel) {
+        if (!isValidPixel(pixel)) {
+            return;
+        }
+
+        HashSet<Pixel> pixels = new HashSet<Pixel>();
+        Queue<Pixel> queue = new LinkedList<Pixel>();
+        queue.add(pixel);
+        
+        Color initialColor = null;
+        try {
+            initialColor = getPixelColor(identifier, pixel);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        
+        while (!queue.isEmpty()) {
+            Pixel newPixel = queue.remove();
+            pixels.add(newPixel);
+            try {
+                Color newPixelColor = getPixelColor(identifier, newPixel);
+                if (newPixelColor.equals(initialColor)) { 
+                    drawPixel(identifier, newPixel);
+                    for (int i = -1; i <= 1; i++) {
+                        for (int j = -1; j <= 1; j++) {
+                            Pixel nextPixel = new Pixel(newPixel.x() + i,  newPixel.y() + j, pixel.color());
+                            if (!pixels.contains(nextPixel)) {
+                                pixels.add(nextPixel);
+                                queue.add(nextPixel);
+                            }
+                        }
+                    }
+                }
+            } catch (Exception e) {
+            }
+        }
+    }
+    
+    /**
+     * Returns pixelColor at pixel location
+     */
+    @Override
+	public synchronized Color getPixelColor(LayerIdentifier id, Pixel pixel) throws Exception {
+		if (!isValidPixel(pixel)) {
+			throw new Exception();
+		}
+		BufferedImage tile = stored((pixel.y() / TILE_SIZE) * columns + pixel.x() / TILE_SIZE);
+		if (tile == null) {
+			return new Color(0, true);
+		}
+		return new Color(tile.getRGB(pixel.x() % TILE_SIZE, pixel.y() % TILE_SIZE), true);
+	}
+    
+    /**
+     * Paints graphics onto image
+     */
+    public synchronized void paintOnGraphics(Graphics g) {
+    	Graphics2D g2d = (Graphics2D) g;
+    	if (isVisible()) {
+    		AlphaComposite ac = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float)opacity());
+    		g2d.setComposite(ac);
+            for (int index = 0; index < tiles.length; index++) {
+                if (stored(index) != null) {
+                    g.drawImage(tiles[index], (index % columns) * TILE_SIZE, (index / columns) * TILE_SIZE, null);
+                }
+            }
+    	}
+    }
+    
+    /**
+     * Paints a scaled down copy of the layer, as shown next to it in the list of layers
+     * @param thumbnailWidth
+     * @param thumbnailHeight
+     * @return the thumbnail
+     */
+    public synchronized BufferedImage thumbnail(int thumbnailWidth, int thumbnailHeight) {
+        BufferedImage thumbnail = new BufferedImage(thumbnailWidth, thumbnailHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = thumbnail.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.scale((double) thumbnailWidth / width, (double) thumbnailHeight / height);
+        for (int index = 0; index < tiles.length; index++) {
+            if (stored(index) != null) {
+                g.drawImage(tiles[index], (index % columns) * TILE_SIZE, (index / columns) * TILE_SIZE, null);
+            }
+        }
+        g.dispose();
+        return thumbnail;
+    }
+	
+    /**
+     * Returns if layer is visible
+     * @return boolean
+     */
+    public synchronized boolean isVisible() {
+    	return layerProperties.getVisibility();
+    }
+    
+    /**
+     * Returns opacity of layer
+     * @return
+     */
+    public synchronized double opacity() {
+    	return layerProperties.getOpacity();
+    }
+    
+    /**
+     * Serializes and sends the Layer to the server, its pixels as one int[] for older peers. Boards
+     * sent in the binary wire format go through the SnapshotCodec instead.
+     * @param s
+     * @throws IOException
+     */
+	private synchronized void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        
+        s.writeInt(width);
+        s.writeInt(height);
+        s.writeObject(pixels());
+    }
+	
+	/**
+	 * Reads the serialized Pixel data into the tiles that aren't blank
+	 * @param s
+	 * @throws ClassNotFoundException
+	 * @throws IOException
+	 */
+    private void readObject(ObjectInputStream s) throws ClassNotFoundException, IOException {
+        s.defaultReadObject();
+
+        int w = s.readInt();
+        int h = s.readInt();
+        int[] pixels = (int[])(s.readObject());
+
+        if (w != width || h != height) {
+            throw new IOException("Layer of " + width + "x" + height + " sent as " + w + "x" + h);
+        }
+        allocateTiles();
+        if (pixels != null) {
+            if (pixels.length != w * h) {
+                throw new IOException("Layer of " + w + "x" + h + " with " + pixels.length + " pixels");
+            }
+            for (int index = 0; index < tiles.length; index++) {
+                int column = index % columns;
+                int row = index / columns;
+                int x = column * TILE_SIZE;
+                int y = row * TILE_SIZE;
+                int tileWidth = Math.min(TILE_SIZE, w - x);
+                int tileHeight = Math.min(TILE_SIZE, h - y);
+                for (int line = 0; line < tileHeight; line++) {
+                    for (int i = 0; i < tileWidth; i++) {
+                        if (pixels[(y + line) * w + x + i] != 0) {
+                            tile(column, row).setRGB(0, 0, tileWidth, tileHeight, pixels, y * w + x, w);
+                            line = tileHeight;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
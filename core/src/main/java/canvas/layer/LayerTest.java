@@ -0,0 +1,216 @@
+package canvas.layer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import name.LayerIdentifier;
+
+import org.junit.Test;
+
+import canvas.Pixel;
+
+
+public class LayerTest {
+    private static final LayerIdentifier LAYER = new LayerIdentifier(0, "Layer");
+
+    @Test
+    public void testBlankLayer() throws Exception {
+        // test a new layer, however large, has no tiles and reads transparent
+        Layer layer = new Layer(4000, 3000, LAYER, 0);
+        assertEquals(0, layer.tileCount());
+        assertEquals(0, layer.getPixelColor(LAYER, new Pixel(3999, 2999, Color.BLACK)).getAlpha());
+    }
+
+    @Test
+    public void testStrokeAllocatesNearbyTiles() throws Exception {
+        // test a short stroke only takes the tiles around it
+        Layer layer = new Layer(4000, 3000, LAYER, 0);
+        layer.drawLine(LAYER, new Pixel(100, 100, Color.RED), new Pixel(120, 100, Color.RED), new BasicStroke(5), 1);
+        assertEquals(1, layer.tileCount());
+        layer.drawLine(LAYER, new Pixel(60, 200, Color.RED), new Pixel(70, 200, Color.RED), new BasicStroke(5), 1);
+        assertEquals(3, layer.tileCount());
+        assertEquals(Color.RED.getRGB(), layer.getPixelColor(LAYER, new Pixel(110, 100, Color.BLACK)).getRGB());
+    }
+
+    @Test
+    public void testSameAsWholeImage() {
+        // test strokes across tile edges and corners come out pixel for pixel as drawn on one image, and
+        // dashed strokes as Java2D draws them
+        Random random = new Random(3);
+        int width = 300;
+        int height = 170;
+        Layer layer = new Layer(width, height, LAYER, 0);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        Rasterizer rasterizer = new Rasterizer();
+        for (int i = 0; i < 200; i++) {
+            Pixel start = new Pixel(random.nextInt(width), random.nextInt(height), new Color(random.nextInt(), true));
+            Pixel end = new Pixel(random.nextInt(width), random.nextInt(height),
+                    i % 4 == 0 ? new Color(random.nextInt(), true) : start.color());
+            BasicStroke stroke = i % 10 == 0
+                    ? new BasicStroke(1 + random.nextInt(30), random.nextInt(3), random.nextInt(3), 10, new float[] { 8, 5 }, 0)
+                    : new BasicStroke(1 + random.nextInt(30), random.nextInt(3), random.nextInt(3));
+            layer.drawLine(LAYER, start, end, stroke, 1);
+            if (!Rasterizer.supports(stroke)) {
+                if (start.color() != end.color()) {
+                    g.setPaint(new GradientPaint(start.x(), start.y(), start.color(), end.x(), end.y(), end.color()));
+                }
+                else {
+                    g.setColor(start.color());
+                }
+                g.setStroke(stroke);
+                g.drawLine(start.x(), start.y(), end.x(), end.y());
+                continue;
+            }
+            rasterizer.setLine(start.x(), start.y(), end.x(), end.y(), stroke);
+            if (start.color() != end.color()) {
+                rasterizer.setGradient(start.x(), start.y(), start.color().getRGB(), end.x(), end.y(), end.color().getRGB());
+            }
+            else {
+                rasterizer.setColor(start.color().getRGB());
+            }
+            rasterizer.paint(image, 0, 0);
+        }
+        assertArrayEquals(image.getRGB(0, 0, width, height, null, 0, width), layer.pixels());
+    }
+
+    @Test
+    public void testTransparentPixelReleasesTile() {
+        // test a tile is given back once all its pixels are transparent again
+        Layer layer = new Layer(200, 200, LAYER, 0);
+        layer.drawPixel(LAYER, new Pixel(70, 70, Color.BLUE));
+        assertEquals(1, layer.tileCount());
+        layer.drawPixel(LAYER, new Pixel(70, 70, new Color(0, true)));
+        assertEquals(0, layer.tileCount());
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        // test a serialized layer comes back with the same pixels and only its painted tiles
+        Layer layer = new Layer(500, 300, LAYER, 0);
+        layer.drawLine(LAYER, new Pixel(10, 10, Color.GREEN), new Pixel(490, 20, Color.GREEN), new BasicStroke(3), 4);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(layer);
+        out.close();
+        Layer read = (Layer) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertArrayEquals(layer.pixels(), read.pixels());
+        assertEquals(layer.tileCount(), read.tileCount());
+        assertTrue(read.tileCount() < 8 * 5);
+    }
+
+    @Test
+    public void testSnapshot() {
+        // test drawing on a layer leaves its snapshots alone, and the other way round
+        Layer layer = new Layer(300, 200, LAYER, 0);
+        layer.drawLine(LAYER, new Pixel(10, 10, Color.RED), new Pixel(290, 190, Color.RED), new BasicStroke(9), 1);
+        int[] before = layer.pixels();
+        Layer snapshot = layer.snapshot();
+
+        layer.drawLine(LAYER, new Pixel(10, 190, Color.BLUE), new Pixel(290, 10, Color.BLUE), new BasicStroke(9), 1);
+        layer.drawPixel(LAYER, new Pixel(150, 100, new Color(0, true)));
+        int[] after = layer.pixels();
+        assertArrayEquals(before, snapshot.pixels());
+        assertFalse(Arrays.equals(before, after));
+
+        Layer second = layer.snapshot();
+        snapshot.fillWithColor(Color.GREEN);
+        second.drawLine(LAYER, new Pixel(0, 100, Color.BLACK), new Pixel(299, 100, Color.BLACK), new BasicStroke(5), 1);
+        assertArrayEquals(after, layer.pixels());
+        assertEquals(layer.layerProperties().layerIdentifier(), second.layerProperties().layerIdentifier());
+        assertEquals(layer.level(), second.level());
+    }
+
+    @Test
+    public void testPageOut() throws Exception {
+        // test a paged out layer reads each tile back once, when first needed, and its snapshots read
+        // them into themselves
+        Layer layer = new Layer(300, 200, LAYER, 0);
+        layer.drawLine(LAYER, new Pixel(10, 10, Color.RED), new Pixel(290, 190, Color.RED), new BasicStroke(9), 1);
+        final Layer copy = layer.snapshot();
+        int[] before = copy.pixels();
+        final int columns = (300 + Layer.TILE_SIZE - 1) / Layer.TILE_SIZE;
+        int[] stored = new int[copy.tileCount()];
+        int count = 0;
+        for (int index = 0; index < columns * 4; index++) {
+            if (copy.readTile(index % columns, index / columns, new int[Layer.TILE_SIZE * Layer.TILE_SIZE])) {
+                stored[count++] = index;
+            }
+        }
+        final int[] reads = new int[1];
+        layer.pageOut(new TileSource() {
+            public boolean readTile(int index, int[] pixels) {
+                reads[0]++;
+                return copy.readTile(index % columns, index / columns, pixels);
+            }
+        }, stored);
+        assertEquals(0, layer.tileCount());
+        assertEquals(stored.length, layer.pagedCount());
+
+        Layer snapshot = layer.snapshot();
+        assertArrayEquals(before, snapshot.pixels());
+        assertEquals(stored.length, reads[0]);
+        assertEquals(0, layer.tileCount());
+
+        assertEquals(Color.RED.getRGB(), layer.getPixelColor(LAYER, new Pixel(150, 100, Color.BLACK)).getRGB());
+        assertEquals(1, layer.tileCount());
+        layer.drawPixel(LAYER, new Pixel(150, 100, Color.BLUE));
+        assertEquals(stored.length + 1, reads[0]);
+        assertArrayEquals(before, snapshot.pixels());
+        int[] after = layer.pixels();
+        assertEquals(Color.BLUE.getRGB(), after[100 * 300 + 150]);
+        after[100 * 300 + 150] = Color.RED.getRGB();
+        assertArrayEquals(before, after);
+        assertEquals(0, layer.pagedCount());
+        assertEquals(stored.length * 2, reads[0]);
+    }
+
+    @Test
+    public void testDirectMemory() throws Exception {
+        // test tiles kept outside the heap draw, fill, snapshot and read back as heap tiles do
+        Random random = new Random(5);
+        Layer heap = new Layer(300, 170, LAYER, 0);
+        Layer direct;
+        TileMemory.setCurrent(TileMemory.DIRECT);
+        try {
+            direct = new Layer(300, 170, LAYER, 0);
+            for (int i = 0; i < 100; i++) {
+                Pixel start = new Pixel(random.nextInt(300), random.nextInt(170), new Color(random.nextInt(), true));
+                Pixel end = new Pixel(random.nextInt(300), random.nextInt(170),
+                        i % 4 == 0 ? new Color(random.nextInt(), true) : start.color());
+                BasicStroke stroke = new BasicStroke(1 + random.nextInt(30), random.nextInt(3), random.nextInt(3));
+                TileMemory.setCurrent(TileMemory.HEAP);
+                heap.drawLine(LAYER, start, end, stroke, 1 + i % 3);
+                TileMemory.setCurrent(TileMemory.DIRECT);
+                direct.drawLine(LAYER, start, end, stroke, 1 + i % 3);
+            }
+            Layer snapshot = direct.snapshot();
+            direct.drawFill(LAYER, new Pixel(5, 5, Color.MAGENTA));
+            direct.drawPixel(LAYER, new Pixel(299, 169, Color.CYAN));
+            TileMemory.setCurrent(TileMemory.HEAP);
+            assertArrayEquals(heap.pixels(), snapshot.pixels());
+            heap.drawFill(LAYER, new Pixel(5, 5, Color.MAGENTA));
+            heap.drawPixel(LAYER, new Pixel(299, 169, Color.CYAN));
+        } finally {
+            TileMemory.setCurrent(TileMemory.HEAP);
+        }
+        assertArrayEquals(heap.pixels(), direct.pixels());
+        assertEquals(heap.tileCount(), direct.tileCount());
+        assertEquals(Color.CYAN, direct.getPixelColor(LAYER, new Pixel(299, 169, Color.BLACK)));
+    }
+}
@@ -0,0 +1,421 @@
+package canvas.layer;
+
+import java.awt.BasicStroke;
+import java.awt.Stroke;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+/**
+ * Draws the line segments of draw commands on ARGB images, in place of Java2D.
+ *
+ * Java2D is free to fill the edge of a stroke, blend colors and step through a gradient differently from
+ * one release, platform or rendering pipeline to the next, so the boards of a server and its clients could
+ * drift apart a pixel at a time. The rasterizer only uses integer arithmetic and strict, correctly rounded
+ * floating point, so a segment comes out bit for bit the same on every node. It is close to what Java2D
+ * draws without antialiasing: the same pixels but for some along the edge of a stroke, the same colors
+ * within a unit of each channel, three for translucent gradients.
+ *
+ * A pixel is painted when its center lies within the stroke, a segment of BasicStroke width with butt,
+ * round or square caps around a line between pixel coordinates, shifted by a quarter of a pixel as Java2D
+ * normalizes strokes. Strokes one pixel wide or thinner are stepped along one pixel per column or row as
+ * Java2D draws them. The stroke is painted over what is there with the alpha of its colors.
+ *
+ * A rasterizer is set up for one segment at a time and draws it tile by tile, without allocating. It is
+ * not thread safe.
+ *
+ */
+public final strictfp class Rasterizer {
+    // the segment, coordinates relative to its start in quarter pixels from here on
+    private int x1;
+    private int y1;
+    private int x2;
+    private int y2;
+    private boolean thin;
+    private int cap;
+    private long dx;
+    private long dy;
+    private long length2;
+    private double radius;
+    private double radius2;
+    private double reach;
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+
+    // the paint, a color or a gradient between two pixels
+    private int color;
+    private boolean gradient;
+    private int gradientX;
+    private int gradientY;
+    private long gradientDx;
+    private long gradientDy;
+    private long gradientLength2;
+    private final int[] ramp = new int[257];
+
+    // bounds of a row of the stroke, as found by span()
+    private double low;
+    private double high;
+    private int spanStart;
+    private int spanEnd;
+
+    /**
+     * @param stroke
+     * @return whether the rasterizer draws that stroke, a BasicStroke without dashes
+     */
+    public static boolean supports(Stroke stroke) {
+        return stroke instanceof BasicStroke && ((BasicStroke) stroke).getDashArray() == null;
+    }
+
+    /**
+     * Sets up the segment to draw. Joins play no part in a single segment.
+     * @param x1 start x value
+     * @param y1 start y value
+     * @param x2 end x value
+     * @param y2 end y value
+     * @param stroke a stroke the rasterizer supports
+     */
+    public void setLine(int x1, int y1, int x2, int y2, BasicStroke stroke) {
+        float width = stroke.getLineWidth();
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.thin = width <= 1;
+        this.cap = stroke.getEndCap();
+        this.dx = 4L * (x2 - x1);
+        this.dy = 4L * (y2 - y1);
+        this.length2 = dx * dx + dy * dy;
+        this.radius = 2.0 * width;
+        this.radius2 = radius * radius;
+        this.reach = radius * Math.sqrt(length2);
+
+        // square caps reach out to their corners, at most 0.71 of the width from the ends
+        int extent = thin ? 0 : (int) Math.ceil(width * (cap == BasicStroke.CAP_SQUARE ? 0.75 : 0.5)) + 1;
+        minX = Math.min(x1, x2) - extent;
+        minY = Math.min(y1, y2) - extent;
+        maxX = Math.max(x1, x2) + extent;
+        maxY = Math.max(y1, y2) + extent;
+    }
+
+    /**
+     * Paints the segments from now on with a color
+     * @param argb
+     */
+    public void setColor(int argb) {
+        this.color = argb;
+        this.gradient = false;
+    }
+
+    /**
+     * Paints the segments from now on with a gradient between two pixels, the colors of the pixels
+     * before and after them, as an acyclic GradientPaint
+     * @param x1 start x value
+     * @param y1 start y value
+     * @param argb1 start color
+     * @param x2 end x value
+     * @param y2 end y value
+     * @param argb2 end color
+     */
+    public void setGradient(int x1, int y1, int argb1, int x2, int y2, int argb2) {
+        this.gradient = true;
+        this.gradientX = x1;
+        this.gradientY = y1;
+        this.gradientDx = x2 - x1;
+        this.gradientDy = y2 - y1;
+        this.gradientLength2 = gradientDx * gradientDx + gradientDy * gradientDy;
+        for (int step = 0; step <= 256; step++) {
+            int argb = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                int from = (argb1 >>> shift) & 0xFF;
+                int to = (argb2 >>> shift) & 0xFF;
+                argb |= ((from * 256 + (to - from) * step) >> 8) << shift;
+            }
+            ramp[step] = argb;
+        }
+    }
+
+    /**
+     * @return smallest x value of the pixels the segment may paint
+     */
+    public int minX() {
+        return minX;
+    }
+
+    /**
+     * @return smallest y value of the pixels the segment may paint
+     */
+    public int minY() {
+        return minY;
+    }
+
+    /**
+     * @return largest x value of the pixels the segment may paint
+     */
+    public int maxX() {
+        return maxX;
+    }
+
+    /**
+     * @return largest y value of the pixels the segment may paint
+     */
+    public int maxY() {
+        return maxY;
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @return whether the segment paints any pixel of that rectangle
+     */
+    public boolean covers(int x, int y, int width, int height) {
+        return draw(null, 0, x, y, width, height) > 0;
+    }
+
+    /**
+     * Paints the segment on an image
+     * @param image a TYPE_INT_ARGB image, or one with the same layout of pixels
+     * @param x where the image's left edge is
+     * @param y where the image's top edge is
+     * @return how many pixels of the image were painted
+     */
+    public int paint(BufferedImage image, int x, int y) {
+        return draw(image.getRaster().getDataBuffer(), image.getWidth(), x, y, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Paints the segment on a rectangle of pixels, or counts them
+     * @param buffer the rectangle's pixels, row by row, null only to find whether any would be painted
+     * @return how many pixels were painted, 1 for any if buffer is null
+     */
+    private int draw(DataBuffer buffer, int stride, int x, int y, int width, int height) {
+        int top = Math.max(minY, y);
+        int bottom = Math.min(maxY, y + height - 1);
+        int left = Math.max(minX, x);
+        int right = Math.min(maxX, x + width - 1);
+        if (top > bottom || left > right) {
+            return 0;
+        }
+        if (thin) {
+            return drawThin(buffer, stride, x, y, left, top, right, bottom);
+        }
+        int painted = 0;
+        for (int row = top; row <= bottom; row++) {
+            if (!span(row, left, right)) {
+                continue;
+            }
+            if (buffer == null) {
+                return 1;
+            }
+            int offset = (row - y) * stride - x;
+            for (int column = spanStart; column <= spanEnd; column++) {
+                plot(buffer, offset + column, column, row);
+            }
+            painted += spanEnd - spanStart + 1;
+        }
+        return painted;
+    }
+
+    /**
+     * Steps along a thin segment one pixel per column or per row, whichever it crosses more of
+     */
+    private int drawThin(DataBuffer buffer, int stride, int x, int y, int left, int top, int right, int bottom) {
+        int width = x2 - x1;
+        int height = y2 - y1;
+        boolean alongX = Math.abs(width) >= Math.abs(height);
+        int major = alongX ? width : height;
+        int minor = alongX ? height : width;
+        int from = alongX ? Math.max(left, Math.min(x1, x2)) : Math.max(top, Math.min(y1, y2));
+        int to = alongX ? Math.min(right, Math.max(x1, x2)) : Math.min(bottom, Math.max(y1, y2));
+        int painted = 0;
+        for (int step = from; step <= to; step++) {
+            int other;
+            if (major == 0) {
+                other = alongX ? y1 : x1;
+            }
+            else {
+                long k = Math.abs(step - (alongX ? x1 : y1));
+                long offset = (2 * k * Math.abs(minor) + Math.abs(major)) / (2L * Math.abs(major));
+                other = (alongX ? y1 : x1) + (int) (minor < 0 ? -offset : offset);
+            }
+            int column = alongX ? step : other;
+            int row = alongX ? other : step;
+            if (column < left || column > right || row < top || row > bottom) {
+                continue;
+            }
+            if (buffer == null) {
+                return 1;
+            }
+            plot(buffer, (row - y) * stride + column - x, column, row);
+            painted++;
+        }
+        return painted;
+    }
+
+    /**
+     * Finds the pixels of a row within the stroke, between spanStart and spanEnd. A stroke is convex, so
+     * they are the ones between the first and the last found within it, searched for from a slightly
+     * larger span worked out in floating point.
+     * @return false if there are none between left and right
+     */
+    private boolean span(int row, int left, int right) {
+        long py = 4L * (row - y1) + 1;
+        double grow = radius + 4;
+        low = Double.NEGATIVE_INFINITY;
+        high = Double.POSITIVE_INFINITY;
+        if (length2 == 0) {
+            if (cap == BasicStroke.CAP_BUTT || Math.abs(py) > grow) {
+                return false;
+            }
+            low = -grow;
+            high = grow;
+        }
+        else {
+            double length = Math.sqrt(length2);
+            double side = grow * length;
+            double before = cap == BasicStroke.CAP_SQUARE ? -side : -4 * length;
+            double after = length2 + (cap == BasicStroke.CAP_SQUARE ? side : 4 * length);
+            // across the segment, then along it
+            clip(dy, py * dx - side, py * dx + side);
+            clip(dx, before - py * dy, after - py * dy);
+            if (low > high) {
+                low = Double.POSITIVE_INFINITY;
+                high = Double.NEGATIVE_INFINITY;
+            }
+            if (cap == BasicStroke.CAP_ROUND) {
+                addCircle(0, 0, py, grow);
+                addCircle(dx, dy, py, grow);
+            }
+            if (low > high) {
+                return false;
+            }
+        }
+        // back from quarter pixels to pixels
+        int start = (int) Math.max(left, Math.min(right + 1, x1 + Math.floor((low - 1) / 4)));
+        int end = (int) Math.min(right, Math.max(left - 1, x1 + Math.ceil((high - 1) / 4)));
+        while (start <= end && !inside(4L * (start - x1) + 1, py)) {
+            start++;
+        }
+        while (end >= start && !inside(4L * (end - x1) + 1, py)) {
+            end--;
+        }
+        spanStart = start;
+        spanEnd = end;
+        return start <= end;
+    }
+
+    /**
+     * Narrows the span to where from <= px * factor <= to
+     */
+    private void clip(long factor, double from, double to) {
+        if (factor == 0) {
+            if (from > 0 || to < 0) {
+                low = Double.POSITIVE_INFINITY;
+                high = Double.NEGATIVE_INFINITY;
+            }
+            return;
+        }
+        double a = from / factor;
+        double b = to / factor;
+        low = Math.max(low, Math.min(a, b));
+        high = Math.min(high, Math.max(a, b));
+    }
+
+    /**
+     * Widens the span to take in where the row crosses a circle
+     */
+    private void addCircle(long cx, long cy, long py, double circleRadius) {
+        double d = py - cy;
+        if (Math.abs(d) > circleRadius) {
+            return;
+        }
+        double half = Math.sqrt(circleRadius * circleRadius - d * d);
+        low = Math.min(low, cx - half);
+        high = Math.max(high, cx + half);
+    }
+
+    /**
+     * @param px quarter pixels right of the start of the segment
+     * @param py quarter pixels below the start of the segment
+     * @return whether that point is within the stroke
+     */
+    private boolean inside(long px, long py) {
+        if (length2 == 0) {
+            if (cap == BasicStroke.CAP_ROUND) {
+                return px * px + py * py <= radius2;
+            }
+            return cap == BasicStroke.CAP_SQUARE && Math.abs(px) <= radius && Math.abs(py) <= radius;
+        }
+        long dot = px * dx + py * dy;
+        if (cap == BasicStroke.CAP_ROUND) {
+            if (dot <= 0) {
+                return px * px + py * py <= radius2;
+            }
+            if (dot >= length2) {
+                long ex = px - dx;
+                long ey = py - dy;
+                return ex * ex + ey * ey <= radius2;
+            }
+        }
+        else if (cap == BasicStroke.CAP_SQUARE) {
+            if (dot < -reach || dot > length2 + reach) {
+                return false;
+            }
+        }
+        else if (dot < 0 || dot > length2) {
+            return false;
+        }
+        double cross = px * dy - py * dx;
+        return cross * cross <= radius2 * length2;
+    }
+
+    /**
+     * Paints a pixel with the paint over what is there
+     */
+    private void plot(DataBuffer buffer, int index, int column, int row) {
+        int argb = color;
+        if (gradient) {
+            int step = 0;
+            if (gradientLength2 != 0) {
+                // sampled at the corner of the pixel, as GradientPaint is
+                long dot = (long) (column - gradientX) * gradientDx + (long) (row - gradientY) * gradientDy;
+                step = (int) Math.max(0, Math.min(256, Math.floorDiv(dot * 256, gradientLength2)));
+            }
+            argb = ramp[step];
+        }
+        int alpha = argb >>> 24;
+        if (alpha == 0xFF) {
+            buffer.setElem(index, argb);
+        }
+        else if (alpha != 0) {
+            buffer.setElem(index, over(argb, buffer.getElem(index)));
+        }
+    }
+
+    /**
+     * @return src over dst, both ARGB and not premultiplied, rounded as Java2D's blending loops do
+     */
+    static int over(int src, int dst) {
+        int srcAlpha = src >>> 24;
+        int dstAlpha = multiply(0xFF - srcAlpha, dst >>> 24);
+        int alpha = srcAlpha + dstAlpha;
+        int argb = alpha << 24;
+        for (int shift = 0; shift < 24; shift += 8) {
+            int channel = multiply(srcAlpha, (src >> shift) & 0xFF) + multiply(dstAlpha, (dst >> shift) & 0xFF);
+            if (alpha < 0xFF) {
+                channel = Math.min(0xFF, (channel * 0xFF + alpha / 2) / alpha);
+            }
+            argb |= channel << shift;
+        }
+        return argb;
+    }
+
+    /**
+     * @return a * b / 255, rounded
+     */
+    private static int multiply(int a, int b) {
+        int product = a * b + 128;
+        return (product + (product >> 8)) >> 8;
+    }
+}
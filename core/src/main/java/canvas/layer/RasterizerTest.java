@@ -0,0 +1,157 @@
+package canvas.layer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import name.LayerIdentifier;
+
+import org.junit.Test;
+
+import canvas.Pixel;
+
+
+public class RasterizerTest {
+    private static final LayerIdentifier LAYER = new LayerIdentifier(0, "Layer");
+    private static final int BACKGROUND = 0x904080C0;
+
+    @Test
+    public void testCloseToJava2D() {
+        // test strokes of every cap, color and gradient paint the pixels Java2D paints but for some along
+        // their edges, in the same colors but for rounding
+        Random random = new Random(5);
+        int size = 120;
+        Rasterizer rasterizer = new Rasterizer();
+        int same = 0;
+        int different = 0;
+        for (int i = 0; i < 300; i++) {
+            int x1 = 15 + random.nextInt(size - 30);
+            int y1 = 15 + random.nextInt(size - 30);
+            int x2 = i % 5 == 0 ? x1 : 15 + random.nextInt(size - 30);
+            int y2 = i % 5 == 0 ? y1 : 15 + random.nextInt(size - 30);
+            int start = random.nextInt() | (i % 7 == 0 ? 0x80000000 : 0xFF000000);
+            int end = i % 3 == 0 && i % 5 != 0 ? random.nextInt() | 0xFF000000 : start;
+            BasicStroke stroke = new BasicStroke(1 + random.nextInt(24), random.nextInt(3), random.nextInt(3));
+
+            BufferedImage expected = background(size);
+            Graphics2D g = expected.createGraphics();
+            if (start != end) {
+                g.setPaint(new GradientPaint(x1, y1, new Color(start, true), x2, y2, new Color(end, true)));
+            }
+            else {
+                g.setColor(new Color(start, true));
+            }
+            g.setStroke(stroke);
+            g.drawLine(x1, y1, x2, y2);
+            g.dispose();
+
+            BufferedImage actual = background(size);
+            rasterizer.setLine(x1, y1, x2, y2, stroke);
+            if (start != end) {
+                rasterizer.setGradient(x1, y1, start, x2, y2, end);
+            }
+            else {
+                rasterizer.setColor(start);
+            }
+            rasterizer.paint(actual, 0, 0);
+
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    int java2D = expected.getRGB(x, y);
+                    int pixel = actual.getRGB(x, y);
+                    if (java2D != BACKGROUND && pixel != BACKGROUND) {
+                        same++;
+                        // Java2D blends translucent gradients with a little less precision
+                        int tolerance = start != end ? 3 : 1;
+                        for (int shift = 0; shift < 32; shift += 8) {
+                            assertTrue(Math.abs(((java2D >>> shift) & 0xFF) - ((pixel >>> shift) & 0xFF)) <= tolerance);
+                        }
+                    }
+                    else if (java2D != pixel) {
+                        different++;
+                        assertTrue(near(java2D != BACKGROUND ? actual : expected, x, y));
+                    }
+                }
+            }
+        }
+        assertTrue(different < same / 100);
+    }
+
+    @Test
+    public void testSameOnEveryNode() {
+        // test a drawing comes out bit for bit as it always has, whatever platform and Java release draws it
+        Random random = new Random(7);
+        Layer layer = new Layer(500, 400, LAYER, 0);
+        for (int i = 0; i < 300; i++) {
+            Pixel start = new Pixel(random.nextInt(500), random.nextInt(400), new Color(random.nextInt(), true));
+            Pixel end = new Pixel(random.nextInt(500), random.nextInt(400),
+                    i % 3 == 0 ? new Color(random.nextInt(), true) : start.color());
+            BasicStroke stroke = new BasicStroke(1 + random.nextInt(20), random.nextInt(3), BasicStroke.JOIN_ROUND);
+            layer.drawLine(LAYER, start, end, stroke, i % 4 == 0 ? 1 + random.nextInt(6) : 1);
+        }
+        CRC32 crc = new CRC32();
+        for (int pixel : layer.pixels()) {
+            crc.update(pixel >>> 24);
+            crc.update(pixel >>> 16);
+            crc.update(pixel >>> 8);
+            crc.update(pixel);
+        }
+        assertEquals(2757675995L, crc.getValue());
+    }
+
+    @Test
+    public void testTransparentStroke() {
+        // test a fully transparent stroke leaves no tiles behind and draws nothing over others
+        Layer layer = new Layer(300, 200, LAYER, 0);
+        layer.drawLine(LAYER, new Pixel(10, 10, new Color(0, true)), new Pixel(290, 190, new Color(0, true)),
+                new BasicStroke(9), 1);
+        assertEquals(0, layer.tileCount());
+        layer.drawLine(LAYER, new Pixel(10, 100, Color.RED), new Pixel(290, 100, Color.RED), new BasicStroke(9), 1);
+        int[] before = layer.pixels();
+        layer.drawLine(LAYER, new Pixel(150, 10, new Color(0x00FFFFFF, true)), new Pixel(150, 190, new Color(0x00FFFFFF, true)),
+                new BasicStroke(9), 1);
+        assertEquals(before[100 * 300 + 150], layer.pixels()[100 * 300 + 150]);
+        assertFalse(layer.tileCount() == 0);
+    }
+
+    @Test
+    public void testOver() {
+        // test blending by alpha, over opaque, transparent and translucent pixels
+        assertEquals(0xFF000000, Rasterizer.over(0xFF000000, 0xFFFFFFFF));
+        assertEquals(0x80FF0000, Rasterizer.over(0x80FF0000, 0));
+        assertEquals(0xFF808080, Rasterizer.over(0x80FFFFFF, 0xFF000000));
+        assertEquals(0xC0FF0000, Rasterizer.over(0x80FF0000, 0x80FF0000));
+    }
+
+    private static BufferedImage background(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, BACKGROUND);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * @return whether a pixel next to that one, or two away, is painted on the image
+     */
+    private static boolean near(BufferedImage image, int x, int y) {
+        for (int i = -2; i <= 2; i++) {
+            for (int j = -2; j <= 2; j++) {
+                if (image.getRGB(x + i, y + j) != BACKGROUND) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
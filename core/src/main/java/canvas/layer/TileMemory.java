@@ -0,0 +1,93 @@
+package canvas.layer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+/**
+ * Where the pixels of the tiles of every Layer are kept.
+ *
+ * HEAP tiles are plain TYPE_INT_ARGB images, which Java2D draws on fastest, but a large board drawn all
+ * over holds hundreds of megabytes of them that the garbage collector copies and pauses for. DIRECT tiles
+ * keep their pixels in direct buffers outside the heap, leaving only a few small objects per tile to it,
+ * at the cost of slower access to each pixel. Either way the tiles hold the
+ * same ARGB pixels and draw the same.
+ *
+ */
+public enum TileMemory {
+    HEAP {
+        public BufferedImage allocate(int width, int height) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+    },
+    DIRECT {
+        public BufferedImage allocate(int width, int height) {
+            int[] masks = { 0x00FF0000, 0x0000FF00, 0x000000FF, 0xFF000000 };
+            WritableRaster raster = Raster.createWritableRaster(
+                    new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, masks),
+                    new DirectIntBuffer(width * height), null);
+            return new BufferedImage(ColorModel.getRGBdefault(), raster, false, null);
+        }
+    };
+
+    private static volatile TileMemory current = HEAP;
+
+    /**
+     * @param width
+     * @param height
+     * @return a new fully transparent ARGB tile
+     */
+    public abstract BufferedImage allocate(int width, int height);
+
+    /**
+     * @return where the tiles allocated from now on are kept
+     */
+    public static TileMemory current() {
+        return current;
+    }
+
+    /**
+     * Keeps the tiles allocated from now on in the given memory, those already allocated stay where
+     * they are
+     * @param memory
+     */
+    public static void setCurrent(TileMemory memory) {
+        current = memory;
+    }
+
+    /**
+     * @param name case insensitive
+     * @return the memory of that name
+     * @throws IllegalArgumentException if there is none
+     */
+    public static TileMemory forName(String name) {
+        return valueOf(name.toUpperCase());
+    }
+
+    /**
+     * Pixels of one tile, in a direct buffer freed with the tile
+     */
+    private static final class DirectIntBuffer extends DataBuffer {
+        private final IntBuffer pixels;
+
+        DirectIntBuffer(int size) {
+            super(TYPE_INT, size);
+            this.pixels = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            return pixels.get(i);
+        }
+
+        @Override
+        public void setElem(int bank, int i, int value) {
+            pixels.put(i, value);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package canvas.layer;
+
+import java.io.IOException;
+/**
+ * Where the tiles of a paged out Layer are read back from, one at a time, as they are needed
+ *
+ */
+public interface TileSource {
+    /**
+     * Reads one tile
+     * @param index of the tile, row by row
+     * @param pixels to hold the tile's ARGB pixels, row by row
+     * @return false, leaving pixels alone, if the tile is blank
+     * @throws IOException if the tile can't be read
+     */
+    boolean readTile(int index, int[] pixels) throws IOException;
+}
@@ -0,0 +1,48 @@
+package connection;
+
+import packet.Packet;
+import packet.PacketFrame;
+import packet.WireFormat;
+
+/**
+ * The transport under a SocketHandler. Implementations decide how packets get on and off the wire,
+ * either from a blocking thread per connection or from a shared selector loop.
+ *
+ */
+public interface Connection {
+    // Port servers listen on and clients connect to unless told otherwise.
+    public static final int DEFAULT_PORT = 4444;
+
+    /**
+     * Sends a packet to the peer. Must be safe to call from any thread.
+     * @param packet
+     */
+    public void sendPacket(Packet packet);
+
+    /**
+     * Sends a frame that may be shared with other connections. Must be safe to call from any thread.
+     * @param frame
+     */
+    public void sendFrame(PacketFrame frame);
+
+    /**
+     * @return whether the peer speaks the framed protocol, and so knows every current packet, rather
+     *         than the legacy stream protocol of older clients
+     */
+    public boolean isFramed();
+
+    /**
+     * @return how packets are encoded on the wire, frames sent on the connection are encoded this way
+     */
+    public WireFormat wireFormat();
+
+    /**
+     * @return queue of packets waiting to be written, or null if packets are written as they are sent
+     */
+    public OutboundQueue outboundQueue();
+
+    /**
+     * Closes the connection, safe to call more than once
+     */
+    public void close();
+}
@@ -0,0 +1,78 @@
+package connection;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates the threads that read connections. Virtual threads are looked up reflectively so the
+ * sources keep building for Java 8; they're only available when running on JDK 21 or newer.
+ *
+ */
+public final class ConnectionThreads {
+    private static final Object VIRTUAL_BUILDER;
+    private static final Method UNSTARTED;
+    private static final Method IS_VIRTUAL;
+
+    static {
+        Object builder = null;
+        Method unstarted = null;
+        Method isVirtual = null;
+        try {
+            builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+            isVirtual = Thread.class.getMethod("isVirtual");
+        } catch (Exception e) {
+            // Older JDK, platform threads only.
+            builder = null;
+            unstarted = null;
+            isVirtual = null;
+        }
+        VIRTUAL_BUILDER = builder;
+        UNSTARTED = unstarted;
+        IS_VIRTUAL = isVirtual;
+    }
+
+    private ConnectionThreads() { }
+
+    /**
+     * @return whether the running JDK supports virtual threads
+     */
+    public static boolean virtualThreadsSupported() {
+        return VIRTUAL_BUILDER != null;
+    }
+
+    /**
+     * @param thread
+     * @return whether the thread is a virtual thread
+     */
+    public static boolean isVirtual(Thread thread) {
+        if (!virtualThreadsSupported()) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(thread);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates an unstarted thread running the task
+     * @param task
+     * @param virtual whether the thread should be a virtual thread
+     * @return Thread
+     * @throws UnsupportedOperationException if a virtual thread is asked for on a JDK without them
+     */
+    public static Thread newThread(Runnable task, boolean virtual) {
+        if (!virtual) {
+            return new Thread(task);
+        }
+        if (!virtualThreadsSupported()) {
+            throw new UnsupportedOperationException("Virtual threads need JDK 21 or newer");
+        }
+        try {
+            return (Thread) UNSTARTED.invoke(VIRTUAL_BUILDER, task);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not create a virtual thread", e);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package connection;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import packet.PacketFrame;
+
+/**
+ * Bounded queue of frames waiting to be written to one client, so a slow client only ever stalls
+ * its own writer. What happens when the queue is full is decided by its OverflowPolicy.
+ *
+ */
+public class OutboundQueue {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final ArrayDeque<PacketFrame> frames = new ArrayDeque<PacketFrame>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean closed;
+
+    // metrics, guarded by lock
+    private long enqueued;
+    private long coalesced;
+    private long dropped;
+    private long overflows;
+    private int highWater;
+
+    /**
+     * Constructor
+     * @param capacity most frames that can wait at once
+     * @param policy what to do once capacity is reached
+     */
+    public OutboundQueue(int capacity, OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity.");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * Adds a frame to the back of the queue, applying the overflow policy if it is full
+     * @param frame
+     * @return false if the queue overflowed and the client has to be disconnected
+     */
+    public boolean offer(PacketFrame frame) {
+        lock.lock();
+        try {
+            if (closed) {
+                return true;
+            }
+            if (frames.size() < capacity) {
+                add(frame);
+                return true;
+            }
+
+            boolean ephemeral = frame.packet().isEphemeral();
+            switch (policy) {
+            case COALESCE:
+                if (ephemeral && replaceQueued(frame)) {
+                    coalesced++;
+                    return true;
+                }
+                break;
+            case DROP_EPHEMERAL:
+                if (ephemeral) {
+                    dropped++;
+                    return true;
+                }
+                if (removeOldestEphemeral()) {
+                    dropped++;
+                    add(frame);
+                    return true;
+                }
+                break;
+            case DISCONNECT:
+                break;
+            }
+            overflows++;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(PacketFrame frame) {
+        frames.add(frame);
+        enqueued++;
+        highWater = Math.max(highWater, frames.size());
+        notEmpty.signal();
+    }
+
+    private boolean replaceQueued(PacketFrame frame) {
+        // Rebuild in order, with the newer frame in place of the one it supersedes.
+        boolean replaced = false;
+        int size = frames.size();
+        for (int i = 0; i < size; i++) {
+            PacketFrame queued = frames.poll();
+            if (!replaced && queued.packet().getClass() == frame.packet().getClass()) {
+                queued = frame;
+                replaced = true;
+            }
+            frames.add(queued);
+        }
+        return replaced;
+    }
+
+    private boolean removeOldestEphemeral() {
+        for (Iterator<PacketFrame> it = frames.iterator(); it.hasNext();) {
+            if (it.next().packet().isEphemeral()) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Blocks until a frame is available
+     * @return the next frame, or null once the queue is closed
+     * @throws InterruptedException
+     */
+    public PacketFrame take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (frames.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            return closed ? null : frames.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the next frame, or null if there is none
+     */
+    public PacketFrame poll() {
+        lock.lock();
+        try {
+            return closed ? null : frames.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of frames waiting
+     */
+    public int depth() {
+        lock.lock();
+        try {
+            return frames.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops everything queued and wakes the writer up so it can stop
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            frames.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a snapshot of the queue's metrics
+     */
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(frames.size(), highWater, enqueued, coalesced, dropped, overflows);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Immutable snapshot of an OutboundQueue's metrics
+     */
+    public static final class Stats {
+        public final int depth;
+        public final int highWater;
+        public final long enqueued;
+        public final long coalesced;
+        public final long dropped;
+        public final long overflows;
+
+        Stats(int depth, int highWater, long enqueued, long coalesced, long dropped, long overflows) {
+            this.depth = depth;
+            this.highWater = highWater;
+            this.enqueued = enqueued;
+            this.coalesced = coalesced;
+            this.dropped = dropped;
+            this.overflows = overflows;
+        }
+
+        @Override
+        public String toString() {
+            return "depth=" + depth + " highWater=" + highWater + " enqueued=" + enqueued
+                    + " coalesced=" + coalesced + " dropped=" + dropped + " overflows=" + overflows;
+        }
+    }
+}
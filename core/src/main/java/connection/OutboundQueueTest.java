@@ -0,0 +1,79 @@
+package connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import name.BoardIdentifier;
+
+import org.junit.Test;
+
+import packet.Packet;
+import packet.PacketBoardIdentifierList;
+import packet.PacketFrame;
+import packet.PacketMessage;
+
+public class OutboundQueueTest {
+    private static final BoardIdentifier[] OLD_BOARDS = new BoardIdentifier[] {};
+    private static final BoardIdentifier[] NEW_BOARDS = new BoardIdentifier[] { new BoardIdentifier(1, "board", null) };
+
+    @Test
+    public void testOrder() {
+        // test packets come out in the order they went in
+        OutboundQueue queue = new OutboundQueue(2, OverflowPolicy.DISCONNECT);
+        Packet first = new PacketMessage("first");
+        Packet second = new PacketMessage("second");
+        assertTrue(queue.offer(PacketFrame.of(first)));
+        assertTrue(queue.offer(PacketFrame.of(second)));
+        assertTrue(queue.poll().packet() == first);
+        assertTrue(queue.poll().packet() == second);
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testDisconnect() {
+        // test a full queue asks for the client to be disconnected
+        OutboundQueue queue = new OutboundQueue(1, OverflowPolicy.DISCONNECT);
+        assertTrue(queue.offer(PacketFrame.of(new PacketBoardIdentifierList(OLD_BOARDS))));
+        assertFalse(queue.offer(PacketFrame.of(new PacketBoardIdentifierList(NEW_BOARDS))));
+        assertEquals(1, queue.stats().overflows);
+    }
+
+    @Test
+    public void testCoalesce() {
+        // test a newer board list replaces the queued one
+        OutboundQueue queue = new OutboundQueue(2, OverflowPolicy.COALESCE);
+        assertTrue(queue.offer(PacketFrame.of(new PacketBoardIdentifierList(OLD_BOARDS))));
+        assertTrue(queue.offer(PacketFrame.of(new PacketMessage("message"))));
+        assertTrue(queue.offer(PacketFrame.of(new PacketBoardIdentifierList(NEW_BOARDS))));
+        assertEquals(2, queue.depth());
+        assertEquals(1, ((PacketBoardIdentifierList) queue.poll().packet()).boards().length);
+        assertEquals(1, queue.stats().coalesced);
+        
+        // but a full queue can't absorb a packet that isn't ephemeral
+        assertTrue(queue.offer(PacketFrame.of(new PacketMessage("message"))));
+        assertFalse(queue.offer(PacketFrame.of(new PacketMessage("message"))));
+    }
+
+    @Test
+    public void testDropEphemeral() {
+        // test a queued board list makes room for a message
+        OutboundQueue queue = new OutboundQueue(1, OverflowPolicy.DROP_EPHEMERAL);
+        assertTrue(queue.offer(PacketFrame.of(new PacketBoardIdentifierList(OLD_BOARDS))));
+        Packet message = new PacketMessage("message");
+        assertTrue(queue.offer(PacketFrame.of(message)));
+        assertTrue(queue.offer(PacketFrame.of(new PacketBoardIdentifierList(NEW_BOARDS))));
+        assertTrue(queue.poll().packet() == message);
+        assertEquals(2, queue.stats().dropped);
+    }
+
+    @Test
+    public void testClose() throws InterruptedException {
+        // test closing wakes the writer with nothing left to write
+        OutboundQueue queue = new OutboundQueue(1, OverflowPolicy.DISCONNECT);
+        queue.offer(PacketFrame.of(new PacketMessage("message")));
+        queue.close();
+        assertNull(queue.take());
+    }
+}
@@ -0,0 +1,25 @@
+package connection;
+/**
+ * Enum to represent what a client's outbound queue does when it is full, because the client
+ * can't keep up with what the server sends it
+ *
+ */
+public enum OverflowPolicy {
+	// replace the queued packet an ephemeral packet supersedes, disconnect if that doesn't make room
+	COALESCE,
+	
+	// drop ephemeral packets, queued or incoming, disconnect if that doesn't make room
+	DROP_EPHEMERAL,
+	
+	// disconnect at once, the client has to join again and gets a fresh copy of the board
+	DISCONNECT;
+	
+	/**
+	 * Returns the policy named on the command line, case insensitive
+	 * @param name
+	 * @return OverflowPolicy
+	 */
+	public static OverflowPolicy forName(String name) {
+		return valueOf(name.toUpperCase().replace('-', '_'));
+	}
+}
@@ -0,0 +1,123 @@
+package connection;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.SocketException;
+
+import name.Identifiable;
+import name.Identifier;
+import packet.Packet;
+import packet.PacketFrame;
+import packet.PacketHandler;
+/**
+ * Abstract class SocketHandler that handles all connections between server and client over sockets
+ *
+ */
+public abstract class SocketHandler
+	implements PacketHandler, Runnable, Identifiable, Serializable
+{
+	private static final long serialVersionUID = -2411978741777099054L;
+
+    // Only replaced by a client reconnecting, once the handler has stopped running on the old one.
+    protected transient volatile Connection connection;
+    protected Identifier identifier;
+
+    /**
+     * Constructor that handles packets arriving on the connection
+     * @param connection
+     */
+    protected SocketHandler(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Carries on over a new connection, for a client that lost its connection to the server. Only
+     * called once the handler has finished running on the old connection, and before it is run again.
+     * @param connection
+     */
+    protected void reconnect(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Runs the SocketHandler and closes the socket if we ever stop handling the connection or it breaks
+     */
+    @Override
+    public final void run() {
+        try {
+            handleConnection();
+        } catch (IOException e) {
+            e.printStackTrace(); // but don't terminate the serve()
+        } finally {
+            // close the socket at the end
+            connection.close();
+        }
+    }
+
+    /**
+     * Handles the connection between server and client by reading in the packets coming on a blocking
+     * connection. Non-blocking connections push packets to the handler themselves.
+     * @throws IOException
+     */
+    protected final void handleConnection() throws IOException {
+        if (!(connection instanceof StreamConnection)) {
+            throw new IllegalStateException("Only blocking connections are read by a handler thread");
+        }
+        StreamConnection stream = (StreamConnection) connection;
+        try {
+            for (Packet packet = stream.readPacket(); packet != null; packet = stream.readPacket()) {
+            	packet.process(this);
+            }
+        }
+        catch (EOFException e) {
+        }
+        catch (SocketException e) {
+        }
+        catch (Exception e) {
+        	e.printStackTrace();
+        }
+        finally {
+            connectionClosed();
+            connection.close();
+        }
+    }
+
+    /**
+     * Called once the connection has closed, by the handler's own thread for a blocking connection or
+     * by a non-blocking connection that pushes packets to the handler
+     */
+    public void connectionClosed() { }
+
+    /**
+     * Returns the connection the handler is on at the moment
+     * @return Connection
+     */
+    public Connection connection() {
+        return connection;
+    }
+
+    /**
+     * Sends packet across the connection
+     * @param packet
+     */
+    public void sendPacket(Packet packet) {
+        connection.sendPacket(packet);
+    }
+
+    /**
+     * Sends a frame that may be shared with other handlers, so it is only encoded once
+     * @param frame
+     */
+    public void sendFrame(PacketFrame frame) {
+        connection.sendFrame(frame);
+    }
+
+    /**
+     * Returns the identifier
+     */
+    @Override
+    public Identifier identifier() {
+        return identifier;
+    }
+}
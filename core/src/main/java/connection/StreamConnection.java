@@ -0,0 +1,270 @@
+package connection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+import canvas.command.DrawCommandLine;
+import canvas.command.DrawCommandPolyline;
+import packet.Packet;
+import packet.PacketDrawCommand;
+import packet.PacketFrame;
+import packet.WireFormat;
+
+/**
+ * Blocking Connection over a Socket, read by one thread per connection. Speaks either the legacy
+ * protocol, one ObjectOutputStream per direction for the whole connection, or the framed protocol of
+ * PacketFrame, in either WireFormat. The server accepts all of them, clients always use frames and ask
+ * for the BINARY format unless told otherwise.
+ *
+ * On the server, packets go through an OutboundQueue drained by a writer thread of the connection's
+ * own, so whoever sends never waits on a slow socket. Clients write as they send.
+ *
+ */
+public class StreamConnection implements Connection {
+    private final Socket socket;
+    private final WireFormat format;
+    // not synchronized, a virtual thread blocked writing inside a monitor would pin its carrier
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final OutboundQueue outbound;
+
+    // legacy protocol
+    private final ObjectOutputStream objectOut;
+    private final ObjectInputStream objectIn;
+
+    // framed protocol
+    private final DataOutputStream frameOut;
+    private final DataInputStream frameIn;
+
+    private StreamConnection(Socket socket, InputStream input, WireFormat format, OutboundQueue outbound) throws IOException {
+        this.socket = socket;
+        this.format = format;
+        this.outbound = outbound;
+
+        if (format.isFramed()) {
+            frameOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            frameIn = new DataInputStream(input);
+            objectOut = null;
+            objectIn = null;
+        }
+        else {
+            objectOut = new ObjectOutputStream(socket.getOutputStream());
+            objectIn = new ObjectInputStream(input);
+            frameOut = null;
+            frameIn = null;
+        }
+    }
+
+    /**
+     * Server side. Peeks at the first int the peer sends to decide which protocol it speaks, answering a
+     * client that asks for BINARY with the same magic, then starts a writer draining the queue, on the
+     * same kind of thread as the caller.
+     * @param socket
+     * @param outbound queue for packets waiting to be written
+     * @return StreamConnection
+     * @throws IOException
+     */
+    public static StreamConnection accept(Socket socket, OutboundQueue outbound) throws IOException {
+        BufferedInputStream input = new BufferedInputStream(socket.getInputStream());
+        input.mark(PacketFrame.HEADER_LENGTH);
+        WireFormat format = WireFormat.forMagic(new DataInputStream(input).readInt());
+        if (!format.isFramed()) {
+            // Hand the serialization stream header back to the ObjectInputStream.
+            input.reset();
+        }
+        final StreamConnection connection = new StreamConnection(socket, input, format, outbound);
+        if (format == WireFormat.BINARY) {
+            connection.frameOut.writeInt(format.magic());
+            connection.frameOut.flush();
+        }
+
+        ConnectionThreads.newThread(new Runnable() {
+            public void run() {
+                connection.drainOutbound();
+            }
+        }, ConnectionThreads.isVirtual(Thread.currentThread())).start();
+        return connection;
+    }
+
+    /**
+     * Client side. Asks the server for the BINARY format and waits for its answer.
+     * @param socket
+     * @return StreamConnection
+     * @throws IOException
+     */
+    public static StreamConnection open(Socket socket) throws IOException {
+        return open(socket, WireFormat.BINARY);
+    }
+
+    /**
+     * Client side. Announces a framed format to the server. A server asked for BINARY answers with the
+     * magic of the format it will speak, SERIALIZED is assumed to be understood by every server.
+     * @param socket
+     * @param format
+     * @return StreamConnection
+     * @throws IOException if the server doesn't answer with a framed format
+     */
+    public static StreamConnection open(Socket socket, WireFormat format) throws IOException {
+        assert format.isFramed();
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeInt(format.magic());
+        out.flush();
+        BufferedInputStream input = new BufferedInputStream(socket.getInputStream());
+        if (format == WireFormat.BINARY) {
+            format = WireFormat.forMagic(new DataInputStream(input).readInt());
+            if (!format.isFramed()) {
+                throw new IOException("Server at " + socket.getRemoteSocketAddress() + " did not agree on a wire format");
+            }
+        }
+        return new StreamConnection(socket, input, format, null);
+    }
+
+    @Override
+    public boolean isFramed() {
+        return format.isFramed();
+    }
+
+    @Override
+    public WireFormat wireFormat() {
+        return format;
+    }
+
+    /**
+     * @return the address of the peer
+     */
+    public SocketAddress remoteAddress() {
+        return socket.getRemoteSocketAddress();
+    }
+
+    /**
+     * Blocks until the next packet arrives
+     * @return Packet
+     * @throws IOException, EOFException once the peer has closed the connection
+     * @throws ClassNotFoundException
+     */
+    public Packet readPacket() throws IOException, ClassNotFoundException {
+        if (!format.isFramed()) {
+            return (Packet) objectIn.readObject();
+        }
+
+        int length = frameIn.readInt();
+        PacketFrame.checkLength(length, PacketFrame.MAX_LENGTH);
+        byte[] body = new byte[Math.min(length, PacketFrame.READ_CHUNK)];
+        int read = 0;
+        while (read < length) {
+            if (read == body.length) {
+                // Grown as the bytes arrive, so a peer can't make us allocate a frame it doesn't send.
+                body = Arrays.copyOf(body, (int) Math.min(length, 2L * body.length));
+            }
+            int count = frameIn.read(body, read, body.length - read);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            if (read == 0 && outbound != null) {
+                // Read by a server, whose peers are clients unless they are copying a board to it.
+                PacketFrame.checkLength(length, PacketFrame.maxLengthFromPeer(format, body[0]));
+            }
+            read += count;
+        }
+        return PacketFrame.decode(format, body, 0, length);
+    }
+
+    @Override
+    public void sendPacket(Packet packet) {
+        sendFrame(PacketFrame.of(packet));
+    }
+
+    /**
+     * Queues the frame for the writer, or writes it straight to the socket if there is no queue.
+     * Disconnects the client if its queue overflows.
+     */
+    @Override
+    public void sendFrame(PacketFrame frame) {
+        if (outbound == null) {
+            try {
+                write(frame, true);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        else if (!outbound.offer(frame)) {
+            System.err.println("Disconnecting " + socket.getRemoteSocketAddress() + ", outbound queue overflowed: " + outbound.stats());
+            close();
+        }
+    }
+
+    @Override
+    public OutboundQueue outboundQueue() {
+        return outbound;
+    }
+
+    /**
+     * Writes queued frames until the connection closes, flushing whenever the queue runs dry
+     */
+    private void drainOutbound() {
+        try {
+            for (PacketFrame frame = outbound.take(); frame != null; frame = outbound.take()) {
+                write(frame, outbound.depth() == 0);
+            }
+        } catch (InterruptedException e) {
+            close();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void write(PacketFrame frame, boolean flush) throws IOException {
+        writeLock.lock();
+        try {
+            if (format.isFramed()) {
+                frame.writeTo(frameOut, format);
+                if (flush) {
+                    frameOut.flush();
+                }
+            }
+            else {
+                // The legacy stream can't take shared bytes, it serializes the packet itself.
+                Packet packet = frame.packet();
+                if (packet instanceof PacketDrawCommand
+                        && ((PacketDrawCommand) packet).drawCommand() instanceof DrawCommandPolyline) {
+                    // Older clients only know the segments a polyline is made of.
+                    for (DrawCommandLine segment : ((DrawCommandPolyline) ((PacketDrawCommand) packet).drawCommand()).segments()) {
+                        PacketDrawCommand segmentPacket = new PacketDrawCommand(segment);
+                        segmentPacket.setSequence(((PacketDrawCommand) packet).sequence());
+                        objectOut.writeObject(segmentPacket);
+                    }
+                }
+                else {
+                    objectOut.writeObject(packet);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the socket and stops the writer
+     */
+    @Override
+    public void close() {
+        if (outbound != null) {
+            outbound.close();
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
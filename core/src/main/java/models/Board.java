@@ -0,0 +1,180 @@
+package models;
+
+import java.awt.Color;
+import java.awt.Stroke;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import name.BoardIdentifier;
+import name.Identifiable;
+import name.LayerIdentifier;
+import canvas.Canvas;
+import canvas.Drawable;
+import canvas.Pixel;
+import canvas.layer.LayerAdjustment;
+import canvas.layer.LayerProperties;
+
+/**
+ * Board is the state of one whiteboard, updated with draw commands: its canvas, the Set of users on it
+ * and its owner. It is headless, the server keeps its boards as Boards without touching Swing, and a
+ * client shows the board it is on through a BoardModel around one.
+ *
+ */
+public class Board implements Drawable, Identifiable {
+    private final BoardIdentifier boardName;
+    private final Canvas canvas;
+    private final Identifiable owner;
+    private final Set<Identifiable> users;
+
+    /**
+     * Constructor for a board with no users yet, as the server makes them
+     * @param boardName
+     * @param canvas
+     * @param owner
+     */
+    public Board(BoardIdentifier boardName, Canvas canvas, Identifiable owner) {
+        this(boardName, canvas, new Identifiable[] {}, owner);
+    }
+
+    /**
+     * Constructor for a board with users on it, as a client is sent it
+     * @param boardName
+     * @param canvas
+     * @param initUsers
+     * @param owner
+     */
+    public Board(BoardIdentifier boardName, Canvas canvas, Identifiable[] initUsers, Identifiable owner) {
+        this.boardName = boardName;
+        this.canvas = canvas;
+        this.users = Collections.synchronizedSet(new HashSet<Identifiable>(Arrays.asList(initUsers)));
+        this.owner = owner;
+    }
+
+    /**
+     * Method to add a user to set of users, checks that user isn't in Set already
+     * @param user
+     */
+    public void addUser(Identifiable user) {
+        assert !users.contains(user);
+        users.add(user);
+    }
+
+    /**
+     * Checks if the user is already in our Set of users
+     * @param user
+     * @return boolean
+     */
+    public boolean containsUser(Identifiable user) {
+        return users.contains(user);
+    }
+
+    /**
+     * Removes user from set of users on board, for example when a client disconnects
+     * @param user
+     */
+    public void removeUser(Identifiable user) {
+        assert users.contains(user);
+        users.remove(user);
+    }
+
+    /**
+     * Returns an array of all the Users in the current board
+     * @return Identifiable[] users
+     */
+    public Identifiable[] users() {
+        return users.toArray(new Identifiable[users.size()]).clone();
+    }
+
+    /**
+     * @return BoardIdentifier
+     */
+    public BoardIdentifier getBoardName() {
+        return boardName;
+    }
+
+    /**
+     * Draws a pixel onto the canvas of the board
+     */
+    @Override
+    public void drawPixel(LayerIdentifier identifier, Pixel pixel) {
+        canvas.drawPixel(identifier, pixel);
+    }
+
+    /**
+     * Draws a line onto the canvas
+     */
+    @Override
+    public void drawLine(LayerIdentifier identifier, Pixel pixelStart, Pixel pixelEnd, Stroke stroke, int symetry) {
+        canvas.drawLine(identifier, pixelStart, pixelEnd, stroke, symetry);
+    }
+
+    /**
+     * Draws a fill command onto the canvas
+     */
+    @Override
+    public void drawFill(LayerIdentifier identifier, Pixel pixel) {
+        canvas.drawFill(identifier, pixel);
+    }
+
+    /**
+     * Returns the pixelColor at the input pixel location on the specified Layer
+     */
+    @Override
+    public Color getPixelColor(LayerIdentifier id, Pixel pixel) throws Exception {
+        return canvas.getPixelColor(id, pixel);
+    }
+
+    /**
+     * Returns the width of the canvas
+     */
+    @Override
+    public int width() {
+        return canvas.width();
+    }
+
+    /**
+     * Returns the height of the canvas
+     */
+    @Override
+    public int height() {
+        return canvas.height();
+    }
+
+    /**
+     *  Returns BoardIdentifier
+     */
+    @Override
+    public BoardIdentifier identifier() {
+        return boardName;
+    }
+
+    /**
+     * @return Canvas
+     */
+    public Canvas canvas() {
+        return canvas;
+    }
+
+    /**
+     * Adds a layer to the canvas
+     * @param layer
+     */
+    public void addLayer(LayerIdentifier layer) {
+        canvas.addLayer(layer);
+    }
+
+    /**
+     * Adjusts the layer provided with the appropriate adjustment
+     * @param properties
+     * @param adjustment
+     */
+    public void adjustLayer(LayerProperties properties, LayerAdjustment adjustment) {
+        canvas.adjustLayer(properties, adjustment);
+    }
+
+    public Identifiable getOwner() {
+        return owner;
+    }
+}
@@ -0,0 +1,52 @@
+package name;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Locale;
+/**
+ * Class that represents an identifier for a Board
+ * Contains a NULL_BOARD that client connects to automatically when they connect to the server
+ *
+ */
+public final class BoardIdentifier extends Identifier {
+	private static final long serialVersionUID = -7136909813853854025L;
+	private final ClientIdentifier owner;
+	
+	public static final BoardIdentifier NULL_BOARD = new BoardIdentifier(0, "", null);
+	
+	/**
+	 * Orders boards by name ignoring case, then by exact name, then by id. This is the order the board
+	 * directory lists boards in.
+	 */
+	public static final Comparator<BoardIdentifier> BY_NAME = new NameComparator();
+	
+	private static final class NameComparator implements Comparator<BoardIdentifier>, Serializable {
+		private static final long serialVersionUID = 2207453011271593364L;
+
+		@Override
+		public int compare(BoardIdentifier a, BoardIdentifier b) {
+			int result = a.name().toLowerCase(Locale.ROOT).compareTo(b.name().toLowerCase(Locale.ROOT));
+			if (result == 0) {
+				result = a.name().compareTo(b.name());
+			}
+			if (result == 0) {
+				result = a.id() < b.id() ? -1 : (a.id() == b.id() ? 0 : 1);
+			}
+			return result;
+		}
+	}
+	/**
+	 * Constructor for BoardIdentifier which takes id and name as arguments
+	 * @param id
+	 * @param name
+	 */
+    public BoardIdentifier(int id, String name, ClientIdentifier owner) {
+        super(id, name);
+        this.owner = owner;
+    }
+
+    public ClientIdentifier owner() {
+    	return owner;
+	}
+
+}
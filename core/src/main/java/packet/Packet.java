@@ -15,5 +15,13 @@ public abstract class Packet implements Serializable {
 	 */
 	public abstract void process(PacketHandler handler);
 	
-	
+	/**
+	 * Whether the packet only carries state that the next packet of its kind replaces, so a client
+	 * that falls behind can miss it without ending up wrong. False unless a packet says otherwise.
+	 * @return boolean
+	 */
+	public boolean isEphemeral() {
+		return false;
+	}
+
 }
@@ -0,0 +1,17 @@
+package packet;
+/**
+ * Class that represents a client closing its board picker, after which it is no longer sent the
+ * changes to the directory
+ *
+ */
+public final class PacketBoardDirectoryClose extends Packet {
+	private static final long serialVersionUID = -6517000377000153734L;
+	
+	/**
+	 * Handles receiving a BoardDirectoryClose packet
+	 */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedBoardDirectoryClosePacket(this);
+	}
+}
@@ -0,0 +1,46 @@
+package packet;
+
+import name.BoardIdentifier;
+/**
+ * Class that represents one board added to or removed from the directory, sent to the clients
+ * subscribed to a prefix of its name
+ *
+ */
+public final class PacketBoardDirectoryDelta extends Packet {
+	private static final long serialVersionUID = 1932707794573021880L;
+	private final long version;
+	private final BoardIdentifier board;
+	private final boolean added;
+	
+	/**
+	 * Constructor for the delta
+	 * @param version version of the directory with this change
+	 * @param board
+	 * @param added true if the board was added, false if it was removed
+	 */
+	public PacketBoardDirectoryDelta(long version, BoardIdentifier board, boolean added) {
+		this.version = version;
+		this.board = board;
+		this.added = added;
+	}
+	
+	public long version() {
+		return version;
+	}
+	
+	public BoardIdentifier board() {
+		return board;
+	}
+	
+	public boolean added() {
+		return added;
+	}
+	
+	/**
+	 * Handles receiving a BoardDirectoryDelta packet
+	 */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedBoardDirectoryDeltaPacket(this);
+	}
+}
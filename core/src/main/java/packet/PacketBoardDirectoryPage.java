@@ -0,0 +1,65 @@
+package packet;
+
+import name.BoardIdentifier;
+/**
+ * Class that represents one page of the board directory, in answer to a PacketBoardDirectoryQuery
+ *
+ */
+public final class PacketBoardDirectoryPage extends Packet {
+	private static final long serialVersionUID = 8790377165430417520L;
+	private final String prefix;
+	private final int offset;
+	private final int total;
+	private final long version;
+	private final BoardIdentifier[] boards;
+	
+	/**
+	 * Constructor for the page
+	 * @param prefix the prefix that was queried
+	 * @param offset position of the first board of the page among all the matching boards
+	 * @param total number of matching boards
+	 * @param version version of the directory the page was read from
+	 * @param boards boards of the page, in BoardIdentifier.BY_NAME order
+	 */
+	public PacketBoardDirectoryPage(String prefix, int offset, int total, long version, BoardIdentifier[] boards) {
+		this.prefix = prefix;
+		this.offset = offset;
+		this.total = total;
+		this.version = version;
+		this.boards = boards;
+	}
+	
+	public String prefix() {
+		return prefix;
+	}
+	
+	public int offset() {
+		return offset;
+	}
+	
+	public int total() {
+		return total;
+	}
+	
+	/**
+	 * @return version of the directory, deltas up to this version are already part of the page
+	 */
+	public long version() {
+		return version;
+	}
+	
+	/**
+	 * @return clone of the boards of the page
+	 */
+	public BoardIdentifier[] boards() {
+		return boards.clone();
+	}
+	
+	/**
+	 * Handles receiving a BoardDirectoryPage packet
+	 */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedBoardDirectoryPagePacket(this);
+	}
+}
@@ -0,0 +1,52 @@
+package packet;
+/**
+ * Class that represents a request for one page of the boards whose names start with a prefix. A client
+ * that subscribes is also sent every board added or removed under that prefix, until it closes the
+ * directory or subscribes to another prefix.
+ *
+ */
+public final class PacketBoardDirectoryQuery extends Packet {
+	private static final long serialVersionUID = -3355094466404707211L;
+	private final String prefix;
+	private final int offset;
+	private final int limit;
+	private final boolean subscribe;
+	
+	/**
+	 * Constructor for the query
+	 * @param prefix start of the board names, case insensitive, empty for every board
+	 * @param offset number of matching boards to skip
+	 * @param limit most boards to return
+	 * @param subscribe whether to be sent the changes under the prefix from now on
+	 */
+	public PacketBoardDirectoryQuery(String prefix, int offset, int limit, boolean subscribe) {
+		this.prefix = prefix;
+		this.offset = offset;
+		this.limit = limit;
+		this.subscribe = subscribe;
+	}
+	
+	public String prefix() {
+		return prefix;
+	}
+	
+	public int offset() {
+		return offset;
+	}
+	
+	public int limit() {
+		return limit;
+	}
+	
+	public boolean subscribe() {
+		return subscribe;
+	}
+	
+	/**
+	 * Handles receiving a BoardDirectoryQuery packet
+	 */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedBoardDirectoryQueryPacket(this);
+	}
+}
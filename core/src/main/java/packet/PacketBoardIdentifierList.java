@@ -8,13 +8,24 @@ import name.BoardIdentifier;
 public final class PacketBoardIdentifierList extends Packet {
     private static final long serialVersionUID = 3621326113552483907L;
     private final BoardIdentifier[] boards;
+    private final long version;
     
     /**
      * Constructor that creates a Packet of all the boards
      * @param boards
      */
     public PacketBoardIdentifierList(BoardIdentifier[] boards) {
+        this(boards, 0);
+    }
+    
+    /**
+     * Constructor that creates a Packet of all the boards as of a version of the server's board list
+     * @param boards
+     * @param version
+     */
+    public PacketBoardIdentifierList(BoardIdentifier[] boards, long version) {
         this.boards = boards;
+        this.version = version;
     }
     
     /**
@@ -23,6 +34,13 @@ public final class PacketBoardIdentifierList extends Packet {
     public BoardIdentifier[] boards() {
         return boards.clone();
     }
+    
+    /**
+     * @return version of the server's board list, a list never replaces one with a higher version
+     */
+    public long version() {
+        return version;
+    }
 
     /**
      * Handles receiving a BoardIdentifierList packet
@@ -31,4 +49,12 @@ public final class PacketBoardIdentifierList extends Packet {
 	public void process(PacketHandler handler) {
 		handler.receivedBoardIdentifierListPacket(this);
 	}
+	
+	/**
+	 * A newer board list replaces this one
+	 */
+	@Override
+	public boolean isEphemeral() {
+		return true;
+	}
 }
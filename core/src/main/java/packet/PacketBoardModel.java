@@ -0,0 +1,109 @@
+package packet;
+
+import models.Board;
+import name.BoardIdentifier;
+import name.Identifiable;
+import canvas.Canvas;
+/**
+ * Class that represents a packet of the current Board
+ *
+ */
+public final class PacketBoardModel extends Packet {
+    private static final long serialVersionUID = 8105009453719679025L;
+
+    private final BoardIdentifier boardName;
+    private final Canvas canvas;
+    private final Identifiable[] users;
+    private Identifiable owner;
+    // color of every tile while the tiles are still to be sent, null if the canvas has them already
+    private final int[] preview;
+    
+    /**
+     * Constructor that makes a Packet from a Board, with a snapshot of its canvas as it is now
+     * @param boardModel
+     */
+    public PacketBoardModel(Board boardModel) {
+        this.boardName = boardModel.identifier();
+        this.canvas = boardModel.canvas().snapshot();
+        this.users = boardModel.users();
+        this.owner = boardModel.getOwner();
+        this.preview = null;
+    }
+    
+    /**
+     * Constructor that makes a Packet from a Board whose tiles are sent in BoardTilesPackets after it
+     * @param boardModel
+     * @param canvas the layers of the board, with nothing drawn on them
+     * @param preview color of every tile, 0 for the tiles that won't be sent
+     */
+    public PacketBoardModel(Board boardModel, Canvas canvas, int[] preview) {
+        this.boardName = boardModel.identifier();
+        this.canvas = canvas;
+        this.users = boardModel.users();
+        this.owner = boardModel.getOwner();
+        this.preview = preview;
+    }
+    
+    /**
+     * Constructor from the parts of a Board, for decoding
+     * @param boardName
+     * @param canvas
+     * @param users
+     * @param owner
+     */
+    public PacketBoardModel(BoardIdentifier boardName, Canvas canvas, Identifiable[] users, Identifiable owner) {
+        this(boardName, canvas, users, owner, null);
+    }
+    
+    /**
+     * Constructor from the parts of a Board and the preview of its tiles, for decoding
+     * @param boardName
+     * @param canvas
+     * @param users
+     * @param owner
+     * @param preview or null
+     */
+    public PacketBoardModel(BoardIdentifier boardName, Canvas canvas, Identifiable[] users, Identifiable owner, int[] preview) {
+        this.boardName = boardName;
+        this.canvas = canvas;
+        this.users = users;
+        this.owner = owner;
+        this.preview = preview;
+    }
+    /**
+     * Getter method to get the Board
+     * @return Board
+     */
+    public BoardIdentifier boardName() {
+        return boardName;
+    }
+    
+    public Canvas canvas() {
+        return canvas;
+    }
+    
+    public Identifiable[] users() {
+        return users;
+    }
+
+    public Identifiable getOwner() {
+        return this.owner;
+    }
+    
+    /**
+     * @return color of every tile of the board while its tiles are still to be sent, or null if the
+     *         canvas has them already
+     */
+    public int[] preview() {
+        return preview;
+    }
+
+    /**
+     * Handler receiving a BoardModelPacket
+     * 
+     */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedBoardModelPacket(this);
+	}
+}
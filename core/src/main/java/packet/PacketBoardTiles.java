@@ -0,0 +1,41 @@
+package packet;
+
+import name.BoardIdentifier;
+import canvas.TileChunk;
+/**
+ * Class that represents a packet of some of the tiles of a board, sent to a user joining it after the
+ * BoardModelPacket with its preview, until every tile of the board has been sent
+ *
+ */
+public final class PacketBoardTiles extends Packet {
+	private static final long serialVersionUID = -6016183322472936154L;
+	
+	private final BoardIdentifier boardName;
+	private final TileChunk tiles;
+	
+	/**
+	 * Constructor
+	 * @param boardName
+	 * @param tiles
+	 */
+	public PacketBoardTiles(BoardIdentifier boardName, TileChunk tiles) {
+		this.boardName = boardName;
+		this.tiles = tiles;
+	}
+	
+	public BoardIdentifier boardName() {
+		return boardName;
+	}
+	
+	public TileChunk tiles() {
+		return tiles;
+	}
+	
+	/**
+	 * Handles receiving a BoardTiles packet
+	 */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedBoardTilesPacket(this);
+	}
+}
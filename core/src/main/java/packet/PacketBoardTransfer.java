@@ -0,0 +1,70 @@
+package packet;
+
+import models.Board;
+import name.BoardIdentifier;
+import name.Identifiable;
+import canvas.Canvas;
+/**
+ * Class that represents a whole board moving to another server, with the sequence number of the last
+ * change it includes. Only sent between the servers of a cluster.
+ *
+ */
+public final class PacketBoardTransfer extends Packet {
+	private static final long serialVersionUID = -6027841571533962903L;
+	
+	private final BoardIdentifier boardName;
+	private final Canvas canvas;
+	private final Identifiable owner;
+	private final long sequence;
+	
+	/**
+	 * Constructor that makes a Packet from a Board, with a snapshot of its canvas as it is now. It has
+	 * to be made before the board changes again, to match the sequence number.
+	 * @param boardModel
+	 * @param sequence sequence number of the board's last change
+	 */
+	public PacketBoardTransfer(Board boardModel, long sequence) {
+		this.boardName = boardModel.identifier();
+		this.canvas = boardModel.canvas().snapshot();
+		this.owner = boardModel.getOwner();
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * Constructor from the parts of a Board, for decoding
+	 * @param boardName
+	 * @param canvas
+	 * @param owner
+	 * @param sequence
+	 */
+	public PacketBoardTransfer(BoardIdentifier boardName, Canvas canvas, Identifiable owner, long sequence) {
+		this.boardName = boardName;
+		this.canvas = canvas;
+		this.owner = owner;
+		this.sequence = sequence;
+	}
+	
+	public BoardIdentifier boardName() {
+		return boardName;
+	}
+	
+	public Canvas canvas() {
+		return canvas;
+	}
+	
+	public Identifiable owner() {
+		return owner;
+	}
+	
+	public long sequence() {
+		return sequence;
+	}
+	
+	/**
+	 * Handles receiving a BoardTransfer packet
+	 */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedBoardTransferPacket(this);
+	}
+}
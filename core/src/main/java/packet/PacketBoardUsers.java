@@ -31,5 +31,12 @@ public class PacketBoardUsers extends Packet {
 	public void process(PacketHandler handler) {
 		handler.receivedBoardUsersPacket(this);
 	}
-
+	
+	/**
+	 * A newer user list replaces this one
+	 */
+	@Override
+	public boolean isEphemeral() {
+		return true;
+	}
 }
@@ -0,0 +1,52 @@
+package packet;
+/**
+ * Class representing a packet that a client is ready to accept drawing commands
+ *
+ */
+public class PacketClientReady extends Packet {
+	private static final long serialVersionUID = 5713340681218216132L;
+	
+	private final boolean resumable;
+	private final boolean tileDigests;
+	
+	/**
+	 * Constructor for a client that can't carry on with the board once its connection is lost
+	 */
+	public PacketClientReady() {
+		this(false);
+	}
+	
+	/**
+	 * Constructor
+	 * @param resumable whether the client wants a token to carry on with the board if it reconnects
+	 */
+	public PacketClientReady(boolean resumable) {
+		this(resumable, false);
+	}
+	
+	/**
+	 * Constructor
+	 * @param resumable whether the client wants a token to carry on with the board if it reconnects
+	 * @param tileDigests whether the client wants the hashes of the board's tiles to check its copy against
+	 */
+	public PacketClientReady(boolean resumable, boolean tileDigests) {
+		this.resumable = resumable;
+		this.tileDigests = tileDigests;
+	}
+	
+	public boolean resumable() {
+		return resumable;
+	}
+	
+	public boolean tileDigests() {
+		return tileDigests;
+	}
+	
+	/**
+	 * Handles receiving a ClientReadyPacket
+	 */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedClientReadyPacket(this);
+	}
+}
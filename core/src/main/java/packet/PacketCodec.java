@@ -0,0 +1,909 @@
+package packet;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import name.BoardIdentifier;
+import name.ClientIdentifier;
+import name.Identifiable;
+import name.Identifier;
+import name.LayerIdentifier;
+import canvas.Canvas;
+import canvas.Pixel;
+import canvas.SnapshotCodec;
+import canvas.TileDigest;
+import canvas.command.DrawCommand;
+import canvas.command.DrawCommandFill;
+import canvas.command.DrawCommandLine;
+import canvas.command.DrawCommandPixel;
+import canvas.command.DrawCommandPolyline;
+import canvas.layer.LayerAdjustment;
+import canvas.layer.LayerProperties;
+
+/**
+ * The BINARY wire format: every packet is written field by field by the Codec registered for its
+ * PacketType, instead of by Java serialization. A frame body is the code of the type, the sequence
+ * number for a SequencedPacket, then the fields of the packet.
+ *
+ * Numbers are zigzag varints, so small ones of either sign take a byte, colors and floats are fixed
+ * width, strings are UTF-8 after their length plus one, 0 standing for null. Identifiables are sent as
+ * the Identifier they stand for, tagged with its kind. The canvas of a board is sent as a snapshot
+ * of its tiles by the SnapshotCodec. Fields added to a type later go last and are left out when they
+ * don't apply, so a frame without them reads as it always did.
+ *
+ */
+public final class PacketCodec {
+    /**
+     * Writes and reads the fields of one type of packet
+     * @param <P> class of the packets
+     */
+    interface Codec<P extends Packet> {
+        void write(P packet, Writer out) throws IOException;
+
+        P read(Reader in) throws IOException;
+    }
+
+    private static final Map<PacketType, Codec<?>> CODECS = new EnumMap<PacketType, Codec<?>>(PacketType.class);
+    private static final Map<Class<?>, PacketType> TYPES = new HashMap<Class<?>, PacketType>();
+    private static final PacketType[] BY_CODE = new PacketType[256];
+
+    // Tags of an Identifiable.
+    private static final int NO_IDENTIFIER = 0;
+    private static final int CLIENT = 1;
+    private static final int BOARD = 2;
+    private static final int LAYER = 3;
+
+    // Kinds of DrawCommand.
+    private static final int PIXEL = 0;
+    private static final int FILL = 1;
+    private static final int LINE = 2;
+    private static final int POLYLINE = 3;
+
+    private PacketCodec() {
+    }
+
+    private static <P extends Packet> void register(PacketType type, Class<P> packetClass, Codec<P> codec) {
+        assert BY_CODE[type.code()] == null : "Code " + type.code() + " used twice";
+        CODECS.put(type, codec);
+        TYPES.put(packetClass, type);
+        BY_CODE[type.code()] = type;
+    }
+
+    /**
+     * Encodes a packet
+     * @param packet
+     * @param headerLength bytes to leave free at the start, for the frame header
+     * @return the encoded packet after headerLength zeros
+     * @throws IOException if the packet has no binary encoding
+     */
+    public static byte[] encode(Packet packet, int headerLength) throws IOException {
+        PacketType type = TYPES.get(packet.getClass());
+        if (type == null) {
+            throw new IOException("No binary encoding for " + packet.getClass().getName());
+        }
+        @SuppressWarnings("unchecked")
+        Codec<Packet> codec = (Codec<Packet>) CODECS.get(type);
+
+        Writer out = new Writer(headerLength);
+        out.writeByte(type.code());
+        if (packet instanceof SequencedPacket) {
+            out.writeLong(((SequencedPacket) packet).sequence());
+        }
+        codec.write(packet, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes the body of a frame
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return Packet
+     * @throws IOException if the bytes aren't exactly one packet
+     */
+    public static Packet decode(byte[] bytes, int offset, int length) throws IOException {
+        Reader in = new Reader(bytes, offset, length);
+        int code = in.readByte();
+        PacketType type = BY_CODE[code];
+        if (type == null) {
+            throw new IOException("Unknown packet type " + code);
+        }
+        long sequence = SequencedPacket.UNSEQUENCED;
+        if (isSequenced(type)) {
+            sequence = in.readLong();
+        }
+        Packet packet = CODECS.get(type).read(in);
+        if (packet instanceof SequencedPacket) {
+            ((SequencedPacket) packet).setSequence(sequence);
+        }
+        if (in.remaining() != 0) {
+            throw new IOException(in.remaining() + " bytes left over decoding a " + type + " packet");
+        }
+        return packet;
+    }
+
+    private static boolean isSequenced(PacketType type) {
+        return type == PacketType.DRAW_COMMAND || type == PacketType.NEW_LAYER || type == PacketType.LAYER_ADJUSTMENT;
+    }
+
+    /**
+     * Growable buffer the fields of a packet are written to
+     */
+    static final class Writer {
+        private byte[] bytes;
+        private int position;
+
+        Writer(int headerLength) {
+            bytes = new byte[Math.max(64, headerLength * 2)];
+            position = headerLength;
+        }
+
+        private void ensure(int length) {
+            if (position + length > bytes.length) {
+                byte[] larger = new byte[Math.max(bytes.length * 2, position + length)];
+                System.arraycopy(bytes, 0, larger, 0, position);
+                bytes = larger;
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[position++] = (byte) value;
+        }
+
+        void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        void writeInt(int value) {
+            writeUnsigned((value << 1) ^ (value >> 31));
+        }
+
+        void writeLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                bytes[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            bytes[position++] = (byte) zigzag;
+        }
+
+        /**
+         * Writes the length of an array
+         */
+        void writeCount(int count) {
+            writeUnsigned(count);
+        }
+
+        private void writeUnsigned(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+        }
+
+        void writeFixedInt(int value) {
+            ensure(4);
+            bytes[position++] = (byte) (value >>> 24);
+            bytes[position++] = (byte) (value >>> 16);
+            bytes[position++] = (byte) (value >>> 8);
+            bytes[position++] = (byte) value;
+        }
+
+        void writeFloat(float value) {
+            writeFixedInt(Float.floatToIntBits(value));
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToLongBits(value);
+            writeFixedInt((int) (bits >>> 32));
+            writeFixedInt((int) bits);
+        }
+
+        void writeBytes(byte[] value) {
+            writeUnsigned(value.length);
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, position, value.length);
+            position += value.length;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeUnsigned(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeUnsigned(utf8.length + 1);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, position, utf8.length);
+            position += utf8.length;
+        }
+
+        byte[] toByteArray() {
+            byte[] result = new byte[position];
+            System.arraycopy(bytes, 0, result, 0, position);
+            return result;
+        }
+    }
+
+    /**
+     * Reads the fields of a packet off a frame body, failing rather than reading past its end
+     */
+    static final class Reader {
+        private final byte[] bytes;
+        private int position;
+        private final int end;
+
+        Reader(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        int remaining() {
+            return end - position;
+        }
+
+        private void require(int length) throws IOException {
+            if (length < 0 || length > end - position) {
+                throw new EOFException("Frame ends in the middle of a packet");
+            }
+        }
+
+        int readByte() throws IOException {
+            require(1);
+            return bytes[position++] & 0xFF;
+        }
+
+        boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        int readInt() throws IOException {
+            int zigzag = readUnsigned();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        long readLong() throws IOException {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private int readUnsigned() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int readFixedInt() throws IOException {
+            require(4);
+            int value = (bytes[position] & 0xFF) << 24 | (bytes[position + 1] & 0xFF) << 16
+                    | (bytes[position + 2] & 0xFF) << 8 | (bytes[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        float readFloat() throws IOException {
+            return Float.intBitsToFloat(readFixedInt());
+        }
+
+        double readDouble() throws IOException {
+            long high = readFixedInt();
+            long low = readFixedInt() & 0xFFFFFFFFL;
+            return Double.longBitsToDouble(high << 32 | low);
+        }
+
+        byte[] readBytes() throws IOException {
+            int length = readUnsigned();
+            require(length);
+            byte[] value = new byte[length];
+            System.arraycopy(bytes, position, value, 0, length);
+            position += length;
+            return value;
+        }
+
+        String readString() throws IOException {
+            int length = readUnsigned() - 1;
+            if (length == -1) {
+                return null;
+            }
+            require(length);
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        <E extends Enum<E>> E readEnum(E[] values) throws IOException {
+            int ordinal = readByte();
+            if (ordinal >= values.length) {
+                throw new IOException("Unknown constant " + ordinal);
+            }
+            return values[ordinal];
+        }
+
+        /**
+         * Reads the length of an array, checking each element will take at least a byte
+         */
+        int readCount() throws IOException {
+            int count = readUnsigned();
+            require(count);
+            return count;
+        }
+    }
+
+    /*
+     * Fields shared by several packets.
+     */
+    private static void writeClient(ClientIdentifier client, Writer out) {
+        out.writeBoolean(client != null);
+        if (client != null) {
+            out.writeInt(client.id());
+            out.writeString(client.name());
+        }
+    }
+
+    private static ClientIdentifier readClient(Reader in) throws IOException {
+        return in.readBoolean() ? new ClientIdentifier(in.readInt(), in.readString()) : null;
+    }
+
+    private static void writeBoard(BoardIdentifier board, Writer out) {
+        out.writeInt(board.id());
+        out.writeString(board.name());
+        writeClient(board.owner(), out);
+    }
+
+    private static BoardIdentifier readBoard(Reader in) throws IOException {
+        return new BoardIdentifier(in.readInt(), in.readString(), readClient(in));
+    }
+
+    private static void writeBoards(BoardIdentifier[] boards, Writer out) {
+        out.writeCount(boards.length);
+        for (BoardIdentifier board : boards) {
+            writeBoard(board, out);
+        }
+    }
+
+    private static BoardIdentifier[] readBoards(Reader in) throws IOException {
+        BoardIdentifier[] boards = new BoardIdentifier[in.readCount()];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = readBoard(in);
+        }
+        return boards;
+    }
+
+    private static void writeLayer(LayerIdentifier layer, Writer out) {
+        out.writeInt(layer.id());
+        out.writeString(layer.name());
+    }
+
+    private static LayerIdentifier readLayer(Reader in) throws IOException {
+        return new LayerIdentifier(in.readInt(), in.readString());
+    }
+
+    private static void writeIdentifiable(Identifiable identifiable, Writer out) throws IOException {
+        Identifier identifier = identifiable == null ? null : identifiable.identifier();
+        if (identifier == null) {
+            out.writeByte(NO_IDENTIFIER);
+        }
+        else if (identifier instanceof ClientIdentifier) {
+            out.writeByte(CLIENT);
+            writeClient((ClientIdentifier) identifier, out);
+        }
+        else if (identifier instanceof BoardIdentifier) {
+            out.writeByte(BOARD);
+            writeBoard((BoardIdentifier) identifier, out);
+        }
+        else if (identifier instanceof LayerIdentifier) {
+            out.writeByte(LAYER);
+            writeLayer((LayerIdentifier) identifier, out);
+        }
+        else {
+            throw new IOException("No binary encoding for " + identifier.getClass().getName());
+        }
+    }
+
+    private static Identifiable readIdentifiable(Reader in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+        case NO_IDENTIFIER:
+            return null;
+        case CLIENT:
+            return readClient(in);
+        case BOARD:
+            return readBoard(in);
+        case LAYER:
+            return readLayer(in);
+        default:
+            throw new IOException("Unknown identifier tag " + tag);
+        }
+    }
+
+    private static void writeIdentifiables(Identifiable[] identifiables, Writer out) throws IOException {
+        out.writeCount(identifiables.length);
+        for (Identifiable identifiable : identifiables) {
+            writeIdentifiable(identifiable, out);
+        }
+    }
+
+    private static Identifiable[] readIdentifiables(Reader in) throws IOException {
+        Identifiable[] identifiables = new Identifiable[in.readCount()];
+        for (int i = 0; i < identifiables.length; i++) {
+            identifiables[i] = readIdentifiable(in);
+        }
+        return identifiables;
+    }
+
+    private static void writePixel(Pixel pixel, Writer out) {
+        out.writeInt(pixel.x());
+        out.writeInt(pixel.y());
+        out.writeFixedInt(pixel.color().getRGB());
+    }
+
+    private static Pixel readPixel(Reader in) throws IOException {
+        return new Pixel(in.readInt(), in.readInt(), new Color(in.readFixedInt(), true));
+    }
+
+    private static void writeStroke(BasicStroke stroke, Writer out) {
+        out.writeFloat(stroke.getLineWidth());
+        out.writeByte(stroke.getEndCap());
+        out.writeByte(stroke.getLineJoin());
+    }
+
+    private static BasicStroke readStroke(Reader in) throws IOException {
+        try {
+            return new BasicStroke(in.readFloat(), in.readByte(), in.readByte());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid stroke", e);
+        }
+    }
+
+    private static void writeDrawCommand(DrawCommand command, Writer out) throws IOException {
+        if (command instanceof DrawCommandPixel) {
+            out.writeByte(PIXEL);
+            writeLayer(command.id(), out);
+            writePixel(((DrawCommandPixel) command).pixel(), out);
+        }
+        else if (command instanceof DrawCommandFill) {
+            out.writeByte(FILL);
+            writeLayer(command.id(), out);
+            writePixel(((DrawCommandFill) command).pixel(), out);
+        }
+        else if (command instanceof DrawCommandLine) {
+            DrawCommandLine line = (DrawCommandLine) command;
+            out.writeByte(LINE);
+            writeLayer(command.id(), out);
+            writePixel(line.pixelStart(), out);
+            writePixel(line.pixelEnd(), out);
+            writeStroke(line.stroke(), out);
+            out.writeInt(line.symetry());
+        }
+        else if (command instanceof DrawCommandPolyline) {
+            // The first point, then each point as the step from the one before, a byte or two apiece.
+            DrawCommandPolyline polyline = (DrawCommandPolyline) command;
+            out.writeByte(POLYLINE);
+            writeLayer(command.id(), out);
+            out.writeFixedInt(polyline.color().getRGB());
+            writeStroke(polyline.stroke(), out);
+            out.writeInt(polyline.symetry());
+            out.writeCount(polyline.pointCount());
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < polyline.pointCount(); i++) {
+                out.writeInt(polyline.x(i) - x);
+                out.writeInt(polyline.y(i) - y);
+                x = polyline.x(i);
+                y = polyline.y(i);
+            }
+        }
+        else {
+            throw new IOException("No binary encoding for " + command.getClass().getName());
+        }
+    }
+
+    private static DrawCommand readDrawCommand(Reader in) throws IOException {
+        int kind = in.readByte();
+        switch (kind) {
+        case PIXEL:
+            return new DrawCommandPixel(readLayer(in), readPixel(in));
+        case FILL:
+            return new DrawCommandFill(readLayer(in), readPixel(in));
+        case LINE:
+            LayerIdentifier layer = readLayer(in);
+            Pixel start = readPixel(in);
+            Pixel end = readPixel(in);
+            return new DrawCommandLine(layer, start, end, readStroke(in), in.readInt());
+        case POLYLINE:
+            LayerIdentifier polylineLayer = readLayer(in);
+            Color color = new Color(in.readFixedInt(), true);
+            BasicStroke stroke = readStroke(in);
+            int symetry = in.readInt();
+            int[] points = new int[2 * in.readCount()];
+            if (points.length == 0) {
+                throw new IOException("Polyline without points");
+            }
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < points.length; i += 2) {
+                x += in.readInt();
+                y += in.readInt();
+                points[i] = x;
+                points[i + 1] = y;
+            }
+            return new DrawCommandPolyline(polylineLayer, color, stroke, symetry, points);
+        default:
+            throw new IOException("Unknown draw command " + kind);
+        }
+    }
+
+    private static void writeCanvas(Canvas canvas, Writer out) throws IOException {
+        out.writeBytes(SnapshotCodec.encode(canvas));
+    }
+
+    private static Canvas readCanvas(Reader in) throws IOException {
+        return SnapshotCodec.decode(in.readBytes());
+    }
+
+    static {
+        register(PacketType.NEW_CLIENT, PacketNewClient.class, new Codec<PacketNewClient>() {
+            public void write(PacketNewClient packet, Writer out) {
+                writeClient(packet.senderName(), out);
+            }
+
+            public PacketNewClient read(Reader in) throws IOException {
+                return new PacketNewClient(readClient(in));
+            }
+        });
+        register(PacketType.NEW_BOARD, PacketNewBoard.class, new Codec<PacketNewBoard>() {
+            public void write(PacketNewBoard packet, Writer out) throws IOException {
+                writeBoard(packet.boardName(), out);
+                out.writeInt(packet.width());
+                out.writeInt(packet.height());
+                writeIdentifiable(packet.owner(), out);
+            }
+
+            public PacketNewBoard read(Reader in) throws IOException {
+                return new PacketNewBoard(readBoard(in), in.readInt(), in.readInt(), readIdentifiable(in));
+            }
+        });
+        register(PacketType.CLIENT_READY, PacketClientReady.class, new Codec<PacketClientReady>() {
+            public void write(PacketClientReady packet, Writer out) {
+                if (packet.resumable() || packet.tileDigests()) {
+                    // left out otherwise, as clients that can't resume do
+                    out.writeBoolean(packet.resumable());
+                }
+                if (packet.tileDigests()) {
+                    out.writeBoolean(true);
+                }
+            }
+
+            public PacketClientReady read(Reader in) throws IOException {
+                boolean resumable = in.remaining() > 0 && in.readBoolean();
+                return new PacketClientReady(resumable, in.remaining() > 0 && in.readBoolean());
+            }
+        });
+        register(PacketType.JOIN_BOARD, PacketJoinBoard.class, new Codec<PacketJoinBoard>() {
+            public void write(PacketJoinBoard packet, Writer out) throws IOException {
+                writeBoard(packet.boardName(), out);
+                writeIdentifiable(packet.user(), out);
+                Rectangle viewport = packet.viewport();
+                if (viewport != null) {
+                    // left out for a client sent the whole board at once, as clients without it are
+                    out.writeInt(viewport.x);
+                    out.writeInt(viewport.y);
+                    out.writeInt(viewport.width);
+                    out.writeInt(viewport.height);
+                }
+            }
+
+            public PacketJoinBoard read(Reader in) throws IOException {
+                BoardIdentifier boardName = readBoard(in);
+                Identifiable user = readIdentifiable(in);
+                Rectangle viewport = null;
+                if (in.remaining() > 0) {
+                    viewport = new Rectangle(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                }
+                return new PacketJoinBoard(boardName, user, viewport);
+            }
+        });
+        register(PacketType.EXIT_BOARD, PacketExitBoard.class, new Codec<PacketExitBoard>() {
+            public void write(PacketExitBoard packet, Writer out) {
+            }
+
+            public PacketExitBoard read(Reader in) {
+                return new PacketExitBoard();
+            }
+        });
+        register(PacketType.BOARD_MODEL, PacketBoardModel.class, new Codec<PacketBoardModel>() {
+            public void write(PacketBoardModel packet, Writer out) throws IOException {
+                writeBoard(packet.boardName(), out);
+                writeIdentifiables(packet.users(), out);
+                writeIdentifiable(packet.getOwner(), out);
+                writeCanvas(packet.canvas(), out);
+                int[] preview = packet.preview();
+                if (preview != null) {
+                    out.writeCount(preview.length);
+                    for (int color : preview) {
+                        out.writeInt(color);
+                    }
+                }
+            }
+
+            public PacketBoardModel read(Reader in) throws IOException {
+                BoardIdentifier boardName = readBoard(in);
+                Identifiable[] users = readIdentifiables(in);
+                Identifiable owner = readIdentifiable(in);
+                Canvas canvas = readCanvas(in);
+                int[] preview = null;
+                if (in.remaining() > 0) {
+                    preview = new int[in.readCount()];
+                    for (int i = 0; i < preview.length; i++) {
+                        preview[i] = in.readInt();
+                    }
+                }
+                return new PacketBoardModel(boardName, canvas, users, owner, preview);
+            }
+        });
+        register(PacketType.BOARD_USERS, PacketBoardUsers.class, new Codec<PacketBoardUsers>() {
+            public void write(PacketBoardUsers packet, Writer out) throws IOException {
+                writeIdentifiables(packet.boardUsers(), out);
+            }
+
+            public PacketBoardUsers read(Reader in) throws IOException {
+                return new PacketBoardUsers(readIdentifiables(in));
+            }
+        });
+        register(PacketType.BOARD_IDENTIFIER_LIST, PacketBoardIdentifierList.class, new Codec<PacketBoardIdentifierList>() {
+            public void write(PacketBoardIdentifierList packet, Writer out) {
+                writeBoards(packet.boards(), out);
+                out.writeLong(packet.version());
+            }
+
+            public PacketBoardIdentifierList read(Reader in) throws IOException {
+                return new PacketBoardIdentifierList(readBoards(in), in.readLong());
+            }
+        });
+        register(PacketType.DRAW_COMMAND, PacketDrawCommand.class, new Codec<PacketDrawCommand>() {
+            public void write(PacketDrawCommand packet, Writer out) throws IOException {
+                writeDrawCommand(packet.drawCommand(), out);
+            }
+
+            public PacketDrawCommand read(Reader in) throws IOException {
+                return new PacketDrawCommand(readDrawCommand(in));
+            }
+        });
+        register(PacketType.CAN_JOIN_BOARD, PacketCanJoinBoard.class, new Codec<PacketCanJoinBoard>() {
+            public void write(PacketCanJoinBoard packet, Writer out) {
+                writeBoard(packet.boardName(), out);
+                writeClient(packet.user(), out);
+            }
+
+            public PacketCanJoinBoard read(Reader in) throws IOException {
+                return new PacketCanJoinBoard(readBoard(in), readClient(in));
+            }
+        });
+        register(PacketType.CAN_JOIN_BOARD_RESULT, PacketCanJoinBoardResult.class, new Codec<PacketCanJoinBoardResult>() {
+            public void write(PacketCanJoinBoardResult packet, Writer out) {
+                writeBoard(packet.boardName(), out);
+                writeClient(packet.user(), out);
+                out.writeBoolean(packet.result());
+            }
+
+            public PacketCanJoinBoardResult read(Reader in) throws IOException {
+                return new PacketCanJoinBoardResult(readBoard(in), readClient(in), in.readBoolean());
+            }
+        });
+        register(PacketType.MESSAGE, PacketMessage.class, new Codec<PacketMessage>() {
+            public void write(PacketMessage packet, Writer out) {
+                out.writeString(packet.text());
+            }
+
+            public PacketMessage read(Reader in) throws IOException {
+                return new PacketMessage(in.readString());
+            }
+        });
+        register(PacketType.LAYER_ADJUSTMENT, PacketLayerAdjustment.class, new Codec<PacketLayerAdjustment>() {
+            public void write(PacketLayerAdjustment packet, Writer out) {
+                LayerProperties properties = packet.layerProperties();
+                writeLayer(properties.layerIdentifier(), out);
+                out.writeDouble(properties.getOpacity());
+                out.writeBoolean(properties.getVisibility());
+                out.writeByte(packet.adjustment().ordinal());
+            }
+
+            public PacketLayerAdjustment read(Reader in) throws IOException {
+                LayerProperties properties = new LayerProperties(readLayer(in));
+                properties.setOpacity(in.readDouble());
+                properties.setVisibility(in.readBoolean());
+                return new PacketLayerAdjustment(properties, in.readEnum(LayerAdjustment.values()));
+            }
+        });
+        register(PacketType.NEW_LAYER, PacketNewLayer.class, new Codec<PacketNewLayer>() {
+            public void write(PacketNewLayer packet, Writer out) {
+                writeLayer(packet.layerName(), out);
+            }
+
+            public PacketNewLayer read(Reader in) throws IOException {
+                return new PacketNewLayer(readLayer(in));
+            }
+        });
+        register(PacketType.BOARD_DIRECTORY_QUERY, PacketBoardDirectoryQuery.class, new Codec<PacketBoardDirectoryQuery>() {
+            public void write(PacketBoardDirectoryQuery packet, Writer out) {
+                out.writeString(packet.prefix());
+                out.writeInt(packet.offset());
+                out.writeInt(packet.limit());
+                out.writeBoolean(packet.subscribe());
+            }
+
+            public PacketBoardDirectoryQuery read(Reader in) throws IOException {
+                return new PacketBoardDirectoryQuery(in.readString(), in.readInt(), in.readInt(), in.readBoolean());
+            }
+        });
+        register(PacketType.BOARD_DIRECTORY_PAGE, PacketBoardDirectoryPage.class, new Codec<PacketBoardDirectoryPage>() {
+            public void write(PacketBoardDirectoryPage packet, Writer out) {
+                out.writeString(packet.prefix());
+                out.writeInt(packet.offset());
+                out.writeInt(packet.total());
+                out.writeLong(packet.version());
+                writeBoards(packet.boards(), out);
+            }
+
+            public PacketBoardDirectoryPage read(Reader in) throws IOException {
+                return new PacketBoardDirectoryPage(in.readString(), in.readInt(), in.readInt(), in.readLong(), readBoards(in));
+            }
+        });
+        register(PacketType.BOARD_DIRECTORY_DELTA, PacketBoardDirectoryDelta.class, new Codec<PacketBoardDirectoryDelta>() {
+            public void write(PacketBoardDirectoryDelta packet, Writer out) {
+                out.writeLong(packet.version());
+                writeBoard(packet.board(), out);
+                out.writeBoolean(packet.added());
+            }
+
+            public PacketBoardDirectoryDelta read(Reader in) throws IOException {
+                return new PacketBoardDirectoryDelta(in.readLong(), readBoard(in), in.readBoolean());
+            }
+        });
+        register(PacketType.BOARD_DIRECTORY_CLOSE, PacketBoardDirectoryClose.class, new Codec<PacketBoardDirectoryClose>() {
+            public void write(PacketBoardDirectoryClose packet, Writer out) {
+            }
+
+            public PacketBoardDirectoryClose read(Reader in) {
+                return new PacketBoardDirectoryClose();
+            }
+        });
+        register(PacketType.MIGRATION, PacketMigration.class, new Codec<PacketMigration>() {
+            public void write(PacketMigration packet, Writer out) {
+                out.writeByte(packet.step().ordinal());
+                writeBoard(packet.board(), out);
+                out.writeLong(packet.sequence());
+                out.writeBoolean(packet.playing());
+            }
+
+            public PacketMigration read(Reader in) throws IOException {
+                return new PacketMigration(in.readEnum(PacketMigration.Step.values()), readBoard(in), in.readLong(), in.readBoolean());
+            }
+        });
+        register(PacketType.BOARD_TRANSFER, PacketBoardTransfer.class, new Codec<PacketBoardTransfer>() {
+            public void write(PacketBoardTransfer packet, Writer out) throws IOException {
+                writeBoard(packet.boardName(), out);
+                writeIdentifiable(packet.owner(), out);
+                out.writeLong(packet.sequence());
+                writeCanvas(packet.canvas(), out);
+            }
+
+            public PacketBoardTransfer read(Reader in) throws IOException {
+                BoardIdentifier boardName = readBoard(in);
+                Identifiable owner = readIdentifiable(in);
+                long sequence = in.readLong();
+                return new PacketBoardTransfer(boardName, readCanvas(in), owner, sequence);
+            }
+        });
+        register(PacketType.BOARD_TILES, PacketBoardTiles.class, new Codec<PacketBoardTiles>() {
+            public void write(PacketBoardTiles packet, Writer out) throws IOException {
+                writeBoard(packet.boardName(), out);
+                out.writeBytes(SnapshotCodec.encodeChunk(packet.tiles()));
+            }
+
+            public PacketBoardTiles read(Reader in) throws IOException {
+                return new PacketBoardTiles(readBoard(in), SnapshotCodec.decodeChunk(in.readBytes()));
+            }
+        });
+        register(PacketType.RESUME, PacketResume.class, new Codec<PacketResume>() {
+            public void write(PacketResume packet, Writer out) {
+                writeBoard(packet.boardName(), out);
+                out.writeLong(packet.token());
+                out.writeLong(packet.sequence());
+                out.writeBoolean(packet.resumed());
+                Rectangle viewport = packet.viewport();
+                if (viewport != null) {
+                    out.writeInt(viewport.x);
+                    out.writeInt(viewport.y);
+                    out.writeInt(viewport.width);
+                    out.writeInt(viewport.height);
+                }
+            }
+
+            public PacketResume read(Reader in) throws IOException {
+                BoardIdentifier boardName = readBoard(in);
+                long token = in.readLong();
+                long sequence = in.readLong();
+                boolean resumed = in.readBoolean();
+                Rectangle viewport = null;
+                if (in.remaining() > 0) {
+                    viewport = new Rectangle(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                }
+                return new PacketResume(boardName, token, sequence, resumed, viewport);
+            }
+        });
+        register(PacketType.TILE_DIGEST, PacketTileDigest.class, new Codec<PacketTileDigest>() {
+            public void write(PacketTileDigest packet, Writer out) {
+                writeBoard(packet.boardName(), out);
+                TileDigest digest = packet.digest();
+                out.writeLong(digest.sequence());
+                out.writeInt(digest.layerCount());
+                out.writeCount(digest.tileCount());
+                for (int i = 0; i < digest.tileCount(); i++) {
+                    out.writeInt(digest.index(i));
+                    long hash = digest.hash(i);
+                    out.writeFixedInt((int) (hash >>> 32));
+                    out.writeFixedInt((int) hash);
+                }
+            }
+
+            public PacketTileDigest read(Reader in) throws IOException {
+                BoardIdentifier boardName = readBoard(in);
+                long sequence = in.readLong();
+                int layerCount = in.readInt();
+                int[] indexes = new int[in.readCount()];
+                long[] hashes = new long[indexes.length];
+                for (int i = 0; i < indexes.length; i++) {
+                    indexes[i] = in.readInt();
+                    long high = in.readFixedInt();
+                    hashes[i] = high << 32 | in.readFixedInt() & 0xFFFFFFFFL;
+                }
+                return new PacketTileDigest(boardName, new TileDigest(sequence, layerCount, indexes, hashes));
+            }
+        });
+        register(PacketType.TILE_REPAIR, PacketTileRepair.class, new Codec<PacketTileRepair>() {
+            public void write(PacketTileRepair packet, Writer out) {
+                writeBoard(packet.boardName(), out);
+                int[] indexes = packet.indexes();
+                out.writeCount(indexes.length);
+                for (int index : indexes) {
+                    out.writeInt(index);
+                }
+            }
+
+            public PacketTileRepair read(Reader in) throws IOException {
+                BoardIdentifier boardName = readBoard(in);
+                int[] indexes = new int[in.readCount()];
+                for (int i = 0; i < indexes.length; i++) {
+                    indexes[i] = in.readInt();
+                }
+                return new PacketTileRepair(boardName, indexes);
+            }
+        });
+    }
+}
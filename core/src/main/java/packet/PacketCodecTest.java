@@ -0,0 +1,310 @@
+package packet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import name.BoardIdentifier;
+import name.ClientIdentifier;
+import name.Identifiable;
+import name.LayerIdentifier;
+import canvas.Canvas;
+import canvas.Pixel;
+import canvas.TileChunk;
+import canvas.TileDigest;
+import canvas.command.DrawCommandFill;
+import canvas.command.DrawCommandLine;
+import canvas.command.DrawCommandPixel;
+import canvas.command.DrawCommandPolyline;
+import canvas.layer.LayerAdjustment;
+import canvas.layer.LayerProperties;
+
+import org.junit.Test;
+
+public class PacketCodecTest {
+    private static final ClientIdentifier CLIENT = new ClientIdentifier(3, "client");
+    private static final BoardIdentifier BOARD = new BoardIdentifier(7, "board \u00e9", CLIENT);
+    private static final LayerIdentifier LAYER = new LayerIdentifier(1, "Layer 1");
+    private static final Pixel PIXEL = new Pixel(-5, 600, new Color(10, 20, 30, 40));
+
+    private static Packet roundTrip(Packet packet) throws IOException {
+        byte[] bytes = PacketCodec.encode(packet, PacketFrame.HEADER_LENGTH);
+        return PacketCodec.decode(bytes, PacketFrame.HEADER_LENGTH, bytes.length - PacketFrame.HEADER_LENGTH);
+    }
+
+    private static int size(Packet packet, WireFormat format) throws IOException {
+        return PacketFrame.of(packet).length(format);
+    }
+
+    @Test
+    public void everyTypeTest() throws IOException {
+        // test every packet type has a codec, and each comes back as it was sent
+        Set<PacketType> seen = EnumSet.noneOf(PacketType.class);
+
+        PacketNewClient newClient = (PacketNewClient) roundTrip(new PacketNewClient(CLIENT));
+        assertEquals(CLIENT, newClient.senderName());
+        seen.add(PacketType.NEW_CLIENT);
+
+        PacketNewBoard newBoard = (PacketNewBoard) roundTrip(new PacketNewBoard(BOARD, 800, 600, CLIENT));
+        assertEquals(BOARD, newBoard.boardName());
+        assertEquals(CLIENT, newBoard.boardName().owner());
+        assertEquals(800, newBoard.width());
+        assertEquals(600, newBoard.height());
+        assertEquals(CLIENT, newBoard.owner());
+        seen.add(PacketType.NEW_BOARD);
+
+        assertFalse(((PacketClientReady) roundTrip(new PacketClientReady())).resumable());
+        assertTrue(((PacketClientReady) roundTrip(new PacketClientReady(true))).resumable());
+        assertFalse(((PacketClientReady) roundTrip(new PacketClientReady(true))).tileDigests());
+        PacketClientReady ready = (PacketClientReady) roundTrip(new PacketClientReady(false, true));
+        assertFalse(ready.resumable());
+        assertTrue(ready.tileDigests());
+        seen.add(PacketType.CLIENT_READY);
+
+        PacketJoinBoard join = (PacketJoinBoard) roundTrip(new PacketJoinBoard(BOARD, null));
+        assertEquals(BOARD, join.boardName());
+        assertEquals(null, join.user());
+        assertEquals(null, join.viewport());
+        join = (PacketJoinBoard) roundTrip(new PacketJoinBoard(BOARD, CLIENT, new Rectangle(-5, 10, 1920, 1080)));
+        assertEquals(CLIENT, join.user());
+        assertEquals(new Rectangle(-5, 10, 1920, 1080), join.viewport());
+        seen.add(PacketType.JOIN_BOARD);
+
+        assertTrue(roundTrip(new PacketExitBoard()) instanceof PacketExitBoard);
+        seen.add(PacketType.EXIT_BOARD);
+
+        Canvas canvas = new Canvas(20, 10);
+        PacketBoardModel model = (PacketBoardModel) roundTrip(
+                new PacketBoardModel(BOARD, canvas, new Identifiable[] { CLIENT, LAYER }, CLIENT));
+        assertEquals(BOARD, model.boardName());
+        assertArrayEquals(new Identifiable[] { CLIENT, LAYER }, model.users());
+        assertEquals(CLIENT, model.getOwner());
+        assertEquals(20, model.canvas().width());
+        assertEquals(null, model.preview());
+        int[] preview = { 0, 0xFF102030 };
+        model = (PacketBoardModel) roundTrip(new PacketBoardModel(BOARD, canvas, new Identifiable[0], CLIENT, preview));
+        assertArrayEquals(preview, model.preview());
+        seen.add(PacketType.BOARD_MODEL);
+
+        PacketBoardUsers users = (PacketBoardUsers) roundTrip(new PacketBoardUsers(new Identifiable[] { CLIENT, BOARD }));
+        assertArrayEquals(new Identifiable[] { CLIENT, BOARD }, users.boardUsers());
+        seen.add(PacketType.BOARD_USERS);
+
+        BoardIdentifier[] boards = { BOARD, BoardIdentifier.NULL_BOARD };
+        PacketBoardIdentifierList list = (PacketBoardIdentifierList) roundTrip(new PacketBoardIdentifierList(boards, 12));
+        assertArrayEquals(boards, list.boards());
+        assertEquals(12, list.version());
+        seen.add(PacketType.BOARD_IDENTIFIER_LIST);
+
+        PacketDrawCommand pixel = new PacketDrawCommand(new DrawCommandPixel(LAYER, PIXEL));
+        pixel.setSequence(1L << 40);
+        PacketDrawCommand decodedPixel = (PacketDrawCommand) roundTrip(pixel);
+        assertEquals(1L << 40, decodedPixel.sequence());
+        assertEquals(LAYER, decodedPixel.drawCommand().id());
+        assertEquals(PIXEL, ((DrawCommandPixel) decodedPixel.drawCommand()).pixel());
+        DrawCommandFill fill = (DrawCommandFill) ((PacketDrawCommand) roundTrip(
+                new PacketDrawCommand(new DrawCommandFill(LAYER, PIXEL)))).drawCommand();
+        assertEquals(PIXEL, fill.pixel());
+        BasicStroke stroke = new BasicStroke(2.5f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_BEVEL);
+        PacketDrawCommand line = (PacketDrawCommand) roundTrip(new PacketDrawCommand(
+                new DrawCommandLine(LAYER, PIXEL, new Pixel(1, 2, Color.RED), stroke, 4)));
+        assertEquals(SequencedPacket.UNSEQUENCED, line.sequence());
+        DrawCommandLine decodedLine = (DrawCommandLine) line.drawCommand();
+        assertEquals(PIXEL, decodedLine.pixelStart());
+        assertEquals(new Pixel(1, 2, Color.RED), decodedLine.pixelEnd());
+        assertEquals(stroke, decodedLine.stroke());
+        assertEquals(4, decodedLine.symetry());
+        seen.add(PacketType.DRAW_COMMAND);
+
+        PacketCanJoinBoard canJoin = (PacketCanJoinBoard) roundTrip(new PacketCanJoinBoard(BOARD, CLIENT));
+        assertEquals(BOARD, canJoin.boardName());
+        assertEquals(CLIENT, canJoin.user());
+        seen.add(PacketType.CAN_JOIN_BOARD);
+
+        PacketCanJoinBoardResult result = (PacketCanJoinBoardResult) roundTrip(new PacketCanJoinBoardResult(BOARD, CLIENT, true));
+        assertEquals(CLIENT, result.user());
+        assertTrue(result.result());
+        seen.add(PacketType.CAN_JOIN_BOARD_RESULT);
+
+        assertEquals("h\u00e9llo", ((PacketMessage) roundTrip(new PacketMessage("h\u00e9llo"))).text());
+        assertEquals(null, ((PacketMessage) roundTrip(new PacketMessage(null))).text());
+        seen.add(PacketType.MESSAGE);
+
+        LayerProperties properties = new LayerProperties(LAYER);
+        properties.setOpacity(0.25);
+        properties.setVisibility(false);
+        PacketLayerAdjustment adjustment = (PacketLayerAdjustment) roundTrip(
+                new PacketLayerAdjustment(properties, LayerAdjustment.PROPERTIES));
+        assertEquals(LAYER, adjustment.layer());
+        assertEquals(0.25, adjustment.layerProperties().getOpacity(), 0);
+        assertEquals(false, adjustment.layerProperties().getVisibility());
+        assertEquals(LayerAdjustment.PROPERTIES, adjustment.adjustment());
+        seen.add(PacketType.LAYER_ADJUSTMENT);
+
+        PacketNewLayer newLayer = new PacketNewLayer(LAYER);
+        newLayer.setSequence(9);
+        PacketNewLayer decodedLayer = (PacketNewLayer) roundTrip(newLayer);
+        assertEquals(LAYER, decodedLayer.layerName());
+        assertEquals(9, decodedLayer.sequence());
+        seen.add(PacketType.NEW_LAYER);
+
+        PacketBoardDirectoryQuery query = (PacketBoardDirectoryQuery) roundTrip(new PacketBoardDirectoryQuery("bo", 50, 25, true));
+        assertEquals("bo", query.prefix());
+        assertEquals(50, query.offset());
+        assertEquals(25, query.limit());
+        assertTrue(query.subscribe());
+        seen.add(PacketType.BOARD_DIRECTORY_QUERY);
+
+        PacketBoardDirectoryPage page = (PacketBoardDirectoryPage) roundTrip(new PacketBoardDirectoryPage("bo", 50, 51, 3, boards));
+        assertEquals(51, page.total());
+        assertEquals(3, page.version());
+        assertArrayEquals(boards, page.boards());
+        seen.add(PacketType.BOARD_DIRECTORY_PAGE);
+
+        PacketBoardDirectoryDelta delta = (PacketBoardDirectoryDelta) roundTrip(new PacketBoardDirectoryDelta(4, BOARD, false));
+        assertEquals(4, delta.version());
+        assertEquals(BOARD, delta.board());
+        assertEquals(false, delta.added());
+        seen.add(PacketType.BOARD_DIRECTORY_DELTA);
+
+        assertTrue(roundTrip(new PacketBoardDirectoryClose()) instanceof PacketBoardDirectoryClose);
+        seen.add(PacketType.BOARD_DIRECTORY_CLOSE);
+
+        PacketMigration migration = (PacketMigration) roundTrip(
+                new PacketMigration(PacketMigration.Step.RESUME, BOARD, SequencedPacket.UNSEQUENCED, true));
+        assertEquals(PacketMigration.Step.RESUME, migration.step());
+        assertEquals(SequencedPacket.UNSEQUENCED, migration.sequence());
+        assertTrue(migration.playing());
+        seen.add(PacketType.MIGRATION);
+
+        PacketBoardTransfer transfer = (PacketBoardTransfer) roundTrip(new PacketBoardTransfer(BOARD, canvas, CLIENT, 77));
+        assertEquals(BOARD, transfer.boardName());
+        assertEquals(CLIENT, transfer.owner());
+        assertEquals(77, transfer.sequence());
+        assertEquals(10, transfer.canvas().height());
+        seen.add(PacketType.BOARD_TRANSFER);
+
+        canvas.drawPixel(canvas.layers()[0].layerProperties().layerIdentifier(), new Pixel(19, 9, Color.BLUE));
+        PacketBoardTiles tiles = (PacketBoardTiles) roundTrip(new PacketBoardTiles(BOARD, TileChunk.of(canvas, new int[] { 0 })));
+        assertEquals(BOARD, tiles.boardName());
+        assertEquals(1, tiles.tiles().tileCount());
+        assertEquals(Color.BLUE.getRGB(), tiles.tiles().tile(0, 0)[9 * 20 + 19]);
+        seen.add(PacketType.BOARD_TILES);
+
+        PacketResume resume = (PacketResume) roundTrip(new PacketResume(BOARD, 0x7FEDCBA987654321L, 1234, true));
+        assertEquals(BOARD, resume.boardName());
+        assertEquals(0x7FEDCBA987654321L, resume.token());
+        assertEquals(1234, resume.sequence());
+        assertTrue(resume.resumed());
+        assertEquals(null, resume.viewport());
+        resume = (PacketResume) roundTrip(new PacketResume(BOARD, -5, SequencedPacket.UNSEQUENCED, false, new Rectangle(0, 0, 640, 480)));
+        assertEquals(-5, resume.token());
+        assertEquals(SequencedPacket.UNSEQUENCED, resume.sequence());
+        assertFalse(resume.resumed());
+        assertEquals(new Rectangle(0, 0, 640, 480), resume.viewport());
+        seen.add(PacketType.RESUME);
+
+        TileDigest sent = TileDigest.of(canvas, 77, new int[] { 0 });
+        PacketTileDigest digest = (PacketTileDigest) roundTrip(new PacketTileDigest(BOARD, sent));
+        assertEquals(BOARD, digest.boardName());
+        assertEquals(77, digest.digest().sequence());
+        assertEquals(1, digest.digest().layerCount());
+        assertEquals(0, digest.digest().index(0));
+        assertEquals(sent.hash(0), digest.digest().hash(0));
+        assertEquals(0, digest.digest().diverged(canvas).length);
+        seen.add(PacketType.TILE_DIGEST);
+
+        PacketTileRepair repair = (PacketTileRepair) roundTrip(new PacketTileRepair(BOARD, new int[] { 0, 5, 4000 }));
+        assertEquals(BOARD, repair.boardName());
+        assertArrayEquals(new int[] { 0, 5, 4000 }, repair.indexes());
+        seen.add(PacketType.TILE_REPAIR);
+
+        assertEquals(EnumSet.allOf(PacketType.class), seen);
+    }
+
+    @Test
+    public void drawCommandSizeTest() throws IOException {
+        // test a stroke takes at least five times fewer bytes than when serialized
+        PacketDrawCommand pixel = new PacketDrawCommand(new DrawCommandPixel(LAYER, PIXEL));
+        pixel.setSequence(123456);
+        assertTrue(size(pixel, WireFormat.BINARY) * 5 <= size(pixel, WireFormat.SERIALIZED));
+
+        PacketDrawCommand line = new PacketDrawCommand(new DrawCommandLine(LAYER, PIXEL, PIXEL, new BasicStroke(3), 1));
+        line.setSequence(123456);
+        assertTrue(size(line, WireFormat.BINARY) * 5 <= size(line, WireFormat.SERIALIZED));
+    }
+
+    @Test
+    public void polylineTest() throws IOException {
+        // test a drag sent as one polyline comes back point for point, in a tenth of the bytes of its segments
+        BasicStroke stroke = new BasicStroke(5, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        int[] points = new int[2 * 64];
+        int x = 400;
+        int y = 300;
+        for (int i = 0; i < points.length; i += 2) {
+            x += (i % 6) - 2;
+            y -= (i % 4);
+            points[i] = x;
+            points[i + 1] = y;
+        }
+        DrawCommandPolyline polyline = new DrawCommandPolyline(LAYER, Color.BLUE, stroke, 2, points);
+        PacketDrawCommand packet = new PacketDrawCommand(polyline);
+        packet.setSequence(123456);
+
+        DrawCommandPolyline decoded = (DrawCommandPolyline) ((PacketDrawCommand) roundTrip(packet)).drawCommand();
+        assertEquals(LAYER, decoded.id());
+        assertEquals(Color.BLUE, decoded.color());
+        assertEquals(stroke, decoded.stroke());
+        assertEquals(2, decoded.symetry());
+        assertEquals(64, decoded.pointCount());
+        for (int i = 0; i < 64; i++) {
+            assertEquals(points[2 * i], decoded.x(i));
+            assertEquals(points[2 * i + 1], decoded.y(i));
+        }
+
+        int segmentBytes = 0;
+        for (int i = 1; i < 64; i++) {
+            PacketDrawCommand segment = new PacketDrawCommand(new DrawCommandLine(LAYER,
+                    new Pixel(points[2 * i - 2], points[2 * i - 1], Color.BLUE),
+                    new Pixel(points[2 * i], points[2 * i + 1], Color.BLUE), stroke, 2));
+            segment.setSequence(123456 + i);
+            segmentBytes += size(segment, WireFormat.BINARY);
+        }
+        assertTrue(size(packet, WireFormat.BINARY) * 10 <= segmentBytes);
+        assertTrue(roundTrip(new PacketDrawCommand(new DrawCommandPolyline(LAYER, Color.BLUE, stroke, 1,
+                new int[] { 1, 2 }))) instanceof PacketDrawCommand);
+    }
+
+    @Test
+    public void malformedTest() throws IOException {
+        // test truncated frames and unknown types are rejected rather than misread
+        byte[] bytes = PacketCodec.encode(new PacketCanJoinBoard(BOARD, CLIENT), 0);
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                PacketCodec.decode(bytes, 0, length);
+                fail("Decoded " + length + " of " + bytes.length + " bytes");
+            } catch (IOException e) {
+            }
+        }
+        try {
+            PacketCodec.decode(Arrays.copyOf(bytes, bytes.length + 1), 0, bytes.length + 1);
+            fail("Decoded trailing bytes");
+        } catch (IOException e) {
+        }
+        try {
+            PacketCodec.decode(new byte[] { (byte) 200 }, 0, 1);
+            fail("Decoded an unknown type");
+        } catch (IOException e) {
+        }
+    }
+}
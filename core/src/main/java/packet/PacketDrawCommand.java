@@ -6,7 +6,7 @@ import canvas.command.DrawCommand;
  * Class that represents a DrawCommand packet
  *
  */
-public final class PacketDrawCommand extends Packet {
+public final class PacketDrawCommand extends SequencedPacket {
     private static final long serialVersionUID = 8957926132249921422L;
     private final DrawCommand drawCommand;
 
@@ -0,0 +1,178 @@
+package packet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A Packet encoded as one standalone, length-prefixed frame. Unlike the legacy connection, which
+ * keeps one ObjectOutputStream open for its whole lifetime, every frame can be decoded on its own by a
+ * non-blocking reader.
+ *
+ * A frame is encoded at most once per WireFormat, the first time a connection speaking that format
+ * needs its bytes, and is then shared as is by every such connection it is sent to. Broadcasting to a
+ * whole board therefore costs one encoding rather than one per user. Legacy connections serialize the
+ * packet themselves.
+ *
+ * Wire layout: a framed connection starts with the magic of its WireFormat, then every frame is an int
+ * length followed by that many bytes, either a Java serialization stream or a PacketCodec body.
+ */
+public final class PacketFrame {
+    public static final int HEADER_LENGTH = 4;
+    // a board copied between nodes in a PacketBoardTransfer, the only frame that may be this long
+    public static final int MAX_LENGTH = 1 << 30;
+    // any other frame a server reads, so a client can't make it allocate much
+    public static final int MAX_CLIENT_LENGTH = 4 << 20;
+    // longest frame body read in one go, longer ones are grown as their bytes arrive
+    public static final int READ_CHUNK = 64 * 1024;
+
+    private final Packet packet;
+    private volatile byte[] serialized;
+    private volatile byte[] binary;
+
+    private PacketFrame(Packet packet) {
+        this.packet = packet;
+    }
+
+    /**
+     * Wraps a packet in a frame that is encoded when it is first needed
+     * @param packet
+     * @return PacketFrame
+     */
+    public static PacketFrame of(Packet packet) {
+        return new PacketFrame(packet);
+    }
+
+    /**
+     * Encodes a packet into a frame right away
+     * @param packet
+     * @param format the format it will be sent in
+     * @return PacketFrame
+     * @throws IOException
+     */
+    public static PacketFrame encode(Packet packet, WireFormat format) throws IOException {
+        PacketFrame frame = new PacketFrame(packet);
+        frame.bytes(format);
+        return frame;
+    }
+
+    /**
+     * Decodes the body of a frame, without its length header
+     * @param format the format of the connection it was read from
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return Packet
+     * @throws IOException
+     */
+    public static Packet decode(WireFormat format, byte[] bytes, int offset, int length) throws IOException {
+        if (format == WireFormat.BINARY) {
+            return PacketCodec.decode(bytes, offset, length);
+        }
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length));
+        try {
+            return (Packet) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown packet class", e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Checks a length header read off the wire
+     * @param length
+     * @param max the longest frame the connection takes
+     * @throws IOException if the length can't belong to a frame
+     */
+    public static void checkLength(int length, int max) throws IOException {
+        if (length < 0 || length > max) {
+            throw new IOException("Invalid frame length " + length);
+        }
+    }
+
+    /**
+     * @param format
+     * @param first the first byte of a frame's body
+     * @return the longest the frame may be when a server reads it: only a board copied between nodes,
+     * which is only sent in BINARY, may be longer than MAX_CLIENT_LENGTH
+     */
+    public static int maxLengthFromPeer(WireFormat format, byte first) {
+        return format == WireFormat.BINARY && first == PacketType.BOARD_TRANSFER.code() ? MAX_LENGTH : MAX_CLIENT_LENGTH;
+    }
+
+    /**
+     * @return the packet in the frame
+     */
+    public Packet packet() {
+        return packet;
+    }
+
+    /**
+     * @return the whole frame in the format, length header included, encoding it if no one has yet
+     * @throws IOException
+     */
+    private byte[] bytes(WireFormat format) throws IOException {
+        boolean isBinary = format == WireFormat.BINARY;
+        byte[] encoded = isBinary ? binary : serialized;
+        if (encoded == null) {
+            synchronized (this) {
+                encoded = isBinary ? binary : serialized;
+                if (encoded == null) {
+                    if (isBinary) {
+                        encoded = PacketCodec.encode(packet, HEADER_LENGTH);
+                    }
+                    else {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+                        out.write(new byte[HEADER_LENGTH]);
+
+                        ObjectOutputStream objectOut = new ObjectOutputStream(out);
+                        objectOut.writeObject(packet);
+                        objectOut.close();
+                        encoded = out.toByteArray();
+                    }
+                    ByteBuffer.wrap(encoded).putInt(encoded.length - HEADER_LENGTH);
+                    if (isBinary) {
+                        binary = encoded;
+                    }
+                    else {
+                        serialized = encoded;
+                    }
+                }
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * @param format
+     * @return a fresh read-only buffer over the whole frame in the format
+     * @throws IOException
+     */
+    public ByteBuffer buffer(WireFormat format) throws IOException {
+        return ByteBuffer.wrap(bytes(format)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes the whole frame in the format to the stream
+     * @param out
+     * @param format
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out, WireFormat format) throws IOException {
+        out.write(bytes(format));
+    }
+
+    /**
+     * @param format
+     * @return length of the frame in the format, including its header
+     * @throws IOException
+     */
+    public int length(WireFormat format) throws IOException {
+        return bytes(format).length;
+    }
+}
@@ -24,4 +24,14 @@ public interface PacketHandler {
      void receivedMessagePacket(PacketMessage packet);
      void receivedLayerAdjustmentPacket(PacketLayerAdjustment packetLayerOrderList);
      void receivedNewLayerPacket(PacketNewLayer packetNewLayer);
+     void receivedBoardDirectoryQueryPacket(PacketBoardDirectoryQuery packet);
+     void receivedBoardDirectoryPagePacket(PacketBoardDirectoryPage packet);
+     void receivedBoardDirectoryDeltaPacket(PacketBoardDirectoryDelta packet);
+     void receivedBoardDirectoryClosePacket(PacketBoardDirectoryClose packet);
+     void receivedMigrationPacket(PacketMigration packet);
+     void receivedBoardTransferPacket(PacketBoardTransfer packet);
+     void receivedBoardTilesPacket(PacketBoardTiles packet);
+     void receivedResumePacket(PacketResume packet);
+     void receivedTileDigestPacket(PacketTileDigest packet);
+     void receivedTileRepairPacket(PacketTileRepair packet);
 }
@@ -1,5 +1,7 @@
 package packet;
 
+import java.awt.Rectangle;
+
 import name.BoardIdentifier;
 import name.Identifiable;
 
@@ -12,13 +14,26 @@ public final class PacketJoinBoard extends Packet {
 
     private final BoardIdentifier boardName;
     private Identifiable user;
+    private final Rectangle viewport;
     /**
-     * Constructor from the boardName the client joined
+     * Constructor from the boardName the client joined, for a client sent the whole board at once
      * @param boardName
      */
     public PacketJoinBoard(BoardIdentifier boardName, Identifiable user) {
+        this(boardName, user, null);
+    }
+    
+    /**
+     * Constructor from the boardName the client joined and the part of the board it shows
+     * @param boardName
+     * @param user
+     * @param viewport where on the board the client looks first, or null to be sent the whole board at
+     *        once rather than its preview then its tiles, nearest to the viewport first
+     */
+    public PacketJoinBoard(BoardIdentifier boardName, Identifiable user, Rectangle viewport) {
         this.boardName = boardName;
         this.user = user;
+        this.viewport = viewport;
     }
     
     /**
@@ -29,6 +44,14 @@ public final class PacketJoinBoard extends Packet {
     	return boardName;
     }
     
+    public Identifiable user() {
+        return user;
+    }
+    
+    public Rectangle viewport() {
+        return viewport;
+    }
+    
     /**
      * Handles receiving a JoinBoard packet
      * 
@@ -9,7 +9,7 @@ import canvas.layer.LayerProperties;
  * of the layers
  *
  */
-public class PacketLayerAdjustment extends Packet {
+public class PacketLayerAdjustment extends SequencedPacket {
 	private static final long serialVersionUID = 5126362530793078834L;
 	private final LayerAdjustment adjustment;
 	private final LayerProperties properties;
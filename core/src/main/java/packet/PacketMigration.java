@@ -0,0 +1,75 @@
+package packet;
+
+import name.BoardIdentifier;
+/**
+ * Class that represents one step of moving a board from one server to another. The gateway of the
+ * cluster sends each step to a server and the server answers with the same step once it has carried it
+ * out, with the board's sequence number at that point.
+ *
+ */
+public final class PacketMigration extends Packet {
+	private static final long serialVersionUID = 3526417310448950214L;
+	
+	/**
+	 * Steps of a migration, in the order they happen
+	 */
+	public enum Step {
+		// to the old server: send the board as a PacketBoardTransfer, then every change made to it
+		START,
+		// to the new server: answer once every change copied to it so far has been applied
+		CATCH_UP,
+		// to the old server, from a user of the board: stop sending the user the board's changes
+		LEAVE,
+		// to the old server: stop copying the board's changes, keeping the board until it is forgotten
+		CUTOVER,
+		// to the new server, once it has every change: start taking changes to the board
+		COMMIT,
+		// to the new server, from a user of the board: carry on with the board here
+		RESUME,
+		// to the old server, once the new server has committed the board: forget it and its files
+		FORGET,
+	}
+	
+	private final Step step;
+	private final BoardIdentifier board;
+	private final long sequence;
+	private final boolean playing;
+	
+	/**
+	 * Constructor for the step
+	 * @param step
+	 * @param board
+	 * @param sequence sequence number of the board's last change, SequencedPacket.UNSEQUENCED when asking
+	 * @param playing for LEAVE and RESUME, whether the user was sent the board's changes
+	 */
+	public PacketMigration(Step step, BoardIdentifier board, long sequence, boolean playing) {
+		this.step = step;
+		this.board = board;
+		this.sequence = sequence;
+		this.playing = playing;
+	}
+	
+	public Step step() {
+		return step;
+	}
+	
+	public BoardIdentifier board() {
+		return board;
+	}
+	
+	public long sequence() {
+		return sequence;
+	}
+	
+	public boolean playing() {
+		return playing;
+	}
+	
+	/**
+	 * Handles receiving a Migration packet
+	 */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedMigrationPacket(this);
+	}
+}
@@ -5,7 +5,7 @@ import name.LayerIdentifier;
  * Class that represents a packet a new layer created
  *
  */
-public class PacketNewLayer extends Packet {
+public class PacketNewLayer extends SequencedPacket {
 	
 	private static final long serialVersionUID = 2258037891058384987L;
 	private final LayerIdentifier layerName;
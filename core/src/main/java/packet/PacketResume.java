@@ -0,0 +1,79 @@
+package packet;
+
+import java.awt.Rectangle;
+
+import name.BoardIdentifier;
+/**
+ * Class that represents a packet of a user carrying on with a board after losing its connection. The
+ * server gives a user of a board a token when it becomes one, with the sequence number of the last change
+ * it was sent. A client that reconnects presents the token with the last change it applied, and is either
+ * sent the changes it missed or, if they are too old to be kept, the board again as when joining it.
+ *
+ */
+public final class PacketResume extends Packet {
+	private static final long serialVersionUID = -4371902656114853067L;
+	
+	public static final long NO_TOKEN = 0;
+	
+	private final BoardIdentifier boardName;
+	private final long token;
+	private final long sequence;
+	private final boolean resumed;
+	private final Rectangle viewport;
+	
+	/**
+	 * Constructor for the server's answer, or for handing out a token
+	 * @param boardName
+	 * @param token to resume with next time, NO_TOKEN if the client has to join the board again
+	 * @param sequence sequence number of the last change the client has been sent
+	 * @param resumed whether the client carries on with the board, the changes it missed following
+	 */
+	public PacketResume(BoardIdentifier boardName, long token, long sequence, boolean resumed) {
+		this(boardName, token, sequence, resumed, null);
+	}
+	
+	/**
+	 * Constructor
+	 * @param boardName
+	 * @param token
+	 * @param sequence
+	 * @param resumed
+	 * @param viewport for the client asking, where on the board it looks first if it has to be sent the
+	 *        board again, or null to be sent it at once
+	 */
+	public PacketResume(BoardIdentifier boardName, long token, long sequence, boolean resumed, Rectangle viewport) {
+		this.boardName = boardName;
+		this.token = token;
+		this.sequence = sequence;
+		this.resumed = resumed;
+		this.viewport = viewport;
+	}
+	
+	public BoardIdentifier boardName() {
+		return boardName;
+	}
+	
+	public long token() {
+		return token;
+	}
+	
+	public long sequence() {
+		return sequence;
+	}
+	
+	public boolean resumed() {
+		return resumed;
+	}
+	
+	public Rectangle viewport() {
+		return viewport;
+	}
+	
+	/**
+	 * Handles receiving a Resume packet
+	 */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedResumePacket(this);
+	}
+}
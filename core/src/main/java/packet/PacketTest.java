@@ -0,0 +1,55 @@
+package packet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import name.BoardIdentifier;
+
+import org.junit.Test;
+
+public class PacketTest {
+    
+      @Test
+          public void joinBoardPacketConstTest() {
+              // test creating a JoinBoardPacket
+          PacketJoinBoard packet = new PacketJoinBoard(new BoardIdentifier(4, "board", null), null);
+          assertTrue(packet.boardName().id() == 4);
+          assertTrue(packet.boardName().name().equals("board"));
+      }
+  
+    @Test
+    public void boardStatePacketConstTest() {
+        //Test constructing a boardStatePacket
+        BoardIdentifier[] boards = new BoardIdentifier[2];
+        
+        boards[0] = new BoardIdentifier(4, "name1", null);
+        boards[1] = new BoardIdentifier(7, "name2", null);
+        
+        PacketBoardIdentifierList packet = new PacketBoardIdentifierList(boards);   
+        assertArrayEquals(packet.boards(), boards);
+    }
+
+    @Test
+    public void sharedFrameTest() throws IOException {
+        // test one frame gives every connection of a format the same bytes, and they decode back to the packet
+        PacketFrame frame = PacketFrame.of(new PacketMessage("message"));
+        for (WireFormat format : new WireFormat[] { WireFormat.SERIALIZED, WireFormat.BINARY }) {
+            ByteArrayOutputStream first = new ByteArrayOutputStream();
+            ByteArrayOutputStream second = new ByteArrayOutputStream();
+            frame.writeTo(first, format);
+            frame.writeTo(second, format);
+            assertArrayEquals(first.toByteArray(), second.toByteArray());
+
+            byte[] bytes = first.toByteArray();
+            assertEquals(frame.length(format), bytes.length);
+            assertEquals(bytes.length - PacketFrame.HEADER_LENGTH, ByteBuffer.wrap(bytes).getInt());
+            Packet packet = PacketFrame.decode(format, bytes, PacketFrame.HEADER_LENGTH, bytes.length - PacketFrame.HEADER_LENGTH);
+            assertEquals("message", ((PacketMessage) packet).text());
+        }
+    }
+}
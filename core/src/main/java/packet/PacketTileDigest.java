@@ -0,0 +1,41 @@
+package packet;
+
+import name.BoardIdentifier;
+import canvas.TileDigest;
+/**
+ * Class that represents a packet of the hashes of some of the tiles of a board, sent every so often to
+ * the users that asked for them to check their copy of the board against
+ *
+ */
+public final class PacketTileDigest extends Packet {
+	private static final long serialVersionUID = 3085327796264624497L;
+	
+	private final BoardIdentifier boardName;
+	private final TileDigest digest;
+	
+	/**
+	 * Constructor
+	 * @param boardName
+	 * @param digest
+	 */
+	public PacketTileDigest(BoardIdentifier boardName, TileDigest digest) {
+		this.boardName = boardName;
+		this.digest = digest;
+	}
+	
+	public BoardIdentifier boardName() {
+		return boardName;
+	}
+	
+	public TileDigest digest() {
+		return digest;
+	}
+	
+	/**
+	 * Handles receiving a TileDigest packet
+	 */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedTileDigestPacket(this);
+	}
+}
@@ -0,0 +1,40 @@
+package packet;
+
+import name.BoardIdentifier;
+/**
+ * Class that represents a packet of a user asking for tiles of its board again, those its copy of the
+ * board got wrong according to a TileDigestPacket. The server answers with BoardTilesPackets.
+ *
+ */
+public final class PacketTileRepair extends Packet {
+	private static final long serialVersionUID = -8527050829185207719L;
+	
+	private final BoardIdentifier boardName;
+	private final int[] indexes;
+	
+	/**
+	 * Constructor
+	 * @param boardName
+	 * @param indexes of the tiles, row by row across the board
+	 */
+	public PacketTileRepair(BoardIdentifier boardName, int[] indexes) {
+		this.boardName = boardName;
+		this.indexes = indexes;
+	}
+	
+	public BoardIdentifier boardName() {
+		return boardName;
+	}
+	
+	public int[] indexes() {
+		return indexes.clone();
+	}
+	
+	/**
+	 * Handles receiving a TileRepair packet
+	 */
+	@Override
+	public void process(PacketHandler handler) {
+		handler.receivedTileRepairPacket(this);
+	}
+}
@@ -0,0 +1,80 @@
+package packet;
+/**
+ * Enum to represent different types of Packets. The code of each type starts its frame in the binary
+ * wire format, so codes must never be reused or changed, only added.
+ *
+ */
+public enum PacketType {
+    // announce that you are a new client in the game   
+    NEW_CLIENT(1), // client to server
+    
+    // announce the creation of a new board
+    NEW_BOARD(2), // client to server
+    
+    // client is ready to accept drawing commmands
+    CLIENT_READY(3), // client to server
+    
+    // announce that a client has just joined a board
+    JOIN_BOARD(4), // client to server and server to client
+
+    // announce that a client has just exited a board
+    EXIT_BOARD(5), // client to server and server to client
+    
+    // the entire board sent from the server to the client
+    // also includes a list of the clients
+    BOARD_MODEL(6), // server to client
+    
+    // all of the users in the board
+    BOARD_USERS(7), // server to client
+    
+    // all the boards in the game
+    BOARD_IDENTIFIER_LIST(8), // server to client
+    
+    // all the boards on the server
+    // a message to draw something on a board
+    DRAW_COMMAND(9), // sever to client and client to server
+    
+    // ask the owner of a board to let a client join it, and the owner's answer
+    CAN_JOIN_BOARD(10), // client to server and server to client
+    CAN_JOIN_BOARD_RESULT(11), // client to server and server to client
+    
+    // a chat message on a board
+    MESSAGE(12), // client to server and server to client
+    
+    // changes to the layers of a board
+    LAYER_ADJUSTMENT(13), // client to server and server to client
+    NEW_LAYER(14), // client to server and server to client
+    
+    // the board directory
+    BOARD_DIRECTORY_QUERY(15), // client to server
+    BOARD_DIRECTORY_PAGE(16), // server to client
+    BOARD_DIRECTORY_DELTA(17), // server to client
+    BOARD_DIRECTORY_CLOSE(18), // client to server
+    
+    // moving a board between the servers of a cluster
+    MIGRATION(19), // gateway to server and server to gateway
+    BOARD_TRANSFER(20), // server to server
+    
+    // the tiles of a board sent a few at a time after its preview
+    BOARD_TILES(21), // server to client
+    
+    // carrying on with a board after reconnecting, and the token to do it with
+    RESUME(22), // client to server and server to client
+    
+    // hashes of tiles of a board for its users to check theirs against, and the tiles they got wrong
+    TILE_DIGEST(23), // server to client
+    TILE_REPAIR(24); // client to server
+    
+    private final int code;
+    
+    private PacketType(int code) {
+        this.code = code;
+    }
+    
+    /**
+     * @return the byte identifying the type on the wire
+     */
+    public int code() {
+        return code;
+    }
+}
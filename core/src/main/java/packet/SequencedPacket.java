@@ -0,0 +1,30 @@
+package packet;
+
+/**
+ * A packet that changes a board. The server stamps each one with the board's next sequence number as
+ * it applies it, so every client receives a board's changes in exactly the order the server made them.
+ *
+ */
+public abstract class SequencedPacket extends Packet {
+	private static final long serialVersionUID = 3702412394155387532L;
+	
+	public static final long UNSEQUENCED = -1;
+	
+	private long sequence = UNSEQUENCED;
+	
+	/**
+	 * Returns the position of this change in the board's history
+	 * @return sequence number, or UNSEQUENCED if the server hasn't applied it yet
+	 */
+	public long sequence() {
+		return sequence;
+	}
+	
+	/**
+	 * Stamps the packet, only ever called by the board's sequencer
+	 * @param sequence
+	 */
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+}
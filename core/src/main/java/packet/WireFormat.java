@@ -0,0 +1,51 @@
+package packet;
+
+/**
+ * The ways packets can be encoded on a connection. A peer picks one with the first int it sends:
+ * nothing recognisable means the legacy stream, otherwise the magic of a framed format.
+ *
+ * A client asking for BINARY is answered with the magic of the format the server chose, so the switch
+ * away from Java serialization is negotiated and a server can still fall back to SERIALIZED frames.
+ *
+ */
+public enum WireFormat {
+    // one ObjectOutputStream per direction for the whole connection
+    LEGACY(0),
+    // length-prefixed frames, each a standalone Java serialization stream
+    SERIALIZED(0x57424631),
+    // length-prefixed frames encoded by the PacketCodec
+    BINARY(0x57424632);
+
+    private final int magic;
+
+    private WireFormat(int magic) {
+        this.magic = magic;
+    }
+
+    /**
+     * @return the int announcing the format, 0 for LEGACY which has none
+     */
+    public int magic() {
+        return magic;
+    }
+
+    /**
+     * @return whether packets are sent as PacketFrames
+     */
+    public boolean isFramed() {
+        return this != LEGACY;
+    }
+
+    /**
+     * @param magic first int sent by a peer
+     * @return the framed format it announces, or LEGACY if it isn't the magic of one
+     */
+    public static WireFormat forMagic(int magic) {
+        for (WireFormat format : values()) {
+            if (format.isFramed() && format.magic == magic) {
+                return format;
+            }
+        }
+        return LEGACY;
+    }
+}
@@ -0,0 +1,88 @@
+package benchmark;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import name.LayerIdentifier;
+import packet.Packet;
+import packet.PacketDrawCommand;
+import packet.PacketFrame;
+import packet.WireFormat;
+import canvas.Pixel;
+import canvas.command.DrawCommandLine;
+import canvas.command.DrawCommandPixel;
+
+/**
+ * Compares what a PacketDrawCommand costs on the wire in the SERIALIZED and the BINARY WireFormat: bytes
+ * per frame, and the time to encode and decode one. Every stroke a user draws is sent once to the server
+ * and once to every user of the board, so this is the cost that grows with a busy board.
+ *
+ * Usage: java -cp server-1.0.jar benchmark.CodecBenchmark [packets] [rounds]
+ */
+public class CodecBenchmark {
+    private static final LayerIdentifier LAYER = new LayerIdentifier(0, "Background");
+
+    public static void main(String[] args) throws IOException {
+        int packets = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        PacketDrawCommand[] commands = new PacketDrawCommand[packets];
+        for (int i = 0; i < packets; i++) {
+            Pixel start = new Pixel(i % 800, i % 600, i % 3 == 0 ? Color.RED : Color.BLUE);
+            Pixel end = new Pixel((i + 7) % 800, (i + 3) % 600, start.color());
+            commands[i] = new PacketDrawCommand(i % 2 == 0
+                    ? new DrawCommandPixel(LAYER, start)
+                    : new DrawCommandLine(LAYER, start, end, new BasicStroke(3), 1));
+            commands[i].setSequence(1000000 + i);
+        }
+
+        System.out.println(String.format("%-12s %12s %14s %14s", "format", "bytes/packet", "encode ns/op", "decode ns/op"));
+        long[] serialized = null;
+        for (int round = 0; round < rounds; round++) {
+            // the last round is reported, the ones before warm the JIT up
+            serialized = measure(commands, WireFormat.SERIALIZED);
+            long[] binary = measure(commands, WireFormat.BINARY);
+            if (round == rounds - 1) {
+                print(WireFormat.SERIALIZED, serialized);
+                print(WireFormat.BINARY, binary);
+                System.out.println(String.format("%-12s %12.1f %14.1f %14.1f", "ratio",
+                        (double) serialized[0] / binary[0], (double) serialized[1] / binary[1], (double) serialized[2] / binary[2]));
+            }
+        }
+    }
+
+    /**
+     * @return bytes, encoding nanoseconds and decoding nanoseconds per packet
+     */
+    private static long[] measure(PacketDrawCommand[] commands, WireFormat format) throws IOException {
+        byte[][] frames = new byte[commands.length][];
+        long start = System.nanoTime();
+        for (int i = 0; i < commands.length; i++) {
+            // a fresh frame each time, so nothing is memoized
+            ByteBuffer buffer = PacketFrame.of(commands[i]).buffer(format);
+            frames[i] = new byte[buffer.remaining()];
+            buffer.get(frames[i]);
+        }
+        long encode = System.nanoTime() - start;
+
+        long bytes = 0;
+        long check = 0;
+        start = System.nanoTime();
+        for (byte[] frame : frames) {
+            Packet packet = PacketFrame.decode(format, frame, PacketFrame.HEADER_LENGTH, frame.length - PacketFrame.HEADER_LENGTH);
+            check += ((PacketDrawCommand) packet).sequence();
+            bytes += frame.length;
+        }
+        long decode = System.nanoTime() - start;
+        if (check == 0) {
+            throw new AssertionError("Nothing decoded");
+        }
+        return new long[] { bytes / commands.length, encode / commands.length, decode / commands.length };
+    }
+
+    private static void print(WireFormat format, long[] result) {
+        System.out.println(String.format("%-12s %12d %14d %14d", format, result[0], result[1], result[2]));
+    }
+}
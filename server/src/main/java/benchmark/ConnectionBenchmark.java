@@ -0,0 +1,139 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import connection.ConnectionThreads;
+import connection.StreamConnection;
+import name.BoardIdentifier;
+import name.ClientIdentifier;
+import packet.PacketBoardDirectoryQuery;
+import packet.PacketCanJoinBoardResult;
+import packet.PacketNewClient;
+import server.TransportMode;
+import util.TestUtil;
+
+/**
+ * Compares what idle and lightly active connections cost the server with one platform thread per
+ * connection (--blocking) against one virtual thread per connection (--virtual).
+ *
+ * The server runs in a child JVM so only its threads are counted. Thread counts, resident memory and
+ * context switches are read from /proc, so this only runs on Linux, and the virtual mode only on JDK 21+.
+ *
+ * Usage: java -cp server-1.0.jar benchmark.ConnectionBenchmark [connections] [pings per connection]
+ */
+public class ConnectionBenchmark {
+    private static final int BASE_PORT = 4460;
+    private static final int SETTLE_MILLIS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int pings = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<TransportMode> modes = new ArrayList<TransportMode>();
+        modes.add(TransportMode.BLOCKING);
+        if (ConnectionThreads.virtualThreadsSupported()) {
+            modes.add(TransportMode.VIRTUAL);
+        } else {
+            System.out.println("Virtual threads not supported by this JDK, only measuring " + TransportMode.BLOCKING);
+        }
+
+        System.out.println(String.format("%-10s %8s %10s %12s %12s %12s %10s",
+                "mode", "threads", "rss(MB)", "ctx idle", "ctx active", "pings/s", "clients"));
+        for (TransportMode mode : modes) {
+            run(mode, BASE_PORT + mode.ordinal(), connections, pings);
+        }
+    }
+
+    private static void run(TransportMode mode, int port, int connections, int pings) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process server = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "server.Server", "--" + port, mode.flag())
+                .redirectErrorStream(true)
+                .redirectOutput(new File(System.getProperty("java.io.tmpdir"), "whiteboard-bench-" + mode + ".log"))
+                .start();
+        long pid = pid(server);
+
+        List<StreamConnection> clients = new ArrayList<StreamConnection>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                StreamConnection client = StreamConnection.open(TestUtil.connect(port));
+                client.sendPacket(new PacketNewClient(new ClientIdentifier(i, "bench" + i)));
+                // wait for the server to have taken the client in, a page of its board directory
+                client.sendPacket(new PacketBoardDirectoryQuery("", 0, 1, false));
+                client.readPacket();
+                clients.add(client);
+            }
+
+            Thread.sleep(SETTLE_MILLIS);
+            long idleSwitches = contextSwitches(pid);
+            Thread.sleep(SETTLE_MILLIS);
+            idleSwitches = contextSwitches(pid) - idleSwitches;
+
+            // Each client pings itself through the server, which routes the packet back by client id.
+            long start = System.nanoTime();
+            long activeSwitches = contextSwitches(pid);
+            for (int round = 0; round < pings; round++) {
+                for (int i = 0; i < clients.size(); i++) {
+                    clients.get(i).sendPacket(new PacketCanJoinBoardResult(BoardIdentifier.NULL_BOARD,
+                            new ClientIdentifier(i, "bench" + i), false));
+                }
+                for (StreamConnection client : clients) {
+                    client.readPacket();
+                }
+            }
+            activeSwitches = contextSwitches(pid) - activeSwitches;
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println(String.format("%-10s %8d %10.1f %12d %12d %12.0f %10d",
+                    mode, threads(pid), residentKilobytes(pid) / 1024.0, idleSwitches, activeSwitches,
+                    clients.size() * (double) pings / seconds, clients.size()));
+        } finally {
+            for (StreamConnection client : clients) {
+                client.close();
+            }
+            server.destroy();
+            server.waitFor();
+        }
+    }
+
+    private static long pid(Process process) throws Exception {
+        // Process.pid() is Java 9+, the sources still target 8.
+        return (Long) Process.class.getMethod("pid").invoke(process);
+    }
+
+    private static int threads(long pid) {
+        return new File("/proc/" + pid + "/task").list().length;
+    }
+
+    private static long residentKilobytes(long pid) throws IOException {
+        return statusField(new File("/proc/" + pid + "/status"), "VmRSS:");
+    }
+
+    private static long contextSwitches(long pid) throws IOException {
+        long total = 0;
+        for (File task : new File("/proc/" + pid + "/task").listFiles()) {
+            File status = new File(task, "status");
+            try {
+                total += statusField(status, "voluntary_ctxt_switches:");
+                total += statusField(status, "nonvoluntary_ctxt_switches:");
+            } catch (IOException e) {
+                // The thread exited while we were reading.
+            }
+        }
+        return total;
+    }
+
+    private static long statusField(File status, String field) throws IOException {
+        for (String line : Files.readAllLines(status.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith(field)) {
+                return Long.parseLong(line.substring(field.length()).trim().split("\\s+")[0]);
+            }
+        }
+        throw new IOException(field + " not found in " + status);
+    }
+}
@@ -0,0 +1,135 @@
+package benchmark;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import name.LayerIdentifier;
+import canvas.Canvas;
+import canvas.Pixel;
+import canvas.layer.Layer;
+import canvas.layer.TileMemory;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Measures the garbage collection pauses of a server holding one large board drawn all over, with its
+ * tiles on the heap and outside it. Every layer of the board is filled, then each round takes a snapshot,
+ * as a user joining or a checkpoint does, and draws strokes all over the board, copying the tiles the
+ * snapshot shares, before the snapshot is dropped.
+ *
+ * Run with a heap large enough for the board on the heap, e.g. -Xmx2g, and nothing else in the JVM. For
+ * numbers unaffected by each other, run it once per memory.
+ *
+ * Usage: java -cp server-1.0.jar benchmark.GcBenchmark [heap|direct|both] [size] [layers] [rounds] [strokes per round]
+ */
+public class GcBenchmark {
+    private static final AtomicLong maxPauseMillis = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        String memory = args.length > 0 ? args[0] : "both";
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 8192;
+        int layers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int strokes = args.length > 4 ? Integer.parseInt(args[4]) : 2000;
+        listenForPauses();
+
+        System.out.println(String.format("one %dx%d board of %d layers, %d rounds of %d strokes", size, size, layers,
+                rounds, strokes));
+        System.out.println(String.format("%-8s %10s %10s %12s %14s %12s %10s", "memory", "seconds", "gcs",
+                "gc time(ms)", "max pause(ms)", "heap(MB)", "tiles"));
+        for (TileMemory tileMemory : TileMemory.values()) {
+            if (memory.equals("both") || TileMemory.forName(memory) == tileMemory) {
+                run(tileMemory, size, layers, rounds, strokes);
+            }
+        }
+        TileMemory.setCurrent(TileMemory.HEAP);
+    }
+
+    private static void run(TileMemory memory, int size, int layers, int rounds, int strokes) {
+        TileMemory.setCurrent(memory);
+        System.gc();
+        long gcs = gcCount();
+        long gcTime = gcMillis();
+        maxPauseMillis.set(0);
+        long start = System.nanoTime();
+
+        Canvas canvas = new Canvas(size, size);
+        LayerIdentifier[] identifiers = new LayerIdentifier[layers];
+        identifiers[0] = canvas.layers()[0].layerProperties().layerIdentifier();
+        for (int l = 1; l < layers; l++) {
+            identifiers[l] = new LayerIdentifier(l, "Layer " + l);
+            canvas.addLayer(identifiers[l]);
+        }
+        for (Layer layer : canvas.layers()) {
+            layer.fillWithColor(Color.WHITE);
+        }
+        Random random = new Random(1);
+        BasicStroke stroke = new BasicStroke(5, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        for (int round = 0; round < rounds; round++) {
+            Canvas snapshot = canvas.snapshot();
+            for (int s = 0; s < strokes; s++) {
+                int x = random.nextInt(size);
+                int y = random.nextInt(size);
+                Color color = new Color(random.nextInt(0xFFFFFF));
+                canvas.drawLine(identifiers[random.nextInt(layers)], new Pixel(x, y, color),
+                        new Pixel(Math.min(size - 1, x + random.nextInt(200)), Math.min(size - 1, y + random.nextInt(200)), color),
+                        stroke, 1);
+            }
+            // kept until the strokes are drawn, as while it is being sent
+            snapshot.tileCount();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Runtime runtime = Runtime.getRuntime();
+        System.out.println(String.format("%-8s %10.1f %10d %12d %14d %12.1f %10d", memory, seconds, gcCount() - gcs,
+                gcMillis() - gcTime, maxPauseMillis.get(), (runtime.totalMemory() - runtime.freeMemory()) / 1e6,
+                canvas.tileCount()));
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += gc.getCollectionTime();
+        }
+        return millis;
+    }
+
+    /**
+     * Keeps the longest collection in maxPauseMillis
+     */
+    private static void listenForPauses() {
+        NotificationListener listener = new NotificationListener() {
+            public void handleNotification(Notification notification, Object handback) {
+                if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    return;
+                }
+                long duration = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+                        .getGcInfo().getDuration();
+                long max;
+                do {
+                    max = maxPauseMillis.get();
+                } while (duration > max && !maxPauseMillis.compareAndSet(max, duration));
+            }
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+        }
+    }
+}
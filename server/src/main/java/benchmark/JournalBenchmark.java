@@ -0,0 +1,116 @@
+package benchmark;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import models.Board;
+import name.BoardIdentifier;
+import name.LayerIdentifier;
+import packet.PacketBoardTransfer;
+import packet.PacketDrawCommand;
+import server.BoardScheduler;
+import server.BoardSequencer;
+import server.Durability;
+import server.Journal;
+import canvas.Canvas;
+import canvas.Pixel;
+import canvas.command.DrawCommandLine;
+
+/**
+ * Measures how many changes a second one board applies with its changes kept in memory only, and kept
+ * in a journal with ASYNC and SYNC durability, along with how many fsyncs the journal took. Changes are
+ * submitted as fast as the board takes them, as many users drawing at once would.
+ *
+ * Usage: java -cp server-1.0.jar benchmark.JournalBenchmark [changes] [journal directory]
+ */
+public class JournalBenchmark {
+    private static final int SIZE = 1000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int changes = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        File directory = args.length > 1 ? new File(args[1]) : Files.createTempDirectory("journal").toFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not make " + directory);
+        }
+
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        BoardScheduler scheduler = new BoardScheduler(2);
+        System.out.println(String.format("%d changes to one %dx%d board, journals in %s", changes, SIZE, SIZE, directory));
+        System.out.println(String.format("%-12s %14s %12s %16s", "durability", "changes/s", "fsyncs", "changes/fsync"));
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Durability durability : Durability.values()) {
+                run(durability, changes, directory, scheduler, writers, round == ROUNDS - 1);
+            }
+        }
+        scheduler.shutdown();
+        writers.shutdown();
+    }
+
+    /**
+     * Submits the changes to a new board and waits for the last one to be applied, and to be on disk
+     * for a journaled board
+     */
+    private static void run(Durability durability, int changes, File directory, BoardScheduler scheduler,
+            ExecutorService writers, boolean print) throws IOException, InterruptedException {
+        final Board model = new Board(new BoardIdentifier(1, "bench", null), new Canvas(SIZE, SIZE), null);
+        final BoardSequencer sequencer = new BoardSequencer(model, scheduler);
+        final LayerIdentifier layer = model.canvas().layers()[0].layerProperties().layerIdentifier();
+        Journal journal = null;
+        if (durability != Durability.OFF) {
+            journal = Journal.create(new File(directory, "benchmark.journal"), new PacketBoardTransfer(model, 0),
+                    durability, writers);
+            final Journal kept = journal;
+            sequencer.submit(new Runnable() {
+                public void run() {
+                    sequencer.setJournal(kept);
+                }
+            });
+        }
+
+        Random random = new Random(1);
+        BasicStroke stroke = new BasicStroke(3);
+        final CountDownLatch done = new CountDownLatch(1);
+        long start = System.nanoTime();
+        for (int i = 0; i < changes; i++) {
+            int x = random.nextInt(SIZE - 10);
+            int y = random.nextInt(SIZE - 10);
+            Color color = new Color(random.nextInt(0xFFFFFF));
+            final PacketDrawCommand packet = new PacketDrawCommand(new DrawCommandLine(layer, new Pixel(x, y, color),
+                    new Pixel(x + random.nextInt(10), y + random.nextInt(10), color), stroke, 1));
+            sequencer.submit(new Runnable() {
+                public void run() {
+                    packet.drawCommand().drawOn(model);
+                    sequencer.publish(packet);
+                }
+            });
+        }
+        sequencer.submit(new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        });
+        done.await();
+        if (journal != null) {
+            journal.awaitDurable(changes);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long commits = 0;
+        if (journal != null) {
+            commits = journal.commits();
+            journal.delete();
+        }
+        if (print) {
+            System.out.println(String.format("%-12s %14.0f %12d %16s", durability, changes * 1e9 / elapsed, commits,
+                    commits == 0 ? "-" : String.format("%.1f", (double) changes / commits)));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package benchmark;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.util.Random;
+
+import name.LayerIdentifier;
+import canvas.Canvas;
+import canvas.Pixel;
+import canvas.layer.Layer;
+
+/**
+ * Measures the heap whiteboards take with their layers stored as tiles, against the heap the same boards
+ * would take as one full image per layer. Every board is drawn on the way a real one is: a few regions
+ * of freehand strokes, mostly on the lower layers, the rest of the board and most upper layers blank.
+ *
+ * Run with a heap large enough for the boards, e.g. -Xmx2g, and nothing else in the JVM.
+ *
+ * Usage: java -cp server-1.0.jar benchmark.LayerMemoryBenchmark [boards] [width] [height] [layers] [strokes per board]
+ */
+public class LayerMemoryBenchmark {
+    private static final int REGIONS = 4;
+    private static final int REGION_SIZE = 500;
+    private static final int STEPS_PER_STROKE = 40;
+
+    public static void main(String[] args) {
+        int boards = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 3000;
+        int layers = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int strokes = args.length > 4 ? Integer.parseInt(args[4]) : 400;
+
+        Random random = new Random(1);
+        long before = usedHeap();
+        Canvas[] canvases = new Canvas[boards];
+        for (int b = 0; b < boards; b++) {
+            canvases[b] = new Canvas(width, height);
+            LayerIdentifier[] identifiers = new LayerIdentifier[layers];
+            identifiers[0] = canvases[b].layers()[0].layerProperties().layerIdentifier();
+            for (int l = 1; l < layers; l++) {
+                identifiers[l] = new LayerIdentifier(l, "Layer " + l);
+                canvases[b].addLayer(identifiers[l]);
+            }
+            draw(canvases[b], identifiers, strokes, random);
+        }
+        long used = usedHeap() - before;
+
+        long tiles = 0;
+        for (Canvas canvas : canvases) {
+            for (Layer layer : canvas.layers()) {
+                tiles += layer.tileCount();
+            }
+        }
+        long tileCount = (long) boards * layers * ((width + Layer.TILE_SIZE - 1) / Layer.TILE_SIZE)
+                * ((height + Layer.TILE_SIZE - 1) / Layer.TILE_SIZE);
+        long dense = (long) boards * layers * width * height * 4;
+
+        System.out.println(String.format("%d boards of %dx%d with %d layers and %d strokes each",
+                boards, width, height, layers, strokes));
+        System.out.println(String.format("%-12s %12s %14s", "storage", "tiles", "heap(MB)"));
+        System.out.println(String.format("%-12s %12d %14.1f", "full images", tileCount, dense / 1e6));
+        System.out.println(String.format("%-12s %12d %14.1f", "tiles", tiles, used / 1e6));
+        System.out.println(String.format("%-12s %12.1f %14.1f", "ratio", (double) tileCount / tiles, (double) dense / used));
+    }
+
+    /**
+     * Draws random walks in a few regions of the board, each stroke on a layer picked so that lower
+     * layers get most of them
+     */
+    private static void draw(Canvas canvas, LayerIdentifier[] identifiers, int strokes, Random random) {
+        int[] regionX = new int[REGIONS];
+        int[] regionY = new int[REGIONS];
+        for (int r = 0; r < REGIONS; r++) {
+            regionX[r] = random.nextInt(Math.max(1, canvas.width() - REGION_SIZE));
+            regionY[r] = random.nextInt(Math.max(1, canvas.height() - REGION_SIZE));
+        }
+        for (int s = 0; s < strokes; s++) {
+            int region = random.nextInt(REGIONS);
+            LayerIdentifier layer = identifiers[Math.min(identifiers.length - 1, (int) Math.abs(random.nextGaussian() * 1.5))];
+            Color color = new Color(random.nextInt(0xFFFFFF));
+            BasicStroke stroke = new BasicStroke(1 + random.nextInt(8), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+            int x = regionX[region] + random.nextInt(REGION_SIZE);
+            int y = regionY[region] + random.nextInt(REGION_SIZE);
+            for (int step = 0; step < STEPS_PER_STROKE; step++) {
+                int nextX = Math.max(0, Math.min(canvas.width() - 1, x + random.nextInt(21) - 10));
+                int nextY = Math.max(0, Math.min(canvas.height() - 1, y + random.nextInt(21) - 10));
+                canvas.drawLine(layer, new Pixel(x, y, color), new Pixel(nextX, nextY, color), stroke, 1);
+                x = nextX;
+                y = nextY;
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
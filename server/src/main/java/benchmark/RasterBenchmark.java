@@ -0,0 +1,213 @@
+package benchmark;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import name.LayerIdentifier;
+import canvas.Pixel;
+import canvas.layer.Layer;
+import canvas.layer.TileMemory;
+
+/**
+ * Measures how fast the segments of freehand strokes are drawn on the tiles of a layer by the Rasterizer,
+ * against Java2D drawing them tile by tile as layers used to, with its tiles on the heap and outside it.
+ * The strokes are those of the client's pens: round caps, widths from 1 to 40, a quarter of them gradients,
+ * some translucent, some drawn with symmetry.
+ *
+ * Each run draws the same segments a number of warm up rounds, then measured rounds, and reports the mean
+ * and spread of the time per segment and the bytes allocated per segment.
+ *
+ * Usage: java -cp server-1.0.jar benchmark.RasterBenchmark [heap|direct|both] [segments] [warm up rounds] [rounds]
+ */
+public class RasterBenchmark {
+    private static final LayerIdentifier LAYER = new LayerIdentifier(0, "Layer");
+    private static final int SIZE = 2048;
+    private static final int STEPS_PER_STROKE = 40;
+
+    public static void main(String[] args) {
+        String memory = args.length > 0 ? args[0] : "both";
+        int segments = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int warmUps = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        Segment[] workload = workload(segments, new Random(1));
+
+        System.out.println(String.format("%d segments on a %dx%d layer, %d warm up and %d measured rounds",
+                segments, SIZE, SIZE, warmUps, rounds));
+        System.out.println(String.format("%-8s %-12s %14s %10s %16s", "memory", "renderer", "us/segment", "+-",
+                "bytes/segment"));
+        for (TileMemory tileMemory : TileMemory.values()) {
+            if (memory.equals("both") || TileMemory.forName(memory) == tileMemory) {
+                TileMemory.setCurrent(tileMemory);
+                run(tileMemory, "java2d", new Java2DTiles(SIZE, SIZE), workload, warmUps, rounds);
+                run(tileMemory, "rasterizer", new RasterizerTiles(SIZE, SIZE), workload, warmUps, rounds);
+            }
+        }
+        TileMemory.setCurrent(TileMemory.HEAP);
+    }
+
+    private static void run(TileMemory memory, String name, Renderer renderer, Segment[] workload, int warmUps,
+            int rounds) {
+        for (int round = 0; round < warmUps; round++) {
+            draw(renderer, workload);
+        }
+        double[] micros = new double[rounds];
+        long allocated = 0;
+        for (int round = 0; round < rounds; round++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            draw(renderer, workload);
+            micros[round] = (System.nanoTime() - start) / 1e3 / workload.length;
+            allocated += allocatedBytes() - bytes;
+        }
+        double mean = 0;
+        for (double value : micros) {
+            mean += value / rounds;
+        }
+        double variance = 0;
+        for (double value : micros) {
+            variance += (value - mean) * (value - mean) / rounds;
+        }
+        System.out.println(String.format("%-8s %-12s %14.2f %10.2f %16d", memory.name().toLowerCase(), name, mean,
+                Math.sqrt(variance), allocated / rounds / workload.length));
+    }
+
+    private static void draw(Renderer renderer, Segment[] workload) {
+        for (Segment segment : workload) {
+            renderer.draw(segment);
+        }
+    }
+
+    /**
+     * Random walks all over the layer, a stroke at a time
+     */
+    private static Segment[] workload(int segments, Random random) {
+        Segment[] workload = new Segment[segments];
+        int x = 0;
+        int y = 0;
+        Color start = null;
+        Color end = null;
+        BasicStroke stroke = null;
+        int symetry = 1;
+        for (int i = 0; i < segments; i++) {
+            if (i % STEPS_PER_STROKE == 0) {
+                x = random.nextInt(SIZE);
+                y = random.nextInt(SIZE);
+                start = new Color(random.nextInt(0xFFFFFF) | (random.nextInt(4) == 0 ? 0x80000000 : 0xFF000000), true);
+                end = random.nextInt(4) == 0 ? new Color(random.nextInt(0xFFFFFF)) : start;
+                stroke = new BasicStroke(1 + random.nextInt(40), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+                symetry = random.nextInt(10) == 0 ? 4 : 1;
+            }
+            int nextX = Math.max(0, Math.min(SIZE - 1, x + random.nextInt(41) - 20));
+            int nextY = Math.max(0, Math.min(SIZE - 1, y + random.nextInt(41) - 20));
+            workload[i] = new Segment(new Pixel(x, y, start), new Pixel(nextX, nextY, end), stroke, symetry);
+            x = nextX;
+            y = nextY;
+        }
+        return workload;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static class Segment {
+        final Pixel start;
+        final Pixel end;
+        final BasicStroke stroke;
+        final int symetry;
+
+        Segment(Pixel start, Pixel end, BasicStroke stroke, int symetry) {
+            this.start = start;
+            this.end = end;
+            this.stroke = stroke;
+            this.symetry = symetry;
+        }
+    }
+
+    private interface Renderer {
+        void draw(Segment segment);
+    }
+
+    private static class RasterizerTiles implements Renderer {
+        private final Layer layer;
+
+        RasterizerTiles(int width, int height) {
+            this.layer = new Layer(width, height, LAYER, 0);
+        }
+
+        public void draw(Segment segment) {
+            layer.drawLine(LAYER, segment.start, segment.end, segment.stroke, segment.symetry);
+        }
+    }
+
+    /**
+     * Draws segments tile by tile with Java2D, as Layer did before the Rasterizer, the copies symmetry
+     * draws all over the segment itself
+     */
+    private static class Java2DTiles implements Renderer {
+        private final int width;
+        private final int height;
+        private final int columns;
+        private final BufferedImage[] tiles;
+
+        Java2DTiles(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.columns = (width + Layer.TILE_SIZE - 1) / Layer.TILE_SIZE;
+            this.tiles = new BufferedImage[columns * ((height + Layer.TILE_SIZE - 1) / Layer.TILE_SIZE)];
+        }
+
+        public void draw(Segment segment) {
+            Pixel start = segment.start;
+            Pixel end = segment.end;
+            Paint paint;
+            if (start.color() != end.color()) {
+                paint = new GradientPaint(start.x(), start.y(), start.color(), end.x(), end.y(), end.color());
+            }
+            else {
+                paint = start.color();
+            }
+            for (int i = 0; i < (segment.symetry > 1 ? 2 * segment.symetry : 1); i++) {
+                drawSegment(start.x(), start.y(), end.x(), end.y(), paint, segment.stroke);
+            }
+        }
+
+        private void drawSegment(int x1, int y1, int x2, int y2, Paint paint, BasicStroke stroke) {
+            Line2D line = new Line2D.Float(x1, y1, x2, y2);
+            Shape outline = new BasicStroke(stroke.getLineWidth() + 2, BasicStroke.CAP_SQUARE,
+                    BasicStroke.JOIN_MITER).createStrokedShape(line);
+            Rectangle bounds = outline.getBounds().intersection(new Rectangle(0, 0, width, height));
+            if (bounds.isEmpty()) {
+                return;
+            }
+            int size = Layer.TILE_SIZE;
+            for (int row = bounds.y / size; row <= (bounds.y + bounds.height - 1) / size; row++) {
+                for (int column = bounds.x / size; column <= (bounds.x + bounds.width - 1) / size; column++) {
+                    if (!outline.intersects(column * size, row * size, size, size)) {
+                        continue;
+                    }
+                    int index = row * columns + column;
+                    if (tiles[index] == null) {
+                        tiles[index] = TileMemory.current().allocate(size, size);
+                    }
+                    Graphics2D g = tiles[index].createGraphics();
+                    g.translate(-column * size, -row * size);
+                    g.setPaint(paint);
+                    g.setStroke(stroke);
+                    g.drawLine(x1, y1, x2, y2);
+                    g.dispose();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package cluster;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import connection.StreamConnection;
+import name.BoardIdentifier;
+import packet.Packet;
+import packet.PacketBoardTransfer;
+import packet.PacketMigration;
+import packet.SequencedPacket;
+
+/**
+ * One board moving from one node to another, run by the Gateway. In order:
+ *
+ * The source node sends the board over a connection of the migration's own, copied in between two of
+ * its changes, followed by every change made after it. The migration passes both on to the target node,
+ * which applies them to its copy of the board without listing it yet. The migration waits for the
+ * target to catch up with the changes before going on, so the rest of it is quick.
+ *
+ * The users of the board are frozen by their sessions and each one leaves the board on the source, once
+ * every change it had already sent has been made. Changes the other users had in flight may still be
+ * made after a user has left, those are recorded as they are copied.
+ *
+ * The source stops copying changes, the target lists the board once it has applied the last change, and
+ * the users are resumed on the target after being sent the recorded changes they missed. Only then does
+ * the source forget the board and its files, so if the target fails before it has listed the board, the
+ * board stays on the source.
+ *
+ */
+class BoardMigration {
+    private static final long STEP_TIMEOUT_MILLIS = 30000;
+    // The target has caught up once it is this few changes behind, or after this many tries.
+    private static final long CAUGHT_UP_CHANGES = 32;
+    private static final int CATCH_UP_TRIES = 10;
+
+    private final Gateway gateway;
+    private final BoardIdentifier board;
+    private final InetSocketAddress source;
+    private final InetSocketAddress target;
+
+    private volatile boolean frozen;
+
+    // Guarded by this.
+    private boolean transferred;
+    private long copiedSequence = SequencedPacket.UNSEQUENCED;
+    private long appliedSequence = SequencedPacket.UNSEQUENCED;
+    private boolean recording;
+    private final List<SequencedPacket> recorded = new ArrayList<SequencedPacket>();
+    private final Set<GatewaySession> leaving = new HashSet<GatewaySession>();
+    private final Map<GatewaySession, PacketMigration> left = new HashMap<GatewaySession, PacketMigration>();
+    private final Set<GatewaySession> resuming = new HashSet<GatewaySession>();
+    private long cutOverSequence = SequencedPacket.UNSEQUENCED;
+    private boolean committed;
+    private boolean forgotten;
+    private String failure;
+
+    /**
+     * Constructor for the migration of a board
+     * @param gateway
+     * @param board
+     * @param source the node the board is on
+     * @param target the node to move it to
+     */
+    BoardMigration(Gateway gateway, BoardIdentifier board, InetSocketAddress source, InetSocketAddress target) {
+        this.gateway = gateway;
+        this.board = board;
+        this.source = source;
+        this.target = target;
+    }
+
+    BoardIdentifier board() {
+        return board;
+    }
+
+    InetSocketAddress source() {
+        return source;
+    }
+
+    /**
+     * @return whether clients are being held back from the board
+     */
+    boolean isFrozen() {
+        return frozen;
+    }
+
+    void setFrozen() {
+        frozen = true;
+    }
+
+    /**
+     * Moves the board
+     * @return how long the users of the board were held back, in milliseconds
+     * @throws IOException if the board couldn't be moved
+     * @throws InterruptedException
+     */
+    long run() throws IOException, InterruptedException {
+        if (source.equals(target)) {
+            return 0;
+        }
+        StreamConnection toSource = connect(source);
+        StreamConnection toTarget = null;
+        Set<GatewaySession> frozenSessions = null;
+        InetSocketAddress placed = source;
+        long frozenAt = 0;
+        try {
+            toTarget = connect(target);
+            read(toSource, toTarget);
+            read(toTarget, null);
+
+            toSource.sendPacket(new PacketMigration(PacketMigration.Step.START, board, SequencedPacket.UNSEQUENCED, false));
+            synchronized (this) {
+                while (!transferred) {
+                    await("copy the board");
+                }
+            }
+            catchUp(toTarget);
+            synchronized (this) {
+                recording = true;
+            }
+
+            frozenAt = System.nanoTime();
+            frozenSessions = gateway.freeze(this);
+            synchronized (this) {
+                leaving.addAll(frozenSessions);
+            }
+            for (GatewaySession session : frozenSessions) {
+                session.sendTo(source, new PacketMigration(PacketMigration.Step.LEAVE, board, SequencedPacket.UNSEQUENCED, false));
+            }
+            synchronized (this) {
+                while (!leaving.isEmpty()) {
+                    await("take the users off the board");
+                }
+            }
+
+            toSource.sendPacket(new PacketMigration(PacketMigration.Step.CUTOVER, board, SequencedPacket.UNSEQUENCED, false));
+            long lastSequence;
+            synchronized (this) {
+                while (cutOverSequence == SequencedPacket.UNSEQUENCED) {
+                    await("stop the board on " + source);
+                }
+                lastSequence = cutOverSequence;
+            }
+
+            toTarget.sendPacket(new PacketMigration(PacketMigration.Step.COMMIT, board, lastSequence, false));
+            Map<GatewaySession, PacketMigration> resume;
+            synchronized (this) {
+                while (!committed) {
+                    await("start the board on " + target);
+                }
+                resume = new HashMap<GatewaySession, PacketMigration>(left);
+                resuming.addAll(resume.keySet());
+            }
+            // The target has listed the board, it only goes on from there now.
+            placed = target;
+            gateway.place(board, target);
+            for (Map.Entry<GatewaySession, PacketMigration> entry : resume.entrySet()) {
+                GatewaySession session = entry.getKey();
+                boolean playing = entry.getValue().playing();
+                if (playing) {
+                    for (SequencedPacket packet : missed(entry.getValue().sequence())) {
+                        session.sendToClient(packet);
+                    }
+                }
+                session.sendTo(target, new PacketMigration(PacketMigration.Step.RESUME, board, lastSequence, playing));
+            }
+            synchronized (this) {
+                while (!resuming.isEmpty()) {
+                    await("put the users back on the board");
+                }
+            }
+            long frozenMillis = (System.nanoTime() - frozenAt) / 1000000;
+            thaw(frozenSessions, placed);
+            frozenSessions = null;
+
+            toSource.sendPacket(new PacketMigration(PacketMigration.Step.FORGET, board, SequencedPacket.UNSEQUENCED, false));
+            synchronized (this) {
+                while (!forgotten) {
+                    await("forget the board on " + source);
+                }
+            }
+            return frozenMillis;
+        } finally {
+            if (frozenSessions != null) {
+                thaw(frozenSessions, placed);
+            }
+            if (placed.equals(target) && !isForgotten()) {
+                // Failed after the target committed the board, the source's copy is out of date.
+                toSource.sendPacket(new PacketMigration(PacketMigration.Step.FORGET, board, SequencedPacket.UNSEQUENCED, false));
+            }
+            toSource.close();
+            if (toTarget != null) {
+                toTarget.close();
+            }
+        }
+    }
+
+    /**
+     * Waits for the target to apply the copied changes while the users carry on drawing, until it is
+     * only a few changes behind
+     */
+    private void catchUp(StreamConnection toTarget) throws IOException, InterruptedException {
+        for (int i = 0; i < CATCH_UP_TRIES; i++) {
+            long copied;
+            synchronized (this) {
+                appliedSequence = SequencedPacket.UNSEQUENCED;
+                copied = copiedSequence;
+            }
+            toTarget.sendPacket(new PacketMigration(PacketMigration.Step.CATCH_UP, board, SequencedPacket.UNSEQUENCED, false));
+            synchronized (this) {
+                while (appliedSequence == SequencedPacket.UNSEQUENCED) {
+                    await("copy the changes to the board");
+                }
+                if (copiedSequence - copied <= CAUGHT_UP_CHANGES) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets the frozen clients carry on. Clients that left the board but weren't put back on it can't
+     * carry on with it and are disconnected.
+     */
+    private void thaw(Set<GatewaySession> frozenSessions, InetSocketAddress placed) {
+        Set<GatewaySession> stranded;
+        synchronized (this) {
+            stranded = new HashSet<GatewaySession>(leaving);
+            stranded.addAll(left.keySet());
+            stranded.addAll(resuming);
+        }
+        for (GatewaySession session : frozenSessions) {
+            if (stranded.contains(session)) {
+                session.close();
+            }
+            session.resume(placed);
+        }
+    }
+
+    /**
+     * @return whether the source has forgotten the board
+     */
+    private synchronized boolean isForgotten() {
+        return forgotten;
+    }
+
+    /**
+     * @param sequence the last change a user was sent before it left
+     * @return the changes made since, in order
+     */
+    private synchronized List<SequencedPacket> missed(long sequence) {
+        List<SequencedPacket> missed = new ArrayList<SequencedPacket>();
+        for (SequencedPacket packet : recorded) {
+            if (packet.sequence() > sequence) {
+                missed.add(packet);
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * Waits for a node to carry out a step
+     * @param step what the node is doing, for the error
+     */
+    private void await(String step) throws IOException, InterruptedException {
+        if (failure != null) {
+            throw new IOException("Moving " + board + " from " + source + " to " + target + " failed: " + failure);
+        }
+        long start = System.currentTimeMillis();
+        wait(STEP_TIMEOUT_MILLIS);
+        if (failure == null && System.currentTimeMillis() - start >= STEP_TIMEOUT_MILLIS) {
+            failure = "timed out waiting for the nodes to " + step;
+        }
+        if (failure != null) {
+            throw new IOException("Moving " + board + " from " + source + " to " + target + " failed: " + failure);
+        }
+    }
+
+    /**
+     * Takes a node's answer to a step from the connection of one of the board's users
+     * @param session
+     * @param packet
+     */
+    synchronized void stepReceived(GatewaySession session, PacketMigration packet) {
+        if (packet.step() == PacketMigration.Step.LEAVE && leaving.remove(session)) {
+            left.put(session, packet);
+        }
+        else if (packet.step() == PacketMigration.Step.RESUME) {
+            resuming.remove(session);
+            left.remove(session);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stops waiting for a user that has disconnected
+     * @param session
+     */
+    synchronized void sessionClosed(GatewaySession session) {
+        leaving.remove(session);
+        left.remove(session);
+        resuming.remove(session);
+        notifyAll();
+    }
+
+    private synchronized void failed(String reason) {
+        if (failure == null) {
+            failure = reason;
+        }
+        notifyAll();
+    }
+
+    private static StreamConnection connect(InetSocketAddress node) throws IOException {
+        Socket socket = new Socket(node.getAddress(), node.getPort());
+        socket.setTcpNoDelay(true);
+        return StreamConnection.open(socket);
+    }
+
+    /**
+     * Reads the answers of a node, copying the board and its changes to the target if given
+     */
+    private void read(final StreamConnection from, final StreamConnection copyTo) {
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (Packet packet = from.readPacket(); packet != null; packet = from.readPacket()) {
+                        if (packet instanceof PacketMigration) {
+                            migrationStepReceived((PacketMigration) packet);
+                        }
+                        else if (copyTo == null) {
+                            continue;
+                        }
+                        else if (packet instanceof PacketBoardTransfer) {
+                            copyTo.sendPacket(packet);
+                            synchronized (BoardMigration.this) {
+                                transferred = true;
+                                copiedSequence = ((PacketBoardTransfer) packet).sequence();
+                                BoardMigration.this.notifyAll();
+                            }
+                        }
+                        else if (packet instanceof SequencedPacket) {
+                            copyTo.sendPacket(packet);
+                            synchronized (BoardMigration.this) {
+                                copiedSequence = ((SequencedPacket) packet).sequence();
+                                if (recording) {
+                                    recorded.add((SequencedPacket) packet);
+                                }
+                            }
+                        }
+                    }
+                }
+                catch (EOFException e) {
+                }
+                catch (SocketException e) {
+                }
+                catch (Exception e) {
+                    e.printStackTrace();
+                }
+                finally {
+                    failed("lost the connection to a node");
+                }
+            }
+        }, "migration-" + board);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private synchronized void migrationStepReceived(PacketMigration packet) {
+        switch (packet.step()) {
+        case START:
+            failure = "there is no such board on " + source;
+            break;
+        case CATCH_UP:
+            appliedSequence = packet.sequence();
+            break;
+        case CUTOVER:
+            cutOverSequence = packet.sequence();
+            break;
+        case COMMIT:
+            committed = true;
+            break;
+        case FORGET:
+            forgotten = true;
+            break;
+        default:
+            break;
+        }
+        notifyAll();
+    }
+}
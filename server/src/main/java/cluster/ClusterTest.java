@@ -0,0 +1,247 @@
+package cluster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import connection.StreamConnection;
+import name.BoardIdentifier;
+import name.ClientIdentifier;
+import name.LayerIdentifier;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import packet.Packet;
+import packet.PacketBoardDirectoryPage;
+import packet.PacketBoardDirectoryQuery;
+import packet.PacketBoardModel;
+import packet.PacketBoardUsers;
+import packet.PacketCanJoinBoard;
+import packet.PacketCanJoinBoardResult;
+import packet.PacketClientReady;
+import packet.PacketDrawCommand;
+import packet.PacketJoinBoard;
+import packet.PacketMessage;
+import packet.PacketNewBoard;
+import canvas.Canvas;
+import canvas.Pixel;
+import canvas.command.DrawCommandPixel;
+import util.TestUtil;
+
+/**
+ * End to end tests for a gateway in front of nodes running in JVMs of their own.
+ * @category no_didit
+ */
+public class ClusterTest {
+    private static final int PORT = 4470;
+    private static final int NODES = 3;
+
+    private static LocalCluster cluster;
+    private static Gateway gateway;
+    private static int nextId = 100;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        cluster = new LocalCluster(NODES, PORT + 1);
+        gateway = new Gateway(PORT, cluster.nodes());
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    gateway.serve();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }).start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        gateway.close();
+        cluster.close();
+    }
+
+    private static StreamConnection connect(String name) throws IOException {
+        return TestUtil.connect(PORT, new ClientIdentifier(nextId++, name));
+    }
+
+    @Test(timeout = 30000)
+    public void directoryTest() throws Exception {
+        // Test boards created on different nodes are listed together, a page at a time.
+        List<StreamConnection> creators = new ArrayList<StreamConnection>();
+        List<BoardIdentifier> boards = new ArrayList<BoardIdentifier>();
+        Set<InetSocketAddress> owners = new HashSet<InetSocketAddress>();
+        for (int i = 0; i < 6; i++) {
+            BoardIdentifier board = new BoardIdentifier(nextId++, "cluster" + i, null);
+            StreamConnection creator = connect("creator" + i);
+            creator.sendPacket(new PacketNewBoard(board, 16, 16, null));
+            assertTrue(creator.readPacket() instanceof PacketBoardModel);
+            creators.add(creator);
+            boards.add(board);
+            owners.add(gateway.ring().nodeFor(board));
+        }
+        assertTrue(owners.size() > 1);
+
+        StreamConnection watcher = connect("watcher");
+        watcher.sendPacket(new PacketBoardDirectoryQuery("cluster", 0, 4, true));
+        PacketBoardDirectoryPage page = (PacketBoardDirectoryPage) watcher.readPacket();
+        assertEquals(6, page.total());
+        assertArrayEquals(boards.subList(0, 4).toArray(), page.boards());
+
+        watcher.sendPacket(new PacketBoardDirectoryQuery("cluster", 4, 4, true));
+        page = (PacketBoardDirectoryPage) watcher.readPacket();
+        assertEquals(4, page.offset());
+        assertArrayEquals(boards.subList(4, 6).toArray(), page.boards());
+
+        watcher.close();
+        for (StreamConnection creator : creators) {
+            creator.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void joinTest() throws Exception {
+        // Test asking the owner to join a board, joining it and chatting on it through the gateway.
+        ClientIdentifier ownerId = new ClientIdentifier(nextId++, "owner");
+        ClientIdentifier joinerId = new ClientIdentifier(nextId++, "joiner");
+        BoardIdentifier board = new BoardIdentifier(nextId++, "joinable", ownerId);
+        StreamConnection owner = TestUtil.connect(PORT, ownerId);
+        owner.sendPacket(new PacketNewBoard(board, 16, 16, ownerId));
+        assertTrue(owner.readPacket() instanceof PacketBoardModel);
+        owner.sendPacket(new PacketClientReady());
+        assertTrue(owner.readPacket() instanceof PacketBoardUsers);
+
+        StreamConnection joiner = TestUtil.connect(PORT, joinerId);
+        joiner.sendPacket(new PacketCanJoinBoard(board, joinerId));
+        Packet request = owner.readPacket();
+        assertTrue(request instanceof PacketCanJoinBoard);
+
+        owner.sendPacket(new PacketCanJoinBoardResult(board, joinerId, true));
+        Packet result = joiner.readPacket();
+        assertTrue(result instanceof PacketCanJoinBoardResult);
+        assertTrue(((PacketCanJoinBoardResult) result).result());
+
+        joiner.sendPacket(new PacketJoinBoard(board, joinerId));
+        assertTrue(joiner.readPacket() instanceof PacketBoardModel);
+        joiner.sendPacket(new PacketClientReady());
+        assertTrue(joiner.readPacket() instanceof PacketBoardUsers);
+        assertTrue(owner.readPacket() instanceof PacketBoardUsers);
+
+        joiner.sendPacket(new PacketMessage("hello"));
+        assertEquals("hello", ((PacketMessage) owner.readPacket()).text());
+        assertEquals("hello", ((PacketMessage) joiner.readPacket()).text());
+        owner.close();
+        joiner.close();
+    }
+
+    @Test(timeout = 60000)
+    public void migrationTest() throws Exception {
+        // Test moving a board to another node while two users draw on it, neither losing a stroke.
+        final int strokes = 400;
+        ClientIdentifier ownerId = new ClientIdentifier(nextId++, "mover");
+        ClientIdentifier joinerId = new ClientIdentifier(nextId++, "helper");
+        BoardIdentifier board = new BoardIdentifier(nextId++, "moving", ownerId);
+        InetSocketAddress source = gateway.nodeFor(board);
+
+        StreamConnection owner = TestUtil.connect(PORT, ownerId);
+        owner.sendPacket(new PacketNewBoard(board, strokes, 2, ownerId));
+        PacketBoardModel model = (PacketBoardModel) owner.readPacket();
+        final LayerIdentifier layer = model.canvas().layers()[0].layerProperties().layerIdentifier();
+        owner.sendPacket(new PacketClientReady());
+        assertTrue(owner.readPacket() instanceof PacketBoardUsers);
+        StreamConnection joiner = TestUtil.connect(PORT, joinerId);
+        joiner.sendPacket(new PacketJoinBoard(board, joinerId));
+        assertTrue(joiner.readPacket() instanceof PacketBoardModel);
+        joiner.sendPacket(new PacketClientReady());
+
+        StreamConnection[] users = { owner, joiner };
+        List<List<Long>> received = new ArrayList<List<Long>>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < users.length; i++) {
+            final StreamConnection user = users[i];
+            final List<Long> sequences = Collections.synchronizedList(new ArrayList<Long>());
+            received.add(sequences);
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        while (sequences.size() < 2 * strokes) {
+                            Packet packet = user.readPacket();
+                            if (packet instanceof PacketDrawCommand) {
+                                sequences.add(((PacketDrawCommand) packet).sequence());
+                            }
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }));
+            final int row = i;
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    for (int x = 0; x < strokes; x++) {
+                        user.sendPacket(new PacketDrawCommand(new DrawCommandPixel(layer, new Pixel(x, row, Color.RED))));
+                        if (x % 20 == 0) {
+                            try {
+                                Thread.sleep(2);
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        while (received.get(0).size() < strokes / 4) {
+            Thread.sleep(1);
+        }
+        InetSocketAddress target = cluster.nodes().get((cluster.nodes().indexOf(source) + 1) % NODES);
+        gateway.migrate(board, target);
+        assertEquals(target, gateway.nodeFor(board));
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Every user saw every stroke exactly once, in the same order.
+        List<Long> expected = new ArrayList<Long>();
+        for (long sequence = 1; sequence <= 2 * strokes; sequence++) {
+            expected.add(sequence);
+        }
+        for (List<Long> sequences : received) {
+            assertEquals(expected, sequences);
+        }
+
+        // And the board on the new node has them all.
+        StreamConnection late = connect("late");
+        late.sendPacket(new PacketJoinBoard(board, null));
+        Canvas canvas = ((PacketBoardModel) late.readPacket()).canvas();
+        for (int row = 0; row < users.length; row++) {
+            for (int x = 0; x < strokes; x++) {
+                assertEquals(Color.RED, canvas.getPixelColor(layer, new Pixel(x, row, Color.RED)));
+            }
+        }
+        late.close();
+
+        // The old node has forgotten the board once the new one listed it.
+        StreamConnection old = TestUtil.connect(source.getPort(), new ClientIdentifier(nextId++, "old"));
+        old.sendPacket(new PacketBoardDirectoryQuery("moving", 0, 4, false));
+        assertEquals(0, ((PacketBoardDirectoryPage) old.readPacket()).total());
+        old.close();
+        owner.close();
+        joiner.close();
+    }
+}
@@ -0,0 +1,159 @@
+package cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import connection.Connection;
+import name.BoardIdentifier;
+import packet.PacketBoardDirectoryDelta;
+import packet.PacketBoardDirectoryPage;
+import packet.PacketBoardDirectoryQuery;
+
+/**
+ * One client's view of the board directories of every node, merged into the single directory the client
+ * expects. A query is sent to every node, and their pages are merged in BoardIdentifier.BY_NAME order
+ * into one page. Deltas from the nodes are renumbered into one sequence of versions, since each node
+ * counts its own, and held back until the page they follow has been sent.
+ *
+ * Pages are read in order, so the merge remembers how many boards of each node it has handed out for
+ * the current search and asks each node for the boards after those.
+ *
+ * @param <N> type of the nodes
+ */
+public class DirectoryMerge<N> {
+    private final List<N> nodes;
+    private final Connection client;
+
+    private String prefix;
+    // Boards handed out for the current search, in total and from each node.
+    private int delivered;
+    private final Map<N, Integer> nodeOffsets = new HashMap<N, Integer>();
+
+    private boolean pending;
+    private int pageOffset;
+    private int limit;
+    private final Map<N, PacketBoardDirectoryPage> pages = new HashMap<N, PacketBoardDirectoryPage>();
+    // Nodes whose deltas belong to the current search.
+    private final Set<N> live = new HashSet<N>();
+    private final List<PacketBoardDirectoryDelta> held = new ArrayList<PacketBoardDirectoryDelta>();
+    private long version;
+
+    /**
+     * Constructor for the merge of the directories of the nodes for one client
+     * @param nodes
+     * @param client where merged pages and deltas are sent
+     */
+    public DirectoryMerge(List<N> nodes, Connection client) {
+        this.nodes = nodes;
+        this.client = client;
+    }
+
+    /**
+     * Starts answering a query of the client
+     * @param query
+     * @return the query to send each node
+     */
+    public synchronized Map<N, PacketBoardDirectoryQuery> query(PacketBoardDirectoryQuery query) {
+        boolean next = query.prefix().equals(prefix) && query.offset() == delivered && delivered > 0;
+        if (!next) {
+            // A new search, starting from the first page whatever offset was asked for.
+            prefix = query.prefix();
+            delivered = 0;
+            nodeOffsets.clear();
+            live.clear();
+            held.clear();
+        }
+        pending = true;
+        pageOffset = delivered;
+        limit = query.limit();
+        pages.clear();
+
+        Map<N, PacketBoardDirectoryQuery> queries = new HashMap<N, PacketBoardDirectoryQuery>();
+        for (N node : nodes) {
+            Integer offset = nodeOffsets.get(node);
+            queries.put(node, new PacketBoardDirectoryQuery(prefix, offset == null ? 0 : offset, limit,
+                    query.subscribe()));
+        }
+        return queries;
+    }
+
+    /**
+     * Takes a node's page, sending the merged page once every node has answered
+     * @param node
+     * @param page
+     */
+    public synchronized void pageReceived(N node, PacketBoardDirectoryPage page) {
+        if (!pending || !page.prefix().equals(prefix)) {
+            return;
+        }
+        pages.put(node, page);
+        live.add(node);
+        if (pages.size() < nodes.size()) {
+            return;
+        }
+
+        List<BoardIdentifier> merged = new ArrayList<BoardIdentifier>();
+        Map<BoardIdentifier, N> owners = new HashMap<BoardIdentifier, N>();
+        int total = 0;
+        for (Map.Entry<N, PacketBoardDirectoryPage> entry : pages.entrySet()) {
+            for (BoardIdentifier board : entry.getValue().boards()) {
+                merged.add(board);
+                owners.put(board, entry.getKey());
+            }
+            total += entry.getValue().total();
+        }
+        Collections.sort(merged, BoardIdentifier.BY_NAME);
+        if (merged.size() > limit) {
+            merged = new ArrayList<BoardIdentifier>(merged.subList(0, limit));
+        }
+        for (BoardIdentifier board : merged) {
+            N owner = owners.get(board);
+            Integer offset = nodeOffsets.get(owner);
+            nodeOffsets.put(owner, (offset == null ? 0 : offset) + 1);
+        }
+        delivered = pageOffset + merged.size();
+        pending = false;
+
+        client.sendPacket(new PacketBoardDirectoryPage(prefix, pageOffset, total, ++version,
+                merged.toArray(new BoardIdentifier[merged.size()])));
+        for (PacketBoardDirectoryDelta delta : held) {
+            client.sendPacket(new PacketBoardDirectoryDelta(++version, delta.board(), delta.added()));
+        }
+        held.clear();
+    }
+
+    /**
+     * Takes a node's delta, passing it on if it belongs to the current search
+     * @param node
+     * @param delta
+     */
+    public synchronized void deltaReceived(N node, PacketBoardDirectoryDelta delta) {
+        if (!live.contains(node)) {
+            // Sent before the node's first page for the search, which already includes it.
+            return;
+        }
+        if (pending && delivered == 0) {
+            held.add(delta);
+            return;
+        }
+        client.sendPacket(new PacketBoardDirectoryDelta(++version, delta.board(), delta.added()));
+    }
+
+    /**
+     * Forgets the current search once the client has closed its board picker
+     */
+    public synchronized void close() {
+        prefix = null;
+        delivered = 0;
+        nodeOffsets.clear();
+        pending = false;
+        pages.clear();
+        live.clear();
+        held.clear();
+    }
+}
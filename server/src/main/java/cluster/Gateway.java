@@ -0,0 +1,335 @@
+package cluster;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import connection.ConnectionThreads;
+import connection.OutboundQueue;
+import connection.OverflowPolicy;
+import connection.StreamConnection;
+import name.BoardIdentifier;
+import packet.Packet;
+import packet.PacketMigration;
+import server.Server;
+
+/**
+ * Front door of a cluster of servers. Boards are spread over the nodes by a HashRing on their
+ * BoardIdentifier, so together the nodes hold more boards than one heap could. Clients connect to the
+ * gateway as if it were a server and each gets a GatewaySession, which routes its packets to the nodes
+ * that own its boards and merges the board directories of all the nodes for it.
+ *
+ * The nodes are plain servers, started with "java server.Server --PORT" and knowing nothing of each
+ * other. Only framed clients can connect through the gateway.
+ *
+ * A board can be moved off a busy node while it is in use with migrate(). The gateway then places it on
+ * its new node rather than where the ring would.
+ *
+ */
+public class Gateway {
+    private final ServerSocket serverSocket;
+    private final HashRing<InetSocketAddress> ring;
+    private final Set<GatewaySession> sessions =
+            Collections.newSetFromMap(new ConcurrentHashMap<GatewaySession, Boolean>());
+
+    // Boards moved away from the node the ring places them on, and boards moving. Guarded by this.
+    private final Map<BoardIdentifier, InetSocketAddress> placements = new HashMap<BoardIdentifier, InetSocketAddress>();
+    private final Map<BoardIdentifier, BoardMigration> migrations = new HashMap<BoardIdentifier, BoardMigration>();
+
+    /**
+     * Constructor for the gateway of the nodes, listening on the port
+     * @param port
+     * @param nodes addresses of the nodes
+     * @throws IOException
+     */
+    public Gateway(int port, List<InetSocketAddress> nodes) throws IOException {
+        this.ring = new HashRing<InetSocketAddress>(nodes);
+        this.serverSocket = new ServerSocket(port);
+    }
+
+    /**
+     * @return the ring deciding which node owns each board
+     */
+    public HashRing<InetSocketAddress> ring() {
+        return ring;
+    }
+
+    /**
+     * @param board
+     * @return the node that has the board
+     */
+    public synchronized InetSocketAddress nodeFor(BoardIdentifier board) {
+        InetSocketAddress node = placements.get(board);
+        return node != null ? node : ring.nodeFor(board);
+    }
+
+    /**
+     * Moves a board to another node while its users carry on drawing. The board is copied to the new
+     * node while the old one keeps changing it, and every change made meanwhile is copied after it.
+     * Then the users' packets for the board are held back for a moment while the last changes reach the
+     * new node and the users are moved over, so none of their changes are lost.
+     * @param board
+     * @param target the node to move the board to
+     * @return how long the users of the board were held back, in milliseconds
+     * @throws IOException if the board couldn't be moved, it then stays where it was
+     * @throws InterruptedException
+     */
+    public long migrate(BoardIdentifier board, InetSocketAddress target) throws IOException, InterruptedException {
+        if (!ring.nodes().contains(target)) {
+            throw new IllegalArgumentException(target + " is not a node of this gateway.");
+        }
+        BoardMigration migration;
+        synchronized (this) {
+            if (migrations.containsKey(board)) {
+                throw new IllegalStateException("Board " + board + " is already moving.");
+            }
+            migration = new BoardMigration(this, board, nodeFor(board), target);
+            migrations.put(board, migration);
+        }
+        try {
+            return migration.run();
+        } finally {
+            synchronized (this) {
+                migrations.remove(board);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Holds back every client on a board that is about to move, and any client about to join it
+     * @param migration
+     * @return the sessions of the clients on the board
+     */
+    synchronized Set<GatewaySession> freeze(BoardMigration migration) {
+        migration.setFrozen();
+        Set<GatewaySession> frozen = new HashSet<GatewaySession>();
+        for (GatewaySession session : sessions) {
+            if (session.freeze(migration.board(), migration.source())) {
+                frozen.add(session);
+            }
+        }
+        return frozen;
+    }
+
+    /**
+     * Places a board on the node it has moved to
+     * @param board
+     * @param node
+     */
+    synchronized void place(BoardIdentifier board, InetSocketAddress node) {
+        if (node.equals(ring.nodeFor(board))) {
+            placements.remove(board);
+        }
+        else {
+            placements.put(board, node);
+        }
+    }
+
+    /**
+     * Sends the packet creating or joining a board to the board's node, once both that board and the
+     * board the client is leaving have finished moving if they are
+     * @param session
+     * @param board
+     * @param packet
+     */
+    void enterBoard(GatewaySession session, BoardIdentifier board, Packet packet) {
+        // The session waits for its own board outside the lock, which the migration moving it needs.
+        while (session.awaitThawed()) {
+            synchronized (this) {
+                try {
+                    for (BoardMigration migration = migrations.get(board);
+                            migration != null && migration.isFrozen(); migration = migrations.get(board)) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (session.enterBoard(board, nodeFor(board), packet)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes a node's answer to a step of a migration on to the migration
+     * @param session
+     * @param packet
+     */
+    void migrationStepReceived(GatewaySession session, PacketMigration packet) {
+        BoardMigration migration;
+        synchronized (this) {
+            migration = migrations.get(packet.board());
+        }
+        if (migration != null) {
+            migration.stepReceived(session, packet);
+        }
+    }
+
+    /**
+     * Forgets a session once its client has gone
+     * @param session
+     */
+    void sessionClosed(GatewaySession session) {
+        if (!sessions.remove(session)) {
+            return;
+        }
+        List<BoardMigration> current;
+        synchronized (this) {
+            current = new ArrayList<BoardMigration>(migrations.values());
+        }
+        for (BoardMigration migration : current) {
+            migration.sessionClosed(session);
+        }
+    }
+
+    /**
+     * Accepts clients until the gateway is closed, each on its own thread
+     * @throws IOException
+     */
+    public void serve() throws IOException {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+
+            ConnectionThreads.newThread(new Runnable() {
+                public void run() {
+                    StreamConnection client;
+                    try {
+                        socket.setTcpNoDelay(true);
+                        client = StreamConnection.accept(socket,
+                                new OutboundQueue(OutboundQueue.DEFAULT_CAPACITY, OverflowPolicy.COALESCE));
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        try {
+                            socket.close();
+                        } catch (IOException closeException) {
+                            closeException.printStackTrace();
+                        }
+                        return;
+                    }
+                    GatewaySession session = new GatewaySession(client, Gateway.this);
+                    sessions.add(session);
+                    session.run();
+                }
+            }, ConnectionThreads.virtualThreadsSupported()).start();
+        }
+    }
+
+    /**
+     * Stops accepting clients, the clients already connected carry on
+     */
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Carries out the operator's commands as they are typed, on a thread of their own. The only command
+     * is "migrate ID NAME host:port", which moves a board to another node.
+     * @param in
+     */
+    void readCommands(InputStream in) {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")));
+        Thread commands = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        runCommand(line.trim().split("\\s+"));
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "gateway-commands");
+        commands.setDaemon(true);
+        commands.start();
+    }
+
+    private void runCommand(String[] words) {
+        if (words.length != 4 || !words[0].equals("migrate")) {
+            if (!words[0].isEmpty()) {
+                System.out.println("Usage: migrate ID NAME host:port");
+            }
+            return;
+        }
+        try {
+            BoardIdentifier board = new BoardIdentifier(Integer.parseInt(words[1]), words[2], null);
+            InetSocketAddress target = parseNodes(words[3]).get(0);
+            long pause = migrate(board, target);
+            System.out.println("Moved " + board + " to " + target + ", users paused " + pause + " ms");
+        } catch (Exception e) {
+            e.printStackTrace(); // but keep taking commands
+        }
+    }
+
+    /**
+     * Parses a list of node addresses
+     * @param nodes comma separated host:port
+     * @return List of the addresses
+     */
+    public static List<InetSocketAddress> parseNodes(String nodes) {
+        List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+        for (String node : nodes.split(",")) {
+            int colon = node.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Node address \"" + node + "\" is not host:port.");
+            }
+            addresses.add(new InetSocketAddress(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1))));
+        }
+        return addresses;
+    }
+
+    /**
+     * Main method to run the gateway, "--PORT --nodes=host:port,host:port"
+     * @param args
+     */
+    public static void main(String[] args) {
+        int port = Server.DEFAULT_PORT;
+        List<InetSocketAddress> nodes = null;
+        for (String arg : args) {
+            if (arg.startsWith("--nodes="))
+                nodes = parseNodes(arg.substring("--nodes=".length()));
+            else
+                port = Integer.parseInt(arg.substring(2));
+        }
+        if (nodes == null) {
+            System.err.println("Usage: cluster.Gateway [--PORT] --nodes=host:port,host:port");
+            return;
+        }
+        try {
+            Gateway gateway = new Gateway(port, nodes);
+            System.out.println("Gateway Started at localhost:" + port + " for " + nodes);
+            gateway.readCommands(System.in);
+            gateway.serve();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
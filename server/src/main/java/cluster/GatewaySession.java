@@ -0,0 +1,375 @@
+package cluster;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Map;
+
+import connection.StreamConnection;
+import name.BoardIdentifier;
+import packet.*;
+
+/**
+ * One client connected to the Gateway. The session connects to every node under the client's name, then
+ * reads the client's packets and sends each one to the node it concerns: board packets to the node that
+ * owns the board, everything the client does on its board to the node of the board it is on. Packets
+ * from the nodes are passed back to the client, except the directory, which is merged across the nodes.
+ *
+ * While the client's board is moving to another node the session is frozen: the client's packets for
+ * the board wait, along with the thread reading them, until the board has moved.
+ *
+ */
+public class GatewaySession implements PacketHandler, Runnable {
+    private final Gateway gateway;
+    private final StreamConnection client;
+    private final Map<InetSocketAddress, StreamConnection> upstreams = new HashMap<InetSocketAddress, StreamConnection>();
+    private final DirectoryMerge<InetSocketAddress> directory;
+
+    // The board the client is on and the node it is on there. Guarded by this.
+    private BoardIdentifier board;
+    private InetSocketAddress boardNode;
+    private boolean frozen;
+
+    /**
+     * Constructor for the session of a client that has connected to the gateway
+     * @param client
+     * @param gateway
+     */
+    public GatewaySession(StreamConnection client, Gateway gateway) {
+        this.client = client;
+        this.gateway = gateway;
+        this.directory = new DirectoryMerge<InetSocketAddress>(gateway.ring().nodes(), client);
+    }
+
+    /**
+     * Routes the client's packets until either the client or one of the nodes hangs up
+     */
+    @Override
+    public void run() {
+        try {
+            if (!client.isFramed()) {
+                // Legacy clients can't take the merged directory.
+                System.err.println("Rejected " + client.remoteAddress() + ": not speaking the framed protocol");
+                return;
+            }
+            for (Packet packet = client.readPacket(); packet != null; packet = client.readPacket()) {
+                packet.process(this);
+            }
+        }
+        catch (EOFException e) {
+        }
+        catch (SocketException e) {
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+        finally {
+            close();
+        }
+    }
+
+    /**
+     * Hangs up on the client and every node
+     */
+    void close() {
+        gateway.sessionClosed(this);
+        client.close();
+        synchronized (upstreams) {
+            for (StreamConnection upstream : upstreams.values()) {
+                upstream.close();
+            }
+        }
+    }
+
+    /**
+     * Connects to a node and starts passing its packets back to the client
+     */
+    private StreamConnection connect(final InetSocketAddress node) throws IOException {
+        Socket socket = new Socket(node.getAddress(), node.getPort());
+        socket.setTcpNoDelay(true);
+        final StreamConnection upstream = StreamConnection.open(socket);
+        synchronized (upstreams) {
+            upstreams.put(node, upstream);
+        }
+
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (Packet packet = upstream.readPacket(); packet != null; packet = upstream.readPacket()) {
+                        if (packet instanceof PacketBoardDirectoryPage) {
+                            directory.pageReceived(node, (PacketBoardDirectoryPage) packet);
+                        }
+                        else if (packet instanceof PacketBoardDirectoryDelta) {
+                            directory.deltaReceived(node, (PacketBoardDirectoryDelta) packet);
+                        }
+                        else if (packet instanceof PacketMigration) {
+                            gateway.migrationStepReceived(GatewaySession.this, (PacketMigration) packet);
+                        }
+                        else {
+                            client.sendPacket(packet);
+                        }
+                    }
+                }
+                catch (EOFException e) {
+                }
+                catch (SocketException e) {
+                }
+                catch (Exception e) {
+                    e.printStackTrace();
+                }
+                finally {
+                    // The client can't carry on without one of the nodes.
+                    close();
+                }
+            }
+        }, "gateway-" + node);
+        reader.setDaemon(true);
+        reader.start();
+        return upstream;
+    }
+
+    /**
+     * Sends a packet to one of the nodes
+     * @param node
+     * @param packet
+     */
+    void sendTo(InetSocketAddress node, Packet packet) {
+        StreamConnection upstream;
+        synchronized (upstreams) {
+            upstream = upstreams.get(node);
+        }
+        if (upstream != null) {
+            upstream.sendPacket(packet);
+        }
+    }
+
+    /**
+     * Sends a packet to the client
+     * @param packet
+     */
+    void sendToClient(Packet packet) {
+        client.sendPacket(packet);
+    }
+
+    /**
+     * Waits for the client's board to finish moving, if it is. Returns false if the session was
+     * interrupted waiting.
+     */
+    synchronized boolean awaitThawed() {
+        try {
+            while (frozen) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sends a packet to the node of the client's board, first waiting for the board to finish moving
+     * if it is. Returns false if the session was interrupted waiting.
+     */
+    private synchronized boolean sendToBoard(Packet packet) {
+        if (!awaitThawed()) {
+            return false;
+        }
+        if (boardNode != null) {
+            sendTo(boardNode, packet);
+        }
+        return true;
+    }
+
+    /**
+     * Puts the client on a board, at the node the Gateway placed it on, unless the board the client is
+     * on has started moving. The client can't leave a board while it moves, its resume() would put it
+     * back on the node of the board it left.
+     * @param board
+     * @param node
+     * @param packet the packet creating or joining the board
+     * @return false if the client's board is moving, call again once awaitThawed() returns
+     */
+    synchronized boolean enterBoard(BoardIdentifier board, InetSocketAddress node, Packet packet) {
+        if (frozen) {
+            return false;
+        }
+        this.board = board;
+        this.boardNode = node;
+        sendTo(node, packet);
+        return true;
+    }
+
+    /**
+     * Stops sending the client's packets to a board that is about to move
+     * @param board
+     * @param node the node the board is moving from
+     * @return false if the client isn't on that board
+     */
+    synchronized boolean freeze(BoardIdentifier board, InetSocketAddress node) {
+        if (!board.equals(this.board) || !node.equals(boardNode)) {
+            return false;
+        }
+        frozen = true;
+        return true;
+    }
+
+    /**
+     * Carries on sending the client's packets to its board
+     * @param node where the board is now
+     */
+    synchronized void resume(InetSocketAddress node) {
+        boardNode = node;
+        frozen = false;
+        notifyAll();
+    }
+
+    /**
+     * Introduces the client to every node, so any of them can route packets to it
+     */
+    @Override
+    public void receivedNewClientPacket(PacketNewClient packet) {
+        for (InetSocketAddress node : gateway.ring().nodes()) {
+            try {
+                connect(node).sendPacket(packet);
+            } catch (IOException e) {
+                e.printStackTrace();
+                close();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void receivedNewBoardPacket(PacketNewBoard packet) {
+        gateway.enterBoard(this, packet.boardName(), packet);
+    }
+
+    @Override
+    public void receivedJoinBoardPacket(PacketJoinBoard packet) {
+        gateway.enterBoard(this, packet.boardName(), packet);
+    }
+
+    @Override
+    public void receivedResumePacket(PacketResume packet) {
+        // Back on the board after reconnecting, wherever the board is now.
+        gateway.enterBoard(this, packet.boardName(), packet);
+    }
+
+    @Override
+    public void receivedCanJoinBoardPacket(PacketCanJoinBoard packet) {
+        sendTo(gateway.nodeFor(packet.boardName()), packet);
+    }
+
+    @Override
+    public void receivedCanJoinBoardResultPacket(PacketCanJoinBoardResult packet) {
+        sendTo(gateway.nodeFor(packet.boardName()), packet);
+    }
+
+    @Override
+    public synchronized void receivedExitBoardPacket(PacketExitBoard packet) {
+        if (sendToBoard(packet)) {
+            board = null;
+            boardNode = null;
+        }
+    }
+
+    @Override
+    public void receivedClientReadyPacket(PacketClientReady packet) {
+        sendToBoard(packet);
+    }
+
+    @Override
+    public void receivedDrawCommandPacket(PacketDrawCommand packet) {
+        sendToBoard(packet);
+    }
+
+    @Override
+    public void receivedMessagePacket(PacketMessage packet) {
+        sendToBoard(packet);
+    }
+
+    @Override
+    public void receivedLayerAdjustmentPacket(PacketLayerAdjustment packet) {
+        sendToBoard(packet);
+    }
+
+    @Override
+    public void receivedNewLayerPacket(PacketNewLayer packet) {
+        sendToBoard(packet);
+    }
+
+    @Override
+    public void receivedTileRepairPacket(PacketTileRepair packet) {
+        sendToBoard(packet);
+    }
+
+    /**
+     * Asks every node for its part of the page, the DirectoryMerge answers the client
+     */
+    @Override
+    public void receivedBoardDirectoryQueryPacket(PacketBoardDirectoryQuery packet) {
+        for (Map.Entry<InetSocketAddress, PacketBoardDirectoryQuery> query : directory.query(packet).entrySet()) {
+            sendTo(query.getKey(), query.getValue());
+        }
+    }
+
+    @Override
+    public void receivedBoardDirectoryClosePacket(PacketBoardDirectoryClose packet) {
+        directory.close();
+        for (InetSocketAddress node : gateway.ring().nodes()) {
+            sendTo(node, packet);
+        }
+    }
+
+    /*
+     * Packets only ever sent to clients.
+     */
+    @Override
+    public void receivedBoardModelPacket(PacketBoardModel packet) {
+        assert false;
+    }
+
+    @Override
+    public void receivedBoardTilesPacket(PacketBoardTiles packet) {
+        assert false;
+    }
+
+    @Override
+    public void receivedTileDigestPacket(PacketTileDigest packet) {
+        assert false;
+    }
+
+    @Override
+    public void receivedBoardUsersPacket(PacketBoardUsers packet) {
+        assert false;
+    }
+
+    @Override
+    public void receivedBoardIdentifierListPacket(PacketBoardIdentifierList packet) {
+        assert false;
+    }
+
+    @Override
+    public void receivedBoardDirectoryPagePacket(PacketBoardDirectoryPage packet) {
+        assert false;
+    }
+
+    @Override
+    public void receivedBoardDirectoryDeltaPacket(PacketBoardDirectoryDelta packet) {
+        assert false;
+    }
+
+    @Override
+    public void receivedMigrationPacket(PacketMigration packet) {
+        assert false;
+    }
+
+    @Override
+    public void receivedBoardTransferPacket(PacketBoardTransfer packet) {
+        assert false;
+    }
+}
@@ -0,0 +1,82 @@
+package cluster;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import name.BoardIdentifier;
+
+/**
+ * Consistent hash ring assigning boards to nodes. Every node is placed on the ring at many points, and a
+ * board belongs to the first node at or after the point its identifier hashes to. Adding or removing a
+ * node only moves the boards of the arcs next to its points, about 1/N of them, and the many points per
+ * node keep the share of boards of each node close to even.
+ *
+ * @param <N> type of the nodes
+ */
+public class HashRing<N> {
+    public static final int DEFAULT_POINTS = 160;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final TreeMap<Long, N> ring = new TreeMap<Long, N>();
+    private final List<N> nodes;
+
+    /**
+     * Constructor for a ring of the nodes with DEFAULT_POINTS points each
+     * @param nodes
+     */
+    public HashRing(List<N> nodes) {
+        this(nodes, DEFAULT_POINTS);
+    }
+
+    /**
+     * Constructor for a ring of the nodes
+     * @param nodes
+     * @param points how many points each node has on the ring
+     */
+    public HashRing(List<N> nodes, int points) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one node.");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<N>(nodes));
+        for (N node : nodes) {
+            for (int i = 0; i < points; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * @param board
+     * @return the node that owns the board
+     */
+    public N nodeFor(BoardIdentifier board) {
+        Map.Entry<Long, N> entry = ring.ceilingEntry(hash(board.id() + ":" + board.name()));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * @return every node, in the order the ring was built with
+     */
+    public List<N> nodes() {
+        return nodes;
+    }
+
+    /**
+     * 64 bit FNV-1a of the key, with a final mix so nearby keys land far apart
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(UTF8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,51 @@
+package cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import name.BoardIdentifier;
+
+import org.junit.Test;
+
+public class HashRingTest {
+    private static final int BOARDS = 10000;
+
+    @Test
+    public void balanceTest() {
+        // test every node gets a fair share of the boards
+        List<String> nodes = Arrays.asList("a", "b", "c", "d");
+        HashRing<String> ring = new HashRing<String>(nodes);
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < BOARDS; i++) {
+            String node = ring.nodeFor(new BoardIdentifier(i, "board" + i, null));
+            counts.put(node, counts.containsKey(node) ? counts.get(node) + 1 : 1);
+        }
+        for (String node : nodes) {
+            int count = counts.containsKey(node) ? counts.get(node) : 0;
+            assertTrue(node + " has " + count, count > BOARDS / nodes.size() * 0.7);
+            assertTrue(node + " has " + count, count < BOARDS / nodes.size() * 1.3);
+        }
+    }
+
+    @Test
+    public void stabilityTest() {
+        // test adding a node only moves boards onto the new node
+        HashRing<String> before = new HashRing<String>(Arrays.asList("a", "b", "c"));
+        HashRing<String> after = new HashRing<String>(Arrays.asList("a", "b", "c", "d"));
+        int moved = 0;
+        for (int i = 0; i < BOARDS; i++) {
+            BoardIdentifier board = new BoardIdentifier(i, "board" + i, null);
+            String owner = after.nodeFor(board);
+            if (!owner.equals(before.nodeFor(board))) {
+                assertEquals("d", owner);
+                moved++;
+            }
+        }
+        assertTrue(moved < BOARDS / 3);
+    }
+}
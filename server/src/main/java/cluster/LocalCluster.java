@@ -0,0 +1,129 @@
+package cluster;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import server.Server;
+
+/**
+ * A cluster running entirely on this machine: every node is a server in a JVM of its own, started from
+ * the classpath of this one, for trying the cluster out and for testing it.
+ *
+ */
+public class LocalCluster {
+    private static final long START_TIMEOUT_MILLIS = 30000;
+
+    private final List<Process> processes = new ArrayList<Process>();
+    private final List<InetSocketAddress> nodes = new ArrayList<InetSocketAddress>();
+
+    /**
+     * Starts the nodes on consecutive ports and waits until they all accept connections
+     * @param nodeCount
+     * @param basePort port of the first node
+     * @param serverArgs extra arguments for every node, for example "--nio"
+     * @throws IOException if a node doesn't come up
+     */
+    public LocalCluster(int nodeCount, int basePort, String... serverArgs) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        try {
+            for (int i = 0; i < nodeCount; i++) {
+                int port = basePort + i;
+                List<String> command = new ArrayList<String>(Arrays.asList(java, "-cp",
+                        System.getProperty("java.class.path"), "server.Server", "--" + port));
+                command.addAll(Arrays.asList(serverArgs));
+                processes.add(new ProcessBuilder(command)
+                        .redirectErrorStream(true)
+                        .redirectOutput(new File(System.getProperty("java.io.tmpdir"), "whiteboard-node-" + port + ".log"))
+                        .start());
+                nodes.add(new InetSocketAddress("127.0.0.1", port));
+            }
+            for (InetSocketAddress node : nodes) {
+                awaitNode(node);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return addresses of the nodes
+     */
+    public List<InetSocketAddress> nodes() {
+        return nodes;
+    }
+
+    /**
+     * Stops every node
+     */
+    public void close() {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        for (Process process : processes) {
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void awaitNode(InetSocketAddress node) throws IOException {
+        long deadline = System.currentTimeMillis() + START_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                new Socket(node.getAddress(), node.getPort()).close();
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("Node " + node + " did not start", e);
+                }
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException interrupted) {
+                    throw new IOException("Interrupted waiting for node " + node, interrupted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Main method to run a local cluster and its gateway, "--PORT --nodes=N" plus any server arguments
+     * for the nodes, which listen on the ports after the gateway's
+     * @param args
+     */
+    public static void main(String[] args) {
+        int port = Server.DEFAULT_PORT;
+        int nodeCount = 3;
+        List<String> serverArgs = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--nodes="))
+                nodeCount = Integer.parseInt(arg.substring("--nodes=".length()));
+            else if (arg.matches("--[0-9]+"))
+                port = Integer.parseInt(arg.substring(2));
+            else
+                serverArgs.add(arg);
+        }
+        try {
+            final LocalCluster cluster = new LocalCluster(nodeCount, port + 1, serverArgs.toArray(new String[serverArgs.size()]));
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                public void run() {
+                    cluster.close();
+                }
+            }));
+            Gateway gateway = new Gateway(port, cluster.nodes());
+            System.out.println("Local cluster of " + nodeCount + " nodes Started at localhost:" + port);
+            gateway.readCommands(System.in);
+            gateway.serve();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
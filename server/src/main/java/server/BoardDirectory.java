@@ -0,0 +1,227 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import connection.SocketHandler;
+import name.BoardIdentifier;
+import packet.PacketBoardDirectoryDelta;
+import packet.PacketBoardDirectoryPage;
+import packet.PacketFrame;
+
+/**
+ * Searchable directory of the boards on the server, so clients ask for the boards they want to see a
+ * page at a time instead of being sent every board whenever one is added. Board names are kept in a
+ * trie, ignoring case, in which every node knows how many boards lie below it; finding the boards
+ * under a prefix and skipping to a page costs the length of the prefix plus the size of the page.
+ *
+ * Clients subscribe to a prefix while their board picker is open and are then sent each board added or
+ * removed under it. Pages are built and subscriptions made under the same lock changes are published
+ * under, so a subscriber never receives a change before the page it applies to.
+ *
+ */
+public class BoardDirectory {
+    public static final int MAX_PAGE = 100;
+
+    private final Node root = new Node();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<SocketHandler, String> subscribers = new ConcurrentHashMap<SocketHandler, String>();
+    // Guarded by the write lock.
+    private long version;
+
+    /**
+     * Adds a board and sends it to the clients subscribed to a prefix of its name
+     * @param board
+     */
+    public void add(BoardIdentifier board) {
+        lock.writeLock().lock();
+        try {
+            String key = key(board.name());
+            Node node = root;
+            node.size++;
+            for (int i = 0; i < key.length(); i++) {
+                Character c = key.charAt(i);
+                Node child = node.children.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(c, child);
+                }
+                node = child;
+                node.size++;
+            }
+            int index = Collections.binarySearch(node.boards, board, BoardIdentifier.BY_NAME);
+            node.boards.add(index < 0 ? -index - 1 : index, board);
+
+            publish(new PacketBoardDirectoryDelta(++version, board, true), key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a board and tells the clients subscribed to a prefix of its name
+     * @param board
+     * @return false if the board wasn't in the directory
+     */
+    public boolean remove(BoardIdentifier board) {
+        lock.writeLock().lock();
+        try {
+            String key = key(board.name());
+            Node node = find(key);
+            if (node == null || !node.boards.remove(board)) {
+                return false;
+            }
+            // Walk down again to fix the counts, dropping the nodes left empty.
+            node = root;
+            node.size--;
+            for (int i = 0; i < key.length(); i++) {
+                Node child = node.children.get(key.charAt(i));
+                child.size--;
+                if (child.size == 0) {
+                    node.children.remove(key.charAt(i));
+                    break;
+                }
+                node = child;
+            }
+
+            publish(new PacketBoardDirectoryDelta(++version, board, false), key);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads one page of the boards whose names start with the prefix
+     * @param prefix
+     * @param offset
+     * @param limit capped to MAX_PAGE
+     * @return PacketBoardDirectoryPage
+     */
+    public PacketBoardDirectoryPage page(String prefix, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return buildPage(prefix, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sends the subscriber one page of the boards under the prefix, then every change under it from
+     * then on. Replaces any earlier subscription of the subscriber.
+     * @param subscriber
+     * @param prefix
+     * @param offset
+     * @param limit
+     */
+    public void subscribe(SocketHandler subscriber, String prefix, int offset, int limit) {
+        lock.writeLock().lock();
+        try {
+            subscriber.sendPacket(buildPage(prefix, offset, limit));
+            subscribers.put(subscriber, key(prefix));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops sending changes to the subscriber, safe to call if it never subscribed
+     * @param subscriber
+     */
+    public void unsubscribe(SocketHandler subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * @return number of boards in the directory
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return root.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private PacketBoardDirectoryPage buildPage(String prefix, int offset, int limit) {
+        offset = Math.max(0, offset);
+        limit = Math.max(0, Math.min(MAX_PAGE, limit));
+        Node node = find(key(prefix));
+        List<BoardIdentifier> boards = new ArrayList<BoardIdentifier>(node == null ? 0 : Math.min(limit, node.size));
+        if (node != null) {
+            collect(node, new int[] { offset }, limit, boards);
+        }
+        return new PacketBoardDirectoryPage(prefix, offset, node == null ? 0 : node.size, version,
+                boards.toArray(new BoardIdentifier[boards.size()]));
+    }
+
+    /**
+     * Adds the boards under the node to the list in order, first skipping as many as skip[0] says
+     */
+    private static void collect(Node node, int[] skip, int limit, List<BoardIdentifier> out) {
+        if (node.size <= skip[0]) {
+            skip[0] -= node.size;
+            return;
+        }
+        for (BoardIdentifier board : node.boards) {
+            if (out.size() >= limit) {
+                return;
+            }
+            if (skip[0] > 0) {
+                skip[0]--;
+            }
+            else {
+                out.add(board);
+            }
+        }
+        for (Node child : node.children.values()) {
+            if (out.size() >= limit) {
+                return;
+            }
+            collect(child, skip, limit, out);
+        }
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        return node;
+    }
+
+    private void publish(PacketBoardDirectoryDelta delta, String key) {
+        PacketFrame frame = null;
+        for (Map.Entry<SocketHandler, String> subscriber : subscribers.entrySet()) {
+            if (key.startsWith(subscriber.getValue())) {
+                if (frame == null) {
+                    frame = PacketFrame.of(delta);
+                }
+                subscriber.getKey().sendFrame(frame);
+            }
+        }
+    }
+
+    private static String key(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A node of the trie, for the names that lowercase to the path leading to it
+     */
+    private static final class Node {
+        final TreeMap<Character, Node> children = new TreeMap<Character, Node>();
+        // Boards named exactly this, in BoardIdentifier.BY_NAME order.
+        final List<BoardIdentifier> boards = new ArrayList<BoardIdentifier>(1);
+        // Boards here and in every node below.
+        int size;
+    }
+}
@@ -0,0 +1,98 @@
+package server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import name.BoardIdentifier;
+
+import org.junit.Test;
+
+import packet.PacketBoardDirectoryDelta;
+import packet.PacketBoardDirectoryPage;
+
+public class BoardDirectoryTest {
+    private static final BoardIdentifier APPLE = new BoardIdentifier(1, "apple", null);
+    private static final BoardIdentifier APRICOT = new BoardIdentifier(2, "Apricot", null);
+    private static final BoardIdentifier APPLE_TOO = new BoardIdentifier(3, "Apple", null);
+    private static final BoardIdentifier BANANA = new BoardIdentifier(4, "banana", null);
+
+    private static BoardDirectory fruit() {
+        BoardDirectory directory = new BoardDirectory();
+        directory.add(BANANA);
+        directory.add(APRICOT);
+        directory.add(APPLE);
+        directory.add(APPLE_TOO);
+        return directory;
+    }
+
+    @Test
+    public void prefixTest() {
+        // test searches ignore case and list boards in name order
+        BoardDirectory directory = fruit();
+        PacketBoardDirectoryPage page = directory.page("AP", 0, 10);
+        assertEquals(3, page.total());
+        assertArrayEquals(new BoardIdentifier[] { APPLE_TOO, APPLE, APRICOT }, page.boards());
+        assertEquals(4, directory.page("", 0, 10).total());
+        assertEquals(0, directory.page("cherry", 0, 10).boards().length);
+    }
+
+    @Test
+    public void pagingTest() {
+        // test pages pick up where the previous one stopped
+        BoardDirectory directory = fruit();
+        assertArrayEquals(new BoardIdentifier[] { APPLE_TOO, APPLE }, directory.page("", 0, 2).boards());
+        assertArrayEquals(new BoardIdentifier[] { APRICOT, BANANA }, directory.page("", 2, 2).boards());
+        assertEquals(0, directory.page("", 4, 2).boards().length);
+    }
+
+    @Test
+    public void pageLimitTest() {
+        // test a page never holds more than MAX_PAGE boards
+        BoardDirectory directory = new BoardDirectory();
+        for (int i = 0; i < BoardDirectory.MAX_PAGE * 2; i++) {
+            directory.add(new BoardIdentifier(i, "board" + i, null));
+        }
+        PacketBoardDirectoryPage page = directory.page("board", 0, BoardDirectory.MAX_PAGE * 10);
+        assertEquals(BoardDirectory.MAX_PAGE, page.boards().length);
+        assertEquals(BoardDirectory.MAX_PAGE * 2, page.total());
+    }
+
+    @Test
+    public void removeTest() {
+        // test removed boards drop out of searches
+        BoardDirectory directory = fruit();
+        assertTrue(directory.remove(APRICOT));
+        assertFalse(directory.remove(APRICOT));
+        assertArrayEquals(new BoardIdentifier[] { APPLE_TOO, APPLE }, directory.page("ap", 0, 10).boards());
+        assertEquals(3, directory.size());
+    }
+
+    @Test
+    public void subscribeTest() {
+        // test subscribers get a page, then only the changes under their prefix, newer than the page
+        BoardDirectory directory = fruit();
+        RecordingConnection connection = new RecordingConnection();
+        ServerSocketHandler subscriber = new ServerSocketHandler(connection, null);
+        directory.subscribe(subscriber, "b", 0, 10);
+
+        BoardIdentifier blueberry = new BoardIdentifier(5, "Blueberry", null);
+        directory.add(new BoardIdentifier(6, "cherry", null));
+        directory.add(blueberry);
+        directory.remove(BANANA);
+        directory.unsubscribe(subscriber);
+        directory.add(new BoardIdentifier(7, "blackberry", null));
+
+        assertEquals(3, connection.sent.size());
+        PacketBoardDirectoryPage page = (PacketBoardDirectoryPage) connection.sent.get(0);
+        assertArrayEquals(new BoardIdentifier[] { BANANA }, page.boards());
+        PacketBoardDirectoryDelta added = (PacketBoardDirectoryDelta) connection.sent.get(1);
+        assertTrue(added.added());
+        assertEquals(blueberry, added.board());
+        assertTrue(added.version() > page.version());
+        PacketBoardDirectoryDelta removed = (PacketBoardDirectoryDelta) connection.sent.get(2);
+        assertFalse(removed.added());
+        assertEquals(BANANA, removed.board());
+    }
+}
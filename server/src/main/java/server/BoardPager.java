@@ -0,0 +1,309 @@
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import canvas.Canvas;
+import canvas.TileFile;
+import canvas.layer.Layer;
+
+/**
+ * Keeps the tiles the boards hold in memory within a budget, by paging the boards no one has used for a
+ * while out to disk. The least recently used idle boards, with no users, no one joining and no change for
+ * idleMillis, are paged out first, and only while the budget is exceeded.
+ *
+ * Paging a board out writes a snapshot of its canvas to a TileFile named after the board and its
+ * sequence number, then drops the tiles of its layers, so the board keeps only its identifier, users,
+ * layers and their properties in memory. Its sequencer stays in the BoardRegistry, so it is listed and
+ * joined as any other board: the tiles are read back one at a time the first time they are needed, by a
+ * change drawn on them or by a snapshot sent to a user joining. A snapshot reads the tiles into itself
+ * and leaves the board paged out.
+ *
+ * The snapshot is written on the pager's low priority thread, between two operations of the board's
+ * sequencer; the second one only drops the tiles if the board is still idle and hasn't changed since
+ * the first. Snapshots taken before a board is paged out again may still read from its last page file,
+ * so that file is only closed and deleted once the checkpoints already started have been written.
+ *
+ */
+public class BoardPager {
+    static final String PAGE_SUFFIX = ".page";
+    // How long a board is left alone before it can be paged out, and how often the boards are looked at.
+    static final long IDLE_MILLIS = 60000;
+    static final long CHECK_MILLIS = 5000;
+    // Memory one tile takes, as TYPE_INT_ARGB.
+    static final long TILE_BYTES = Layer.TILE_SIZE * Layer.TILE_SIZE * 4;
+
+    private final File directory;
+    private final BoardRegistry boards;
+    private final long budgetBytes;
+    private final long idleNanos;
+    private final Executor retirer;
+    private final ScheduledExecutorService pager;
+    // The file each board paged out reads its tiles back from. Only changed by the board's operations.
+    private final ConcurrentMap<BoardSequencer, PageFile> pageFiles = new ConcurrentHashMap<BoardSequencer, PageFile>();
+
+    // Written by the pager, read by stats().
+    private volatile long residentBytes;
+    private volatile long pageOuts;
+
+    /**
+     * Constructor for the pager of the boards of a registry, making its directory if needs be and
+     * deleting the page files left there
+     * @param directory where the boards are paged out to
+     * @param boards
+     * @param budgetBytes memory the tiles of all the boards may take before idle boards are paged out
+     * @param idleMillis how long a board is left alone before it can be paged out
+     * @param retirer runs the closing and deleting of page files no longer read from
+     * @throws IOException if the directory can't be made
+     */
+    public BoardPager(File directory, BoardRegistry boards, long budgetBytes, long idleMillis, Executor retirer)
+            throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not make page directory " + directory);
+        }
+        File[] stale = directory.listFiles();
+        if (stale != null) {
+            for (File file : stale) {
+                if (file.getName().endsWith(PAGE_SUFFIX) && !file.delete()) {
+                    throw new IOException("Could not delete " + file);
+                }
+            }
+        }
+        this.directory = directory;
+        this.boards = boards;
+        this.budgetBytes = budgetBytes;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.retirer = retirer;
+        this.pager = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "pager");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Looks at the boards every CHECK_MILLIS from now on, paging idle ones out while over budget
+     */
+    public void start() {
+        pager.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    pageOutIdle();
+                } catch (RuntimeException e) {
+                    e.printStackTrace(); // but keep paging
+                }
+            }
+        }, CHECK_MILLIS, CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops paging boards out, once the board being paged out is
+     */
+    public void shutdown() {
+        pager.shutdown();
+    }
+
+    /**
+     * @return memory the tiles of all the boards took when last looked at
+     */
+    public long residentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * @return how many times a board has been paged out
+     */
+    public long pageOuts() {
+        return pageOuts;
+    }
+
+    /**
+     * Pages the least recently used idle boards out until the tiles in memory are within budget. Blocks
+     * until they are, so only run it on the pager's thread, or in tests.
+     */
+    void pageOutIdle() {
+        long resident = 0;
+        List<Candidate> idle = new ArrayList<Candidate>();
+        long now = System.nanoTime();
+        for (BoardSequencer sequencer : boards.all()) {
+            int tiles = sequencer.model().canvas().tileCount();
+            resident += tiles * TILE_BYTES;
+            long lastActive = sequencer.lastActive();
+            if (tiles > 0 && now - lastActive >= idleNanos && sequencer.model().users().length == 0) {
+                idle.add(new Candidate(sequencer, lastActive));
+            }
+        }
+        // least recently used first
+        Collections.sort(idle, new Comparator<Candidate>() {
+            public int compare(Candidate a, Candidate b) {
+                return Long.signum(a.lastActive - b.lastActive);
+            }
+        });
+        for (Candidate candidate : idle) {
+            if (resident <= budgetBytes) {
+                break;
+            }
+            resident -= pageOut(candidate.sequencer);
+        }
+        residentBytes = resident;
+    }
+
+    /**
+     * Pages a board out if it is idle
+     * @param sequencer
+     * @return memory freed, 0 if the board was in use
+     */
+    private long pageOut(final BoardSequencer sequencer) {
+        final Canvas canvas = sequencer.model().canvas();
+        final Copy copy = call(sequencer, new Callable<Copy>() {
+            public Copy call() {
+                if (!sequencer.isIdle(idleNanos)) {
+                    return null;
+                }
+                return new Copy(canvas.snapshot(), sequencer.lastSequence(), canvas.tileCount());
+            }
+        });
+        if (copy == null || copy.tiles == 0) {
+            return 0;
+        }
+
+        final File file = new File(directory, BoardStore.key(sequencer.model().identifier()) + "." + copy.sequence
+                + PAGE_SUFFIX);
+        if (file.exists()) {
+            // still read from, the board can't have been drawn on since
+            return 0;
+        }
+        final TileFile tiles;
+        try {
+            TileFile.write(file, new byte[0], copy.canvas);
+            tiles = TileFile.open(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+            file.delete();
+            return 0;
+        }
+        Boolean pagedOut = call(sequencer, new Callable<Boolean>() {
+            public Boolean call() {
+                if (!sequencer.isIdle(idleNanos) || sequencer.lastSequence() != copy.sequence
+                        || boards.get(sequencer.model().identifier()) != sequencer) {
+                    return false;
+                }
+                canvas.pageOut(tiles);
+                sequencer.forgetChanges();
+                retire(pageFiles.put(sequencer, new PageFile(file, tiles)));
+                return true;
+            }
+        });
+        if (!Boolean.TRUE.equals(pagedOut)) {
+            retire(new PageFile(file, tiles));
+            return 0;
+        }
+        pageOuts++;
+        return copy.tiles * TILE_BYTES;
+    }
+
+    /**
+     * Forgets a board that has been removed, deleting its page file. Must only be called from a submitted
+     * operation of the board.
+     * @param sequencer
+     */
+    public void forget(BoardSequencer sequencer) {
+        retire(pageFiles.remove(sequencer));
+    }
+
+    /**
+     * Closes and deletes a page file once nothing reads from it any more
+     * @param pageFile or null
+     */
+    private void retire(final PageFile pageFile) {
+        if (pageFile == null) {
+            return;
+        }
+        retirer.execute(new Runnable() {
+            public void run() {
+                try {
+                    pageFile.tiles.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                pageFile.file.delete();
+            }
+        });
+    }
+
+    /**
+     * Runs a task as an operation of the board and waits for it
+     * @return what the task returned, null if it failed
+     */
+    private static <T> T call(BoardSequencer sequencer, Callable<T> task) {
+        FutureTask<T> future = new FutureTask<T>(task);
+        sequencer.submit(future);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * A board that may be paged out, with when it was last used as of when it was looked at
+     */
+    private static final class Candidate {
+        final BoardSequencer sequencer;
+        final long lastActive;
+
+        Candidate(BoardSequencer sequencer, long lastActive) {
+            this.sequencer = sequencer;
+            this.lastActive = lastActive;
+        }
+    }
+
+    /**
+     * A snapshot of an idle board to page out
+     */
+    private static final class Copy {
+        final Canvas canvas;
+        final long sequence;
+        final int tiles;
+
+        Copy(Canvas canvas, long sequence, int tiles) {
+            this.canvas = canvas;
+            this.sequence = sequence;
+            this.tiles = tiles;
+        }
+    }
+
+    /**
+     * A board's page file, with the TileFile its tiles are read back from
+     */
+    private static final class PageFile {
+        final File file;
+        final TileFile tiles;
+
+        PageFile(File file, TileFile tiles) {
+            this.file = file;
+            this.tiles = tiles;
+        }
+    }
+}
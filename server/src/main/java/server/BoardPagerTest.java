@@ -0,0 +1,139 @@
+package server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+
+import models.Board;
+import name.BoardIdentifier;
+import name.ClientIdentifier;
+import name.LayerIdentifier;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import packet.PacketDrawCommand;
+import util.TestUtil;
+import canvas.Canvas;
+import canvas.Pixel;
+import canvas.command.DrawCommandPixel;
+
+public class BoardPagerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BoardRegistry boards;
+
+    @Before
+    public void setUp() {
+        boards = new BoardRegistry();
+    }
+
+    private BoardSequencer newBoard(int id) {
+        Board model = new Board(new BoardIdentifier(id, "board" + id, null), new Canvas(300, 200), null);
+        BoardSequencer sequencer = new BoardSequencer(model, TestUtil.NOW);
+        boards.add(sequencer);
+        return sequencer;
+    }
+
+    private static void draw(final BoardSequencer sequencer, int from, int to) {
+        final Board model = sequencer.model();
+        LayerIdentifier layer = model.canvas().layers()[0].layerProperties().layerIdentifier();
+        for (int x = from; x < to; x++) {
+            final PacketDrawCommand packet = new PacketDrawCommand(new DrawCommandPixel(layer, new Pixel(x, x * 2 / 3, Color.RED)));
+            sequencer.submit(new Runnable() {
+                public void run() {
+                    packet.drawCommand().drawOn(model);
+                    sequencer.publish(packet);
+                }
+            });
+        }
+    }
+
+    private BoardPager newPager(long budgetBytes) throws IOException {
+        return new BoardPager(folder.getRoot(), boards, budgetBytes, 0, TestUtil.NOW);
+    }
+
+    private String[] pageFiles() {
+        return folder.getRoot().list(new FilenameFilter() {
+            public boolean accept(File directory, String name) {
+                return name.endsWith(BoardPager.PAGE_SUFFIX);
+            }
+        });
+    }
+
+    @Test
+    public void leastRecentlyUsedTest() throws Exception {
+        // test only the boards used longest ago are paged out, until the rest fit the budget, and their
+        // tiles come back as they were
+        BoardSequencer older = newBoard(1);
+        draw(older, 0, 300);
+        int[] pixels = older.model().canvas().layers()[0].pixels();
+        Thread.sleep(2);
+        BoardSequencer newer = newBoard(2);
+        draw(newer, 0, 100);
+        int newerTiles = newer.model().canvas().tileCount();
+
+        BoardPager pager = newPager(newerTiles * BoardPager.TILE_BYTES);
+        pager.pageOutIdle();
+        assertEquals(0, older.model().canvas().tileCount());
+        assertEquals(newerTiles, newer.model().canvas().tileCount());
+        assertEquals(1, pager.pageOuts());
+        assertEquals(newerTiles * BoardPager.TILE_BYTES, pager.residentBytes());
+        assertEquals(1, pageFiles().length);
+
+        assertArrayEquals(pixels, older.model().canvas().snapshot().layers()[0].pixels());
+        assertEquals(0, older.model().canvas().tileCount());
+        pager.pageOutIdle();
+        assertEquals(1, pager.pageOuts());
+    }
+
+    @Test
+    public void boardInUseTest() throws Exception {
+        // test a board with a user is never paged out, however far over budget
+        BoardSequencer board = newBoard(1);
+        draw(board, 0, 300);
+        board.model().addUser(new ClientIdentifier(5, "user"));
+        int tiles = board.model().canvas().tileCount();
+        BoardPager pager = newPager(0);
+        pager.pageOutIdle();
+        assertEquals(tiles, board.model().canvas().tileCount());
+        assertEquals(0, pager.pageOuts());
+        assertEquals(0, pageFiles().length);
+    }
+
+    @Test
+    public void pagedOutAgainTest() throws Exception {
+        // test drawing on a paged out board reads back only the tiles drawn on, and paging it out again
+        // replaces its page file, which is deleted once the board is forgotten
+        final BoardSequencer board = newBoard(1);
+        draw(board, 0, 300);
+        final BoardPager pager = newPager(0);
+        pager.pageOutIdle();
+        assertEquals(0, board.model().canvas().tileCount());
+
+        draw(board, 5, 6);
+        assertEquals(1, board.model().canvas().tileCount());
+        pager.pageOutIdle();
+        assertEquals(0, board.model().canvas().tileCount());
+        assertEquals(2, pager.pageOuts());
+        String[] files = pageFiles();
+        assertEquals(1, files.length);
+        assertTrue(files[0].endsWith("." + 301 + BoardPager.PAGE_SUFFIX));
+        assertEquals(Color.RED.getRGB(), board.model().canvas().layers()[0].pixels()[199 * 300 + 299]);
+
+        board.submit(new Runnable() {
+            public void run() {
+                pager.forget(board);
+            }
+        });
+        assertEquals(0, pageFiles().length);
+    }
+}
@@ -0,0 +1,113 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import name.BoardIdentifier;
+import packet.PacketBoardIdentifierList;
+import packet.PacketFrame;
+
+/**
+ * The boards on the server, each with the sequencer that owns it. Every change to the set of boards
+ * publishes a new immutable Snapshot of the board list with a higher version, so the list sent to each
+ * connecting client, and broadcast when a board is added, is built and encoded once per change rather
+ * than once per client.
+ *
+ */
+public class BoardRegistry {
+    private final ConcurrentMap<BoardIdentifier, BoardSequencer> boards =
+            new ConcurrentHashMap<BoardIdentifier, BoardSequencer>();
+    private volatile Snapshot snapshot = new Snapshot(0, new BoardIdentifier[] {});
+
+    /**
+     * Adds a board and publishes the new board list
+     * @param sequencer the sequencer of the board
+     * @return false if there already is a board with the same identifier
+     */
+    public boolean add(BoardSequencer sequencer) {
+        BoardIdentifier boardName = sequencer.model().identifier();
+        // Publishers take turns so versions are handed out in the order the lists are built.
+        synchronized (this) {
+            if (boards.putIfAbsent(boardName, sequencer) != null) {
+                return false;
+            }
+            BoardIdentifier[] previous = snapshot.boards;
+            BoardIdentifier[] current = Arrays.copyOf(previous, previous.length + 1);
+            current[previous.length] = boardName;
+            snapshot = new Snapshot(snapshot.version + 1, current);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a board, once it has moved to another server, and publishes the new board list
+     * @param sequencer the sequencer of the board
+     * @return false if the board wasn't there
+     */
+    public boolean remove(BoardSequencer sequencer) {
+        BoardIdentifier boardName = sequencer.model().identifier();
+        synchronized (this) {
+            if (!boards.remove(boardName, sequencer)) {
+                return false;
+            }
+            List<BoardIdentifier> current = new ArrayList<BoardIdentifier>(Arrays.asList(snapshot.boards));
+            current.remove(boardName);
+            snapshot = new Snapshot(snapshot.version + 1, current.toArray(new BoardIdentifier[current.size()]));
+        }
+        return true;
+    }
+
+    /**
+     * @param boardName
+     * @return the sequencer of the board, or null if there is no such board
+     */
+    public BoardSequencer get(BoardIdentifier boardName) {
+        return boards.get(boardName);
+    }
+
+    /**
+     * @return live view of every board's sequencer
+     */
+    public Iterable<BoardSequencer> all() {
+        return boards.values();
+    }
+
+    /**
+     * @return the latest board list, never rebuilt until the boards change
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Immutable board list at one version, in the order the boards were added
+     */
+    public static final class Snapshot {
+        public final long version;
+        private final BoardIdentifier[] boards;
+        private final PacketFrame frame;
+
+        Snapshot(long version, BoardIdentifier[] boards) {
+            this.version = version;
+            this.boards = boards;
+            this.frame = PacketFrame.of(new PacketBoardIdentifierList(boards, version));
+        }
+
+        /**
+         * @return clone of the list of boards
+         */
+        public BoardIdentifier[] boards() {
+            return boards.clone();
+        }
+
+        /**
+         * @return the board list packet, shared by every client it is sent to
+         */
+        public PacketFrame frame() {
+            return frame;
+        }
+    }
+}
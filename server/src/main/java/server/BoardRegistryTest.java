@@ -0,0 +1,88 @@
+package server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Executor;
+
+import models.Board;
+import name.BoardIdentifier;
+
+import org.junit.Test;
+
+import packet.PacketBoardIdentifierList;
+import canvas.Canvas;
+
+public class BoardRegistryTest {
+    private static final Executor INLINE = new Executor() {
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    private static BoardSequencer newBoard(int id) {
+        BoardIdentifier boardName = new BoardIdentifier(id, "board" + id, null);
+        return new BoardSequencer(new Board(boardName, new Canvas(16, 16), null), INLINE);
+    }
+
+    @Test
+    public void snapshotTest() {
+        // test each board added publishes a new list with a higher version, in the order added
+        BoardRegistry registry = new BoardRegistry();
+        BoardRegistry.Snapshot empty = registry.snapshot();
+        assertEquals(0, empty.boards().length);
+
+        BoardSequencer first = newBoard(1);
+        BoardSequencer second = newBoard(2);
+        assertTrue(registry.add(first));
+        assertTrue(registry.add(second));
+
+        BoardRegistry.Snapshot snapshot = registry.snapshot();
+        assertEquals(empty.version + 2, snapshot.version);
+        assertArrayEquals(new BoardIdentifier[] { first.model().identifier(), second.model().identifier() },
+                snapshot.boards());
+        assertTrue(registry.get(second.model().identifier()) == second);
+
+        PacketBoardIdentifierList packet = (PacketBoardIdentifierList) snapshot.frame().packet();
+        assertEquals(snapshot.version, packet.version());
+        assertEquals(2, packet.boards().length);
+    }
+
+    @Test
+    public void sharedSnapshotTest() {
+        // test the list isn't rebuilt until the boards change
+        BoardRegistry registry = new BoardRegistry();
+        registry.add(newBoard(1));
+        assertTrue(registry.snapshot() == registry.snapshot());
+        assertTrue(registry.snapshot().frame() == registry.snapshot().frame());
+    }
+
+    @Test
+    public void duplicateTest() {
+        // test adding a board under an identifier already in use changes nothing
+        BoardRegistry registry = new BoardRegistry();
+        registry.add(newBoard(1));
+        BoardRegistry.Snapshot snapshot = registry.snapshot();
+        assertFalse(registry.add(newBoard(1)));
+        assertTrue(registry.snapshot() == snapshot);
+    }
+
+    @Test
+    public void removeTest() {
+        // test removing a moved board publishes the list without it, and only removes that sequencer
+        BoardRegistry registry = new BoardRegistry();
+        BoardSequencer first = newBoard(1);
+        BoardSequencer second = newBoard(2);
+        registry.add(first);
+        registry.add(second);
+        BoardRegistry.Snapshot snapshot = registry.snapshot();
+
+        assertFalse(registry.remove(newBoard(1)));
+        assertTrue(registry.remove(first));
+        assertEquals(snapshot.version + 1, registry.snapshot().version);
+        assertArrayEquals(new BoardIdentifier[] { second.model().identifier() }, registry.snapshot().boards());
+        assertTrue(registry.get(first.model().identifier()) == null);
+    }
+}
@@ -0,0 +1,95 @@
+package server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Runs the board sequencers on a fixed pool of work-stealing threads. A sequencer drains for one
+ * quantum and then reschedules itself at the back of one shared ready queue, behind every board that
+ * was waiting, so boards take turns however busy they are. The pool only ever runs "take the next
+ * ready board" tasks; whichever worker is free, or steals one from a busy worker, takes the next turn,
+ * so busy boards spread over the cores rather than piling up behind each other on one.
+ *
+ */
+public class BoardScheduler implements Executor {
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private final ForkJoinPool pool;
+    private final Queue<Runnable> ready = new ConcurrentLinkedQueue<Runnable>();
+    private final Runnable runNext = new Runnable() {
+        public void run() {
+            Runnable task = ready.poll();
+            if (task != null) {
+                task.run();
+            }
+        }
+    };
+
+    /**
+     * Constructor for a scheduler with the given number of worker threads
+     * @param threads
+     */
+    public BoardScheduler(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid number of board threads.");
+        }
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("board-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        // FIFO mode: tasks are never joined, only run in the order they were scheduled.
+        this.pool = new ForkJoinPool(threads, factory, null, true);
+    }
+
+    /**
+     * Schedules a task at the back of the ready queue
+     */
+    @Override
+    public void execute(Runnable task) {
+        ready.add(task);
+        pool.execute(runNext);
+    }
+
+    /**
+     * Stops taking new tasks, tasks already scheduled still run
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * @return snapshot of the pool's metrics
+     */
+    public Stats stats() {
+        return new Stats(pool.getParallelism(), pool.getActiveThreadCount(), ready.size(), pool.getStealCount());
+    }
+
+    /**
+     * Immutable snapshot of a BoardScheduler's metrics
+     */
+    public static final class Stats {
+        public final int threads;
+        public final int active;
+        public final long queued;
+        public final long steals;
+
+        Stats(int threads, int active, long queued, long steals) {
+            this.threads = threads;
+            this.active = active;
+            this.queued = queued;
+            this.steals = steals;
+        }
+
+        @Override
+        public String toString() {
+            return "threads=" + threads + " active=" + active + " queued=" + queued + " steals=" + steals;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import connection.SocketHandler;
+import models.Board;
+import name.Identifiable;
+import packet.Packet;
+import packet.PacketFrame;
+import packet.SequencedPacket;
+
+/**
+ * The single writer of one board. Reader threads never touch the board themselves, they submit
+ * operations to a lock-free queue and at most one task drains it on the executor at a time. Changes are
+ * therefore applied in one total order, stamped with increasing sequence numbers and handed to every
+ * user's outbound queue in that same order, so all clients end up with the same canvas as the server.
+ *
+ * While the board is moving to another server, every change published is also sent to the tail, the
+ * connection the board is being copied over. Likewise every change is sent to the users joining the
+ * board, from the copy of the board they were sent until they are users.
+ *
+ * The last RESUME_CHANGES changes are kept, so a user that lost its connection and comes back can be
+ * sent only the changes it missed rather than the whole board.
+ *
+ * Boards can be kept in a Journal, every change published is then appended to it. With SYNC durability
+ * a drain waits for the changes it made to be on disk before it yields, so the board only moves on to
+ * its next batch of changes once the last one is durable: one fsync per batch, however many changes
+ * were in it. Everything the batch's operations send is held back until then, see whenDurable(), so no
+ * user is shown a change a crash could still lose.
+ *
+ * The sequencer remembers when the board was last changed or joined, so a BoardPager can tell the boards
+ * no one has been using for a while.
+ *
+ * A drain runs for one quantum and then yields its thread to other boards. Boards that are hot, with
+ * a deep queue or a high rate of changes, get a shorter quantum so they can't starve quiet ones.
+ *
+ */
+public class BoardSequencer {
+    // Most operations, and longest time, a drain runs before it yields its thread to other boards.
+    static final int BATCH = 256;
+    static final long QUANTUM_NANOS = 1000000;
+    static final long HOT_QUANTUM_NANOS = 200000;
+    // A board is hot with this many operations waiting, or this many run per second.
+    static final int HOT_DEPTH = 512;
+    static final int HOT_RATE = 5000;
+    static final long RATE_WINDOW_NANOS = 1000000000;
+    // Changes kept for users coming back after losing their connection.
+    static final int RESUME_CHANGES = 4096;
+    // What the operations of the drain running on this thread send once its changes are on disk, null
+    // unless its board is kept with SYNC durability.
+    private static final ThreadLocal<List<Runnable>> HELD = new ThreadLocal<List<Runnable>>();
+
+    private final Board model;
+    private final Executor executor;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final ServiceTimeHistogram serviceTime = new ServiceTimeHistogram();
+    private final Runnable drain = new Runnable() {
+        public void run() {
+            drain();
+        }
+    };
+
+    // Only touched by the draining task.
+    private long lastSequence;
+    private final ChangeRing recent;
+    private SocketHandler tail;
+    private final List<SocketHandler> joiners = new ArrayList<SocketHandler>();
+    private long windowStart = System.nanoTime();
+    private long windowOperations;
+
+    // Written by the draining task, read by stats() and the checkpointer.
+    private volatile Journal journal;
+    private volatile long processed;
+    private volatile long operationsPerSecond;
+    private volatile long lastActive = System.nanoTime();
+
+    /**
+     * Constructor for the sequencer of a board, draining on the executor
+     * @param model
+     * @param executor
+     */
+    public BoardSequencer(Board model, Executor executor) {
+        this(model, executor, 0);
+    }
+
+    /**
+     * Constructor for the sequencer of a board moved from another server, carrying on from the last
+     * change made there
+     * @param model
+     * @param executor
+     * @param lastSequence sequence number of the last change included in the board
+     */
+    public BoardSequencer(Board model, Executor executor, long lastSequence) {
+        this.model = model;
+        this.executor = executor;
+        this.lastSequence = lastSequence;
+        this.recent = new ChangeRing(RESUME_CHANGES, lastSequence);
+    }
+
+    /**
+     * @return the board this sequencer writes
+     */
+    public Board model() {
+        return model;
+    }
+
+    /**
+     * Queues an operation on the board. Safe to call from any thread, never blocks.
+     * @param operation
+     */
+    public void submit(Runnable operation) {
+        pending.add(operation);
+        depth.incrementAndGet();
+        schedule();
+    }
+
+    /**
+     * Stamps the packet with the board's next sequence number if it changes the board, then sends it to
+     * every user of the board, encoding it only once for all of them. Must only be called from a
+     * submitted operation.
+     * @param packet
+     */
+    public void publish(Packet packet) {
+        lastActive = System.nanoTime();
+        PacketFrame frame = PacketFrame.of(packet);
+        if (packet instanceof SequencedPacket) {
+            ((SequencedPacket) packet).setSequence(++lastSequence);
+            recent.add(lastSequence, frame);
+            if (journal != null) {
+                journal.append(lastSequence, frame);
+            }
+        }
+        for (Identifiable user : model.users()) {
+            ((ServerSocketHandler) user).sendFrame(frame);
+        }
+        if (tail != null) {
+            tail.sendFrame(frame);
+        }
+        for (SocketHandler joiner : joiners) {
+            joiner.sendFrame(frame);
+        }
+    }
+
+    /**
+     * Returns the changes a user coming back to the board missed. Must only be called from a submitted
+     * operation.
+     * @param sequence sequence number of the last change the user applied
+     * @return the frames of every change made since, in order, or null if they aren't all kept any more
+     */
+    public List<PacketFrame> changesSince(long sequence) {
+        return recent.since(sequence);
+    }
+
+    /**
+     * Sends every change from now on to a user joining the board, who has just been sent a copy of it,
+     * until it is removed. Must only be called from a submitted operation.
+     * @param joiner
+     */
+    public void addJoiner(SocketHandler joiner) {
+        lastActive = System.nanoTime();
+        joiners.add(joiner);
+    }
+
+    /**
+     * Stops sending changes to a user joining the board, once it is a user or has gone. Must only be
+     * called from a submitted operation.
+     * @param joiner
+     * @return whether it was joining
+     */
+    public boolean removeJoiner(SocketHandler joiner) {
+        return joiners.remove(joiner);
+    }
+
+    /**
+     * Sets where every change is copied to from now on, null to stop copying. Must only be called from a
+     * submitted operation.
+     * @param tail
+     */
+    public void setTail(SocketHandler tail) {
+        this.tail = tail;
+    }
+
+    /**
+     * @return where every change is copied to, only meaningful from a submitted operation
+     */
+    public SocketHandler tail() {
+        return tail;
+    }
+
+    /**
+     * Sets the journal every change is appended to from now on, null to stop keeping them. Must only be
+     * called from a submitted operation.
+     * @param journal which must have every change up to the last one published
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * @return the journal the changes are kept in, or null if the board isn't kept
+     */
+    public Journal journal() {
+        return journal;
+    }
+
+    /**
+     * @return System.nanoTime() when the board was last changed or joined
+     */
+    public long lastActive() {
+        return lastActive;
+    }
+
+    /**
+     * Must only be called from a submitted operation.
+     * @param idleNanos
+     * @return whether the board has no users, no one joining it, isn't moving and hasn't been changed or
+     *         joined for idleNanos
+     */
+    public boolean isIdle(long idleNanos) {
+        return model.users().length == 0 && joiners.isEmpty() && tail == null
+                && System.nanoTime() - lastActive >= idleNanos;
+    }
+
+    /**
+     * Drops the changes kept for users coming back, who will be sent the whole board instead. Must only
+     * be called from a submitted operation.
+     */
+    public void forgetChanges() {
+        recent.clear();
+    }
+
+    /**
+     * @return sequence number of the last change published, only meaningful from a submitted operation
+     */
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Runs the action once the changes made by the drain running on this thread are on disk, if its
+     * board is kept with SYNC durability, otherwise right away. Actions held back run in the order they
+     * were given, so whatever they send keeps its order.
+     * @param action
+     */
+    static void whenDurable(Runnable action) {
+        List<Runnable> held = HELD.get();
+        if (held == null) {
+            action.run();
+        }
+        else {
+            held.add(action);
+        }
+    }
+
+    /**
+     * @return whether whenDurable() holds actions back on this thread
+     */
+    static boolean isHolding() {
+        return HELD.get() != null;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(drain);
+        }
+    }
+
+    /**
+     * @return whether the board is busy enough to be given a shorter quantum
+     */
+    public boolean isHot() {
+        return depth.get() >= HOT_DEPTH || operationsPerSecond >= HOT_RATE;
+    }
+
+    /**
+     * @return snapshot of the board's metrics
+     */
+    public Stats stats() {
+        return new Stats(depth.get(), processed, operationsPerSecond, isHot(), serviceTime.snapshot());
+    }
+
+    private void drain() {
+        long start = System.nanoTime();
+        long quantum = isHot() ? HOT_QUANTUM_NANOS : QUANTUM_NANOS;
+        long now = start;
+        int ran = 0;
+        // Drains of other boards may run inline from an operation of this one, each holds its own.
+        List<Runnable> outer = HELD.get();
+        Journal kept = journal;
+        List<Runnable> held = kept != null && kept.durability() == Durability.SYNC ? new ArrayList<Runnable>() : null;
+        HELD.set(held);
+        try {
+            while (ran < BATCH && now - start < quantum) {
+                Runnable operation = pending.poll();
+                if (operation == null) {
+                    break;
+                }
+                depth.decrementAndGet();
+                try {
+                    operation.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace(); // but keep the board going
+                }
+                long end = System.nanoTime();
+                serviceTime.record(end - now);
+                now = end;
+                ran++;
+            }
+            if (ran > 0 && journal != null && journal.durability() == Durability.SYNC) {
+                journal.awaitDurable(lastSequence);
+            }
+        } finally {
+            if (outer == null) {
+                HELD.remove();
+            }
+            else {
+                HELD.set(outer);
+            }
+            if (held != null) {
+                for (Runnable action : held) {
+                    action.run();
+                }
+            }
+            countOperations(ran, now);
+            scheduled.set(false);
+            // Anything queued after the last poll, or left over from a full batch, needs another drain.
+            if (!pending.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private void countOperations(int ran, long now) {
+        processed += ran;
+        windowOperations += ran;
+        long elapsed = now - windowStart;
+        if (elapsed >= RATE_WINDOW_NANOS) {
+            operationsPerSecond = windowOperations * RATE_WINDOW_NANOS / elapsed;
+            windowOperations = 0;
+            windowStart = now;
+        }
+    }
+
+    /**
+     * Immutable snapshot of a BoardSequencer's metrics
+     */
+    public static final class Stats {
+        public final int depth;
+        public final long processed;
+        public final long operationsPerSecond;
+        public final boolean hot;
+        public final ServiceTimeHistogram.Snapshot serviceTime;
+
+        Stats(int depth, long processed, long operationsPerSecond, boolean hot,
+                ServiceTimeHistogram.Snapshot serviceTime) {
+            this.depth = depth;
+            this.processed = processed;
+            this.operationsPerSecond = operationsPerSecond;
+            this.hot = hot;
+            this.serviceTime = serviceTime;
+        }
+
+        @Override
+        public String toString() {
+            return "depth=" + depth + " processed=" + processed + " ops/s=" + operationsPerSecond
+                    + (hot ? " hot" : "") + " " + serviceTime;
+        }
+    }
+}
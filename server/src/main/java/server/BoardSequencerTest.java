@@ -0,0 +1,175 @@
+package server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import models.Board;
+import name.BoardIdentifier;
+import name.LayerIdentifier;
+
+import org.junit.Test;
+
+import packet.PacketFrame;
+import packet.PacketMessage;
+import packet.PacketNewLayer;
+import packet.SequencedPacket;
+import canvas.Canvas;
+
+public class BoardSequencerTest {
+    private static final int SUBMITTERS = 4;
+    private static final int OPERATIONS = 500;
+
+    private static Board newModel() {
+        return new Board(new BoardIdentifier(1, "board", null), new Canvas(16, 16), null);
+    }
+
+    @Test(timeout = 10000)
+    public void totalOrderTest() throws InterruptedException {
+        // test changes submitted from many threads are applied one at a time and every user
+        // receives them stamped in increasing order
+        ExecutorService executor = Executors.newFixedThreadPool(SUBMITTERS);
+        Board model = newModel();
+        final BoardSequencer sequencer = new BoardSequencer(model, executor);
+
+        RecordingConnection first = new RecordingConnection();
+        RecordingConnection second = new RecordingConnection();
+        model.addUser(new ServerSocketHandler(first, null));
+        model.addUser(new ServerSocketHandler(second, null));
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(SUBMITTERS * OPERATIONS);
+        Thread[] submitters = new Thread[SUBMITTERS];
+        for (int i = 0; i < SUBMITTERS; i++) {
+            final int submitter = i;
+            submitters[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < OPERATIONS; j++) {
+                        final PacketNewLayer packet = new PacketNewLayer(new LayerIdentifier(submitter, "layer" + j));
+                        sequencer.submit(new Runnable() {
+                            public void run() {
+                                if (running.incrementAndGet() != 1) {
+                                    overlaps.incrementAndGet();
+                                }
+                                sequencer.publish(packet);
+                                running.decrementAndGet();
+                                done.countDown();
+                            }
+                        });
+                    }
+                }
+            });
+            submitters[i].start();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(0, overlaps.get());
+        assertEquals(SUBMITTERS * OPERATIONS, first.sent.size());
+        assertEquals(first.sent, second.sent);
+        for (int i = 0; i < first.sent.size(); i++) {
+            assertEquals(i + 1, ((SequencedPacket) first.sent.get(i)).sequence());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void unsequencedTest() throws InterruptedException {
+        // test packets that don't change the board are delivered without using up a sequence number
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Board model = newModel();
+        final BoardSequencer sequencer = new BoardSequencer(model, executor);
+        RecordingConnection connection = new RecordingConnection();
+        model.addUser(new ServerSocketHandler(connection, null));
+
+        final PacketNewLayer layer = new PacketNewLayer(new LayerIdentifier(0, "layer"));
+        sequencer.submit(new Runnable() {
+            public void run() {
+                sequencer.publish(new PacketMessage("message"));
+                sequencer.publish(layer);
+            }
+        });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(2, connection.sent.size());
+        assertEquals(1, layer.sequence());
+    }
+
+    @Test(timeout = 10000)
+    public void changesSinceTest() throws InterruptedException {
+        // test the changes a user missed are kept until there are too many newer ones
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final BoardSequencer sequencer = new BoardSequencer(newModel(), executor, 100);
+        final List<List<PacketFrame>> missed = new CopyOnWriteArrayList<List<PacketFrame>>();
+        sequencer.submit(new Runnable() {
+            public void run() {
+                missed.add(sequencer.changesSince(100));
+                for (int i = 0; i < 10; i++) {
+                    sequencer.publish(new PacketNewLayer(new LayerIdentifier(i, "layer" + i)));
+                    sequencer.publish(new PacketMessage("unsequenced"));
+                }
+                missed.add(sequencer.changesSince(107));
+                missed.add(sequencer.changesSince(99));
+                missed.add(sequencer.changesSince(111));
+                for (int i = 0; i < BoardSequencer.RESUME_CHANGES; i++) {
+                    sequencer.publish(new PacketNewLayer(new LayerIdentifier(i, "layer" + i)));
+                }
+                missed.add(sequencer.changesSince(110));
+                missed.add(sequencer.changesSince(109));
+            }
+        });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(0, missed.get(0).size());
+        assertEquals(3, missed.get(1).size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(108 + i, ((SequencedPacket) missed.get(1).get(i).packet()).sequence());
+        }
+        // changes made before the sequencer, or never made, aren't there
+        assertEquals(null, missed.get(2));
+        assertEquals(null, missed.get(3));
+        assertEquals(BoardSequencer.RESUME_CHANGES, missed.get(4).size());
+        assertEquals(null, missed.get(5));
+    }
+
+    @Test(timeout = 10000)
+    public void hotBoardFairnessTest() throws InterruptedException {
+        // test a board with a long backlog doesn't keep a quiet board waiting until it is done
+        BoardScheduler scheduler = new BoardScheduler(1);
+        final BoardSequencer hot = new BoardSequencer(newModel(), scheduler);
+        BoardSequencer quiet = new BoardSequencer(newModel(), scheduler);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        for (int i = 0; i < OPERATIONS * 4; i++) {
+            hot.submit(new Runnable() {
+                public void run() {
+                    started.countDown();
+                    long end = System.nanoTime() + 50000;
+                    while (System.nanoTime() < end) { }
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        final AtomicInteger hotDepth = new AtomicInteger();
+        quiet.submit(new Runnable() {
+            public void run() {
+                hotDepth.set(hot.stats().depth);
+                ran.countDown();
+            }
+        });
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(hotDepth.get() > 0);
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,373 @@
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import models.Board;
+import name.BoardIdentifier;
+import name.Identifiable;
+import packet.PacketBoardTransfer;
+import packet.PacketCodec;
+import canvas.Canvas;
+import canvas.TileFile;
+
+/**
+ * The boards a server keeps on disk, all in one directory. A board kept there has a checkpoint, a
+ * TileFile of the whole board as of one change, and Journals of the changes made since, each named
+ * after its base:
+ *   BOARD.tiles            the last checkpoint, its header the board's PacketBoardTransfer without tiles
+ *   BOARD.BASE.journal     the changes after BASE, the board's first journal starting with a copy of it
+ * Only the newest journal of a board is appended to.
+ *
+ * A board is checkpointed once its journal is checkpointBytes long, so bringing it back reads at most
+ * a checkpoint and about that much journal. Its sequencer only takes a copy-on-write snapshot of the
+ * canvas and starts a new journal at the snapshot's sequence number; the tiles are written, forced to
+ * disk and the journals they replace deleted on one low priority thread, so drawing isn't held up.
+ *
+ * The checkpoint is written to a temporary file and renamed over the last one once it is on disk, and
+ * journals are only deleted after that. Wherever the server stops, the directory has either the old
+ * checkpoint and every journal since, or the new checkpoint and maybe journals it made unnecessary,
+ * which are skipped.
+ *
+ */
+public class BoardStore {
+    static final String CHECKPOINT_SUFFIX = ".tiles";
+    static final String JOURNAL_SUFFIX = ".journal";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    // Length of journal a board is checkpointed at, and how often the journals are looked at.
+    static final long CHECKPOINT_BYTES = 16 << 20;
+    static final long CHECK_MILLIS = 5000;
+
+    private final File directory;
+    private final Executor writers;
+    private final long checkpointBytes;
+    private final ScheduledExecutorService checkpointer;
+
+    // Written by the checkpointer, read by checkpoints().
+    private volatile long checkpoints;
+
+    /**
+     * Constructor for the store of boards in a directory, making it if needs be
+     * @param directory
+     * @param writers where the journals are written and forced from
+     * @param checkpointBytes length of journal a board is checkpointed at
+     * @throws IOException if the directory can't be made
+     */
+    public BoardStore(File directory, Executor writers, long checkpointBytes) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not make journal directory " + directory);
+        }
+        this.directory = directory;
+        this.writers = writers;
+        this.checkpointBytes = checkpointBytes;
+        this.checkpointer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "checkpointer");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Looks at the journals of the boards every CHECK_MILLIS from now on, checkpointing the boards
+     * whose journal has grown long enough
+     * @param boards
+     */
+    public void start(final Iterable<BoardSequencer> boards) {
+        checkpointer.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                for (BoardSequencer sequencer : boards) {
+                    checkpointIfLong(sequencer);
+                }
+            }
+        }, CHECK_MILLIS, CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops checkpointing, once the checkpoints already started are written
+     */
+    public void shutdown() {
+        checkpointer.shutdown();
+    }
+
+    /**
+     * Runs the task on the checkpointer, once every checkpoint already started is written
+     * @param task
+     */
+    public void afterCheckpoints(Runnable task) {
+        checkpointer.execute(task);
+    }
+
+    /**
+     * @return how many checkpoints have been written
+     */
+    public long checkpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * @param board
+     * @return what every file of the board is named after
+     */
+    static String key(BoardIdentifier board) {
+        return board.id() + "-" + Integer.toHexString(board.name().hashCode());
+    }
+
+    private File checkpointFile(String key) {
+        return new File(directory, key + CHECKPOINT_SUFFIX);
+    }
+
+    private File journalFile(String key, long base) {
+        return new File(directory, key + "." + base + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * @return every journal of the board, by base
+     */
+    private Map<Long, File> journals(String key) {
+        Map<Long, File> journals = new TreeMap<Long, File>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return journals;
+        }
+        String prefix = key + ".";
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(prefix) && name.endsWith(JOURNAL_SUFFIX)) {
+                try {
+                    journals.put(Long.parseLong(name.substring(prefix.length(), name.length() - JOURNAL_SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        return journals;
+    }
+
+    /**
+     * Starts, changes or stops keeping a board. Must only be called from a submitted operation of the
+     * board.
+     * @param sequencer
+     * @param durability OFF deletes every file of the board
+     */
+    public void keep(BoardSequencer sequencer, Durability durability) {
+        Journal journal = sequencer.journal();
+        final String key = key(sequencer.model().identifier());
+        if (durability == Durability.OFF) {
+            if (journal != null) {
+                sequencer.setJournal(null);
+                journal.delete();
+            }
+            for (File file : journals(key).values()) {
+                file.delete();
+            }
+            // After any checkpoint of the board being written.
+            checkpointer.execute(new Runnable() {
+                public void run() {
+                    checkpointFile(key).delete();
+                }
+            });
+        }
+        else if (journal != null) {
+            journal.setDurability(durability);
+        }
+        else {
+            long sequence = sequencer.lastSequence();
+            try {
+                sequencer.setJournal(Journal.create(journalFile(key, sequence),
+                        new PacketBoardTransfer(sequencer.model(), sequence), durability, writers));
+            } catch (IOException e) {
+                e.printStackTrace(); // the board carries on without being kept
+            }
+        }
+    }
+
+    /**
+     * Checkpoints the board if its journal has grown long enough. Safe to call from any thread.
+     * @param sequencer
+     */
+    void checkpointIfLong(final BoardSequencer sequencer) {
+        final Journal journal = sequencer.journal();
+        if (journal != null && journal.length() >= checkpointBytes) {
+            sequencer.submit(new Runnable() {
+                public void run() {
+                    // unless it has been checkpointed, or stopped being kept, meanwhile
+                    if (sequencer.journal() == journal) {
+                        checkpoint(sequencer);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Checkpoints the board as it is now: takes a snapshot of it and starts a new journal, then writes
+     * the snapshot in the background. Must only be called from a submitted operation of the board.
+     * @param sequencer
+     */
+    public void checkpoint(BoardSequencer sequencer) {
+        final Journal old = sequencer.journal();
+        final long sequence = sequencer.lastSequence();
+        if (old == null || old.base() == sequence) {
+            return;
+        }
+        if (old.durability() == Durability.SYNC) {
+            // the drain waits on the new journal, which doesn't have these
+            old.awaitDurable(sequence);
+        }
+        Board model = sequencer.model();
+        final BoardIdentifier board = model.identifier();
+        final Identifiable owner = model.getOwner();
+        final Canvas snapshot = model.canvas().snapshot();
+        try {
+            sequencer.setJournal(Journal.roll(journalFile(key(board), sequence), sequence, old.durability(), writers));
+        } catch (IOException e) {
+            e.printStackTrace(); // carry on with the old journal
+            return;
+        }
+        checkpointer.execute(new Runnable() {
+            public void run() {
+                try {
+                    old.close();
+                    writeCheckpoint(board, owner, snapshot, sequence);
+                } catch (IOException e) {
+                    e.printStackTrace(); // the journals are kept, the next checkpoint tries again
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes a checkpoint of the board, then deletes the journals it makes unnecessary
+     * @param board
+     * @param owner
+     * @param snapshot the board's canvas as of the sequence number
+     * @param sequence
+     * @throws IOException
+     */
+    private void writeCheckpoint(BoardIdentifier board, Identifiable owner, Canvas snapshot, long sequence) throws IOException {
+        String key = key(board);
+        File checkpoint = checkpointFile(key);
+        File temporary = new File(directory, checkpoint.getName() + TEMPORARY_SUFFIX);
+        byte[] header = PacketCodec.encode(new PacketBoardTransfer(board, snapshot.blankCopy(), owner, sequence), 0);
+        TileFile.write(temporary, header, snapshot);
+        Files.move(temporary.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Map.Entry<Long, File> journal : journals(key).entrySet()) {
+            if (journal.getKey() < sequence) {
+                journal.getValue().delete();
+            }
+        }
+        checkpoints++;
+    }
+
+    /**
+     * Reads a checkpoint back
+     * @param file
+     * @return the board as of the checkpoint
+     * @throws IOException if the checkpoint is malformed
+     */
+    static PacketBoardTransfer readCheckpoint(File file) throws IOException {
+        TileFile tiles = TileFile.open(file);
+        try {
+            byte[] header = tiles.header();
+            PacketBoardTransfer board = (PacketBoardTransfer) PacketCodec.decode(header, 0, header.length);
+            tiles.readInto(board.canvas());
+            return board;
+        } catch (ClassCastException e) {
+            throw new IOException("No board in the header of " + file);
+        } finally {
+            tiles.close();
+        }
+    }
+
+    /**
+     * Brings back every board in the directory, each from its checkpoint and the journals since. Every
+     * board is checkpointed again as it is brought back, so it carries on with an empty journal. Must be
+     * called before boards are kept.
+     * @param scheduler what the boards' sequencers drain on
+     * @param durability how safely the boards are kept from now on
+     * @return the sequencers of the boards
+     */
+    public List<BoardSequencer> recover(Executor scheduler, Durability durability) {
+        Map<String, Boolean> keys = new TreeMap<String, Boolean>();
+        File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMPORARY_SUFFIX)) {
+                file.delete(); // a checkpoint the server stopped writing
+            }
+            else if (name.endsWith(CHECKPOINT_SUFFIX) || name.endsWith(JOURNAL_SUFFIX)) {
+                keys.put(name.substring(0, name.indexOf('.')), true);
+            }
+        }
+        List<BoardSequencer> sequencers = new ArrayList<BoardSequencer>();
+        for (String key : keys.keySet()) {
+            try {
+                sequencers.add(recover(key, scheduler, durability));
+            } catch (IOException e) {
+                System.err.println("Could not recover board " + key + ": " + e.getMessage());
+            }
+        }
+        return sequencers;
+    }
+
+    private BoardSequencer recover(String key, Executor scheduler, Durability durability) throws IOException {
+        File checkpointFile = checkpointFile(key);
+        PacketBoardTransfer checkpoint = checkpointFile.exists() ? readCheckpoint(checkpointFile) : null;
+        List<Journal.Replay> replays = new ArrayList<Journal.Replay>();
+        for (File file : journals(key).values()) {
+            replays.add(Journal.read(file));
+        }
+        Collections.sort(replays, new Comparator<Journal.Replay>() {
+            public int compare(Journal.Replay a, Journal.Replay b) {
+                return a.base() < b.base() ? -1 : (a.base() == b.base() ? 0 : 1);
+            }
+        });
+
+        // The newest copy of the board, a checkpoint left behind by a board kept again being older.
+        PacketBoardTransfer copy = checkpoint;
+        for (Journal.Replay replay : replays) {
+            if (replay.snapshot() != null && (copy == null || replay.snapshot().sequence() > copy.sequence())) {
+                copy = replay.snapshot();
+            }
+        }
+        if (copy == null) {
+            throw new IOException("no copy of the board");
+        }
+        Board model = new Board(copy.boardName(), copy.canvas(), copy.owner());
+        long sequence = copy.sequence();
+        for (Journal.Replay replay : replays) {
+            sequence = replay.applyTo(model, sequence);
+        }
+
+        if (checkpoint == null || checkpoint.sequence() != sequence) {
+            writeCheckpoint(model.identifier(), model.getOwner(), model.canvas().snapshot(), sequence);
+        }
+        for (File file : journals(key).values()) {
+            file.delete();
+        }
+        final BoardSequencer sequencer = new BoardSequencer(model, scheduler, sequence);
+        final Journal journal = Journal.roll(journalFile(key, sequence), sequence, durability, writers);
+        sequencer.submit(new Runnable() {
+            public void run() {
+                sequencer.setJournal(journal);
+            }
+        });
+        return sequencer;
+    }
+}
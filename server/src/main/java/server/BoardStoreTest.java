@@ -0,0 +1,152 @@
+package server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import models.Board;
+import name.BoardIdentifier;
+import name.LayerIdentifier;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import packet.PacketDrawCommand;
+import util.TestUtil;
+import canvas.Canvas;
+import canvas.Pixel;
+import canvas.command.DrawCommandPixel;
+
+public class BoardStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private BoardStore store;
+    private Board model;
+    private BoardSequencer sequencer;
+    private LayerIdentifier layer;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot();
+        store = new BoardStore(directory, TestUtil.NOW, BoardStore.CHECKPOINT_BYTES);
+        model = new Board(new BoardIdentifier(1, "board", null), new Canvas(200, 100), null);
+        sequencer = new BoardSequencer(model, TestUtil.NOW);
+        layer = model.canvas().layers()[0].layerProperties().layerIdentifier();
+        keep(Durability.ASYNC);
+    }
+
+    private void keep(final Durability durability) {
+        sequencer.submit(new Runnable() {
+            public void run() {
+                store.keep(sequencer, durability);
+            }
+        });
+    }
+
+    private void draw(int from, int to) {
+        for (int x = from; x < to; x++) {
+            final PacketDrawCommand packet = new PacketDrawCommand(new DrawCommandPixel(layer, new Pixel(x, x / 2, Color.RED)));
+            sequencer.submit(new Runnable() {
+                public void run() {
+                    packet.drawCommand().drawOn(model);
+                    sequencer.publish(packet);
+                }
+            });
+        }
+    }
+
+    private void checkpoint(long checkpoints) throws InterruptedException {
+        sequencer.submit(new Runnable() {
+            public void run() {
+                store.checkpoint(sequencer);
+            }
+        });
+        while (store.checkpoints() < checkpoints) {
+            Thread.sleep(5);
+        }
+    }
+
+    private String[] files() {
+        String[] names = directory.list();
+        Arrays.sort(names);
+        return names;
+    }
+
+    private BoardSequencer recover() throws IOException {
+        List<BoardSequencer> recovered = new BoardStore(directory, TestUtil.NOW, BoardStore.CHECKPOINT_BYTES).recover(TestUtil.NOW, Durability.ASYNC);
+        assertEquals(1, recovered.size());
+        return recovered.get(0);
+    }
+
+    private void assertSameBoard(BoardSequencer recovered) {
+        assertEquals(sequencer.lastSequence(), recovered.lastSequence());
+        assertEquals(model.identifier(), recovered.model().identifier());
+        assertArrayEquals(model.canvas().layers()[0].pixels(), recovered.model().canvas().layers()[0].pixels());
+    }
+
+    @Test(timeout = 10000)
+    public void checkpointTest() throws Exception {
+        // test a checkpoint replaces the journals before it, and the board comes back from the
+        // checkpoint and the journal since
+        String key = BoardStore.key(model.identifier());
+        draw(0, 10);
+        assertArrayEquals(new String[] { key + ".0.journal" }, files());
+        checkpoint(1);
+        assertArrayEquals(new String[] { key + ".10.journal", key + ".tiles" }, files());
+        draw(10, 13);
+        sequencer.journal().close();
+
+        BoardSequencer recovered = recover();
+        assertSameBoard(recovered);
+        assertEquals(13, recovered.journal().base());
+        assertArrayEquals(new String[] { key + ".13.journal", key + ".tiles" }, files());
+    }
+
+    @Test(timeout = 10000)
+    public void stoppedMidCheckpointTest() throws Exception {
+        // test journals a checkpoint made unnecessary, and a checkpoint never finished, are skipped
+        String key = BoardStore.key(model.identifier());
+        draw(0, 10);
+        checkpoint(1);
+        draw(10, 20);
+        byte[] older = Files.readAllBytes(new File(directory, key + ".10.journal").toPath());
+        checkpoint(2);
+        draw(20, 25);
+        sequencer.journal().close();
+        Files.write(new File(directory, key + ".10.journal").toPath(), older);
+        Files.write(new File(directory, key + ".tiles.tmp").toPath(), new byte[] { 1, 2, 3 });
+
+        assertSameBoard(recover());
+        assertFalse(new File(directory, key + ".tiles.tmp").exists());
+        assertFalse(new File(directory, key + ".10.journal").exists());
+    }
+
+    @Test(timeout = 10000)
+    public void keptAgainTest() throws Exception {
+        // test a board no longer kept leaves no files, and comes back from the copy it is kept again with
+        draw(0, 10);
+        checkpoint(1);
+        keep(Durability.OFF);
+        store.shutdown();
+        while (files().length > 0) {
+            Thread.sleep(5);
+        }
+        store = new BoardStore(directory, TestUtil.NOW, BoardStore.CHECKPOINT_BYTES);
+        draw(10, 15);
+        keep(Durability.SYNC);
+        draw(15, 17);
+        sequencer.journal().close();
+        assertSameBoard(recover());
+    }
+}
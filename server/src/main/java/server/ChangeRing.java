@@ -0,0 +1,75 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import packet.PacketFrame;
+
+/**
+ * The last changes made to a board, as the frames they were published in, so a user that lost its
+ * connection can be sent only the changes it missed. Holds a fixed number of changes, the oldest are
+ * dropped as new ones come in.
+ *
+ * Only used by the draining task of the board's sequencer.
+ *
+ */
+final class ChangeRing {
+    private final PacketFrame[] frames;
+    // sequence number of the newest change, whether or not there are any in the ring
+    private long newest;
+    private int count;
+
+    /**
+     * Constructor
+     * @param capacity most changes kept
+     * @param lastSequence sequence number of the last change made to the board before this
+     */
+    ChangeRing(int capacity, long lastSequence) {
+        this.frames = new PacketFrame[capacity];
+        this.newest = lastSequence;
+    }
+
+    /**
+     * Keeps a change, dropping the oldest one if the ring is full
+     * @param sequence must follow the last change added
+     * @param frame
+     */
+    void add(long sequence, PacketFrame frame) {
+        assert sequence == newest + 1;
+        newest = sequence;
+        frames[(int) (sequence % frames.length)] = frame;
+        count = Math.min(count + 1, frames.length);
+    }
+
+    /**
+     * @param sequence the last change a user has
+     * @return every change made after it in order, or null if some of them have been dropped or the
+     *         user claims changes never made
+     */
+    List<PacketFrame> since(long sequence) {
+        if (sequence > newest || sequence < newest - count) {
+            return null;
+        }
+        List<PacketFrame> missed = new ArrayList<PacketFrame>((int) (newest - sequence));
+        for (long next = sequence + 1; next <= newest; next++) {
+            missed.add(frames[(int) (next % frames.length)]);
+        }
+        return missed;
+    }
+
+    /**
+     * Drops every change kept
+     */
+    void clear() {
+        Arrays.fill(frames, null);
+        count = 0;
+    }
+
+    /**
+     * @return how many changes are kept
+     */
+    int size() {
+        return count;
+    }
+}
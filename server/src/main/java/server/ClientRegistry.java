@@ -0,0 +1,80 @@
+package server;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import name.ClientIdentifier;
+
+/**
+ * The clients connected to the server. Every connection is tracked from the moment it is accepted,
+ * and indexed by its ClientIdentifier once the client has introduced itself, so routing a packet to
+ * one client is a single lookup. Iterating never blocks and never blocks anyone else; it sees the
+ * clients connected when it started and may or may not see those coming and going while it runs.
+ *
+ */
+public class ClientRegistry {
+    private final Set<ServerSocketHandler> connected =
+            Collections.newSetFromMap(new ConcurrentHashMap<ServerSocketHandler, Boolean>());
+    private final ConcurrentMap<ClientIdentifier, ServerSocketHandler> byIdentifier =
+            new ConcurrentHashMap<ClientIdentifier, ServerSocketHandler>();
+
+    /**
+     * Tracks a newly accepted connection
+     * @param handler
+     */
+    public void add(ServerSocketHandler handler) {
+        connected.add(handler);
+    }
+
+    /**
+     * Indexes a connection under the identifier its client introduced itself with. A client
+     * reconnecting under the same identifier replaces its old connection.
+     * @param handler
+     */
+    public void identify(ServerSocketHandler handler) {
+        ClientIdentifier identifier = (ClientIdentifier) handler.identifier();
+        if (identifier != null && connected.contains(handler)) {
+            byIdentifier.put(identifier, handler);
+            // The connection may have closed on another thread in the meantime.
+            if (!connected.contains(handler)) {
+                byIdentifier.remove(identifier, handler);
+            }
+        }
+    }
+
+    /**
+     * Stops tracking a connection. Only drops the index entry if it still points at this connection.
+     * @param handler
+     */
+    public void remove(ServerSocketHandler handler) {
+        connected.remove(handler);
+        ClientIdentifier identifier = (ClientIdentifier) handler.identifier();
+        if (identifier != null) {
+            byIdentifier.remove(identifier, handler);
+        }
+    }
+
+    /**
+     * @param client
+     * @return the connection of the client, or null if it isn't connected
+     */
+    public ServerSocketHandler get(ClientIdentifier client) {
+        return byIdentifier.get(client);
+    }
+
+    /**
+     * @return live view of every connection, safe to iterate while clients come and go
+     */
+    public Iterable<ServerSocketHandler> all() {
+        return Collections.unmodifiableSet(connected);
+    }
+
+    /**
+     * @return number of connections
+     */
+    public int size() {
+        return connected.size();
+    }
+}
@@ -0,0 +1,88 @@
+package server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import name.ClientIdentifier;
+
+import org.junit.Test;
+
+public class ClientRegistryTest {
+    private static final ClientIdentifier ID = new ClientIdentifier(0, "Name");
+
+    /**
+     * A handler whose client can introduce itself without a server, the identifier being protected
+     * in SocketHandler
+     */
+    private static class Handler extends ServerSocketHandler {
+        private static final long serialVersionUID = 1L;
+
+        Handler() {
+            super(new RecordingConnection(), null);
+        }
+
+        void introduce(ClientIdentifier client) {
+            identifier = client;
+        }
+    }
+
+    private static ServerSocketHandler identifiedHandler(ClientRegistry registry) {
+        Handler handler = new Handler();
+        registry.add(handler);
+        handler.introduce(ID);
+        registry.identify(handler);
+        return handler;
+    }
+
+    @Test
+    public void lookupTest() {
+        // test a client can only be looked up once it has introduced itself
+        ClientRegistry registry = new ClientRegistry();
+        Handler handler = new Handler();
+        registry.add(handler);
+        assertEquals(1, registry.size());
+        assertNull(registry.get(ID));
+
+        handler.introduce(ID);
+        registry.identify(handler);
+        assertTrue(registry.get(ID) == handler);
+        assertTrue(registry.get(new ClientIdentifier(0, "Name")) == handler);
+    }
+
+    @Test
+    public void removeTest() {
+        // test removing a client drops it from both the lookup and iteration
+        ClientRegistry registry = new ClientRegistry();
+        ServerSocketHandler handler = identifiedHandler(registry);
+        registry.remove(handler);
+        assertNull(registry.get(ID));
+        assertEquals(0, registry.size());
+        assertTrue(!registry.all().iterator().hasNext());
+    }
+
+    @Test
+    public void reconnectTest() {
+        // test the old connection of a reconnected client closing doesn't unregister the new one
+        ClientRegistry registry = new ClientRegistry();
+        ServerSocketHandler old = identifiedHandler(registry);
+        ServerSocketHandler current = identifiedHandler(registry);
+        assertTrue(registry.get(ID) == current);
+
+        registry.remove(old);
+        assertTrue(registry.get(ID) == current);
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void removedBeforeIdentifiedTest() {
+        // test a connection closed before it introduced itself is never indexed
+        ClientRegistry registry = new ClientRegistry();
+        Handler handler = new Handler();
+        registry.add(handler);
+        registry.remove(handler);
+        handler.introduce(ID);
+        registry.identify(handler);
+        assertNull(registry.get(ID));
+    }
+}
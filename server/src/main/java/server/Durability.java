@@ -0,0 +1,24 @@
+package server;
+/**
+ * Enum to represent how safely the changes to a board are kept on disk, in the board's Journal
+ *
+ */
+public enum Durability {
+	// not kept, the board is lost when the server stops
+	OFF,
+	
+	// written and forced to disk in batches in the background, a crash loses the last few changes
+	ASYNC,
+	
+	// every batch of changes the board applies is on disk before it applies the next one, or anyone is sent it
+	SYNC;
+	
+	/**
+	 * Returns the durability named on the command line, case insensitive
+	 * @param name
+	 * @return Durability
+	 */
+	public static Durability forName(String name) {
+		return valueOf(name.toUpperCase());
+	}
+}
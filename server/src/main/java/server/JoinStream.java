@@ -0,0 +1,111 @@
+package server;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import connection.OutboundQueue;
+import connection.SocketHandler;
+import name.BoardIdentifier;
+import packet.PacketBoardTiles;
+import canvas.Canvas;
+import canvas.TileChunk;
+import canvas.layer.Layer;
+
+/**
+ * Sends the tiles of a board to a user joining it, after the BoardModelPacket with its preview. Tiles go
+ * CHUNK_TILES at a time, nearest to the part of the board the user looks at first, and a chunk is only
+ * sent while the user's outbound queue is short, so the changes made to the board meanwhile go out in
+ * between chunks rather than behind the whole board.
+ *
+ */
+class JoinStream implements Runnable {
+    static final int CHUNK_TILES = 32;
+    // Frames waiting for the user before the next chunk waits for them to go.
+    static final int MAX_QUEUED = 8;
+    static final long RETRY_MILLIS = 5;
+
+    private final SocketHandler user;
+    private final BoardIdentifier boardName;
+    private final Canvas snapshot;
+    private final int[] order;
+    private final ScheduledExecutorService executor;
+    private int sent;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor
+     * @param user
+     * @param boardName
+     * @param snapshot of the board, as the user was sent it
+     * @param preview the user was sent, 0 for the tiles not to send
+     * @param viewport where on the board the user looks first
+     * @param executor sending runs on
+     */
+    JoinStream(SocketHandler user, BoardIdentifier boardName, Canvas snapshot, int[] preview, Rectangle viewport,
+            ScheduledExecutorService executor) {
+        this.user = user;
+        this.boardName = boardName;
+        this.snapshot = snapshot;
+        this.order = order(snapshot.width(), preview, viewport);
+        this.executor = executor;
+    }
+
+    /**
+     * @return the tiles to send, nearest to the viewport first
+     */
+    static int[] order(int width, int[] preview, Rectangle viewport) {
+        int columns = (width + Layer.TILE_SIZE - 1) / Layer.TILE_SIZE;
+        // square of the distance from the viewport to the middle of the tile, then the tile
+        long[] keys = new long[preview.length];
+        int count = 0;
+        for (int index = 0; index < preview.length; index++) {
+            if (preview[index] == 0) {
+                continue;
+            }
+            long x = (index % columns) * Layer.TILE_SIZE + Layer.TILE_SIZE / 2;
+            long y = (index / columns) * Layer.TILE_SIZE + Layer.TILE_SIZE / 2;
+            long dx = Math.max(0, Math.max(viewport.x - x, x - (viewport.x + viewport.width)));
+            long dy = Math.max(0, Math.max(viewport.y - y, y - (viewport.y + viewport.height)));
+            keys[count++] = (dx * dx + dy * dy) << 24 | index;
+        }
+        Arrays.sort(keys, 0, count);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) (keys[i] & 0xFFFFFF);
+        }
+        return order;
+    }
+
+    /**
+     * Starts sending the tiles
+     */
+    void start() {
+        executor.execute(this);
+    }
+
+    /**
+     * Stops sending the tiles, as the user has gone
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Sends chunks until the user's outbound queue fills up, then tries again a little later
+     */
+    @Override
+    public void run() {
+        OutboundQueue queue = user.connection().outboundQueue();
+        while (!cancelled && sent < order.length) {
+            if (queue != null && queue.depth() >= MAX_QUEUED) {
+                executor.schedule(this, RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            int[] indexes = Arrays.copyOfRange(order, sent, Math.min(order.length, sent + CHUNK_TILES));
+            sent += indexes.length;
+            user.sendPacket(new PacketBoardTiles(boardName, TileChunk.of(snapshot, indexes)));
+        }
+    }
+}
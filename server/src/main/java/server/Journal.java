@@ -0,0 +1,496 @@
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import models.Board;
+import packet.Packet;
+import packet.PacketBoardTransfer;
+import packet.PacketCodec;
+import packet.PacketDrawCommand;
+import packet.PacketFrame;
+import packet.PacketLayerAdjustment;
+import packet.PacketNewLayer;
+import packet.SequencedPacket;
+import packet.WireFormat;
+
+/**
+ * Append-only file of the changes made to one board, so the board survives the server stopping. A
+ * journal has every sequenced change made to the board after its base, the sequence number it starts
+ * from, in order; replaying them on the board as it was at the base gives back the board as it is. The
+ * first journal of a board starts with a copy of the board, later ones follow on from a checkpoint or
+ * from the journal before them, see BoardStore.
+ *
+ * Changes are appended by the board's sequencer without blocking, and written by a commit task on the
+ * executor that takes every change waiting, writes them in one go and forces them to disk once. While
+ * one batch is being forced the next one builds up, so a busy board costs one fsync per batch rather
+ * than one per change.
+ *
+ * File layout: MAGIC, the long base, then records of an int length, the PacketCodec body of the packet, the same one
+ * its binary frame is sent with, and an int CRC32 of the body. A record cut short or failing its CRC
+ * is where the server stopped writing, it and anything after it are dropped when the journal is read.
+ *
+ */
+public class Journal {
+    static final int MAGIC = 0x57424A31; // "WBJ1"
+    private static final int HEADER_LENGTH = 12;
+    private static final int CRC_LENGTH = 4;
+
+    private final File file;
+    private final long base;
+    private final FileChannel channel;
+    private final Executor executor;
+    private final Queue<Record> pending = new ConcurrentLinkedQueue<Record>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable commit = new Runnable() {
+        public void run() {
+            commit();
+        }
+    };
+    private volatile Durability durability;
+
+    // Guarded by this.
+    private long durable;
+    private boolean closed;
+    private IOException failure;
+
+    // Written by the commit task, read by commits() and length().
+    private volatile long commits;
+    private volatile long length;
+
+    /**
+     * Constructor for a journal carrying on at the end of the file
+     * @param file
+     * @param base sequence number of the last change made before the journal starts
+     * @param lastSequence sequence number of the last change already on disk
+     * @param durability
+     * @param executor where the changes are written and forced from
+     * @throws IOException
+     */
+    private Journal(File file, long base, long lastSequence, Durability durability, Executor executor) throws IOException {
+        this.file = file;
+        this.base = base;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.length = channel.size();
+        this.durable = lastSequence;
+        this.durability = durability;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a new journal for a board, replacing any file already there
+     * @param file
+     * @param snapshot copy of the board the changes appended from now on are made to
+     * @param durability
+     * @param executor where the changes are written and forced from
+     * @return Journal
+     * @throws IOException
+     */
+    public static Journal create(File file, PacketBoardTransfer snapshot, Durability durability, Executor executor)
+            throws IOException {
+        // Not even the copy is on disk yet.
+        Journal journal = start(file, snapshot.sequence(), snapshot.sequence() - 1, durability, executor);
+        journal.append(snapshot.sequence(), PacketFrame.of(snapshot));
+        return journal;
+    }
+
+    /**
+     * Starts a journal following on from the board as it was at the base, replacing any file already
+     * there. Only the file's header is written on the calling thread.
+     * @param file
+     * @param base sequence number of the last change made before the journal starts
+     * @param durability
+     * @param executor where the changes are written and forced from
+     * @return Journal
+     * @throws IOException
+     */
+    public static Journal roll(File file, long base, Durability durability, Executor executor) throws IOException {
+        return start(file, base, base, durability, executor);
+    }
+
+    private static Journal start(File file, long base, long durable, Durability durability, Executor executor)
+            throws IOException {
+        Journal journal = new Journal(file, base, durable, durability, executor);
+        journal.channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC).putLong(base).flip();
+        while (header.hasRemaining()) {
+            journal.channel.write(header);
+        }
+        journal.length = HEADER_LENGTH;
+        return journal;
+    }
+
+    /**
+     * Carries on appending to a journal that has been read back
+     * @param file
+     * @param replay what was read from it
+     * @param durability
+     * @param executor where the changes are written and forced from
+     * @return Journal
+     * @throws IOException
+     */
+    public static Journal reopen(File file, Replay replay, Durability durability, Executor executor) throws IOException {
+        return new Journal(file, replay.base(), replay.lastSequence(), durability, executor);
+    }
+
+    /**
+     * @return the file the journal is kept in
+     */
+    public File file() {
+        return file;
+    }
+
+    /**
+     * @return sequence number of the last change made before the journal starts
+     */
+    public long base() {
+        return base;
+    }
+
+    public Durability durability() {
+        return durability;
+    }
+
+    /**
+     * Sets how safely the changes are kept from now on, OFF isn't a journal's durability
+     * @param durability
+     */
+    public void setDurability(Durability durability) {
+        assert durability != Durability.OFF;
+        this.durability = durability;
+    }
+
+    /**
+     * Queues a change to be written. Never blocks, safe to call from any thread as long as changes are
+     * appended in order.
+     * @param sequence the change's sequence number
+     * @param frame the change, its binary encoding is shared with the users it's sent to
+     */
+    public void append(long sequence, PacketFrame frame) {
+        pending.add(new Record(sequence, frame));
+        schedule();
+    }
+
+    /**
+     * Waits until every change up to the sequence number is on disk, or the journal failed or closed.
+     * Lets a ForkJoinPool the caller runs on make up for the blocked thread meanwhile.
+     * @param sequence
+     * @return whether the changes are on disk
+     */
+    public boolean awaitDurable(final long sequence) {
+        ForkJoinPool.ManagedBlocker blocker = new ForkJoinPool.ManagedBlocker() {
+            public boolean block() throws InterruptedException {
+                synchronized (Journal.this) {
+                    while (!isReleasable()) {
+                        Journal.this.wait();
+                    }
+                }
+                return true;
+            }
+
+            public boolean isReleasable() {
+                synchronized (Journal.this) {
+                    return durable >= sequence || closed || failure != null;
+                }
+            }
+        };
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            return durable >= sequence;
+        }
+    }
+
+    /**
+     * @return sequence number of the last change on disk
+     */
+    public synchronized long durableSequence() {
+        return durable;
+    }
+
+    /**
+     * @return how many bytes of changes have been written to the file, header included
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return how many times the journal has been forced to disk
+     */
+    public long commits() {
+        return commits;
+    }
+
+    /**
+     * Writes the changes still waiting, then closes the file
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        synchronized (channel) {
+            writePending();
+            channel.close();
+        }
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Closes the journal, dropping the changes still waiting, and deletes its file
+     */
+    public void delete() {
+        pending.clear();
+        try {
+            synchronized (channel) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        if (!file.delete()) {
+            System.err.println("Could not delete journal " + file);
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(commit);
+        }
+    }
+
+    private void commit() {
+        try {
+            writePending();
+        } catch (IOException e) {
+            e.printStackTrace();
+            synchronized (this) {
+                failure = e;
+                notifyAll();
+            }
+        } finally {
+            scheduled.set(false);
+            // Anything appended after the last poll needs another commit.
+            if (!pending.isEmpty() && channel.isOpen()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Writes every change waiting with one write and one force
+     * @throws IOException
+     */
+    private void writePending() throws IOException {
+        synchronized (channel) {
+            if (!channel.isOpen()) {
+                pending.clear();
+                return;
+            }
+            List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+            long last = -1;
+            CRC32 crc = new CRC32();
+            Record record;
+            while ((record = pending.poll()) != null) {
+                ByteBuffer frame = record.frame.buffer(WireFormat.BINARY);
+                ByteBuffer body = frame.duplicate();
+                body.position(PacketFrame.HEADER_LENGTH);
+                crc.reset();
+                crc.update(body);
+                ByteBuffer checksum = ByteBuffer.allocate(CRC_LENGTH);
+                checksum.putInt(0, (int) crc.getValue());
+                buffers.add(frame);
+                buffers.add(checksum);
+                last = record.sequence;
+            }
+            if (buffers.isEmpty()) {
+                return;
+            }
+            ByteBuffer[] batch = buffers.toArray(new ByteBuffer[buffers.size()]);
+            while (batch[batch.length - 1].hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+            commits++;
+            length = channel.position();
+            synchronized (this) {
+                durable = last;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Reads a journal back, dropping a torn record at its end and anything after it so the journal can
+     * be appended to again
+     * @param file
+     * @return the copy of the board and the changes made to it since
+     * @throws IOException if the file isn't a journal
+     */
+    public static Replay read(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Journal " + file + " too large");
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+            }
+            bytes.flip();
+            if (bytes.remaining() < HEADER_LENGTH || bytes.getInt() != MAGIC) {
+                throw new IOException(file + " is not a journal");
+            }
+            long base = bytes.getLong();
+
+            PacketBoardTransfer snapshot = null;
+            List<SequencedPacket> changes = new ArrayList<SequencedPacket>();
+            CRC32 crc = new CRC32();
+            long end = bytes.position();
+            while (bytes.remaining() >= PacketFrame.HEADER_LENGTH + CRC_LENGTH) {
+                int length = bytes.getInt();
+                if (length < 0 || length > bytes.remaining() - CRC_LENGTH) {
+                    break;
+                }
+                crc.reset();
+                crc.update(bytes.array(), bytes.position(), length);
+                if ((int) crc.getValue() != bytes.getInt(bytes.position() + length)) {
+                    break;
+                }
+                Packet packet = PacketCodec.decode(bytes.array(), bytes.position(), length);
+                bytes.position(bytes.position() + length + CRC_LENGTH);
+                end = bytes.position();
+                if (packet instanceof PacketBoardTransfer && snapshot == null && changes.isEmpty()) {
+                    snapshot = (PacketBoardTransfer) packet;
+                }
+                else if (packet instanceof SequencedPacket) {
+                    changes.add((SequencedPacket) packet);
+                }
+                else {
+                    throw new IOException("Unexpected " + packet.getClass().getSimpleName() + " in journal " + file);
+                }
+            }
+            if (end < size) {
+                channel.truncate(end);
+                channel.force(false);
+            }
+            return new Replay(base, snapshot, changes);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * A change waiting to be written
+     */
+    private static final class Record {
+        final long sequence;
+        final PacketFrame frame;
+
+        Record(long sequence, PacketFrame frame) {
+            this.sequence = sequence;
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * What was read back from a journal: its base, the copy of the board it starts with if any, and the
+     * changes made to the board since
+     */
+    public static final class Replay {
+        private final long base;
+        private final PacketBoardTransfer snapshot;
+        private final List<SequencedPacket> changes;
+
+        Replay(long base, PacketBoardTransfer snapshot, List<SequencedPacket> changes) {
+            this.base = base;
+            this.snapshot = snapshot;
+            this.changes = changes;
+        }
+
+        /**
+         * @return sequence number of the last change made before the journal starts
+         */
+        public long base() {
+            return base;
+        }
+
+        /**
+         * @return copy of the board as it was at the base, null if the journal follows on from another
+         */
+        public PacketBoardTransfer snapshot() {
+            return snapshot;
+        }
+
+        public List<SequencedPacket> changes() {
+            return changes;
+        }
+
+        /**
+         * @return sequence number of the last change in the journal
+         */
+        public long lastSequence() {
+            return changes.isEmpty() ? base : changes.get(changes.size() - 1).sequence();
+        }
+
+        /**
+         * Makes every change on the board, which must be a copy of the snapshot
+         * @param model
+         */
+        public void applyTo(Board model) {
+            applyTo(model, base);
+        }
+
+        /**
+         * Makes the changes after a sequence number on the board, which must be as it was then. Stops at
+         * a change missing from the journal, the ones after it can't be made.
+         * @param model
+         * @param sequence sequence number of the last change already made on the board
+         * @return sequence number of the last change made on the board
+         */
+        public long applyTo(Board model, long sequence) {
+            for (SequencedPacket change : changes) {
+                if (change.sequence() <= sequence) {
+                    continue;
+                }
+                if (change.sequence() != sequence + 1) {
+                    System.err.println("Change " + (sequence + 1) + " missing from the journal");
+                    break;
+                }
+                sequence = change.sequence();
+                if (change instanceof PacketDrawCommand) {
+                    ((PacketDrawCommand) change).drawCommand().drawOn(model);
+                }
+                else if (change instanceof PacketNewLayer) {
+                    model.addLayer(((PacketNewLayer) change).layerName());
+                }
+                else if (change instanceof PacketLayerAdjustment) {
+                    PacketLayerAdjustment adjustment = (PacketLayerAdjustment) change;
+                    model.adjustLayer(adjustment.layerProperties(), adjustment.adjustment());
+                }
+            }
+            return sequence;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import models.Board;
+import name.BoardIdentifier;
+import name.LayerIdentifier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import packet.PacketBoardTransfer;
+import packet.PacketDrawCommand;
+import packet.PacketFrame;
+import packet.PacketLayerAdjustment;
+import packet.PacketNewLayer;
+import util.TestUtil;
+import canvas.Canvas;
+import canvas.Pixel;
+import canvas.command.DrawCommandPixel;
+import canvas.layer.Layer;
+import canvas.layer.LayerAdjustment;
+import canvas.layer.LayerProperties;
+
+public class JournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Board newModel() {
+        return new Board(new BoardIdentifier(1, "board", null), new Canvas(64, 64), null);
+    }
+
+    private static Board replay(Journal.Replay replay) {
+        PacketBoardTransfer snapshot = replay.snapshot();
+        Board model = new Board(snapshot.boardName(), snapshot.canvas(), snapshot.owner());
+        replay.applyTo(model);
+        return model;
+    }
+
+    private static PacketDrawCommand pixel(LayerIdentifier layer, int x, long sequence) {
+        PacketDrawCommand packet = new PacketDrawCommand(new DrawCommandPixel(layer, new Pixel(x, x, Color.RED)));
+        packet.setSequence(sequence);
+        return packet;
+    }
+
+    @Test
+    public void roundTripTest() throws Exception {
+        // test replaying the journal of a board gives back the same layers and pixels
+        final Board model = newModel();
+        final LayerIdentifier base = model.canvas().layers()[0].layerProperties().layerIdentifier();
+        final LayerIdentifier top = new LayerIdentifier(7, "top");
+        final BoardSequencer sequencer = new BoardSequencer(model, TestUtil.NOW);
+        File file = new File(folder.getRoot(), "board" + BoardStore.JOURNAL_SUFFIX);
+        final Journal journal = Journal.create(file, new PacketBoardTransfer(model, 0), Durability.ASYNC, TestUtil.NOW);
+        sequencer.submit(new Runnable() {
+            public void run() {
+                sequencer.setJournal(journal);
+                PacketDrawCommand draw = pixel(base, 3, 0);
+                draw.drawCommand().drawOn(model);
+                sequencer.publish(draw);
+                model.addLayer(top);
+                sequencer.publish(new PacketNewLayer(top));
+                PacketDrawCommand onTop = pixel(top, 5, 0);
+                onTop.drawCommand().drawOn(model);
+                sequencer.publish(onTop);
+                PacketLayerAdjustment down = new PacketLayerAdjustment(new LayerProperties(top), LayerAdjustment.DOWN);
+                model.adjustLayer(down.layerProperties(), down.adjustment());
+                sequencer.publish(down);
+            }
+        });
+        assertEquals(4, journal.durableSequence());
+        journal.close();
+
+        Journal.Replay read = Journal.read(file);
+        assertEquals(4, read.changes().size());
+        assertEquals(4, read.lastSequence());
+        Layer[] expected = model.canvas().layers();
+        Layer[] actual = replay(read).canvas().layers();
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].layerProperties().layerIdentifier(), actual[i].layerProperties().layerIdentifier());
+            assertArrayEquals(expected[i].pixels(), actual[i].pixels());
+        }
+    }
+
+    @Test
+    public void tornTailTest() throws Exception {
+        // test a record cut short or corrupted is dropped with everything after it, and the journal
+        // carries on from the last whole record
+        Board model = newModel();
+        LayerIdentifier base = model.canvas().layers()[0].layerProperties().layerIdentifier();
+        File file = new File(folder.getRoot(), "torn" + BoardStore.JOURNAL_SUFFIX);
+        Journal journal = Journal.create(file, new PacketBoardTransfer(model, 0), Durability.ASYNC, TestUtil.NOW);
+        for (int i = 1; i <= 3; i++) {
+            journal.append(i, PacketFrame.of(pixel(base, i, i)));
+        }
+        journal.close();
+        long whole = file.length();
+
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.setLength(whole - 3);
+        raw.close();
+        Journal.Replay read = Journal.read(file);
+        assertEquals(2, read.lastSequence());
+        long cut = file.length();
+        assertTrue(cut < whole - 3);
+
+        journal = Journal.reopen(file, read, Durability.ASYNC, TestUtil.NOW);
+        journal.append(3, PacketFrame.of(pixel(base, 9, 3)));
+        journal.close();
+        read = Journal.read(file);
+        assertEquals(3, read.lastSequence());
+        assertEquals(Color.RED.getRGB(), replay(read).canvas().layers()[0].pixels()[9 * 64 + 9]);
+
+        // flip a byte in the last record's body
+        raw = new RandomAccessFile(file, "rw");
+        raw.seek(cut + 8);
+        int value = raw.read();
+        raw.seek(cut + 8);
+        raw.write(value ^ 0xFF);
+        raw.close();
+        assertEquals(2, Journal.read(file).lastSequence());
+        assertEquals(cut, file.length());
+    }
+
+    @Test
+    public void syncHoldsSendsTest() throws Exception {
+        // test a board kept with SYNC durability sends its users a change only once it is on disk
+        final Board model = newModel();
+        final LayerIdentifier base = model.canvas().layers()[0].layerProperties().layerIdentifier();
+        final BoardSequencer sequencer = new BoardSequencer(model, TestUtil.NOW);
+        final RecordingConnection connection = new RecordingConnection();
+        model.addUser(new ServerSocketHandler(connection, null));
+        final Journal journal = Journal.create(new File(folder.getRoot(), "sync" + BoardStore.JOURNAL_SUFFIX),
+                new PacketBoardTransfer(model, 0), Durability.SYNC, TestUtil.NOW);
+        sequencer.submit(new Runnable() {
+            public void run() {
+                sequencer.setJournal(journal);
+            }
+        });
+        final List<Integer> sentWhileDraining = new ArrayList<Integer>();
+        sequencer.submit(new Runnable() {
+            public void run() {
+                PacketDrawCommand draw = pixel(base, 3, 0);
+                draw.drawCommand().drawOn(model);
+                sequencer.publish(draw);
+                sentWhileDraining.add(connection.sent.size());
+            }
+        });
+        assertEquals(0, (int) sentWhileDraining.get(0));
+        assertEquals(1, connection.sent.size());
+        assertEquals(1, journal.durableSequence());
+        journal.close();
+    }
+
+    @Test
+    public void groupCommitTest() throws Exception {
+        // test changes appended while a commit is waiting are written and forced together
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Executor later = new Executor() {
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        };
+        Board model = newModel();
+        LayerIdentifier base = model.canvas().layers()[0].layerProperties().layerIdentifier();
+        Journal journal = Journal.create(new File(folder.getRoot(), "group" + BoardStore.JOURNAL_SUFFIX),
+                new PacketBoardTransfer(model, 0), Durability.SYNC, later);
+        for (int i = 1; i <= 100; i++) {
+            journal.append(i, PacketFrame.of(pixel(base, i % 64, i)));
+        }
+        assertEquals(1, tasks.size());
+        assertEquals(-1, journal.durableSequence());
+        tasks.remove(0).run();
+        assertEquals(1, journal.commits());
+        assertTrue(journal.awaitDurable(100));
+        assertTrue(tasks.isEmpty());
+        journal.close();
+    }
+}
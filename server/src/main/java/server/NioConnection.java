@@ -0,0 +1,254 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import connection.Connection;
+import connection.OutboundQueue;
+import connection.SocketHandler;
+import packet.Packet;
+import packet.PacketFrame;
+import packet.WireFormat;
+
+/**
+ * Non-blocking Connection owned by one NioTransport I/O thread. Packets wait in the client's
+ * OutboundQueue, the I/O thread encodes and writes them out as the socket takes them and decodes
+ * whatever arrives.
+ *
+ * Nothing is written until the client has said which WireFormat it speaks, since queued frames are
+ * encoded in it. A client asking for BINARY is answered with the magic before its first frame.
+ *
+ */
+class NioConnection implements Connection {
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final SocketChannel channel;
+    private final NioTransport.IoLoop loop;
+    private final OutboundQueue outbound;
+    private final AtomicBoolean writeRequested = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile WireFormat format = WireFormat.SERIALIZED;
+
+    private SocketHandler handler;
+
+    // only touched by the I/O thread
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private ByteBuffer writing;
+    private boolean handshaken;
+
+    NioConnection(SocketChannel channel, NioTransport.IoLoop loop, OutboundQueue outbound) {
+        this.channel = channel;
+        this.loop = loop;
+        this.outbound = outbound;
+    }
+
+    /**
+     * Sets the handler that decoded packets are processed by, before the connection is registered
+     * @param handler
+     */
+    void attach(SocketHandler handler) {
+        assert this.handler == null;
+        this.handler = handler;
+    }
+
+    @Override
+    public void sendPacket(Packet packet) {
+        sendFrame(PacketFrame.of(packet));
+    }
+
+    /**
+     * Queues the frame and wakes the I/O thread to write it. Disconnects the client if its queue
+     * overflows.
+     */
+    @Override
+    public void sendFrame(PacketFrame frame) {
+        if (closed.get()) {
+            return;
+        }
+        if (!outbound.offer(frame)) {
+            System.err.println("Disconnecting " + channel.socket().getRemoteSocketAddress() + ", outbound queue overflowed: " + outbound.stats());
+            close();
+            return;
+        }
+        if (writeRequested.compareAndSet(false, true)) {
+            loop.requestWrite(this);
+        }
+    }
+
+    /**
+     * Only framed clients can connect over NIO
+     */
+    @Override
+    public boolean isFramed() {
+        return true;
+    }
+
+    /**
+     * @return the format the client asked for, SERIALIZED until it has
+     */
+    @Override
+    public WireFormat wireFormat() {
+        return format;
+    }
+
+    @Override
+    public OutboundQueue outboundQueue() {
+        return outbound;
+    }
+
+    /**
+     * Closes the channel and tells the handler, only the first call has any effect
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        outbound.close();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        handler.connectionClosed();
+    }
+
+    /**
+     * Registers the channel with the selector, called on the I/O thread
+     * @param selector
+     */
+    void register(Selector selector) {
+        try {
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+        } catch (ClosedChannelException e) {
+            close();
+            return;
+        }
+        if (handshaken && outbound.depth() > 0) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Writes as many queued packets as the socket takes, called on the I/O thread
+     */
+    void handleWrite() {
+        writeRequested.set(false);
+        if (key == null || !key.isValid()) {
+            // Not registered yet, register() picks the frames up.
+            return;
+        }
+        if (!handshaken) {
+            // The frames are written once the client has said how, by handleRead().
+            key.interestOps(SelectionKey.OP_READ);
+            return;
+        }
+        try {
+            while (true) {
+                if (writing == null) {
+                    PacketFrame frame = outbound.poll();
+                    if (frame == null) {
+                        break;
+                    }
+                    writing = frame.buffer(format);
+                }
+                channel.write(writing);
+                if (writing.hasRemaining()) {
+                    // Socket is full, wait until it drains.
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                writing = null;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * Reads what's available and processes every complete frame, called on the I/O thread
+     */
+    void handleRead() {
+        try {
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+
+            if (!handshaken) {
+                if (readBuffer.remaining() < PacketFrame.HEADER_LENGTH) {
+                    readBuffer.compact();
+                    return;
+                }
+                WireFormat requested = WireFormat.forMagic(readBuffer.getInt());
+                if (!requested.isFramed()) {
+                    System.err.println("Rejected " + channel.socket().getRemoteSocketAddress() + ": not speaking the framed protocol");
+                    close();
+                    return;
+                }
+                format = requested;
+                handshaken = true;
+                if (requested == WireFormat.BINARY) {
+                    writing = ByteBuffer.allocate(PacketFrame.HEADER_LENGTH).putInt(requested.magic());
+                    writing.flip();
+                }
+                handleWrite();
+                if (closed.get()) {
+                    return;
+                }
+            }
+
+            int needed = 0;
+            while (readBuffer.remaining() >= PacketFrame.HEADER_LENGTH) {
+                int length = readBuffer.getInt(readBuffer.position());
+                PacketFrame.checkLength(length, PacketFrame.MAX_LENGTH);
+                if (readBuffer.remaining() > PacketFrame.HEADER_LENGTH) {
+                    PacketFrame.checkLength(length, PacketFrame.maxLengthFromPeer(format,
+                            readBuffer.get(readBuffer.position() + PacketFrame.HEADER_LENGTH)));
+                }
+                if (readBuffer.remaining() < PacketFrame.HEADER_LENGTH + length) {
+                    needed = PacketFrame.HEADER_LENGTH + length;
+                    break;
+                }
+                readBuffer.position(readBuffer.position() + PacketFrame.HEADER_LENGTH);
+                Packet packet = PacketFrame.decode(format, readBuffer.array(), readBuffer.arrayOffset() + readBuffer.position(), length);
+                readBuffer.position(readBuffer.position() + length);
+
+                packet.process(handler);
+                if (closed.get()) {
+                    return;
+                }
+            }
+
+            readBuffer.compact();
+            if (needed > readBuffer.capacity() && !readBuffer.hasRemaining()) {
+                // Grow towards the whole frame as its bytes arrive, so a client can't make us allocate
+                // a frame it doesn't send.
+                ByteBuffer larger = ByteBuffer.allocate((int) Math.min(needed, 2L * readBuffer.capacity()));
+                readBuffer.flip();
+                larger.put(readBuffer);
+                readBuffer = larger;
+            }
+            else if (readBuffer.position() == 0 && readBuffer.capacity() > READ_BUFFER_SIZE) {
+                // Don't hold on to a large buffer once the big frame is gone.
+                readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            }
+        } catch (IOException e) {
+            close();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            close();
+        }
+    }
+}
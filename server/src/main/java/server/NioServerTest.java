@@ -0,0 +1,162 @@
+package server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+
+import connection.StreamConnection;
+import name.BoardIdentifier;
+import name.ClientIdentifier;
+import name.LayerIdentifier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import packet.Packet;
+import packet.PacketBoardDirectoryDelta;
+import packet.PacketBoardDirectoryPage;
+import packet.PacketBoardDirectoryQuery;
+import packet.PacketBoardModel;
+import packet.PacketBoardUsers;
+import packet.PacketClientReady;
+import packet.PacketDrawCommand;
+import packet.PacketFrame;
+import packet.PacketJoinBoard;
+import packet.PacketNewBoard;
+import packet.PacketNewClient;
+import packet.PacketType;
+import packet.WireFormat;
+import canvas.Pixel;
+import canvas.command.DrawCommandPixel;
+import util.TestUtil;
+
+/**
+ * End to end tests for the framed protocol over the NIO transport.
+ * @category no_didit
+ */
+public class NioServerTest {
+    private static final int PORT = 4445;
+    private static final ClientIdentifier ID = new ClientIdentifier(0, "Name");
+    private static final BoardIdentifier BOARD_ID = new BoardIdentifier(1, "Board Name", null);
+    
+    @Before
+    public void setUp() {
+        TestUtil.startServer(PORT, TransportMode.NIO);
+    }
+
+    @Test(timeout = 10000)
+    public void connectTest() throws Exception {
+        // Test connecting to a NIO server with a framed client and receiving the correct packets.
+        Socket socket = TestUtil.connect(PORT);
+        StreamConnection connection = StreamConnection.open(socket);
+        assertTrue(connection.isFramed());
+        
+        // Framed clients aren't sent the board list, they page through the directory instead.
+        connection.sendPacket(new PacketNewClient(ID));
+        connection.sendPacket(new PacketNewBoard(BOARD_ID, 256, 256, null));
+        Packet inPacket = connection.readPacket();
+        assertTrue(inPacket instanceof PacketBoardModel);
+        
+        PacketBoardModel boardPacket = (PacketBoardModel) inPacket;
+        assertTrue(boardPacket.boardName().equals(BOARD_ID));
+        assertTrue(boardPacket.canvas().width() == 256);
+        assertTrue(boardPacket.canvas().height() == 256);
+        
+        connection.sendPacket(new PacketClientReady());
+        inPacket = connection.readPacket();
+        assertTrue(inPacket instanceof PacketBoardUsers);
+        connection.close();
+    }
+    
+    @Test(timeout = 10000)
+    public void boardDirectoryTest() throws Exception {
+        // Test searching the board directory and being sent the boards added under the search.
+        StreamConnection watcher = StreamConnection.open(TestUtil.connect(PORT));
+        watcher.sendPacket(new PacketNewClient(new ClientIdentifier(1, "Watcher")));
+        watcher.sendPacket(new PacketBoardDirectoryQuery("dir", 0, 10, true));
+        Packet inPacket = watcher.readPacket();
+        assertTrue(inPacket instanceof PacketBoardDirectoryPage);
+        assertEquals(0, ((PacketBoardDirectoryPage) inPacket).boards().length);
+        
+        StreamConnection other = StreamConnection.open(TestUtil.connect(PORT));
+        other.sendPacket(new PacketNewClient(new ClientIdentifier(2, "Other")));
+        other.sendPacket(new PacketNewBoard(new BoardIdentifier(10, "Other", null), 16, 16, null));
+        assertTrue(other.readPacket() instanceof PacketBoardModel);
+        
+        StreamConnection creator = StreamConnection.open(TestUtil.connect(PORT));
+        creator.sendPacket(new PacketNewClient(new ClientIdentifier(3, "Creator")));
+        BoardIdentifier board = new BoardIdentifier(11, "Directory Test", null);
+        creator.sendPacket(new PacketNewBoard(board, 16, 16, null));
+        assertTrue(creator.readPacket() instanceof PacketBoardModel);
+        
+        // Only the board under the prefix is sent.
+        inPacket = watcher.readPacket();
+        assertTrue(inPacket instanceof PacketBoardDirectoryDelta);
+        PacketBoardDirectoryDelta delta = (PacketBoardDirectoryDelta) inPacket;
+        assertTrue(delta.added());
+        assertEquals(board, delta.board());
+        
+        watcher.sendPacket(new PacketBoardDirectoryQuery("DIR", 0, 10, false));
+        inPacket = watcher.readPacket();
+        assertTrue(inPacket instanceof PacketBoardDirectoryPage);
+        assertArrayEquals(new BoardIdentifier[] { board }, ((PacketBoardDirectoryPage) inPacket).boards());
+        other.close();
+        creator.close();
+        watcher.close();
+    }
+    
+    @Test(timeout = 10000)
+    public void creatorSentChangesBeforeReadyTest() throws Exception {
+        // Test that the creator of a board is sent the changes made to it before it is ready.
+        BoardIdentifier board = new BoardIdentifier(2, "Created", null);
+        StreamConnection creator = TestUtil.connect(PORT, new ClientIdentifier(3, "creator"));
+        creator.sendPacket(new PacketNewBoard(board, 16, 16, null));
+        PacketBoardModel model = (PacketBoardModel) creator.readPacket();
+        LayerIdentifier layer = model.canvas().layers()[0].layerProperties().layerIdentifier();
+
+        StreamConnection other = TestUtil.connect(PORT, new ClientIdentifier(4, "other"));
+        other.sendPacket(new PacketJoinBoard(board, null));
+        assertTrue(other.readPacket() instanceof PacketBoardModel);
+        other.sendPacket(new PacketClientReady());
+        other.sendPacket(new PacketDrawCommand(new DrawCommandPixel(layer, new Pixel(1, 1, Color.RED))));
+
+        assertEquals(1, TestUtil.next(creator, PacketDrawCommand.class).sequence());
+        creator.close();
+        other.close();
+    }
+    
+    @Test(timeout = 10000)
+    public void legacyClientRejectedTest() throws IOException {
+        // Test that a client speaking the legacy stream protocol is disconnected.
+        Socket socket = TestUtil.connect(PORT);
+        new ObjectOutputStream(socket.getOutputStream()).flush();
+        InputStream in = socket.getInputStream();
+        // Skip the board list the server may have framed before it saw the stream header, the read
+        // times out unless the server hangs up.
+        while (in.read() != -1) {
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void oversizedFrameRejectedTest() throws IOException {
+        // Test that a client announcing a frame longer than a client may send is disconnected before
+        // it has sent the frame.
+        Socket socket = TestUtil.connect(PORT);
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeInt(WireFormat.BINARY.magic());
+        out.writeInt(PacketFrame.MAX_LENGTH);
+        out.writeByte(PacketType.DRAW_COMMAND.code());
+        out.flush();
+        InputStream in = socket.getInputStream();
+        // Skip the server's answer to the magic, the read times out unless the server hangs up.
+        while (in.read() != -1) {
+        }
+    }
+}
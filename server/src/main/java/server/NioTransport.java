@@ -0,0 +1,140 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Event-driven transport for the server. One thread accepts connections and hands them out round robin
+ * to a small fixed pool of I/O threads, each multiplexing its channels on its own Selector. Frames are
+ * decoded and processed on the I/O thread, so packet handlers must never block.
+ *
+ * Only clients speaking the framed protocol of PacketFrame can connect in this mode.
+ *
+ */
+public class NioTransport {
+    public static final int DEFAULT_IO_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final Server server;
+    private final ServerSocketChannel serverChannel;
+    private final IoLoop[] loops;
+    private int nextLoop;
+
+    /**
+     * Binds the server channel, the I/O threads are started by serve()
+     * @param server
+     * @param port
+     * @param ioThreads
+     * @throws IOException
+     */
+    public NioTransport(Server server, int port, int ioThreads) throws IOException {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException("Invalid number of I/O threads.");
+        }
+        this.server = server;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.socket().bind(new InetSocketAddress(port));
+        this.loops = new IoLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new IoLoop();
+        }
+    }
+
+    /**
+     * Starts the I/O threads and accepts connections forever
+     * @throws IOException
+     */
+    public void serve() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            Thread thread = new Thread(loops[i], "nio-io-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        while (true) {
+            SocketChannel channel = serverChannel.accept();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            IoLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+
+            NioConnection connection = new NioConnection(channel, loop, server.newOutboundQueue());
+            ServerSocketHandler handler = new ServerSocketHandler(connection, server);
+            connection.attach(handler);
+            loop.register(connection);
+
+            server.clientConnected(handler);
+        }
+    }
+
+    /**
+     * One I/O thread and its Selector. Other threads only talk to it through its queues.
+     */
+    static final class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<NioConnection> registrations = new ConcurrentLinkedQueue<NioConnection>();
+        private final Queue<NioConnection> writeRequests = new ConcurrentLinkedQueue<NioConnection>();
+
+        IoLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        /**
+         * Queues a new connection to be registered with this loop's selector
+         * @param connection
+         */
+        void register(NioConnection connection) {
+            registrations.add(connection);
+            selector.wakeup();
+        }
+
+        /**
+         * Asks the loop to flush the connection's outbound frames
+         * @param connection
+         */
+        void requestWrite(NioConnection connection) {
+            writeRequests.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    continue;
+                }
+
+                for (NioConnection connection = registrations.poll(); connection != null; connection = registrations.poll()) {
+                    connection.register(selector);
+                }
+                for (NioConnection connection = writeRequests.poll(); connection != null; connection = writeRequests.poll()) {
+                    connection.handleWrite();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+
+                    if (key.isValid() && key.isReadable()) {
+                        connection.handleRead();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.handleWrite();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import connection.Connection;
+import connection.OutboundQueue;
+import packet.Packet;
+import packet.PacketFrame;
+import packet.WireFormat;
+
+/**
+ * A connection for the tests that remembers the packets it was asked to send instead of sending them
+ *
+ */
+class RecordingConnection implements Connection {
+    final List<Packet> sent = new CopyOnWriteArrayList<Packet>();
+
+    public void sendPacket(Packet packet) { sent.add(packet); }
+    public void sendFrame(PacketFrame frame) { sent.add(frame.packet()); }
+    public boolean isFramed() { return true; }
+    public WireFormat wireFormat() { return WireFormat.BINARY; }
+    public OutboundQueue outboundQueue() { return null; }
+    public void close() { }
+}
@@ -0,0 +1,172 @@
+package server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+
+import connection.StreamConnection;
+import name.BoardIdentifier;
+import name.ClientIdentifier;
+import name.LayerIdentifier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import packet.PacketBoardModel;
+import packet.PacketBoardTiles;
+import packet.PacketBoardUsers;
+import packet.PacketClientReady;
+import packet.PacketDrawCommand;
+import packet.PacketJoinBoard;
+import packet.PacketNewBoard;
+import packet.PacketResume;
+import packet.SequencedPacket;
+import util.TestUtil;
+import canvas.Pixel;
+import canvas.command.DrawCommandPixel;
+
+/**
+ * End to end tests for users carrying on with their board after reconnecting.
+ * @category no_didit
+ */
+public class ResumeTest {
+    private static final int PORT = 4446;
+    private static final ClientIdentifier OWNER = new ClientIdentifier(20, "Owner");
+    private static final ClientIdentifier USER = new ClientIdentifier(21, "User");
+
+    private LayerIdentifier layer;
+
+    @Before
+    public void setUp() {
+        TestUtil.startServer(PORT, TransportMode.BLOCKING);
+    }
+
+    /**
+     * Makes the owner's board and puts the user on it
+     * @return the token the user was given
+     */
+    private PacketResume board(BoardIdentifier board, StreamConnection owner, StreamConnection user) throws Exception {
+        owner.sendPacket(new PacketNewBoard(board, 64, 64, OWNER));
+        layer = TestUtil.next(owner, PacketBoardModel.class).canvas().layers()[0].layerProperties().layerIdentifier();
+        owner.sendPacket(new PacketClientReady(true));
+        TestUtil.next(owner, PacketResume.class);
+
+        user.sendPacket(new PacketJoinBoard(board, USER));
+        TestUtil.next(user, PacketBoardModel.class);
+        user.sendPacket(new PacketClientReady(true));
+        PacketResume token = TestUtil.next(user, PacketResume.class);
+        assertTrue(token.resumed());
+        assertTrue(token.token() != PacketResume.NO_TOKEN);
+        return token;
+    }
+
+    /**
+     * Draws on the board as the owner, and waits until the board has every change
+     * @return sequence number of the last change
+     */
+    private long draw(StreamConnection owner, int count) throws Exception {
+        long sequence = SequencedPacket.UNSEQUENCED;
+        for (int i = 0; i < count; i++) {
+            owner.sendPacket(new PacketDrawCommand(new DrawCommandPixel(layer, new Pixel(i, i, Color.RED))));
+        }
+        for (int i = 0; i < count; i++) {
+            sequence = TestUtil.next(owner, PacketDrawCommand.class).sequence();
+        }
+        return sequence;
+    }
+
+    @Test(timeout = 10000)
+    public void missedChangesTest() throws Exception {
+        // test a user coming back is sent only the changes it missed, then carries on as a user
+        BoardIdentifier board = new BoardIdentifier(30, "Resume", OWNER);
+        StreamConnection owner = TestUtil.connect(PORT, OWNER);
+        StreamConnection user = TestUtil.connect(PORT, USER);
+        PacketResume token = board(board, owner, user);
+        user.close();
+        long last = draw(owner, 3);
+
+        StreamConnection back = TestUtil.connect(PORT, USER);
+        back.sendPacket(new PacketResume(board, token.token(), token.sequence(), false));
+        PacketResume answer = TestUtil.next(back, PacketResume.class);
+        assertTrue(answer.resumed());
+        assertEquals(last, answer.sequence());
+        for (long sequence = token.sequence() + 1; sequence <= last; sequence++) {
+            assertEquals(sequence, ((PacketDrawCommand) back.readPacket()).sequence());
+        }
+        back.sendPacket(new PacketClientReady(true));
+        assertTrue(TestUtil.next(back, PacketBoardUsers.class).boardUsers().length == 2);
+        PacketResume second = TestUtil.next(back, PacketResume.class);
+        assertTrue(second.token() != token.token());
+
+        // and is sent the changes made from then on
+        last = draw(owner, 1);
+        assertEquals(last, TestUtil.next(back, PacketDrawCommand.class).sequence());
+
+        // a token is only good once
+        StreamConnection again = TestUtil.connect(PORT, USER);
+        again.sendPacket(new PacketResume(board, token.token(), token.sequence(), false));
+        assertFalse(TestUtil.next(again, PacketResume.class).resumed());
+        owner.close();
+        back.close();
+        again.close();
+    }
+
+    @Test(timeout = 10000)
+    public void resyncTest() throws Exception {
+        // test a user the server can't send the missed changes to is sent the board again, in tiles
+        BoardIdentifier board = new BoardIdentifier(31, "Resync", OWNER);
+        StreamConnection owner = TestUtil.connect(PORT, OWNER);
+        StreamConnection user = TestUtil.connect(PORT, USER);
+        PacketResume token = board(board, owner, user);
+        user.close();
+        draw(owner, 2);
+
+        StreamConnection back = TestUtil.connect(PORT, USER);
+        back.sendPacket(new PacketResume(board, token.token(), token.sequence() + 1000, false, new Rectangle(0, 0, 64, 64)));
+        PacketBoardModel model = TestUtil.next(back, PacketBoardModel.class);
+        assertTrue(model.preview() != null);
+        TestUtil.next(back, PacketBoardTiles.class);
+        owner.close();
+        back.close();
+    }
+
+    @Test(timeout = 10000)
+    public void otherUserTest() throws Exception {
+        // test a token can't be used by another client
+        BoardIdentifier board = new BoardIdentifier(32, "Stolen", OWNER);
+        StreamConnection owner = TestUtil.connect(PORT, OWNER);
+        StreamConnection user = TestUtil.connect(PORT, USER);
+        PacketResume token = board(board, owner, user);
+
+        StreamConnection other = TestUtil.connect(PORT, new ClientIdentifier(22, "Other"));
+        other.sendPacket(new PacketResume(board, token.token(), token.sequence(), false));
+        assertFalse(TestUtil.next(other, PacketResume.class).resumed());
+        owner.close();
+        user.close();
+        other.close();
+    }
+
+    @Test(timeout = 10000)
+    public void staleUserTest() throws Exception {
+        // test a user coming back before its old connection is noticed gone is taken off the board's
+        // users, and the other users are told
+        BoardIdentifier board = new BoardIdentifier(33, "Stale", OWNER);
+        StreamConnection owner = TestUtil.connect(PORT, OWNER);
+        StreamConnection user = TestUtil.connect(PORT, USER);
+        PacketResume token = board(board, owner, user);
+        assertEquals(2, TestUtil.next(owner, PacketBoardUsers.class).boardUsers().length);
+
+        StreamConnection back = TestUtil.connect(PORT, USER);
+        back.sendPacket(new PacketResume(board, token.token(), token.sequence(), false));
+        assertTrue(TestUtil.next(back, PacketResume.class).resumed());
+        assertEquals(1, TestUtil.next(owner, PacketBoardUsers.class).boardUsers().length);
+        back.sendPacket(new PacketClientReady(true));
+        assertEquals(2, TestUtil.next(owner, PacketBoardUsers.class).boardUsers().length);
+        owner.close();
+        user.close();
+        back.close();
+    }
+}
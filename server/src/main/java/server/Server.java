@@ -0,0 +1,694 @@
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import connection.Connection;
+import connection.ConnectionThreads;
+import connection.OutboundQueue;
+import connection.OverflowPolicy;
+import models.Board;
+import name.BoardIdentifier;
+import name.ClientIdentifier;
+import name.Identifiable;
+import name.Identifier;
+import packet.Packet;
+import packet.PacketBoardTransfer;
+import packet.PacketFrame;
+import packet.PacketJoinBoard;
+import packet.PacketNewBoard;
+import packet.PacketResume;
+import canvas.Canvas;
+import canvas.layer.TileMemory;
+/**
+ * Class that runs the server that handles all the boards and the clients connecting to each board
+ * Current default port is 4444, stores a BoardRegistry of all the boards and a ClientRegistry of all the clients as
+ * ServerSocketHandlers
+ *
+ */
+public class Server implements Identifiable {
+    public static final int DEFAULT_PORT = Connection.DEFAULT_PORT;
+    // How long a user that lost its connection can come back and carry on with its board.
+    static final long RESUME_WINDOW_MILLIS = 5 * 60 * 1000;
+    // Threads the journals of all the boards are written and forced to disk from.
+    static final int JOURNAL_THREADS = 2;
+    
+	private final TransportMode transport;
+	private final ServerSocket serverSocket;
+	private final NioTransport nioTransport;
+
+	private final BoardRegistry boards;
+	private final BoardDirectory directory;
+	private final BoardScheduler scheduler;
+	// Sends the tiles of boards to the users joining them.
+	private final ScheduledExecutorService joinStreams;
+	private final ExecutorService journalWriters;
+    private final ClientRegistry clients;
+    // Users that can carry on with their board if they reconnect, by the token they were given.
+    private final ConcurrentMap<Long, ServerSocketHandler> resumable = new ConcurrentHashMap<Long, ServerSocketHandler>();
+    private final SecureRandom tokens = new SecureRandom();
+    
+    private volatile int outboundCapacity = OutboundQueue.DEFAULT_CAPACITY;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+    // Where the boards are kept, null if boards aren't kept, and how safely new boards are.
+    private volatile BoardStore store;
+    private volatile Durability defaultDurability = Durability.OFF;
+    private volatile BoardPager pager;
+    // Sends users the hashes of their boards' tiles, null if they aren't sent.
+    private volatile TileAuditor tileAuditor;
+	 
+    /**
+     * Constructor for Server using only the port, serves blocking connections
+     * @param port
+     * @throws IOException
+     */
+	public Server(int port) throws IOException {
+		this(port, TransportMode.BLOCKING);
+	}
+	
+    /**
+     * Constructor for Server using the port and the transport to serve connections with
+     * @param port
+     * @param transport
+     * @throws IOException
+     */
+	public Server(int port, TransportMode transport) throws IOException {
+		this(port, transport, BoardScheduler.DEFAULT_THREADS);
+	}
+	
+    /**
+     * Constructor for Server using the port, the transport to serve connections with and the number of
+     * threads boards are processed on
+     * @param port
+     * @param transport
+     * @param boardThreads
+     * @throws IOException
+     */
+	public Server(int port, TransportMode transport, int boardThreads) throws IOException {
+		if (transport == TransportMode.VIRTUAL && !ConnectionThreads.virtualThreadsSupported()) {
+			throw new UnsupportedOperationException("Virtual threads need a JDK 21+ runtime");
+		}
+		this.transport = transport;
+		if (transport == TransportMode.NIO) {
+			this.serverSocket = null;
+			this.nioTransport = new NioTransport(this, port, NioTransport.DEFAULT_IO_THREADS);
+		}
+		else {
+			this.serverSocket = new ServerSocket(port);
+			this.nioTransport = null;
+		}
+		this.boards = new BoardRegistry();
+		this.directory = new BoardDirectory();
+        this.clients = new ClientRegistry();
+        this.scheduler = new BoardScheduler(boardThreads);
+        this.joinStreams = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "join-streams");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.journalWriters = Executors.newFixedThreadPool(JOURNAL_THREADS, new ThreadFactory() {
+            private int count;
+
+            public synchronized Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "journal-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+	}
+	
+	/**
+	 * Serves each new connection to the server, either by starting it in a new platform or virtual
+	 * thread or by handing it to the NIO transport
+	 * @throws IOException
+	 */
+	public void serve() throws IOException {
+		if (transport == TransportMode.NIO) {
+			nioTransport.serve();
+			return;
+		}
+		boolean virtual = transport == TransportMode.VIRTUAL;
+		while (true) {
+			final Socket socket = serverSocket.accept();
+            
+            ConnectionThreads.newThread(new Runnable() {
+                public void run() {
+                    serveConnection(socket);
+                }
+            }, virtual).start();
+		}
+	}
+	
+	/**
+	 * Runs a blocking connection on the current thread. The protocol handshake happens here rather than
+	 * in serve() so a slow client can't hold up accepting the others.
+	 * @param socket
+	 */
+	private void serveConnection(Socket socket) {
+		ServerSocketHandler handler;
+		try {
+			handler = new ServerSocketHandler(socket, this);
+		} catch (IOException e) {
+			e.printStackTrace();
+			try {
+				socket.close();
+			} catch (IOException closeException) {
+				closeException.printStackTrace();
+			}
+			return;
+		}
+		clientConnected(handler);
+		handler.run();
+	}
+	
+	/**
+	 * Adds a newly connected client to the registry of client ServerSocketHandlers. Legacy clients are
+	 * sent the whole board list, current clients ask the BoardDirectory for the boards they want to see.
+	 * @param handler
+	 */
+	void clientConnected(ServerSocketHandler handler) {
+        clients.add(handler);
+        
+        if (!handler.connection().isFramed()) {
+            handler.sendFrame(boards.snapshot().frame());
+        }
+	}
+	
+	/**
+	 * Sets how many packets may wait for each client connecting from now on, and what happens when
+	 * a client falls further behind than that
+	 * @param capacity
+	 * @param policy
+	 */
+	public void setOutboundQueue(int capacity, OverflowPolicy policy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity.");
+		}
+		this.outboundCapacity = capacity;
+		this.overflowPolicy = policy;
+	}
+	
+	/**
+	 * Keeps the boards in the directory from now on, and brings back the boards kept there before the
+	 * server last stopped. Must be called before the server serves any connection.
+	 * @param directory
+	 * @param durability how safely new boards are kept, OFF to only keep boards asked to be
+	 * @throws IOException if the directory can't be made
+	 */
+	public void setJournal(File directory, Durability durability) throws IOException {
+		setJournal(directory, durability, BoardStore.CHECKPOINT_BYTES);
+	}
+	
+	/**
+	 * Keeps the boards in the directory from now on, checkpointing them once their journal is as long
+	 * as given, and brings back the boards kept there before the server last stopped. Must be called
+	 * before the server serves any connection.
+	 * @param directory
+	 * @param durability how safely new boards are kept, OFF to only keep boards asked to be
+	 * @param checkpointBytes
+	 * @throws IOException if the directory can't be made
+	 */
+	public void setJournal(File directory, Durability durability, long checkpointBytes) throws IOException {
+		BoardStore store = new BoardStore(directory, journalWriters, checkpointBytes);
+		Durability recovered = durability == Durability.OFF ? Durability.ASYNC : durability;
+		for (BoardSequencer sequencer : store.recover(scheduler, recovered)) {
+			addBoard(sequencer);
+			this.directory.add(sequencer.model().identifier());
+		}
+		this.defaultDurability = durability;
+		this.store = store;
+		store.start(boards.all());
+	}
+	
+	/**
+	 * @return where the boards are kept, or null if they aren't
+	 */
+	BoardStore store() {
+		return store;
+	}
+	
+	/**
+	 * Pages idle boards out to the directory from now on, whenever the tiles of all the boards take more
+	 * memory than budgeted. Must be called after setJournal, if at all, and before the server serves
+	 * any connection.
+	 * @param directory
+	 * @param budgetBytes
+	 * @throws IOException if the directory can't be made
+	 */
+	public void setBoardMemory(File directory, long budgetBytes) throws IOException {
+		// Snapshots being checkpointed may still read from a page file the board no longer does.
+		Executor retirer = new Executor() {
+			public void execute(Runnable task) {
+				BoardStore store = Server.this.store;
+				if (store != null) {
+					store.afterCheckpoints(task);
+				}
+				else {
+					task.run();
+				}
+			}
+		};
+		BoardPager pager = new BoardPager(directory, boards, budgetBytes, BoardPager.IDLE_MILLIS, retirer);
+		this.pager = pager;
+		pager.start();
+	}
+	
+	/**
+	 * @return where idle boards are paged out to, or null if they aren't
+	 */
+	BoardPager pager() {
+		return pager;
+	}
+	
+	/**
+	 * Sends the users of each board that ask for them the hashes of some of its tiles every so often
+	 * from now on, for them to find the tiles their copy of the board got wrong and ask for them again
+	 * @param periodMillis how often each board's users are sent them
+	 */
+	public void setTileAudit(long periodMillis) {
+		TileAuditor auditor = new TileAuditor(boards, periodMillis);
+		this.tileAuditor = auditor;
+		auditor.start();
+	}
+	
+	/**
+	 * @return what sends users the hashes of their boards' tiles, or null if they aren't sent
+	 */
+	TileAuditor tileAuditor() {
+		return tileAuditor;
+	}
+	
+	/**
+	 * Sets how safely a board is kept from now on. Turning durability off deletes the board's files,
+	 * turning it on starts a journal with a copy of the board as it is.
+	 * @param boardName
+	 * @param durability
+	 * @throws IllegalStateException if the server has no journal directory
+	 * @throws IllegalArgumentException if there is no such board
+	 */
+	public void setDurability(BoardIdentifier boardName, final Durability durability) {
+		if (store == null) {
+			throw new IllegalStateException("No journal directory.");
+		}
+		final BoardSequencer sequencer = boards.get(boardName);
+		if (sequencer == null) {
+			throw new IllegalArgumentException("No board " + boardName);
+		}
+		sequencer.submit(new Runnable() {
+			public void run() {
+				store.keep(sequencer, durability);
+			}
+		});
+	}
+	
+	/**
+	 * Creates the outbound queue for a new connection
+	 * @return OutboundQueue
+	 */
+	OutboundQueue newOutboundQueue() {
+		return new OutboundQueue(outboundCapacity, overflowPolicy);
+	}
+	
+	/**
+	 * Returns the outbound queue metrics of every identified client
+	 * @return Map of the client's Identifier to its queue's Stats
+	 */
+	public Map<Identifier, OutboundQueue.Stats> outboundQueueStats() {
+		Map<Identifier, OutboundQueue.Stats> stats = new HashMap<Identifier, OutboundQueue.Stats>();
+		for (ServerSocketHandler handler : clients.all()) {
+			OutboundQueue queue = handler.connection().outboundQueue();
+			if (handler.identifier() != null && queue != null) {
+				stats.put(handler.identifier(), queue.stats());
+			}
+		}
+		return stats;
+	}
+	
+	/**
+	 * Returns the metrics of every board, to tell which boards are hot and how long their changes take
+	 * @return Map of the BoardIdentifier to its sequencer's Stats
+	 */
+	public Map<BoardIdentifier, BoardSequencer.Stats> boardStats() {
+		Map<BoardIdentifier, BoardSequencer.Stats> stats = new HashMap<BoardIdentifier, BoardSequencer.Stats>();
+		for (BoardSequencer sequencer : boards.all()) {
+			stats.put(sequencer.model().identifier(), sequencer.stats());
+		}
+		return stats;
+	}
+	
+	/**
+	 * Returns the metrics of the pool boards are processed on
+	 * @return BoardScheduler.Stats
+	 */
+	public BoardScheduler.Stats schedulerStats() {
+		return scheduler.stats();
+	}
+	
+	/**
+	 * @return where the tiles of boards are sent to the users joining them from
+	 */
+	ScheduledExecutorService joinStreams() {
+		return joinStreams;
+	}
+	
+	/**
+	 * Indexes a client under the identifier it introduced itself with, so packets can be routed to it
+	 * @param handler
+	 */
+	void clientIdentified(ServerSocketHandler handler) {
+		clients.identify(handler);
+	}
+	
+	/**
+	 * Gives a user of a board a token it can carry on with the board with if it loses its connection,
+	 * forgetting the tokens of users gone for longer than RESUME_WINDOW_MILLIS
+	 * @param handler
+	 * @return the token, never PacketResume.NO_TOKEN
+	 */
+	long issueResumeToken(ServerSocketHandler handler) {
+		long now = System.currentTimeMillis();
+		for (Iterator<ServerSocketHandler> it = resumable.values().iterator(); it.hasNext();) {
+			long closedAt = it.next().closedAt();
+			if (closedAt != 0 && now - closedAt > RESUME_WINDOW_MILLIS) {
+				it.remove();
+			}
+		}
+		long token;
+		do {
+			token = tokens.nextLong();
+		} while (token == PacketResume.NO_TOKEN || resumable.putIfAbsent(token, handler) != null);
+		return token;
+	}
+	
+	/**
+	 * Takes back a token, which can only be used once
+	 * @param token
+	 * @return the connection of the user it was given to, or null if there is no such token or the
+	 *         user has been gone too long
+	 */
+	ServerSocketHandler takeResumeToken(long token) {
+		ServerSocketHandler handler = resumable.remove(token);
+		if (handler == null || (handler.closedAt() != 0
+				&& System.currentTimeMillis() - handler.closedAt() > RESUME_WINDOW_MILLIS)) {
+			return null;
+		}
+		return handler;
+	}
+	
+	/**
+	 * Forgets a token, once its user has left the board
+	 * @param token
+	 */
+	void forgetResumeToken(long token) {
+		resumable.remove(token);
+	}
+	
+	/**
+	 * Removes client from the registry of client ServerSocketHandlers
+	 * @param handler
+	 */
+    public void removeClient(ServerSocketHandler handler) {
+        clients.remove(handler);
+        directory.unsubscribe(handler);
+    }
+    
+    /**
+     * @return the directory clients search and page through the boards with
+     */
+    BoardDirectory directory() {
+        return directory;
+    }
+    
+    /**
+     * Adds board to the registry of current boards
+     * @param sequencer
+     */
+    private void addBoard(BoardSequencer sequencer) {
+        boolean added = boards.add(sequencer);
+        assert added;
+    }
+    
+    /**
+     * Broadcast a frame to all legacy clients, encoded only once for all of them.
+     * @param frame
+     */
+    private void broadcastFrameToLegacyClients(PacketFrame frame) {
+        for (ServerSocketHandler handler : clients.all()) {
+            if (!handler.connection().isFramed()) {
+                handler.sendFrame(frame);
+            }
+        }
+    }
+
+    /**
+     * Broadcast a packet to particular client.
+     * @param packet
+     */
+    public void broadcastPacketToClient(Packet packet, ClientIdentifier client) {
+        ServerSocketHandler handler = clients.get(client);
+        if (handler != null) {
+            handler.sendPacket(packet);
+        }
+    }
+    
+    /**
+     * Notifies legacy clients of the current board list. Current clients are sent the change by the
+     * BoardDirectory, and only while they have their board picker open.
+     */
+    public void notifyBoardListChanged() {
+        broadcastFrameToLegacyClients(boards.snapshot().frame());
+    }
+    
+    /**
+     * Constructor for Board on server that creates models under boardName too
+     * @param packet
+     * @return
+     */
+    public Board newBoard(PacketNewBoard packet) {
+        BoardIdentifier boardName = packet.boardName();
+        int width = packet.width();
+        int height = packet.height();
+        
+        // Create a new model under this boardName.
+        Board model = new Board(boardName, new Canvas(width, height), packet.owner());
+        final BoardSequencer sequencer = new BoardSequencer(model, scheduler);
+        addBoard(sequencer);
+        directory.add(boardName);
+        final Durability durability = defaultDurability;
+        if (store != null && durability != Durability.OFF) {
+            sequencer.submit(new Runnable() {
+                public void run() {
+                    store.keep(sequencer, durability);
+                }
+            });
+        }
+        
+        return model;
+    }
+    
+    /**
+     * Creates a board moving here from another server. It isn't listed or joinable until it is
+     * committed, its sequencer only applies the changes copied from the other server until then.
+     * @param packet
+     * @return BoardSequencer of the board
+     */
+    BoardSequencer adoptBoard(PacketBoardTransfer packet) {
+        Board model = new Board(packet.boardName(), packet.canvas(), packet.owner());
+        return new BoardSequencer(model, scheduler, packet.sequence());
+    }
+    
+    /**
+     * Lists a board that has finished moving here and lets clients join it, keeping it as new boards are.
+     * Must only be called from a submitted operation of the board.
+     * @param sequencer
+     */
+    void commitBoard(BoardSequencer sequencer) {
+        if (store != null && defaultDurability != Durability.OFF) {
+            store.keep(sequencer, defaultDurability);
+        }
+        addBoard(sequencer);
+        directory.add(sequencer.model().identifier());
+        notifyBoardListChanged();
+    }
+    
+    /**
+     * Forgets a board that has moved to another server, deleting its files. Must only be called from a
+     * submitted operation of the board.
+     * @param sequencer
+     */
+    void removeBoard(BoardSequencer sequencer) {
+        if (store != null) {
+            store.keep(sequencer, Durability.OFF);
+        }
+        if (pager != null) {
+            pager.forget(sequencer);
+        }
+        if (tileAuditor != null) {
+            tileAuditor.forget(sequencer);
+        }
+        boolean removed = boards.remove(sequencer);
+        assert removed;
+        directory.remove(sequencer.model().identifier());
+        notifyBoardListChanged();
+    }
+    
+    /**
+     * Join board operation by the client, handled on the server
+     * @param packet
+     * @return
+     */
+    public Board joinBoard(PacketJoinBoard packet) {
+        BoardIdentifier boardName = packet.boardName();
+        BoardSequencer sequencer = boards.get(boardName);
+        
+        return sequencer == null ? null : sequencer.model();
+    }
+    
+    /**
+     * Returns the sequencer that every change to the board has to go through
+     * @param model
+     * @return BoardSequencer
+     */
+    BoardSequencer sequencer(Board model) {
+        return boards.get(model.identifier());
+    }
+    
+    /**
+     * Returns the sequencer of the board
+     * @param boardName
+     * @return BoardSequencer, or null if there is no such board
+     */
+    BoardSequencer sequencer(BoardIdentifier boardName) {
+        return boards.get(boardName);
+    }
+    
+    /**
+     * Getter method for identifier in Server
+     */
+    @Override
+    public Identifier identifier() {
+    	throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Prints the board and scheduler metrics every few seconds, for sizing the board thread pool
+     * @param seconds
+     */
+    private void startStatsReporter(final int seconds) {
+        Thread reporter = new Thread(new Runnable() {
+            public void run() {
+                while (true) {
+                    try {
+                        Thread.sleep(seconds * 1000L);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    System.out.println("scheduler: " + schedulerStats());
+                    BoardPager pager = Server.this.pager;
+                    if (pager != null) {
+                        System.out.println(String.format("pager: %d KB of tiles in memory, %d page outs",
+                                pager.residentBytes() >> 10, pager.pageOuts()));
+                    }
+                    TileAuditor auditor = tileAuditor;
+                    if (auditor != null) {
+                        System.out.println(String.format("tile audit: %d digests, %d tiles checked, %d diverged (%.4f%%) in %d repairs",
+                                auditor.digests(), auditor.tilesChecked(), auditor.tilesDiverged(),
+                                auditor.divergenceRate() * 100, auditor.repairs()));
+                    }
+                    for (Map.Entry<BoardIdentifier, BoardSequencer.Stats> entry : boardStats().entrySet()) {
+                        System.out.println("board " + entry.getKey().id() + " " + entry.getKey() + ": " + entry.getValue());
+                    }
+                }
+            }
+        }, "stats");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+    
+    /**
+     * Main method to run the server
+     * @param args
+     */
+    public static void main(String[] args) {
+        // The server keeps its boards as headless models.Board, never a Swing BoardModel, so it needs no display.
+        System.setProperty("java.awt.headless", "true");
+        int port = DEFAULT_PORT;
+        TransportMode transport = TransportMode.BLOCKING;
+        int queueCapacity = OutboundQueue.DEFAULT_CAPACITY;
+        OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+        int boardThreads = BoardScheduler.DEFAULT_THREADS;
+        int statsSeconds = 0;
+        File journal = null;
+        Durability durability = null;
+        long checkpointBytes = BoardStore.CHECKPOINT_BYTES;
+        long boardMemory = 0;
+        File pages = null;
+        int tileAuditSeconds = 0;
+        
+        for (String arg : args) {
+            TransportMode mode = TransportMode.forFlag(arg);
+            if (mode != null)
+                transport = mode;
+            else if (arg.startsWith("--queue="))
+                queueCapacity = Integer.parseInt(arg.substring("--queue=".length()));
+            else if (arg.startsWith("--overflow="))
+                overflowPolicy = OverflowPolicy.forName(arg.substring("--overflow=".length()));
+            else if (arg.startsWith("--board-threads="))
+                boardThreads = Integer.parseInt(arg.substring("--board-threads=".length()));
+            else if (arg.startsWith("--stats="))
+                statsSeconds = Integer.parseInt(arg.substring("--stats=".length()));
+            else if (arg.startsWith("--journal="))
+                journal = new File(arg.substring("--journal=".length()));
+            else if (arg.startsWith("--durability="))
+                durability = Durability.forName(arg.substring("--durability=".length()));
+            else if (arg.startsWith("--checkpoint="))
+                checkpointBytes = Long.parseLong(arg.substring("--checkpoint=".length())) << 20;
+            else if (arg.startsWith("--board-memory="))
+                boardMemory = Long.parseLong(arg.substring("--board-memory=".length())) << 20;
+            else if (arg.startsWith("--pages="))
+                pages = new File(arg.substring("--pages=".length()));
+            else if (arg.startsWith("--tile-audit="))
+                tileAuditSeconds = Integer.parseInt(arg.substring("--tile-audit=".length()));
+            else if (arg.startsWith("--tile-memory="))
+                TileMemory.setCurrent(TileMemory.forName(arg.substring("--tile-memory=".length())));
+            else
+                port = Integer.parseInt(arg.substring(2));
+        }
+        try {
+            final Server server = new Server(port, transport, boardThreads);
+            server.setOutboundQueue(queueCapacity, overflowPolicy);
+            if (journal != null) {
+                server.setJournal(journal, durability == null ? Durability.ASYNC : durability, checkpointBytes);
+            }
+            if (boardMemory > 0) {
+                server.setBoardMemory(pages == null ? Files.createTempDirectory("pages").toFile() : pages, boardMemory);
+            }
+            if (tileAuditSeconds > 0) {
+                server.setTileAudit(tileAuditSeconds * 1000L);
+            }
+            System.out.println("Server Started at localhost:" + port + " (" + transport + ")");
+            if (statsSeconds > 0) {
+                server.startStatsReporter(statsSeconds);
+            }
+            server.serve();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,744 @@
+package server;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+
+import connection.Connection;
+import connection.SocketHandler;
+import connection.StreamConnection;
+import models.Board;
+import name.ClientIdentifier;
+import packet.*;
+import canvas.Canvas;
+import canvas.SnapshotCodec;
+import canvas.TileChunk;
+import canvas.command.DrawCommand;
+import canvas.layer.Layer;
+
+/**
+ * The socket created when a client joins the server. Handles communication with
+ * just one client, and talks to the |Server| to receive information about the board.
+ * @author Matthew
+ *
+ */
+public class ServerSocketHandler extends SocketHandler {
+	private static final long serialVersionUID = 5321337579877366643L;
+	
+	private final transient Server server;
+    private transient ServerSocketState state;
+    // The board the user is on, and its sequencer, which is also read by the connection resuming the user.
+    private transient Board model;
+    private transient volatile BoardSequencer sequencer;
+    // The board this connection is copying to another server, only on the connection of a migration.
+    private transient BoardSequencer moving;
+    // Sending the tiles of the board this client is joining, if it asked for them a few at a time.
+    private transient volatile JoinStream joining;
+    // The token the user can carry on with its board with if it reconnects, only touched by operations
+    // on the board's sequencer.
+    private transient long resumeToken = PacketResume.NO_TOKEN;
+    // Whether the user wants the hashes of its board's tiles to check its copy against.
+    private transient volatile boolean tileDigests;
+    // When the connection closed, 0 while it is open.
+    private transient volatile long closedAt;
+    
+    /**
+     * Constructor which creates SocketHandler for server, working out which protocol the client speaks
+     * @param socket
+     * @param server
+     * @throws IOException
+     */
+    public ServerSocketHandler(Socket socket, Server server) throws IOException {
+        this(StreamConnection.accept(socket, server.newOutboundQueue()), server);
+    }
+    
+    /**
+     * Constructor which creates SocketHandler for server over an already open connection
+     * @param connection
+     * @param server
+     */
+    public ServerSocketHandler(Connection connection, Server server) {
+        super(connection);
+        this.server = server;
+        this.state = ServerSocketState.INITIALIZING;
+    }
+    
+    /**
+     * Disconnects a client from the server
+     */
+    @Override 
+    public void connectionClosed() {
+        closedAt = System.currentTimeMillis();
+        server.removeClient(this);
+        stopJoining();
+        if (sequencer != null) {
+            final BoardSequencer board = sequencer;
+            board.submit(new Runnable() {
+                public void run() {
+                    board.removeJoiner(ServerSocketHandler.this);
+                    if (board.model().containsUser(ServerSocketHandler.this)) {
+                        board.model().removeUser(ServerSocketHandler.this);
+                    }
+                }
+            });
+        }
+        else if (model != null && model.containsUser(this)) {
+        	model.removeUser(this);
+        }
+        if (moving != null) {
+            // The migration was abandoned, the board stays here.
+            final BoardSequencer board = moving;
+            board.submit(new Runnable() {
+                public void run() {
+                    if (board.tail() == ServerSocketHandler.this) {
+                        board.setTail(null);
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * @return when the connection closed, 0 if it is still open
+     */
+    long closedAt() {
+        return closedAt;
+    }
+    
+    /**
+     * @return whether the user asked for the TileAuditor's digests of its board
+     */
+    boolean wantsTileDigests() {
+        return tileDigests;
+    }
+    
+    /**
+     * Handles receiving a NewClientPacket
+     */
+    @Override
+    public void receivedNewClientPacket(PacketNewClient packet) {
+        assert this.identifier == null;
+        assert state == ServerSocketState.INITIALIZING;
+        state = ServerSocketState.IDLE;
+        
+        this.identifier = packet.senderName();
+        server.clientIdentified(this);
+    }
+    
+    /**
+     * Handles receiving a NewBoardPacket and adds it to the server
+     */
+    @Override
+    public void receivedNewBoardPacket(PacketNewBoard packet) {
+        assert model == null;
+        model = server.newBoard(packet);
+        sequencer = server.sequencer(model);
+        
+        // Tell the user to start his board. It is listed already, so send it and every change made to
+        // it after as any other user joining it.
+        final BoardSequencer board = sequencer;
+        board.submit(new Runnable() {
+            public void run() {
+                sendBoard(board, null);
+                board.addJoiner(ServerSocketHandler.this);
+                // Announce that a new board has been added.
+                server.notifyBoardListChanged();
+            }
+        });
+    }
+    
+    /**
+     * Handles receiving a JoinBoardPacket and adds the client to the server
+     * returns BoardModelPacket to the clients
+     */
+    @Override
+    public void receivedJoinBoardPacket(PacketJoinBoard packet) {
+        assert model == null;
+        model = server.joinBoard(packet);
+        sequencer = model == null ? null : server.sequencer(model);
+        if (sequencer == null) {
+            sendPacket(new PacketBoardModel(model));
+            return;
+        }
+
+        // First send the board, then every change made to it after it was copied.
+        final BoardSequencer board = sequencer;
+        final Rectangle viewport = packet.viewport();
+        board.submit(new Runnable() {
+            public void run() {
+                sendBoard(board, viewport);
+                board.addJoiner(ServerSocketHandler.this);
+            }
+        });
+    }
+    
+    /**
+     * Sends the packet as a frame, so it is held back like every other while the board it comes from
+     * isn't on disk yet
+     */
+    @Override
+    public void sendPacket(Packet packet) {
+        sendFrame(PacketFrame.of(packet));
+    }
+    
+    /**
+     * Sends the frame, once the changes of the drain it is sent from are on disk if its board is kept
+     * with SYNC durability
+     */
+    @Override
+    public void sendFrame(final PacketFrame frame) {
+        if (!BoardSequencer.isHolding()) {
+            super.sendFrame(frame);
+            return;
+        }
+        BoardSequencer.whenDurable(new Runnable() {
+            public void run() {
+                ServerSocketHandler.super.sendFrame(frame);
+            }
+        });
+    }
+    
+    /**
+     * Sends the board as it is to a user joining it. Must only be called from an operation submitted to
+     * the board's sequencer.
+     * @param board
+     * @param viewport where on the board the user looks first, or null to send it the whole board at once
+     */
+    private void sendBoard(BoardSequencer board, Rectangle viewport) {
+        if (viewport == null) {
+            sendPacket(new PacketBoardModel(board.model()));
+        }
+        else {
+            // Its layers and preview now, its tiles a few at a time after.
+            Canvas snapshot = board.model().canvas().snapshot();
+            int[] preview = SnapshotCodec.preview(snapshot);
+            sendPacket(new PacketBoardModel(board.model(), snapshot.blankCopy(), preview));
+            final JoinStream stream = new JoinStream(this, board.model().identifier(), snapshot, preview, viewport,
+                    server.joinStreams());
+            joining = stream;
+            // Not before the copy of the board it fills in, which may be held until it is on disk.
+            BoardSequencer.whenDurable(new Runnable() {
+                public void run() {
+                    stream.start();
+                }
+            });
+        }
+    }
+    
+    /**
+     * Handles receiving a ResumePacket from a client that lost its connection to its board. The client
+     * is sent the changes it missed, or the board again if they aren't all kept any more, then carries on
+     * as if it had just joined. A token that is unknown, too old or for a board that isn't here any more
+     * is refused and the client joins the board again itself.
+     */
+    @Override
+    public void receivedResumePacket(final PacketResume packet) {
+        assert model == null;
+        final ServerSocketHandler previous = server.takeResumeToken(packet.token());
+        final BoardSequencer board = server.sequencer(packet.boardName());
+        if (previous == null || board == null || previous.sequencer != board
+                || identifier == null || !identifier.equals(previous.identifier())) {
+            sendPacket(new PacketResume(packet.boardName(), PacketResume.NO_TOKEN, SequencedPacket.UNSEQUENCED, false));
+            return;
+        }
+        model = board.model();
+        sequencer = board;
+        
+        final Rectangle viewport = packet.viewport();
+        board.submit(new Runnable() {
+            public void run() {
+                // The old connection may not have noticed it is gone yet.
+                board.removeJoiner(previous);
+                if (board.model().containsUser(previous)) {
+                    board.model().removeUser(previous);
+                    previous.connection.close();
+                    board.publish(new PacketBoardUsers(board.model().users()));
+                }
+                List<PacketFrame> missed = board.changesSince(packet.sequence());
+                if (missed == null) {
+                    sendBoard(board, viewport);
+                }
+                else {
+                    sendPacket(new PacketResume(board.model().identifier(), PacketResume.NO_TOKEN,
+                            board.lastSequence(), true));
+                    for (PacketFrame frame : missed) {
+                        sendFrame(frame);
+                    }
+                }
+                board.addJoiner(ServerSocketHandler.this);
+            }
+        });
+    }
+    
+    /**
+     * Stops sending the tiles of the board the client was joining, if they're still being sent
+     */
+    private void stopJoining() {
+        JoinStream stream = joining;
+        if (stream != null) {
+            stream.cancel();
+            joining = null;
+        }
+    }
+    
+    /**
+     * Forgets the token the user was given to carry on with the board, once it has left it. Must only be
+     * called from an operation submitted to the board's sequencer, after the one that gave the token.
+     */
+    private void forgetResumeToken() {
+        server.forgetResumeToken(resumeToken);
+        resumeToken = PacketResume.NO_TOKEN;
+    }
+    
+    /**
+     * Handles receiving an ExitBoardPacket and remove client from the board
+     * Notify all clients that BoardUsers have changed
+     */
+    @Override
+    public void receivedExitBoardPacket(PacketExitBoard packet) {
+        assert state == ServerSocketState.PLAYING;
+        state = ServerSocketState.IDLE;
+        
+        assert model != null;
+
+        stopJoining();
+        final BoardSequencer board = sequencer;
+        board.submit(new Runnable() {
+            public void run() {
+                forgetResumeToken();
+                board.removeJoiner(ServerSocketHandler.this);
+                board.model().removeUser(ServerSocketHandler.this);
+                sendPacket(new PacketExitBoard());
+                board.publish(new PacketBoardUsers(board.model().users()));
+            }
+        });
+        model = null;
+        sequencer = null;
+    }
+
+	@Override
+    public void receivedCanJoinBoardPacket(PacketCanJoinBoard packet) {
+        ClientIdentifier owner = packet.boardName().owner();
+        if (!owner.equals(packet.user()))
+        server.broadcastPacketToClient(packet, owner);
+    }
+
+    @Override
+    public void receivedCanJoinBoardResultPacket(PacketCanJoinBoardResult packet) {
+        ClientIdentifier owner = packet.user();
+        server.broadcastPacketToClient(packet, owner);
+    }
+	
+	/**
+	 * Handles receiving a ClientReadyPacket
+	 */
+	@Override
+	public void receivedClientReadyPacket(final PacketClientReady packet) {
+        assert state == ServerSocketState.IDLE;
+        state = ServerSocketState.PLAYING;
+        tileDigests = packet.tileDigests();
+        
+		final BoardSequencer board = sequencer;
+		board.submit(new Runnable() {
+			public void run() {
+				// No longer joining but a user, without missing or repeating a change in between.
+				board.removeJoiner(ServerSocketHandler.this);
+				board.model().addUser(ServerSocketHandler.this);
+				board.publish(new PacketBoardUsers(board.model().users()));
+				if (packet.resumable()) {
+					resumeToken = server.issueResumeToken(ServerSocketHandler.this);
+					sendPacket(new PacketResume(board.model().identifier(), resumeToken, board.lastSequence(), true));
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Handles receiving a TileRepairPacket by sending the user the tiles its copy of the board got wrong,
+	 * as they are after every change it has been sent
+	 */
+	@Override
+	public void receivedTileRepairPacket(PacketTileRepair packet) {
+		final BoardSequencer board = sequencer;
+		if (state != ServerSocketState.PLAYING || board == null || !board.model().identifier().equals(packet.boardName())) {
+			// Asked for before the user left the board.
+			return;
+		}
+		final int[] indexes = packet.indexes();
+		board.submit(new Runnable() {
+			public void run() {
+				Canvas canvas = board.model().canvas();
+				int tiles = ((canvas.width() + Layer.TILE_SIZE - 1) / Layer.TILE_SIZE)
+						* ((canvas.height() + Layer.TILE_SIZE - 1) / Layer.TILE_SIZE);
+				if (indexes.length > tiles) {
+					return;
+				}
+				for (int index : indexes) {
+					if (index < 0 || index >= tiles) {
+						return;
+					}
+				}
+				TileAuditor auditor = server.tileAuditor();
+				if (auditor != null) {
+					auditor.repaired(indexes.length);
+				}
+				for (int sent = 0; sent < indexes.length; sent += JoinStream.CHUNK_TILES) {
+					int[] chunk = Arrays.copyOfRange(indexes, sent, Math.min(indexes.length, sent + JoinStream.CHUNK_TILES));
+					sendPacket(new PacketBoardTiles(board.model().identifier(), TileChunk.of(canvas, chunk)));
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Handles receiving a DrawCommandPacket by having the board's sequencer draw and broadcast it
+	 */
+    @Override
+    public void receivedDrawCommandPacket(final PacketDrawCommand packet) {
+        assert state == ServerSocketState.PLAYING;
+        assert model != null;
+        
+        final DrawCommand command = packet.drawCommand();
+        assert command != null;
+        final BoardSequencer board = sequencer;
+        board.submit(new Runnable() {
+            public void run() {
+                command.drawOn(board.model());
+                board.publish(packet);
+            }
+        });
+    }
+    /**
+     * Handles receiving a MessagePacket and broadcasting it to all the users
+     * to update the chat client
+     */
+	@Override
+	public void receivedMessagePacket(final PacketMessage packet) {
+		final BoardSequencer board = sequencer;
+		board.submit(new Runnable() {
+			public void run() {
+				board.publish(packet);
+			}
+		});
+	}
+
+	/**
+	 * Handles receiving a LayerAdjustmentPacket and then broadcasting the new layering ordering
+	 * to all the clients on the current Board
+	 */
+	@Override
+	public void receivedLayerAdjustmentPacket(
+			final PacketLayerAdjustment packet) {
+        assert state == ServerSocketState.PLAYING;
+        assert model != null;
+		final BoardSequencer board = sequencer;
+		board.submit(new Runnable() {
+			public void run() {
+				board.model().adjustLayer(packet.layerProperties(), packet.adjustment());
+				board.publish(packet);
+			}
+		});
+	}
+	
+	/**
+	 * Handles receiving a NewLayerPacket and adding the layer to the model and then sending it out
+	 * to the other clients on the Board
+	 */
+	@Override
+	public void receivedNewLayerPacket(final PacketNewLayer packet) {
+        assert state == ServerSocketState.PLAYING;
+        assert model != null;
+		final BoardSequencer board = sequencer;
+		board.submit(new Runnable() {
+			public void run() {
+				board.model().addLayer(packet.layerName());
+				board.publish(packet);
+			}
+		});
+	}
+	
+	/**
+	 * Handles receiving a BoardDirectoryQueryPacket by sending back the page asked for, and subscribing
+	 * the client to the changes under the prefix if it wants them
+	 */
+	@Override
+	public void receivedBoardDirectoryQueryPacket(PacketBoardDirectoryQuery packet) {
+		BoardDirectory directory = server.directory();
+		if (packet.subscribe()) {
+			directory.subscribe(this, packet.prefix(), packet.offset(), packet.limit());
+		}
+		else {
+			sendPacket(directory.page(packet.prefix(), packet.offset(), packet.limit()));
+		}
+	}
+	
+	/**
+	 * Handles receiving a BoardDirectoryClosePacket by no longer sending the client directory changes
+	 */
+	@Override
+	public void receivedBoardDirectoryClosePacket(PacketBoardDirectoryClose packet) {
+		server.directory().unsubscribe(this);
+	}
+	
+	/**
+	 * Handles receiving a MigrationPacket, one step of moving a board to another server of the cluster
+	 */
+	@Override
+	public void receivedMigrationPacket(PacketMigration packet) {
+		switch (packet.step()) {
+		case START:
+			startMigration(packet);
+			break;
+		case CATCH_UP:
+			catchUp(packet);
+			break;
+		case LEAVE:
+			leaveMovingBoard(packet);
+			break;
+		case CUTOVER:
+			cutOver(packet);
+			break;
+		case COMMIT:
+			commitMovedBoard(packet);
+			break;
+		case RESUME:
+			resumeMovedBoard(packet);
+			break;
+		case FORGET:
+			forgetMovedBoard(packet);
+			break;
+		}
+	}
+	
+	/**
+	 * Sends the board over this connection, copied in between two of its changes, then every change
+	 * made to it after that
+	 */
+	private void startMigration(final PacketMigration packet) {
+		assert moving == null;
+		final BoardSequencer board = server.sequencer(packet.board());
+		if (board == null) {
+			sendPacket(new PacketMigration(PacketMigration.Step.START, packet.board(), SequencedPacket.UNSEQUENCED, false));
+			return;
+		}
+		moving = board;
+		board.submit(new Runnable() {
+			public void run() {
+				try {
+					// Snapshot taken here, between two changes to the board.
+					sendFrame(PacketFrame.encode(new PacketBoardTransfer(board.model(), board.lastSequence()),
+							connection.wireFormat()));
+				} catch (IOException e) {
+					e.printStackTrace();
+					connection.close();
+					return;
+				}
+				board.setTail(ServerSocketHandler.this);
+			}
+		});
+	}
+	
+	/**
+	 * Answers once the board moving here has applied every change copied to it so far
+	 */
+	private void catchUp(PacketMigration packet) {
+		assert model != null && model.identifier().equals(packet.board());
+		final BoardSequencer board = sequencer;
+		board.submit(new Runnable() {
+			public void run() {
+				sendPacket(new PacketMigration(PacketMigration.Step.CATCH_UP, board.model().identifier(),
+						board.lastSequence(), false));
+			}
+		});
+	}
+	
+	/**
+	 * Takes the client off the board that is moving, after every change it has already sent, and
+	 * tells it the last change it was sent. The client carries on with the board on the new server.
+	 */
+	private void leaveMovingBoard(PacketMigration packet) {
+		assert model != null && model.identifier().equals(packet.board());
+		final BoardSequencer board = sequencer;
+		model = null;
+		sequencer = null;
+		state = ServerSocketState.IDLE;
+		stopJoining();
+		board.submit(new Runnable() {
+			public void run() {
+				// The user carries on with the board on the new server, through the gateway.
+				forgetResumeToken();
+				board.removeJoiner(ServerSocketHandler.this);
+				boolean playing = board.model().containsUser(ServerSocketHandler.this);
+				if (playing) {
+					board.model().removeUser(ServerSocketHandler.this);
+				}
+				sendPacket(new PacketMigration(PacketMigration.Step.LEAVE, board.model().identifier(),
+						board.lastSequence(), playing));
+			}
+		});
+	}
+	
+	/**
+	 * Stops copying the moving board once its last client has left. The board and its files are kept
+	 * until the new server has committed it, so it stays here if the new server fails to.
+	 */
+	private void cutOver(PacketMigration packet) {
+		assert moving != null && moving.model().identifier().equals(packet.board());
+		final BoardSequencer board = moving;
+		moving = null;
+		board.submit(new Runnable() {
+			public void run() {
+				board.setTail(null);
+				sendPacket(new PacketMigration(PacketMigration.Step.CUTOVER, board.model().identifier(),
+						board.lastSequence(), false));
+			}
+		});
+	}
+	
+	/**
+	 * Forgets a board that has moved to another server, along with its files
+	 */
+	private void forgetMovedBoard(PacketMigration packet) {
+		final BoardSequencer board = server.sequencer(packet.board());
+		if (board == null) {
+			sendPacket(new PacketMigration(PacketMigration.Step.FORGET, packet.board(), SequencedPacket.UNSEQUENCED, false));
+			return;
+		}
+		board.submit(new Runnable() {
+			public void run() {
+				server.removeBoard(board);
+				sendPacket(new PacketMigration(PacketMigration.Step.FORGET, board.model().identifier(),
+						board.lastSequence(), false));
+			}
+		});
+	}
+	
+	/**
+	 * Handles receiving a BoardTransferPacket by creating the board moving here. The changes copied from
+	 * the old server then arrive over this connection and are applied as if this client had made them.
+	 */
+	@Override
+	public void receivedBoardTransferPacket(PacketBoardTransfer packet) {
+		assert model == null;
+		sequencer = server.adoptBoard(packet);
+		model = sequencer.model();
+		// Applies changes without being sent them, it isn't a user of the board.
+		state = ServerSocketState.PLAYING;
+	}
+	
+	/**
+	 * Lists the board that has moved here once every change made on the old server has been applied
+	 */
+	private void commitMovedBoard(PacketMigration packet) {
+		assert model != null && model.identifier().equals(packet.board());
+		final BoardSequencer board = sequencer;
+		model = null;
+		sequencer = null;
+		state = ServerSocketState.IDLE;
+		board.submit(new Runnable() {
+			public void run() {
+				server.commitBoard(board);
+				sendPacket(new PacketMigration(PacketMigration.Step.COMMIT, board.model().identifier(),
+						board.lastSequence(), false));
+			}
+		});
+	}
+	
+	/**
+	 * Puts the client back on the board that has moved here, without sending it the board again
+	 */
+	private void resumeMovedBoard(final PacketMigration packet) {
+		assert model == null;
+		final BoardSequencer board = server.sequencer(packet.board());
+		assert board != null;
+		model = board.model();
+		sequencer = board;
+		if (packet.playing()) {
+			state = ServerSocketState.PLAYING;
+		}
+		board.submit(new Runnable() {
+			public void run() {
+				if (packet.playing()) {
+					board.model().addUser(ServerSocketHandler.this);
+				}
+				sendPacket(new PacketMigration(PacketMigration.Step.RESUME, board.model().identifier(),
+						board.lastSequence(), packet.playing()));
+				if (packet.playing()) {
+					board.publish(new PacketBoardUsers(board.model().users()));
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Handles receiving a BoardDirectoryPagePacket which should never happen because these are only
+	 * server to client
+	 */
+	@Override
+	public void receivedBoardDirectoryPagePacket(PacketBoardDirectoryPage packet) {
+		// Only server to client.
+		assert false;
+	}
+	
+	/**
+	 * Handles receiving a BoardDirectoryDeltaPacket which should never happen because these are only
+	 * server to client
+	 */
+	@Override
+	public void receivedBoardDirectoryDeltaPacket(PacketBoardDirectoryDelta packet) {
+		// Only server to client.
+		assert false;
+	}
+	
+	/**
+	 * Handles Receiving a BoardModelPacket, which should never happen because these should only be
+	 * handled by the clients, never by the server
+	 */
+    @Override
+    public void receivedBoardModelPacket(PacketBoardModel packet) {
+        // We only send GameStatePackets from the server.
+        assert false;
+    }
+    
+    /**
+     * Handles receiving a BoardTilesPacket, which should never happen because these are only server to
+     * client
+     */
+    @Override
+    public void receivedBoardTilesPacket(PacketBoardTiles packet) {
+        // Only server to client.
+        assert false;
+    }
+    
+    /**
+     * Handles receiving a TileDigestPacket, which should never happen because these are only server to
+     * client
+     */
+    @Override
+    public void receivedTileDigestPacket(PacketTileDigest packet) {
+        // Only server to client.
+        assert false;
+    }
+    
+    /**
+     * Handles receiving a BoardIdentifierListPacket which should never happen because these are
+     * handled by the clients, never by the server
+     */
+    @Override
+    public void receivedBoardIdentifierListPacket(PacketBoardIdentifierList packet) {
+        // We only send BoardStatePackets from the server.
+        assert false;
+    }
+    
+    /**
+     * Handles receiving a BoardUsersPacket which is asserted false because that is only server
+     * to client
+     */
+	@Override
+	public void receivedBoardUsersPacket(PacketBoardUsers packet) {
+		// Only server to client.
+		assert false;
+	}
+}
\ No newline at end of file
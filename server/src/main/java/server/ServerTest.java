@@ -2,7 +2,9 @@ package server;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
@@ -18,8 +20,11 @@ import packet.PacketBoardIdentifierList;
 import packet.PacketBoardModel;
 import packet.PacketBoardUsers;
 import packet.PacketClientReady;
+import packet.PacketFrame;
 import packet.PacketNewBoard;
 import packet.PacketNewClient;
+import packet.PacketType;
+import packet.WireFormat;
 import util.TestUtil;
 
 /**
@@ -72,4 +77,20 @@ public class ServerTest {
             assertTrue(false);
         }
     }
+
+    @Test(timeout = 10000)
+    public void oversizedFrameRejectedTest() throws IOException {
+        // Test that a client announcing a frame longer than a client may send is disconnected before
+        // it has sent the frame.
+        Socket socket = TestUtil.connect();
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeInt(WireFormat.BINARY.magic());
+        out.writeInt(PacketFrame.MAX_LENGTH);
+        out.writeByte(PacketType.DRAW_COMMAND.code());
+        out.flush();
+        InputStream in = socket.getInputStream();
+        // Skip the server's answer to the magic, the read times out unless the server hangs up.
+        while (in.read() != -1) {
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of how long operations took, in power of two buckets of nanoseconds. Recording is cheap
+ * enough to do for every operation and can be read from any thread while it is being recorded into.
+ *
+ */
+public class ServiceTimeHistogram {
+    // Bucket i counts times in [2^i, 2^(i+1)) nanoseconds, the last one everything longer.
+    static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Records one operation
+     * @param nanos how long it took
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * @return immutable copy of the histogram as it is now
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy);
+    }
+
+    static int bucket(long nanos) {
+        if (nanos <= 1) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * Immutable copy of a ServiceTimeHistogram
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+
+        Snapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (long bucket : counts) {
+                total += bucket;
+            }
+            this.count = total;
+        }
+
+        /**
+         * @return number of operations recorded
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @param fraction between 0 and 1, for example 0.99
+         * @return upper bound in nanoseconds of the bucket the fraction of operations falls into,
+         *         or 0 if nothing was recorded
+         */
+        public long percentile(double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length - 1);
+        }
+
+        private static long upperBound(int bucket) {
+            return (1L << (bucket + 1)) - 1;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + " p50=" + percentile(0.5) / 1000 + "us p99=" + percentile(0.99) / 1000
+                    + "us p999=" + percentile(0.999) / 1000 + "us";
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ServiceTimeHistogramTest {
+
+    @Test
+    public void bucketTest() {
+        // test times land in the power of two bucket below them
+        assertEquals(0, ServiceTimeHistogram.bucket(0));
+        assertEquals(0, ServiceTimeHistogram.bucket(1));
+        assertEquals(1, ServiceTimeHistogram.bucket(2));
+        assertEquals(1, ServiceTimeHistogram.bucket(3));
+        assertEquals(10, ServiceTimeHistogram.bucket(1024));
+        assertEquals(ServiceTimeHistogram.BUCKETS - 1, ServiceTimeHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentileTest() {
+        // test percentiles report the upper bound of the bucket they fall in
+        ServiceTimeHistogram histogram = new ServiceTimeHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1000000);
+        ServiceTimeHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.count());
+        assertEquals(1023, snapshot.percentile(0.5));
+        assertEquals(1023, snapshot.percentile(0.99));
+        assertTrue(snapshot.percentile(1.0) >= 1000000);
+        assertEquals(0, new ServiceTimeHistogram().snapshot().percentile(0.5));
+    }
+}
@@ -0,0 +1,243 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import name.Identifiable;
+import packet.PacketFrame;
+import packet.PacketTileDigest;
+import canvas.Canvas;
+import canvas.TileDigest;
+import canvas.layer.Layer;
+
+/**
+ * Lets the users of the boards find the tiles their copy of a board got wrong, so they can ask for just
+ * those again rather than for the whole board. Every periodMillis each board with a user that asked for
+ * them is sent a TileDigest: the hashes of the tiles that changed since the last digest, and of a few
+ * others taking turns across the board so every tile is checked every so often.
+ *
+ * A digest is made in an operation of the board's sequencer, so it is of the board as it was after its
+ * last change and reaches each user right after that change. The tiles hash the same on every copy of
+ * a board that made the same changes, as they are drawn bit for bit the same everywhere. A tile is only
+ * hashed again once it has been drawn on.
+ *
+ * The auditor counts the tiles checked, one for each hash each user is sent, and the tiles users asked
+ * for again, so the share of tiles that diverged can be watched.
+ *
+ */
+public class TileAuditor {
+    // Tiles hashed in each digest besides the changed ones, and the most tiles a digest has.
+    static final int ROLLING_TILES = 64;
+    static final int MAX_TILES = 1024;
+
+    private final BoardRegistry boards;
+    private final long periodMillis;
+    private final ScheduledExecutorService auditor;
+    // What the users of each board were last sent. Only touched by the board's operations.
+    private final ConcurrentMap<BoardSequencer, Audit> audits = new ConcurrentHashMap<BoardSequencer, Audit>();
+
+    private final AtomicLong digests = new AtomicLong();
+    private final AtomicLong tilesChecked = new AtomicLong();
+    private final AtomicLong tilesDiverged = new AtomicLong();
+    private final AtomicLong repairs = new AtomicLong();
+
+    /**
+     * Constructor for the auditor of the boards of a registry
+     * @param boards
+     * @param periodMillis how often the users of each board are sent a digest
+     */
+    public TileAuditor(BoardRegistry boards, long periodMillis) {
+        this.boards = boards;
+        this.periodMillis = periodMillis;
+        this.auditor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "tile-auditor");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Sends the users of the boards a digest every periodMillis from now on
+     */
+    public void start() {
+        auditor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    audit();
+                } catch (RuntimeException e) {
+                    e.printStackTrace(); // but keep auditing
+                }
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sending digests
+     */
+    public void shutdown() {
+        auditor.shutdown();
+    }
+
+    /**
+     * Submits an operation to every board making and sending its digest, without waiting for them
+     */
+    void audit() {
+        for (final BoardSequencer sequencer : boards.all()) {
+            sequencer.submit(new Runnable() {
+                public void run() {
+                    audit(sequencer);
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends a digest of the board to its users that asked for them. Must only be called from an
+     * operation submitted to the board's sequencer.
+     * @param sequencer
+     */
+    private void audit(BoardSequencer sequencer) {
+        List<ServerSocketHandler> recipients = new ArrayList<ServerSocketHandler>();
+        for (Identifiable user : sequencer.model().users()) {
+            if (((ServerSocketHandler) user).wantsTileDigests()) {
+                recipients.add((ServerSocketHandler) user);
+            }
+        }
+        if (recipients.isEmpty()) {
+            return;
+        }
+        Canvas canvas = sequencer.model().canvas();
+        Audit audit = audits.get(sequencer);
+        if (audit == null) {
+            audit = new Audit(canvas);
+            audits.put(sequencer, audit);
+        }
+        TileDigest digest = audit.next(canvas, sequencer.lastSequence());
+        if (digest.tileCount() == 0) {
+            return;
+        }
+        digests.incrementAndGet();
+        tilesChecked.addAndGet((long) digest.tileCount() * recipients.size());
+        // Encoded once for all of them.
+        PacketFrame frame = PacketFrame.of(new PacketTileDigest(sequencer.model().identifier(), digest));
+        for (ServerSocketHandler recipient : recipients) {
+            recipient.sendFrame(frame);
+        }
+    }
+
+    /**
+     * Forgets a board that has been removed. Must only be called from a submitted operation of the board.
+     * @param sequencer
+     */
+    public void forget(BoardSequencer sequencer) {
+        audits.remove(sequencer);
+    }
+
+    /**
+     * Counts a user asking for tiles of its board again
+     * @param tiles how many tiles it asked for
+     */
+    void repaired(int tiles) {
+        repairs.incrementAndGet();
+        tilesDiverged.addAndGet(tiles);
+    }
+
+    /**
+     * @return how many digests have been sent, counting one for all the users of a board
+     */
+    public long digests() {
+        return digests.get();
+    }
+
+    /**
+     * @return how many tiles users have been sent the hash of
+     */
+    public long tilesChecked() {
+        return tilesChecked.get();
+    }
+
+    /**
+     * @return how many tiles users have asked for again
+     */
+    public long tilesDiverged() {
+        return tilesDiverged.get();
+    }
+
+    /**
+     * @return how many times users have asked for tiles again
+     */
+    public long repairs() {
+        return repairs.get();
+    }
+
+    /**
+     * @return share of the tiles checked that users asked for again, 0 before any is checked
+     */
+    public double divergenceRate() {
+        long checked = tilesChecked.get();
+        return checked == 0 ? 0 : (double) tilesDiverged.get() / checked;
+    }
+
+    /**
+     * The hashes of a board's tiles its users were last sent, and the tile the next few taking turns
+     * start at
+     */
+    private static final class Audit {
+        private final long[] published;
+        private int next;
+
+        Audit(Canvas canvas) {
+            int columns = (canvas.width() + Layer.TILE_SIZE - 1) / Layer.TILE_SIZE;
+            int rows = (canvas.height() + Layer.TILE_SIZE - 1) / Layer.TILE_SIZE;
+            this.published = new long[columns * rows];
+        }
+
+        /**
+         * Hashes the tiles that changed since the last digest, as many as fit, then the next
+         * ROLLING_TILES, and remembers their hashes as sent
+         * @param canvas
+         * @param sequence sequence number of the board's last change
+         * @return the digest, of no tiles if there are none
+         */
+        TileDigest next(Canvas canvas, long sequence) {
+            long[] hashes = new long[published.length];
+            boolean[] chosen = new boolean[published.length];
+            int count = 0;
+            for (int index = 0; index < published.length; index++) {
+                hashes[index] = canvas.tileHash(index);
+                if (hashes[index] != published[index] && count < MAX_TILES - ROLLING_TILES) {
+                    chosen[index] = true;
+                    count++;
+                }
+            }
+            for (int i = 0; i < Math.min(ROLLING_TILES, published.length); i++) {
+                if (!chosen[next]) {
+                    chosen[next] = true;
+                    count++;
+                }
+                next = (next + 1) % published.length;
+            }
+            int[] indexes = new int[count];
+            long[] sent = new long[count];
+            count = 0;
+            for (int index = 0; index < published.length; index++) {
+                if (chosen[index]) {
+                    indexes[count] = index;
+                    sent[count++] = hashes[index];
+                    published[index] = hashes[index];
+                }
+            }
+            return new TileDigest(sequence, canvas.layers().length, indexes, sent);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.awt.Color;
+
+import connection.StreamConnection;
+import name.BoardIdentifier;
+import name.ClientIdentifier;
+import name.LayerIdentifier;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import packet.Packet;
+import packet.PacketBoardModel;
+import packet.PacketBoardTiles;
+import packet.PacketBoardUsers;
+import packet.PacketClientReady;
+import packet.PacketDrawCommand;
+import packet.PacketJoinBoard;
+import packet.PacketNewBoard;
+import packet.PacketTileDigest;
+import packet.PacketTileRepair;
+import util.TestUtil;
+import canvas.Canvas;
+import canvas.Pixel;
+import canvas.TileDigest;
+import canvas.command.DrawCommandPixel;
+
+/**
+ * End to end tests for users finding the tiles their copy of a board got wrong and asking for them again.
+ * @category no_didit
+ */
+public class TileAuditorTest {
+    private static final int PORT = 4447;
+    private static final ClientIdentifier OWNER = new ClientIdentifier(40, "Owner");
+    private static final ClientIdentifier USER = new ClientIdentifier(41, "User");
+
+    private static Server server;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        server = new Server(PORT, TransportMode.BLOCKING);
+        // Audited by the tests rather than every so often.
+        server.setTileAudit(Long.MAX_VALUE / 2);
+        TestUtil.startServer(server);
+    }
+
+    @Test(timeout = 10000)
+    public void repairTest() throws Exception {
+        // test a user is sent the hashes of the board's tiles, finds the tile its copy got wrong and is
+        // sent it again, while a user that didn't ask for them is sent none
+        BoardIdentifier board = new BoardIdentifier(50, "Audited", OWNER);
+        StreamConnection owner = TestUtil.connect(PORT, OWNER);
+        owner.sendPacket(new PacketNewBoard(board, 200, 150, OWNER));
+        Canvas copy = TestUtil.next(owner, PacketBoardModel.class).canvas();
+        LayerIdentifier layer = copy.layers()[0].layerProperties().layerIdentifier();
+        owner.sendPacket(new PacketClientReady(false, true));
+        TestUtil.next(owner, PacketBoardUsers.class, copy);
+
+        StreamConnection user = TestUtil.connect(PORT, USER);
+        user.sendPacket(new PacketJoinBoard(board, USER));
+        TestUtil.next(user, PacketBoardModel.class);
+        user.sendPacket(new PacketClientReady());
+        TestUtil.next(owner, PacketBoardUsers.class, copy);
+
+        long last = 0;
+        for (int i = 0; i < 5; i++) {
+            owner.sendPacket(new PacketDrawCommand(new DrawCommandPixel(layer, new Pixel(i * 40, i * 30, Color.RED))));
+        }
+        for (int i = 0; i < 5; i++) {
+            PacketDrawCommand drawn = TestUtil.next(owner, PacketDrawCommand.class, copy);
+            drawn.drawCommand().drawOn(copy);
+            last = drawn.sequence();
+        }
+        TileAuditor auditor = server.tileAuditor();
+        auditor.audit();
+        TileDigest digest = TestUtil.next(owner, PacketTileDigest.class, copy).digest();
+        assertEquals(last, digest.sequence());
+        // the board has 4 columns and 3 rows of tiles, all taking turns
+        assertEquals(12, digest.tileCount());
+        assertEquals(0, digest.diverged(copy).length);
+        assertEquals(12, auditor.tilesChecked());
+
+        // gone wrong on the copy
+        copy.drawPixel(layer, new Pixel(70, 80, Color.BLUE));
+        auditor.audit();
+        digest = TestUtil.next(owner, PacketTileDigest.class, copy).digest();
+        int[] diverged = digest.diverged(copy);
+        assertArrayEquals(new int[] { 5 }, diverged);
+        owner.sendPacket(new PacketTileRepair(board, diverged));
+        PacketBoardTiles tiles = TestUtil.next(owner, PacketBoardTiles.class, copy);
+        assertEquals(1, tiles.tiles().tileCount());
+        tiles.tiles().applyTo(copy.layers());
+        assertEquals(0, digest.diverged(copy).length);
+        assertEquals(1, auditor.repairs());
+        assertEquals(1, auditor.tilesDiverged());
+        assertEquals(1.0 / 24, auditor.divergenceRate(), 1e-9);
+
+        // the other user was sent the changes only
+        owner.sendPacket(new PacketDrawCommand(new DrawCommandPixel(layer, new Pixel(5, 5, Color.RED))));
+        int changes = 0;
+        while (changes < 6) {
+            Packet packet = user.readPacket();
+            assertFalse(packet instanceof PacketTileDigest);
+            if (packet instanceof PacketDrawCommand) {
+                changes++;
+            }
+        }
+        owner.close();
+        user.close();
+    }
+}
@@ -0,0 +1,43 @@
+package server;
+/**
+ * Enum to represent the ways the server can run its client connections, picked at startup
+ *
+ */
+public enum TransportMode {
+	// one platform thread blocking on each connection
+	BLOCKING("--blocking"),
+	
+	// the blocking connections, each on a virtual thread, needs a JDK 21+ runtime
+	VIRTUAL("--virtual"),
+	
+	// a few selector threads multiplexing every connection, framed clients only
+	NIO("--nio");
+	
+	private final String flag;
+	
+	private TransportMode(String flag) {
+		this.flag = flag;
+	}
+	
+	/**
+	 * Returns the command line flag that selects this mode
+	 * @return flag
+	 */
+	public String flag() {
+		return flag;
+	}
+	
+	/**
+	 * Returns the mode selected by a command line flag
+	 * @param flag
+	 * @return TransportMode, or null if the flag doesn't name a mode
+	 */
+	public static TransportMode forFlag(String flag) {
+		for (TransportMode mode : values()) {
+			if (mode.flag.equals(flag)) {
+				return mode;
+			}
+		}
+		return null;
+	}
+}
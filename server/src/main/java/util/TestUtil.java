@@ -0,0 +1,133 @@
+package util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.util.concurrent.Executor;
+
+import connection.StreamConnection;
+import name.ClientIdentifier;
+import packet.Packet;
+import packet.PacketDrawCommand;
+import packet.PacketNewClient;
+import server.Server;
+import server.TransportMode;
+import canvas.Canvas;
+
+public class TestUtil {
+    
+    // Runs every task right away, on the thread that scheduled it.
+    public static final Executor NOW = new Executor() {
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+    
+    public static Socket connect() throws IOException {
+        return connect(Server.DEFAULT_PORT);
+    }
+    
+    public static Socket connect(int port) throws IOException {
+        Socket ret = null;
+        final int MAX_ATTEMPTS = 50;
+        int attempts = 0;
+        do {
+            try {
+                ret = new Socket("127.0.0.1", port);
+            } catch (ConnectException ce) {
+                try {
+                    if (++attempts > MAX_ATTEMPTS)
+                        throw new IOException("Exceeded max connection attempts", ce);
+                    Thread.sleep(300);
+                } catch (InterruptedException ie) {
+                    throw new IOException("Unexpected InterruptedException", ie);
+                }
+            }
+        } while (ret == null);
+        ret.setSoTimeout(3000);
+        return ret;
+    }
+
+    public static void startServer() {
+        startServer(Server.DEFAULT_PORT, TransportMode.BLOCKING);
+    }
+    
+    public static void startServer(final int port, final TransportMode transport) {
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Server server = new Server(port, transport);
+                    server.serve();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    return;
+                }
+            }
+        }).start();
+    }
+    
+    /**
+     * Serves a server the test has already set up
+     * @param server
+     */
+    public static void startServer(final Server server) {
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    server.serve();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }).start();
+    }
+    
+    /**
+     * Opens a framed connection to the server on the port and introduces the client
+     * @param port
+     * @param client
+     * @return StreamConnection
+     * @throws IOException
+     */
+    public static StreamConnection connect(int port, ClientIdentifier client) throws IOException {
+        StreamConnection connection = StreamConnection.open(connect(port));
+        connection.sendPacket(new PacketNewClient(client));
+        return connection;
+    }
+    
+    /**
+     * Reads packets until one of the type, skipping the others
+     */
+    public static <T extends Packet> T next(StreamConnection connection, Class<T> type) throws Exception {
+        return next(connection, type, null);
+    }
+    
+    /**
+     * Reads packets until one of the type, drawing the changes it skips on the canvas, if there is one
+     */
+    public static <T extends Packet> T next(StreamConnection connection, Class<T> type, Canvas canvas) throws Exception {
+        while (true) {
+            Packet packet = connection.readPacket();
+            if (type.isInstance(packet)) {
+                return type.cast(packet);
+            }
+            if (canvas != null && packet instanceof PacketDrawCommand) {
+                ((PacketDrawCommand) packet).drawCommand().drawOn(canvas);
+            }
+        }
+    }
+    
+    public static Packet nextPacket(ObjectInputStream in) throws IOException {
+        while (true) {
+            Packet ret = null;
+            try {
+                ret = (Packet) (in.readObject());
+            } catch (ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+            if (ret != null)
+                return ret;
+        }
+    }
+}